@@ -0,0 +1,116 @@
+/*
+ * CompositionBenchmark.java
+ *
+ * Copyright (C) 2013 Roozbeh Farahbod
+ *
+ * Licensed under the Academic Free License version 3.0
+ *   http://www.opensource.org/licenses/afl-3.0.php
+ *   http://www.coreasm.org/afl-3.0.php
+ *
+ */
+
+package org.coreasm.engine.absstorage;
+
+import java.io.File;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.coreasm.engine.ControlAPI;
+import org.coreasm.engine.CoreASMEngine;
+import org.coreasm.engine.CoreASMEngineFactory;
+import org.coreasm.engine.interpreter.ASTNode;
+import org.coreasm.engine.interpreter.Interpreter;
+import org.coreasm.engine.interpreter.InterpreterException;
+import org.coreasm.util.Tools;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of composing the updates of sequential rules 
+ * (<code>seq</code> and <code>while</code>) whose bodies produce 
+ * thousands of updates.
+ *
+ * @author  Roozbeh Farahbod
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompositionBenchmark {
+
+	private static final String SPEC =
+			"CoreASM Composition\n" +
+			"use Standard\n" +
+			"init R\n" +
+			"function f : NUMBER -> NUMBER\n" +
+			"function g : NUMBER -> NUMBER\n" +
+			"function k : -> NUMBER\n" +
+			"function s : -> SET initially {}\n" +
+			"rule R = skip\n" +
+			"rule Seq =\n" +
+			"	seq\n" +
+			"		forall i in [1 .. 2000] do f(i) := i\n" +
+			"	next\n" +
+			"		forall i in [1 .. 2000] do par\n" +
+			"			g(i) := f(i) + 1\n" +
+			"			add i to s\n" +
+			"		endpar\n" +
+			"rule While =\n" +
+			"	seq\n" +
+			"		k := 0\n" +
+			"	next\n" +
+			"		while (k < 20) do par\n" +
+			"			k := k + 1\n" +
+			"			forall i in [1 .. 100] do f(k * 100 + i) := i\n" +
+			"		endpar\n";
+
+	/** the sequential rule to be evaluated */
+	@Param({"Seq", "While"})
+	public String rule;
+
+	private CoreASMEngine engine;
+	private Interpreter interpreter;
+	private ASTNode body;
+
+	@Setup
+	public void setUp() {
+		// the plugin folder of Carma, unless the root folder is given
+		if (System.getProperty("org.coreasm.engine.rootFolder") == null)
+			Tools.setRootFolder(new File("../org.coreasm.ui.carma/rsc").getAbsolutePath());
+
+		engine = CoreASMEngineFactory.createEngine();
+		engine.initialize();
+		engine.waitWhileBusy();
+		engine.loadSpecification(new StringReader(SPEC));
+		engine.waitWhileBusy();
+
+		ControlAPI capi = (ControlAPI)engine;
+		interpreter = capi.getInterpreter().getInterpreterInstance();
+		interpreter.cleanUp();
+		body = capi.getStorage().getRule(rule).getBody();
+	}
+
+	@TearDown
+	public void tearDown() {
+		engine.terminate();
+	}
+
+	@Benchmark
+	public UpdateMultiset composeUpdates() throws InterpreterException {
+		interpreter.clearTree(body);
+		interpreter.interpret(body, Element.UNDEF);
+		return body.getUpdates();
+	}
+}
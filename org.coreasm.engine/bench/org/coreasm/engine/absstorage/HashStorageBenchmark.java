@@ -0,0 +1,90 @@
+/*
+ * HashStorageBenchmark.java
+ *
+ * Copyright (C) 2013 Roozbeh Farahbod
+ *
+ * Licensed under the Academic Free License version 3.0
+ *   http://www.opensource.org/licenses/afl-3.0.php
+ *   http://www.coreasm.org/afl-3.0.php
+ *
+ */
+
+package org.coreasm.engine.absstorage;
+
+import java.util.concurrent.TimeUnit;
+
+import org.coreasm.engine.plugins.number.NumberElement;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of reading locations from a {@link HashStorage},
+ * the way the interpreter does it for function terms: a new location
+ * is created for every read, optionally going through a location table.
+ *
+ * @author  Roozbeh Farahbod
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HashStorageBenchmark {
+
+	/** number of arguments of the location being read */
+	@Param({"0", "1", "2"})
+	public int arity;
+
+	private HashStorage storage;
+	private LocationTable locationTable;
+	private String name;
+	private Element[] args;
+	private Location location;
+
+	@Setup
+	public void setUp() throws Exception {
+		storage = new HashStorage(null);
+		locationTable = new LocationTable();
+		name = "f" + arity;
+		args = new Element[arity];
+		for (int i = 0; i < arity; i++)
+			args[i] = NumberElement.getInstance(i + 1);
+
+		MapFunction f = new MapFunction();
+		storage.addFunction(name, f);
+		// some other values of the same function
+		if (arity > 0)
+			for (int i = 0; i < 1000; i++) {
+				Element[] otherArgs = args.clone();
+				otherArgs[0] = NumberElement.getInstance(-i);
+				f.setValue(ElementList.create(otherArgs), NumberElement.getInstance(i));
+			}
+		f.setValue(ElementList.create(args), NumberElement.getInstance(42));
+		location = new Location(name, ElementList.create(args));
+	}
+
+	@Benchmark
+	public Element newLocation() throws InvalidLocationException {
+		return storage.getValue(new Location(name, ElementList.create(args), true));
+	}
+
+	@Benchmark
+	public Element internedLocation() throws InvalidLocationException {
+		return storage.getValue(locationTable.intern(new Location(name, ElementList.create(args), true)));
+	}
+
+	@Benchmark
+	public Element sameLocation() throws InvalidLocationException {
+		return storage.getValue(location);
+	}
+}
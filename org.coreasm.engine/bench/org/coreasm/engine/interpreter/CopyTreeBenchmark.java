@@ -0,0 +1,121 @@
+/*
+ * CopyTreeBenchmark.java
+ *
+ * Copyright (C) 2013 Roozbeh Farahbod
+ *
+ * Licensed under the Academic Free License version 3.0
+ *   http://www.opensource.org/licenses/afl-3.0.php
+ *   http://www.coreasm.org/afl-3.0.php
+ *
+ */
+
+package org.coreasm.engine.interpreter;
+
+import java.io.File;
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.coreasm.engine.ControlAPI;
+import org.coreasm.engine.CoreASMEngine;
+import org.coreasm.engine.CoreASMEngineFactory;
+import org.coreasm.engine.absstorage.RuleElement;
+import org.coreasm.util.Tools;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of copying the body of a rule with its
+ * parameters substituted by arguments, as the interpreter does it
+ * for every rule call.
+ *
+ * @author  Roozbeh Farahbod
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CopyTreeBenchmark {
+
+	private static final String SPEC =
+			"CoreASM CopyTree\n" +
+			"use Standard\n" +
+			"init R\n" +
+			"function counter : -> NUMBER\n" +
+			"function cell : NUMBER * NUMBER -> NUMBER\n" +
+			"rule R = Move(1, 2)\n" +
+			"rule Move(x, y) =\n" +
+			"	par\n" +
+			"		if cell(x, y) = undef then\n" +
+			"			cell(x, y) := x * 10 + y\n" +
+			"		else\n" +
+			"			forall i in [1 .. 4] do\n" +
+			"				if i != x and cell(i, y) = undef then\n" +
+			"					cell(i, y) := cell(x, y) + i\n" +
+			"		choose j in {1, 2, 3} with j > y do\n" +
+			"			counter := counter + j\n" +
+			"		ifnone\n" +
+			"			counter := 0\n" +
+			"		print \"moved \" + x + \" to \" + y\n" +
+			"	endpar\n";
+
+	private CoreASMEngine engine;
+	private Interpreter interpreter;
+	private ASTNode body;
+	private List<String> params;
+	private List<ASTNode> args;
+
+	@Setup
+	public void setUp() {
+		// the plugin folder of Carma, unless the root folder is given
+		if (System.getProperty("org.coreasm.engine.rootFolder") == null)
+			Tools.setRootFolder(new File("../org.coreasm.ui.carma/rsc").getAbsolutePath());
+
+		engine = CoreASMEngineFactory.createEngine();
+		engine.initialize();
+		engine.waitWhileBusy();
+		engine.loadSpecification(new StringReader(SPEC));
+		engine.waitWhileBusy();
+
+		ControlAPI capi = (ControlAPI)engine;
+		RuleElement rule = capi.getStorage().getRule("Move");
+		interpreter = capi.getInterpreter();
+		body = rule.getBody();
+		params = rule.getParam();
+
+		// the arguments of the call in rule R
+		ASTNode call = capi.getStorage().getRule("R").getBody();
+		args = ((FunctionRuleTermNode)call.getFirst()).getArguments();
+	}
+
+	@TearDown
+	public void tearDown() {
+		engine.terminate();
+	}
+
+	@Benchmark
+	public ASTNode copyTreeSub() {
+		return interpreter.copyTreeSub(body, params, args);
+	}
+
+	@Benchmark
+	public Node cloneTree() {
+		return body.cloneTree();
+	}
+
+	@Benchmark
+	public Node duplicate() {
+		return body.duplicate();
+	}
+}
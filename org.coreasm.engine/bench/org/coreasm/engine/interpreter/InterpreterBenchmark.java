@@ -0,0 +1,102 @@
+/*
+ * InterpreterBenchmark.java
+ *
+ * Copyright (C) 2013 Roozbeh Farahbod
+ *
+ * Licensed under the Academic Free License version 3.0
+ *   http://www.opensource.org/licenses/afl-3.0.php
+ *   http://www.coreasm.org/afl-3.0.php
+ *
+ */
+
+package org.coreasm.engine.interpreter;
+
+import java.io.File;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.coreasm.engine.ControlAPI;
+import org.coreasm.engine.CoreASMEngine;
+import org.coreasm.engine.CoreASMEngineFactory;
+import org.coreasm.engine.EngineProperties;
+import org.coreasm.engine.absstorage.Element;
+import org.coreasm.engine.absstorage.UpdateMultiset;
+import org.coreasm.util.Tools;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of interpreting a tight arithmetic loop, which is
+ * dominated by the dispatch of the interpreter on the nodes of the
+ * parse tree.
+ *
+ * @author  Roozbeh Farahbod
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InterpreterBenchmark {
+
+	private static final String SPEC =
+			"CoreASM Arithmetic\n" +
+			"use Standard\n" +
+			"init R\n" +
+			"function a : -> NUMBER initially 3\n" +
+			"function b : -> NUMBER initially 5\n" +
+			"function s : NUMBER -> NUMBER\n" +
+			"rule R =\n" +
+			"	forall i in [1 .. 100] do\n" +
+			"		s(i) := ((i + a) * (i - b) + (a * b) % 7 - (i + b) / 3) * 2 + i * i - a\n";
+
+	/** evaluation mode of the interpreter */
+	@Param({EngineProperties.EVALUATION_STEPPING, EngineProperties.EVALUATION_COMPILED})
+	public String mode;
+
+	private CoreASMEngine engine;
+	private Interpreter interpreter;
+	private ASTNode body;
+
+	@Setup
+	public void setUp() {
+		// the plugin folder of Carma, unless the root folder is given
+		if (System.getProperty("org.coreasm.engine.rootFolder") == null)
+			Tools.setRootFolder(new File("../org.coreasm.ui.carma/rsc").getAbsolutePath());
+
+		engine = CoreASMEngineFactory.createEngine();
+		engine.initialize();
+		engine.waitWhileBusy();
+		engine.setProperty(EngineProperties.EVALUATION_MODE, mode);
+		engine.loadSpecification(new StringReader(SPEC));
+		engine.waitWhileBusy();
+
+		ControlAPI capi = (ControlAPI)engine;
+		interpreter = capi.getInterpreter().getInterpreterInstance();
+		interpreter.cleanUp();
+		body = capi.getStorage().getRule("R").getBody();
+	}
+
+	@TearDown
+	public void tearDown() {
+		engine.terminate();
+	}
+
+	@Benchmark
+	public UpdateMultiset interpretLoop() throws InterpreterException {
+		interpreter.clearTree(body);
+		interpreter.interpret(body, Element.UNDEF);
+		return body.getUpdates();
+	}
+}
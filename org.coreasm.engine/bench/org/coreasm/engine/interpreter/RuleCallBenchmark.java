@@ -0,0 +1,111 @@
+/*
+ * RuleCallBenchmark.java
+ *
+ * Copyright (C) 2013 Roozbeh Farahbod
+ *
+ * Licensed under the Academic Free License version 3.0
+ *   http://www.opensource.org/licenses/afl-3.0.php
+ *   http://www.coreasm.org/afl-3.0.php
+ *
+ */
+
+package org.coreasm.engine.interpreter;
+
+import java.io.File;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.coreasm.engine.ControlAPI;
+import org.coreasm.engine.CoreASMEngine;
+import org.coreasm.engine.CoreASMEngineFactory;
+import org.coreasm.engine.EngineProperties;
+import org.coreasm.engine.absstorage.Element;
+import org.coreasm.engine.absstorage.UpdateMultiset;
+import org.coreasm.util.Tools;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of calling rules with arguments, which is
+ * dominated by preparing the bodies of the called rules: copying them
+ * for every call, or reusing the copies of earlier calls.
+ *
+ * @author  Roozbeh Farahbod
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RuleCallBenchmark {
+
+	private static final String SPEC =
+			"CoreASM RuleCalls\n" +
+			"use Standard\n" +
+			"init R\n" +
+			"function a : -> NUMBER initially 3\n" +
+			"function s : NUMBER -> NUMBER\n" +
+			"rule R =\n" +
+			"	forall i in [1 .. 100] do\n" +
+			"		Step(i, a)\n" +
+			"rule Step(x, y) =\n" +
+			"	if x > y then\n" +
+			"		Set(x, (x - y) * 2 + x % 7)\n" +
+			"	else\n" +
+			"		Set(x, (y - x) * 3 - x % 5)\n" +
+			"rule Set(l, v) =\n" +
+			"	if v > 0 then\n" +
+			"		s(l) := v * v + l\n" +
+			"	else\n" +
+			"		s(l) := l - v\n";
+
+	/** how the interpreter handles rule calls */
+	@Param({EngineProperties.RULE_CALL_COPY, EngineProperties.RULE_CALL_SHARED})
+	public String ruleCalls;
+
+	private CoreASMEngine engine;
+	private Interpreter interpreter;
+	private ASTNode body;
+
+	@Setup
+	public void setUp() {
+		// the plugin folder of Carma, unless the root folder is given
+		if (System.getProperty("org.coreasm.engine.rootFolder") == null)
+			Tools.setRootFolder(new File("../org.coreasm.ui.carma/rsc").getAbsolutePath());
+
+		engine = CoreASMEngineFactory.createEngine();
+		engine.initialize();
+		engine.waitWhileBusy();
+		engine.setProperty(EngineProperties.RULE_CALL_MODE, ruleCalls);
+		engine.loadSpecification(new StringReader(SPEC));
+		engine.waitWhileBusy();
+
+		ControlAPI capi = (ControlAPI)engine;
+		interpreter = capi.getInterpreter().getInterpreterInstance();
+		interpreter.cleanUp();
+		body = capi.getStorage().getRule("R").getBody();
+	}
+
+	@TearDown
+	public void tearDown() {
+		engine.terminate();
+	}
+
+	@Benchmark
+	public UpdateMultiset interpretCalls() throws InterpreterException {
+		interpreter.clearTree(body);
+		interpreter.interpret(body, Element.UNDEF);
+		return body.getUpdates();
+	}
+}
@@ -0,0 +1,68 @@
+/*
+ * NumberElementBenchmark.java
+ *
+ * Copyright (C) 2013 Roozbeh Farahbod
+ *
+ * Licensed under the Academic Free License version 3.0
+ *   http://www.opensource.org/licenses/afl-3.0.php
+ *   http://www.coreasm.org/afl-3.0.php
+ *
+ */
+
+package org.coreasm.engine.plugins.number;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of the arithmetic of the number plugin, which 
+ * creates a number element for every result: counters and indices 
+ * (small integral values), and fractions. The contended variants run
+ * the same arithmetic in several threads, as agents do in 
+ * multi-threaded simulations.
+ *
+ * @author  Roozbeh Farahbod
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NumberElementBenchmark {
+
+	private NumberElement counter = NumberElement.getInstance(0);
+	private NumberElement fraction = NumberElement.getInstance(0.5);
+
+	@Benchmark
+	public NumberElement counter() {
+		return counter = NumberElement.getInstance((counter.getValue() + 1) % 1000);
+	}
+
+	@Benchmark
+	public NumberElement fraction() {
+		return fraction = NumberElement.getInstance((fraction.getValue() * 1.5) % 1000 + 0.25);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public NumberElement counterContended() {
+		return counter();
+	}
+
+	@Benchmark
+	@Threads(4)
+	public NumberElement fractionContended() {
+		return fraction();
+	}
+}
@@ -28,13 +28,13 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.jar.JarEntry;
 import java.util.jar.JarInputStream;
 
@@ -94,9 +94,9 @@ public class Engine implements ControlAPI {
 	/** Engine components */
 	private final Parser parser;
 
-	private final AbstractStorage storage;
+	private final HashStorage storage;
 
-	private final Scheduler scheduler;
+	private final SchedulerImp scheduler;
 
 	private final Interpreter interpreter;
 
@@ -140,8 +140,8 @@ public class Engine implements ControlAPI {
 	/** Collection of registered observers */
 	private Collection<EngineObserver> observers;
 
-	/** List of interpreter listeners */
-	private LinkedList<InterpreterListener> interpreterListeners;
+	/** List of interpreter listeners; interpreters take a snapshot of it at every step */
+	private List<InterpreterListener> interpreterListeners;
 
 	/** Remaining steps of the current run */
 	private int remainingRunCount = 0;
@@ -191,7 +191,7 @@ public class Engine implements ControlAPI {
 		operatorRules = new ArrayList<OperatorRule>();
 		engineMode = EngineMode.emIdle;
 		observers = new HashSet<EngineObserver>();
-		interpreterListeners = new LinkedList<InterpreterListener>();
+		interpreterListeners = new CopyOnWriteArrayList<InterpreterListener>();
 		modeEventCache = new HashMap<EngineMode, Map<EngineMode,EngineModeEvent>>();
 		specification = null;
 		warnings = new ArrayList<CoreASMWarning>();
@@ -357,15 +357,17 @@ public class Engine implements ControlAPI {
 	}
 
 	/**
-	 * This method is not supported by this engine.
+	 * Previous states are only available if the engine keeps a 
+	 * state history; see {@link EngineProperties#STATE_HISTORY_SIZE}.
 	 *
-	 * @throws UnsupportedOperationException
 	 * @see ControlAPI#getPrevState(int)
 	 */
 	@Override
 	public State getPrevState(int i) {
-		throw new UnsupportedOperationException(
-				"State history is not supported yet.");
+		if (i == 0)
+			return storage;
+		else
+			return storage.getPrevState(i);
 	}
 
 	@Override
@@ -373,7 +375,7 @@ public class Engine implements ControlAPI {
 		if (i == 0)
 			return scheduler.getUpdateSet();
 		else
-			return null;
+			return storage.getPrevUpdateSet(i);
 	}
 
 	@Override
@@ -1308,6 +1310,8 @@ public class Engine implements ControlAPI {
 
 						case emPreparingInitialState:
 							scheduler.prepareInitialState();
+							if (EngineProperties.YES.equals(getProperty(EngineProperties.CHECKPOINT_RESUME, EngineProperties.NO)))
+								scheduler.setStepCount(storage.resumeFromCheckpoint());
 							isStateInitialized = true;
 							next(EngineMode.emIdle);
 							break;
@@ -1398,8 +1402,10 @@ public class Engine implements ControlAPI {
 							*/
 
 						case emAggregation:
-							storage.aggregateUpdates();
-							if (storage.isConsistent(scheduler.getUpdateSet())) {
+							// no agent program is being evaluated, so the updates 
+							// can be aggregated in the threads of the agent pool
+							storage.aggregateUpdates(scheduler.getAgentPool());
+							if (storage.isAggregatedUpdateSetConsistent()) {
 								storage.fireUpdateSet(scheduler.getUpdateSet());
 								next(EngineMode.emStepSucceeded);
 							} else
@@ -1458,6 +1464,9 @@ public class Engine implements ControlAPI {
 				for (Plugin p: loadedPlugins)
 					p.terminate();
 
+				// releasing the agent execution threads
+				scheduler.dispose();
+
 				// empty command queue
 				commandQueue.clear();
 
@@ -1720,7 +1729,7 @@ public class Engine implements ControlAPI {
 
 	@Override
 	public void removeInterpreterListener(InterpreterListener listener) {
-		interpreterListeners.add(listener);
+		interpreterListeners.remove(listener);
 	}
 
 	@Override
@@ -34,6 +34,74 @@ public class EngineProperties extends Properties {
 	/** the maximum number of processors the engine can use for simulation */
 	public static final String MAX_PROCESSORS = "engine.limits.maxProcessors";
 
+	/** 
+	 * the agent execution backend of the scheduler; 
+	 * either {@link #EXECUTOR_POOLED} or {@link #EXECUTOR_PER_STEP} 
+	 */
+	public static final String AGENT_EXECUTOR = "engine.limits.agentExecutor";
+
+	/** a work-stealing thread pool is kept alive for the whole run */
+	public static final String EXECUTOR_POOLED = "pooled";
+
+	/** a new thread pool is created for every step and is shut down afterwards */
+	public static final String EXECUTOR_PER_STEP = "perStep";
+
+	/** 
+	 * how the interpreter evaluates parse trees; 
+	 * either {@link #EVALUATION_STEPPING} or {@link #EVALUATION_COMPILED} 
+	 */
+	public static final String EVALUATION_MODE = "engine.interpreter.evaluation";
+
+	/** the interpreter moves from node to node, applying the interpreter rules of the kernel and the plugins */
+	public static final String EVALUATION_STEPPING = "stepping";
+
+	/** nodes are compiled once into evaluators which evaluate their child nodes recursively */
+	public static final String EVALUATION_COMPILED = "compiled";
+
+	/** 
+	 * how the interpreter handles rule calls; 
+	 * either {@link #RULE_CALL_COPY} or {@link #RULE_CALL_SHARED} 
+	 */
+	public static final String RULE_CALL_MODE = "engine.interpreter.ruleCalls";
+
+	/** the body of the called rule is copied for every call, with its parameters substituted by the arguments */
+	public static final String RULE_CALL_COPY = "copy";
+
+	/** 
+	 * every interpreter keeps a pool of copies of rule bodies, which are cleared and 
+	 * reused by later calls; parameters are evaluated by name, on a copy of their 
+	 * argument, where they are used 
+	 */
+	public static final String RULE_CALL_SHARED = "shared";
+
+	/** 
+	 * 'yes': every operator is evaluated by all the plugins implementing it and their results are checked
+	 * against each other; 'no': an operator node asks only the plugin that evaluated it last time,
+	 * as long as its operands are of the same element classes
+	 */
+	public static final String STRICT_OPERATORS = "engine.interpreter.strictOperators";
+
+	/** 
+	 * interpreter listeners are notified of every n-th node evaluation (before and after, counted separately) 
+	 * and every n-th rule call (with its exit) of an interpreter; '1' notifies them of every event
+	 */
+	public static final String LISTENER_SAMPLING = "engine.interpreter.listenerSampling";
+
+	/** 'yes': equal locations created by the interpreter are shared through an interning table */
+	public static final String INTERN_LOCATIONS = "engine.storage.internLocations";
+
+	/** the number of previous states (and update sets) kept by the engine; '0' keeps no history */
+	public static final String STATE_HISTORY_SIZE = "engine.storage.historySize";
+
+	/** path of the file in which the state is checkpointed after every step; empty: no checkpoint is kept */
+	public static final String CHECKPOINT_FILE = "engine.storage.checkpointFile";
+
+	/** the number of steps between two base snapshots of the state in the checkpoint file; '0' writes only one snapshot */
+	public static final String CHECKPOINT_INTERVAL = "engine.storage.checkpointInterval";
+
+	/** 'yes': the state is restored from the checkpoint file after the specification is loaded */
+	public static final String CHECKPOINT_RESUME = "engine.storage.checkpointResume";
+
 	/** 'yes': the engine will print some stats on processor utilization after every step */
 	public static final String PRINT_PROCESSOR_STATS_PROPERTY = "scheduler.printProcessorStats";
 
@@ -73,6 +141,16 @@ public class EngineProperties extends Properties {
 	public void setDefaults() {
 		this.setProperty(PRINT_STACK_TRACE, NO);
 		this.setProperty(MAX_PROCESSORS, "1");
+		this.setProperty(AGENT_EXECUTOR, EXECUTOR_POOLED);
+		this.setProperty(EVALUATION_MODE, EVALUATION_STEPPING);
+		this.setProperty(RULE_CALL_MODE, RULE_CALL_COPY);
+		this.setProperty(STRICT_OPERATORS, NO);
+		this.setProperty(LISTENER_SAMPLING, "1");
+		this.setProperty(INTERN_LOCATIONS, NO);
+		this.setProperty(STATE_HISTORY_SIZE, "0");
+		this.setProperty(CHECKPOINT_FILE, "");
+		this.setProperty(CHECKPOINT_INTERVAL, "1000");
+		this.setProperty(CHECKPOINT_RESUME, NO);
 		this.setProperty(PRINT_PROCESSOR_STATS_PROPERTY, "no");
 		this.setProperty(AGENT_EXECUTION_THREAD_BATCH_SIZE, "1");
 	}
@@ -16,6 +16,8 @@ package org.coreasm.engine.absstorage;
 import java.util.Collection;
 import java.util.Set;
 
+import org.coreasm.engine.EngineProperties;
+
 /**
  * Interface to the Abstract Storage component inside any CoreASM engine.
  * 
@@ -54,6 +56,24 @@ public interface AbstractStorage extends State {
 	 * @param updateSet updates to be applied to the current state.
 	 */
 	public void fireUpdateSet(Set<Update> updateSet) throws InvalidLocationException;
+
+	/**
+	 * Returns the version of the current state. The version changes 
+	 * whenever the current state changes (e.g., when an update set is 
+	 * fired), so values computed from the current state can be kept 
+	 * for as long as the version stays the same. States pushed 
+	 * in the stack do not change the version.
+	 * 
+	 * @see #fireUpdateSet(Set)
+	 */
+	public long getStateVersion();
+
+	/**
+	 * Returns the slots of the names of the functions, universes, 
+	 * and rules of this storage. The slots given to 
+	 * {@link #getFunction(int)} are slots of this object.
+	 */
+	public FunctionSlots getFunctionSlots();
 	
 	/**
 	 * Performs aggregation on a given collection of update instructions.
@@ -124,6 +144,15 @@ public interface AbstractStorage extends State {
 	 */
 	public void aggregateUpdates();
 	
+	/**
+	 * Returns <code>true</code> if the update set computed by the last 
+	 * call to {@link #aggregateUpdates()} is consistent. This is checked 
+	 * as part of the aggregation; if the update set is inconsistent, the 
+	 * conflicting updates are available through 
+	 * {@link #getLastInconsistentUpdate()}.
+	 */
+	public boolean isAggregatedUpdateSetConsistent();
+	
 	/**
 	 * Computes the sequential composition of two update multisets.
 	 * 
@@ -197,12 +226,51 @@ public interface AbstractStorage extends State {
 	 * of a rule in the state.
 	 */
 	public boolean isRuleName(String token);
+	
+	/**
+	 * Returns a location equal to the given location that is shared
+	 * with other users of equal locations, if location interning is 
+	 * enabled (see {@link EngineProperties#INTERN_LOCATIONS}); otherwise, 
+	 * returns the given location.
+	 * 
+	 * @param l a location
+	 */
+	public Location internLocation(Location l);
 
 	/**
 	 * @return the last inconsistent updates. Returns <code>null</code>
-	 * if the last call to {@link #isConsistent(Collection)} returned 
-	 * <code>true</code>.
+	 * if the last call to {@link #isConsistent(Collection)} (or 
+	 * the last aggregation of updates) found the updates consistent.
 	 */
 	public Set<Update> getLastInconsistentUpdate();
+	
+	/**
+	 * Returns the i'th previous state, where i is between 1 and the 
+	 * size of the state history (see {@link EngineProperties#STATE_HISTORY_SIZE}).
+	 * The returned state cannot be modified.
+	 * 
+	 * @return the i'th previous state, or <code>null</code> if the 
+	 * state is not available.
+	 */
+	public State getPrevState(int i);
+	
+	/**
+	 * Returns the update set that was fired on the i'th previous state
+	 * (see {@link #getPrevState(int)}).
+	 * 
+	 * @return the update set, or <code>null</code> if the update set 
+	 * is not available.
+	 */
+	public Set<Update> getPrevUpdateSet(int i);
+	
+	/**
+	 * Restores the state from the checkpoint file of this storage
+	 * (see {@link EngineProperties#CHECKPOINT_FILE}). If there is
+	 * no checkpoint file yet, the state is not changed.
+	 * 
+	 * @return the number of steps performed to reach the restored state
+	 * @throws org.coreasm.engine.CoreASMError if the state cannot be restored
+	 */
+	public int resumeFromCheckpoint();
 }
 
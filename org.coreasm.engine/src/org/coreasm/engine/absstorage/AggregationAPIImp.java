@@ -13,6 +13,7 @@
 package org.coreasm.engine.absstorage;
 
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Set;
@@ -32,17 +33,23 @@ public class AggregationAPIImp implements EngineAggregationAPI, PluginAggregatio
 	/** Update multiset of update instructions **/
 	private UpdateMultiset updates;
 	
-	/** UpdateMultiset of unprocessed update instructions **/
-	private UpdateMultiset unprocessedUpdates;
+	/** Number of unprocessed update instructions **/
+	private int unprocessedCount;
 	
 	/** Hashtable from resultant updates to plug-ins **/
 	private Hashtable<Update,Set<Plugin>> htResultantUpdatesToPlugins = new Hashtable<Update,Set<Plugin>>();
 	
+	/** Map from locations to the first resultant update on them **/
+	private HashMap<Location,Update> locToResultantUpdate = new HashMap<Location,Update>();
+	
+	/** First pair of conflicting resultant updates, if any **/
+	private Set<Update> conflictingResultantUpdates = null;
+	
 	/** Hashtable from actions to a set of locations **/
 	private Hashtable<String,Set<Location>> htActionToLocs = new Hashtable<String,Set<Location>>();
 	
-	/** Hashtable from location to set of update instructions */
-	private Hashtable<Location,UpdateMultiset> htLocToUpdates = new Hashtable<Location,UpdateMultiset>();
+	/** Hashtable from location to set of update instructions, which also keeps the unprocessed ones */
+	private Hashtable<Location,LocationUpdates> htLocToUpdates = new Hashtable<Location,LocationUpdates>();
 	
 	/** Hashtable from failed update instructions to vector of plug-ins **/
 	private Hashtable<Update, Vector<Plugin>> htFailedUpdatesToPlugin = new Hashtable<Update, Vector<Plugin>>();
@@ -60,8 +67,10 @@ public class AggregationAPIImp implements EngineAggregationAPI, PluginAggregatio
 		// store update multiset produced
 		this.updates = updates;
 		
-		// unprocessed updates begins as a copy of the original update multiset
-		unprocessedUpdates = new UpdateMultiset(updates);
+		// all the updates begin as unprocessed; they are kept (and 
+		// looked up) per location rather than in a copy of the whole 
+		// update multiset, which may be a concatenation of the agents' updates
+		unprocessedCount = 0;
 		
 		// populate the hashtables for quick access to info when plug-ins need it
 		populateHashtables();
@@ -76,7 +85,7 @@ public class AggregationAPIImp implements EngineAggregationAPI, PluginAggregatio
 		
 		// if all instructions processed, and no failed instructions then aggregation completed
 		// successfully
-		if (getUnprocessedInstructions().size() == 0 && getFailedInstructions().size() == 0)
+		if (unprocessedCount == 0 && getFailedInstructions().size() == 0)
 			return true;
 		// else aggregiation failed
 		else
@@ -94,7 +103,11 @@ public class AggregationAPIImp implements EngineAggregationAPI, PluginAggregatio
 	 * @see org.coreasm.engine.absstorage.EngineAggregationAPI#getUnprocessedInstructions()
 	 */
 	public Collection<Update> getUnprocessedInstructions() {
-		return unprocessedUpdates.toSet();
+		Set<Update> result = new HashSet<Update>();
+		if (unprocessedCount > 0)
+			for (LocationUpdates locUpdates: htLocToUpdates.values())
+				locUpdates.addUnprocessedTo(result);
+		return result;
 	}
 
 	/* (non-Javadoc)
@@ -106,6 +119,13 @@ public class AggregationAPIImp implements EngineAggregationAPI, PluginAggregatio
 		return htResultantUpdatesToPlugins.keySet();
 	}
 
+	/* (non-Javadoc)
+	 * @see org.coreasm.engine.absstorage.EngineAggregationAPI#getConflictingResultantUpdates()
+	 */
+	public Set<Update> getConflictingResultantUpdates() {
+		return conflictingResultantUpdates;
+	}
+
 	/* (non-Javadoc)
 	 * @see org.coreasm.engine.absstorage.PluginAggregationAPI#getLocsWithAnyAction(java.lang.String...)
 	 */
@@ -218,7 +238,9 @@ public class AggregationAPIImp implements EngineAggregationAPI, PluginAggregatio
 	public void flagUpdate(Update update, Flag flag, Plugin plugin) {
 		
 		// remove update from unprocessed updates
-		unprocessedUpdates.remove(update);
+		LocationUpdates locUpdates = htLocToUpdates.get(update.loc);
+		if (locUpdates != null && locUpdates.process(update))
+			unprocessedCount--;
 		
 		// if update flagged as successful
 		if (flag.equals(Flag.SUCCESSFUL))
@@ -263,11 +285,26 @@ public class AggregationAPIImp implements EngineAggregationAPI, PluginAggregatio
 	public void addResultantUpdate(Update update, Plugin plugin) {
 		
 		// create an entry in hashtable for update if it doesn't exist
-		if(!htResultantUpdatesToPlugins.containsKey(update))
-			htResultantUpdatesToPlugins.put(update,new HashSet<Plugin>());
+		Set<Plugin> plugins = htResultantUpdatesToPlugins.get(update);
+		if (plugins == null) {
+			plugins = new HashSet<Plugin>();
+			htResultantUpdatesToPlugins.put(update, plugins);
+			
+			// a new resultant update conflicts with any other 
+			// resultant update on the same location
+			Update other = locToResultantUpdate.put(update.loc, update);
+			if (other != null) {
+				locToResultantUpdate.put(update.loc, other);
+				if (conflictingResultantUpdates == null) {
+					conflictingResultantUpdates = new HashSet<Update>();
+					conflictingResultantUpdates.add(update);
+					conflictingResultantUpdates.add(other);
+				}
+			}
+		}
 		
 		// add plugin to update
-		htResultantUpdatesToPlugins.get(update).add(plugin);
+		plugins.add(plugin);
 
 	}
 	
@@ -280,26 +317,76 @@ public class AggregationAPIImp implements EngineAggregationAPI, PluginAggregatio
 		// for all updateInstructions in the update multiset
 		for (Update u : updates)
 		{
+			unprocessedCount++;
+			
 			//--- add action to loc mapping
 			
 			// create entry in hashtable for given action if doesn't exist
-			if (!htActionToLocs.containsKey(u.action))
-				htActionToLocs.put(u.action,new HashSet<Location>());
+			Set<Location> locs = htActionToLocs.get(u.action);
+			if (locs == null) {
+				locs = new HashSet<Location>();
+				htActionToLocs.put(u.action, locs);
+			}
 			
 			// add location to action
-			htActionToLocs.get(u.action).add(u.loc);
+			locs.add(u.loc);
 			
 			//--- add location to update instruction mapping
 			
 			// create an entry in hashtable for given location if doesn't exist
-			if(!htLocToUpdates.containsKey(u.loc))
-				htLocToUpdates.put(u.loc,new UpdateMultiset());
+			LocationUpdates locUpdates = htLocToUpdates.get(u.loc);
+			if (locUpdates == null) {
+				locUpdates = new LocationUpdates();
+				htLocToUpdates.put(u.loc, locUpdates);
+			}
 			
 			// add update to location
-			htLocToUpdates.get(u.loc).add(u);
+			locUpdates.add(u);
 			
 		}
 		
 	}
 
+	/*
+	 * The update instructions on a location, which also keeps track
+	 * of the ones that are not processed yet. Plug-ins usually flag the
+	 * updates of a location in the order they iterate over them, so the
+	 * unprocessed updates are kept in that order and are looked up 
+	 * starting from the first unprocessed one.
+	 */
+	private static final class LocationUpdates extends UpdateMultiset {
+
+		/* unprocessed updates in the order of iteration; null if no update is processed yet */
+		private Update[] unprocessed = null;
+		
+		/* index of the first unprocessed update */
+		private int first = 0;
+		
+		/*
+		 * Marks one occurrence of the given update as processed. Returns 
+		 * false if there is no unprocessed occurrence of the update. 
+		 */
+		boolean process(Update update) {
+			if (unprocessed == null)
+				unprocessed = toArray(new Update[size()]);
+			for (int i = first; i < unprocessed.length; i++)
+				if (unprocessed[i] != null && unprocessed[i].equals(update)) {
+					unprocessed[i] = null;
+					while (first < unprocessed.length && unprocessed[first] == null)
+						first++;
+					return true;
+				}
+			return false;
+		}
+		
+		void addUnprocessedTo(Collection<Update> c) {
+			if (unprocessed == null)
+				c.addAll(this);
+			else
+				for (int i = first; i < unprocessed.length; i++)
+					if (unprocessed[i] != null)
+						c.add(unprocessed[i]);
+		}
+	}
+
 }
@@ -14,6 +14,8 @@
 
 package org.coreasm.engine.absstorage;
 
+import java.io.IOException;
+
 /**
  * An abstract class that implements the BACKGROUND Element.
  * 
@@ -68,7 +70,39 @@ public abstract class BackgroundElement extends AbstractUniverse {
 	public Element valueOf(String denotation) throws ElementFormatException {
 		throw new UnsupportedOperationException("This background cannot parse values from a String representation.");
 	}
-	
+
+	/**
+	 * If this method is supported by this background,
+	 * it writes the value of the given element of this background
+	 * in a binary form that can be read by {@link #readValue(ElementInput)}.
+	 *
+	 * @param value an element of this background
+	 * @param out the output
+	 *
+	 * @throws IOException if writing to the output fails
+	 * @throws UnsupportedOperationException if this operation is not supported by this background
+	 * @see StateCheckpoint
+	 */
+	public void writeValue(Element value, ElementOutput out) throws IOException {
+		throw new UnsupportedOperationException("This background cannot write values in a binary form.");
+	}
+
+	/**
+	 * If this method is supported by this background,
+	 * it reads an element of this background that was written by
+	 * {@link #writeValue(Element, ElementOutput)}.
+	 *
+	 * @param in the input
+	 * @return an element of this background
+	 *
+	 * @throws IOException if reading from the input fails
+	 * @throws UnsupportedOperationException if this operation is not supported by this background
+	 * @see StateCheckpoint
+	 */
+	public Element readValue(ElementInput in) throws IOException {
+		throw new UnsupportedOperationException("This background cannot read values in a binary form.");
+	}
+
 	/*
 	 * Returns the suggested name of this background
 	 * which must be the name under which this background
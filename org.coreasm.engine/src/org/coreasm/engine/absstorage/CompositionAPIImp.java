@@ -14,16 +14,23 @@
 package org.coreasm.engine.absstorage;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 import org.coreasm.engine.plugin.Plugin;
 
-// TODO The performance of this class in general can be improved. 
 /** 
  *	Provide composition related services to the engine and to the plugins, but
  *  encapsulate all composition and datastructure specific information in this object.
+ *  <p>
+ *  The updates of both multisets are indexed by location when they are set, 
+ *  so that the updates of a location are found without going through all the 
+ *  updates; the multisets returned by {@link #getLocUpdates(int, Location)} 
+ *  are part of the index and should not be modified.
  *   
  * @author Roozbeh Farahbod
  * 
@@ -34,9 +41,33 @@ public class CompositionAPIImp implements EngineCompositionAPI,
 	protected UpdateMultiset[] updates = new UpdateMultiset[3];
 	protected List<UpdatePluginPair> composedUpdates = new ArrayList<UpdatePluginPair>();
 	
+	/** updates of every location in the first and second multisets */
+	private final List<Map<Location, UpdateMultiset>> locUpdates = new ArrayList<Map<Location, UpdateMultiset>>(3);
+	
+	/** locations updated in any of the multisets */
+	private Set<Location> affectedLocations = Collections.emptySet();
+	
 	public void setUpdateInstructions(UpdateMultiset updates1, UpdateMultiset updates2) {
 		this.updates[1] = new UpdateMultiset(updates1);
 		this.updates[2] = new UpdateMultiset(updates2);
+		
+		Set<Location> locations = new HashSet<Location>();
+		locUpdates.clear();
+		locUpdates.add(null);
+		for (int i = 1; i <= 2; i++) {
+			Map<Location, UpdateMultiset> index = new HashMap<Location, UpdateMultiset>();
+			for (Update u: updates[i]) {
+				UpdateMultiset us = index.get(u.loc);
+				if (us == null) {
+					us = new UpdateMultiset();
+					index.put(u.loc, us);
+				}
+				us.add(u);
+			}
+			locations.addAll(index.keySet());
+			locUpdates.add(index);
+		}
+		affectedLocations = Collections.unmodifiableSet(locations);
 	}
 
 	public UpdateMultiset getComposedUpdates() {
@@ -49,24 +80,15 @@ public class CompositionAPIImp implements EngineCompositionAPI,
 	}
 
 	public Set<Location> getAffectedLocations() {
-		Set<Location> result = new HashSet<Location>();
-		
-		for (Update u: updates[1]) 
-			result.add(u.loc);
-		for (Update u: updates[2]) 
-			result.add(u.loc);
-
-		return result;
+		return affectedLocations;
 	}
 
 	public UpdateMultiset getLocUpdates(int setIndex, Location l) {
-		UpdateMultiset result = new UpdateMultiset();
-		
-		for (Update u: updates[setIndex]) 
-			if (u.loc.equals(l))
-				result.add(u);
-		
-		return result;
+		UpdateMultiset result = locUpdates.get(setIndex).get(l);
+		if (result == null)
+			return new UpdateMultiset();
+		else
+			return result;
 	}
 
 	public boolean isLocUpdatedWithActions(int setIndex, Location l, String... action) {
@@ -82,7 +104,7 @@ public class CompositionAPIImp implements EngineCompositionAPI,
 	}
 
 	public boolean isLocationUpdated(int setIndex, Location l) {
-		return !getLocUpdates(setIndex, l).isEmpty();
+		return locUpdates.get(setIndex).containsKey(l);
 	}
 
 	public UpdateMultiset getAllUpdates(int setIndex) {
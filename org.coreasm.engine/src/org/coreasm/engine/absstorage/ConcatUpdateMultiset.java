@@ -0,0 +1,244 @@
+/*
+ * ConcatUpdateMultiset.java
+ *
+ * Copyright (C) 2013 Roozbeh Farahbod
+ *
+ * Licensed under the Academic Free License version 3.0
+ *   http://www.opensource.org/licenses/afl-3.0.php
+ *   http://www.coreasm.org/afl-3.0.php
+ *
+ */
+
+package org.coreasm.engine.absstorage;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An update multiset that is built by linking other update multisets
+ * together instead of copying their updates. Linking is an O(1) operation,
+ * so merging the updates of many agents does not copy the same updates
+ * over and over again.
+ * <p>
+ * Iterating over this multiset and asking for its size do not copy the linked
+ * updates. Any other operation (e.g., adding, removing, or asking for the
+ * multiplicity of an update) first copies all the linked updates into this
+ * multiset (i.e., materializes the multiset).
+ * <p>
+ * A linked multiset must not be modified afterwards, as this multiset only
+ * keeps a reference to it.
+ *
+ * @author  Roozbeh Farahbod
+ */
+public class ConcatUpdateMultiset extends UpdateMultiset {
+
+	/* first and last chunks of linked updates */
+	private Chunk first = null;
+	private Chunk last = null;
+
+	/**
+	 * Creates a new empty update multiset.
+	 */
+	public ConcatUpdateMultiset() {
+		super();
+	}
+
+	/**
+	 * Links the given update multiset to the end of this multiset.
+	 * If the given multiset is also a <code>ConcatUpdateMultiset</code>,
+	 * its links are moved to this multiset and the given multiset
+	 * becomes empty.
+	 *
+	 * @param updates an update multiset
+	 */
+	public void link(UpdateMultiset updates) {
+		if (updates == null || updates == this)
+			return;
+		if (updates instanceof ConcatUpdateMultiset) {
+			ConcatUpdateMultiset other = (ConcatUpdateMultiset)updates;
+			if (other.map.isEmpty()) {
+				// moving the chunks of the other multiset
+				if (other.first != null) {
+					if (first == null)
+						first = other.first;
+					else
+						last.next = other.first;
+					last = other.last;
+					other.first = null;
+					other.last = null;
+				}
+				return;
+			}
+			other.materialize();
+		}
+		if (updates.isEmpty())
+			return;
+		Chunk chunk = new Chunk(updates);
+		if (first == null)
+			first = chunk;
+		else
+			last.next = chunk;
+		last = chunk;
+	}
+
+	/*
+	 * Copies all the linked updates into this multiset.
+	 */
+	private void materialize() {
+		Chunk chunk = first;
+		first = null;
+		last = null;
+		for (; chunk != null; chunk = chunk.next)
+			super.addAll(chunk.updates);
+	}
+
+	/**
+	 * Returns an iterator over the updates in this multiset.
+	 * The returned iterator does not support removal of
+	 * linked updates.
+	 */
+	@Override
+	public Iterator<Update> iterator() {
+		if (first == null)
+			return super.iterator();
+		else
+			return new ConcatIterator();
+	}
+
+	@Override
+	public int size() {
+		int size = super.size();
+		for (Chunk chunk = first; chunk != null; chunk = chunk.next)
+			size += chunk.updates.size();
+		return size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		// linked multisets are never empty
+		return first == null && super.isEmpty();
+	}
+
+	@Override
+	public void clear() {
+		// only dropping the links; linked multisets are not touched
+		first = null;
+		last = null;
+		super.clear();
+	}
+
+	@Override
+	public int multiplicity(Object element) {
+		materialize();
+		return super.multiplicity(element);
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		materialize();
+		return super.contains(o);
+	}
+
+	@Override
+	public Object[] toArray() {
+		materialize();
+		return super.toArray();
+	}
+
+	@Override
+	public <T> T[] toArray(T[] a) {
+		materialize();
+		return super.toArray(a);
+	}
+
+	@Override
+	public boolean add(Update o) {
+		materialize();
+		return super.add(o);
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		materialize();
+		return super.remove(o);
+	}
+
+	@Override
+	public boolean containsAll(Collection<?> c) {
+		materialize();
+		return super.containsAll(c);
+	}
+
+	@Override
+	public boolean addAll(Collection<? extends Update> c) {
+		materialize();
+		return super.addAll(c);
+	}
+
+	@Override
+	public boolean removeAll(Collection<?> c) {
+		materialize();
+		return super.removeAll(c);
+	}
+
+	@Override
+	public boolean retainAll(Collection<?> c) {
+		materialize();
+		return super.retainAll(c);
+	}
+
+	@Override
+	public Set<Update> toSet() {
+		materialize();
+		return super.toSet();
+	}
+
+	/*
+	 * A link to an update multiset.
+	 */
+	private static class Chunk {
+		final UpdateMultiset updates;
+		Chunk next = null;
+
+		Chunk(UpdateMultiset updates) {
+			this.updates = updates;
+		}
+	}
+
+	/*
+	 * Iterates over the materialized updates first and then
+	 * over the linked updates.
+	 */
+	private class ConcatIterator implements Iterator<Update> {
+
+		private Iterator<Update> current;
+		private Chunk nextChunk;
+
+		public ConcatIterator() {
+			current = ConcatUpdateMultiset.super.iterator();
+			nextChunk = first;
+		}
+
+		public boolean hasNext() {
+			while (!current.hasNext()) {
+				if (nextChunk == null)
+					return false;
+				current = nextChunk.updates.iterator();
+				nextChunk = nextChunk.next;
+			}
+			return true;
+		}
+
+		public Update next() {
+			if (!hasNext())
+				throw new NoSuchElementException("next() has no more element.");
+			return current.next();
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException("Cannot remove linked updates.");
+		}
+	}
+}
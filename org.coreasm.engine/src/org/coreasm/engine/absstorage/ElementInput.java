@@ -0,0 +1,36 @@
+/*
+ * ElementInput.java
+ *
+ * Copyright (C) 2013 Roozbeh Farahbod
+ *
+ * Licensed under the Academic Free License version 3.0
+ *   http://www.opensource.org/licenses/afl-3.0.php
+ *   http://www.coreasm.org/afl-3.0.php
+ *
+ */
+
+package org.coreasm.engine.absstorage;
+
+import java.io.DataInput;
+import java.io.IOException;
+
+/**
+ * A binary input for CoreASM elements written to an {@link ElementOutput}.
+ * Backgrounds use this interface to read the values of their elements (see 
+ * {@link BackgroundElement#readValue(ElementInput)}).
+ *
+ * @author  Roozbeh Farahbod
+ * @see ElementOutput
+ */
+public interface ElementInput extends DataInput {
+
+	/**
+	 * Reads an element written by {@link ElementOutput#writeElement(Element)}.
+	 */
+	public Element readElement() throws IOException;
+
+	/**
+	 * Reads a string written by {@link ElementOutput#writeString(String)}.
+	 */
+	public String readString() throws IOException;
+}
@@ -0,0 +1,39 @@
+/*
+ * ElementOutput.java
+ *
+ * Copyright (C) 2013 Roozbeh Farahbod
+ *
+ * Licensed under the Academic Free License version 3.0
+ *   http://www.opensource.org/licenses/afl-3.0.php
+ *   http://www.coreasm.org/afl-3.0.php
+ *
+ */
+
+package org.coreasm.engine.absstorage;
+
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A binary output for CoreASM elements. Backgrounds use this
+ * interface to write the values of their elements (see 
+ * {@link BackgroundElement#writeValue(Element, ElementOutput)}).
+ *
+ * @author  Roozbeh Farahbod
+ * @see ElementInput
+ */
+public interface ElementOutput extends DataOutput {
+
+	/**
+	 * Writes the given element, which can be an element of any background.
+	 * This is the way to write the elements that are nested in 
+	 * another element (e.g., members of a set).
+	 */
+	public void writeElement(Element e) throws IOException;
+
+	/**
+	 * Writes the given string. Unlike {@link #writeUTF(String)}, the 
+	 * length of the string is not limited.
+	 */
+	public void writeString(String s) throws IOException;
+}
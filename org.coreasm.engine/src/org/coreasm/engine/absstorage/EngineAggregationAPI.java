@@ -63,5 +63,16 @@ public interface EngineAggregationAPI {
 	 * aggregation.
 	 */
 	Set<Update> getResultantUpdates();
+	
+	/**
+	 * Return a pair of resultant updates that assign different values 
+	 * to the same location. This is found while plug-ins add resultant 
+	 * updates, so the resultant updates need not be checked again for 
+	 * consistency.
+	 * 
+	 * @return a <code>Set</code> of two conflicting resultant updates, or 
+	 * <code>null</code> if the resultant updates are consistent. 
+	 */
+	Set<Update> getConflictingResultantUpdates();
 
 }
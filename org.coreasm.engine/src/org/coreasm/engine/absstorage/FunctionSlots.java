@@ -0,0 +1,88 @@
+/*
+ * FunctionSlots.java
+ *
+ * Copyright (C) 2013 Roozbeh Farahbod
+ *
+ * Licensed under the Academic Free License version 3.0
+ *   http://www.opensource.org/licenses/afl-3.0.php
+ *   http://www.coreasm.org/afl-3.0.php
+ *
+ */
+
+package org.coreasm.engine.absstorage;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Assigns dense integer slots to the names of functions, universes, and
+ * rules. Every abstract storage has its own slots (see 
+ * {@link AbstractStorage#getFunctionSlots()}), so the slots only grow 
+ * with the names used by the specification of one engine. The slot of 
+ * a name never changes; hence, it can be resolved once (e.g., when a 
+ * node is first evaluated) and kept with nodes and locations, together
+ * with the slots it was resolved by. The abstract storage uses the slots 
+ * to look up state elements by array index instead of by name. The 
+ * interpreters of an engine keep separate slots for the names of 
+ * environment variables, which index their frames of variables.
+ * <p>
+ * Slots are assigned only where a name comes into use; i.e., when a 
+ * function, universe, or rule is added to a state, or when a variable 
+ * is bound. Reads look names up through {@link #lookup(String)}, so
+ * that reading an unknown name does not use up a slot.
+ *
+ * @author  Roozbeh Farahbod
+ */
+public final class FunctionSlots {
+
+	/** indicates that a slot is not resolved yet */
+	public static final int NO_SLOT = -1;
+
+	private final ConcurrentMap<String, Integer> slots = new ConcurrentHashMap<String, Integer>();
+
+	/** the next slot to be assigned; written only after the name is put in the map */
+	private volatile int nextSlot = 0;
+
+	/**
+	 * Returns the slot of the given name, assigning
+	 * a new slot to it if it does not have one.
+	 *
+	 * @param name name of a function, universe, rule, or variable
+	 */
+	public int slotOf(String name) {
+		Integer slot = slots.get(name);
+		if (slot == null) {
+			synchronized (slots) {
+				slot = slots.get(name);
+				if (slot == null) {
+					slot = nextSlot;
+					slots.put(name, slot);
+					nextSlot = slot + 1;
+				}
+			}
+		}
+		return slot;
+	}
+
+	/**
+	 * Returns the slot of the given name, or {@link #NO_SLOT} if
+	 * no slot is assigned to it. Unlike {@link #slotOf(String)}, this
+	 * method never assigns a slot; it is meant for look-ups of names 
+	 * that may not be in use (e.g., reading environment variables).
+	 *
+	 * @param name name of a function, universe, rule, or variable
+	 */
+	public int lookup(String name) {
+		final Integer slot = slots.get(name);
+		return (slot == null) ? NO_SLOT : slot;
+	}
+
+	/**
+	 * Returns the number of slots assigned so far. If a name has no 
+	 * slot (see {@link #lookup(String)}) and the size is unchanged since 
+	 * before the look-up, the name still has no slot.
+	 */
+	public int size() {
+		return nextSlot;
+	}
+}
@@ -13,26 +13,37 @@
  
 package org.coreasm.engine.absstorage;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.Stack;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.coreasm.engine.ControlAPI;
 import org.coreasm.engine.CoreASMError;
+import org.coreasm.engine.CoreASMEngine.EngineMode;
 import org.coreasm.engine.EngineError;
+import org.coreasm.engine.EngineProperties;
 import org.coreasm.engine.EngineTools;
+import org.coreasm.engine.interpreter.Interpreter;
 import org.coreasm.engine.kernel.Kernel;
 import org.coreasm.engine.plugin.Aggregator;
+import org.coreasm.engine.plugin.PartitionableAggregator;
 import org.coreasm.engine.plugin.Plugin;
 import org.coreasm.engine.plugin.VocabularyExtender;
 import org.coreasm.util.Tools;
@@ -65,38 +76,56 @@ public class HashStorage implements AbstractStorage {
 	/** Link to the ControlAPI module. */
 	private final ControlAPI capi;
 
-	/** Stack of update sets 
+	/** Number of interpreters that have states in their stack 
 	 * 
-	 * We keep updates as map of locations to values (per interpreter thread) 
-	 * to increase performance.
+	 * The stack of states is kept by every interpreter (see 
+	 * {@link Interpreter#getStateOverlay()}); as long as no interpreter 
+	 * has a stacked state, the stacks do not have to be looked at.
 	 */
-	private final ThreadLocal<Stack<Map<Location,Element>>> updateStack;
+	private final AtomicInteger stackingInterpreters = new AtomicInteger(0);
 	
 	/** Cache for monitored function values */
 	private final ConcurrentMap<Location,Element> monitoredCache;
-	
-	/** Indicates if there is any state in the stack. */
-	private ThreadLocal<Boolean> stateStacked;
 
 	/** keeps the last inconsistent updates */
 	private Set<Update> lastInconsistentUpdates; 
 	
+	/** maximum number of previous states kept in the history */
+	private int historySize = 0;
+	
+	/** history of the previous states; null if no history is kept */
+	private StateHistory history = null;
+
+	/** version of the current state; only changed while holding the lock of the storage */
+	private volatile long stateVersion = 0;
+	
+	/** slots of the names of the functions, universes, and rules of this storage */
+	private final FunctionSlots functionSlots = new FunctionSlots();
+	
+	/** checkpoint of the state; null if no checkpoint is kept */
+	private StateCheckpoint checkpoint = null;
+	
+	/** interning table of locations; null if locations are not interned */
+	private LocationTable locationTable = null;
+	
+	/** consistency of the update set computed by the last call to aggregateUpdates() */
+	private boolean aggregatedUpdateSetConsistent = true;
+	
 	/** a cache of aggregator plugins */
 	private Set<Aggregator> aggregatorPlugins = new HashSet<Aggregator>(); 
 	
+	/** indicates if all the aggregator plugins support partitioned aggregation */
+	private boolean partitionedAggregation = false;
+	
+	/** minimum number of update instructions to be aggregated in parallel */
+	private static final int PARALLEL_AGGREGATION_THRESHOLD = 1000;
+	
+	/** number of update partitions per aggregation thread */
+	private static final int PARTITIONS_PER_THREAD = 4;
+	
 	/** Creates a new <code>HashStorage</code>. */
 	public HashStorage(ControlAPI capi) {
 		this.capi = capi;
-		updateStack = new ThreadLocal<Stack<Map<Location,Element>>>() {
-	         protected Stack<Map<Location,Element>> initialValue() {
-	             return new Stack<Map<Location,Element>>();
-	         }
-		};
-		stateStacked = new ThreadLocal<Boolean>() {
-	         protected Boolean initialValue() {
-	             return false;
-	         }
-		};
 		monitoredCache = new ConcurrentHashMap<Location, Element>();
 		lastInconsistentUpdates = null;
 		
@@ -114,27 +143,30 @@ public class HashStorage implements AbstractStorage {
 	 * @return the currently stacked updates
 	 */
 	public Map<Location, Element> getStackedUpdates() {
-		Stack<Map<Location, Element>> updateStack = getUpdateStack();
-		if (updateStack.isEmpty())
-			return Collections.emptyMap();
-		
-		Map<Location, Element> stackedUpdates = new HashMap<Location,Element>();
-		for (Map<Location, Element> stackedUpdate : updateStack)
-			stackedUpdates.putAll(stackedUpdate);
-		
-		return stackedUpdates;
+		return getStateOverlay().getValues();
 	}
 	
-	private Stack<Map<Location, Element>> getUpdateStack() {
-		return updateStack.get();
+	/*
+	 * Returns the stack of states of the running interpreter. 
+	 */
+	private StateOverlay getStateOverlay() {
+		return capi.getInterpreter().getInterpreterInstance().getStateOverlay();
 	}
 	
-	private boolean isStateStacked() {
-		return stateStacked.get();
+	/*
+	 * Returns the stack of states of the running interpreter, or null 
+	 * if it is empty. The stack is not looked up if no interpreter 
+	 * has stacked states.
+	 */
+	private StateOverlay getStackedOverlay() {
+		if (stackingInterpreters.get() == 0)
+			return null;
+		StateOverlay overlay = getStateOverlay();
+		return overlay.isEmpty() ? null : overlay;
 	}
 	
-	private void setStateStackedFlag(boolean value) {
-		stateStacked.set(value);
+	private boolean isStateStacked() {
+		return getStackedOverlay() != null;
 	}
 	
 	public void initAbstractStorage() {
@@ -142,6 +174,21 @@ public class HashStorage implements AbstractStorage {
 		
 		initAggregatorPluginCache();
 		
+		if (EngineProperties.YES.equals(capi.getProperty(EngineProperties.INTERN_LOCATIONS, EngineProperties.NO)))
+			locationTable = new LocationTable();
+		else
+			locationTable = null;
+		
+		try {
+			historySize = Integer.parseInt(capi.getProperty(EngineProperties.STATE_HISTORY_SIZE, "0"));
+		} catch (NumberFormatException e) {
+			logger.warn("Invalid value for property {}; no state history is kept.", EngineProperties.STATE_HISTORY_SIZE);
+			historySize = 0;
+		}
+		history = (historySize > 0) ? new StateHistory(state, historySize) : null;
+		
+		initCheckpoint();
+		
         capi.getScheduler().setStepCount(0);
 		try {
 			// first load the kernel plugin
@@ -163,6 +210,14 @@ public class HashStorage implements AbstractStorage {
 		for (Plugin p: capi.getPlugins()) 
 			if (p instanceof Aggregator)
 				aggregatorPlugins.add((Aggregator)p);
+		
+		partitionedAggregation = true;
+		for (Aggregator p: aggregatorPlugins)
+			if (!(p instanceof PartitionableAggregator)) {
+				partitionedAggregation = false;
+				logger.debug("Updates will be aggregated sequentially, since {} is not a partitionable aggregator.", p.getClass().getSimpleName());
+				break;
+			}
 	}
 
 	private void loadVocabularyExtender(VocabularyExtender ve) throws NameConflictException {
@@ -220,12 +275,85 @@ public class HashStorage implements AbstractStorage {
 		if (isStateStacked()) 
 			throw new EngineError("Cannot fire updates when the state stack is not empty.");
 
+		if (history != null)
+			history.record(updateSet);
+		
 		//TODO this should be done in a transactional fashion
 		for (Update u: updateSet) {
 			if (u.action.equals(Update.UPDATE_ACTION)) 
 				state.setValue(u.loc, u.value);
 		}
 		monitoredCache.clear();
+		stateVersion++;
+		
+		if (checkpoint != null)
+			writeCheckpoint(updateSet);
+	}
+
+	public long getStateVersion() {
+		return stateVersion;
+	}
+
+	public FunctionSlots getFunctionSlots() {
+		return functionSlots;
+	}
+
+	/*
+	 * Creates the checkpoint of the state if a checkpoint file is specified.
+	 */
+	private void initCheckpoint() {
+		if (checkpoint != null)
+			checkpoint.close();
+		checkpoint = null;
+		
+		String fileName = capi.getProperty(EngineProperties.CHECKPOINT_FILE, "");
+		if (fileName.length() == 0)
+			return;
+		int interval;
+		try {
+			interval = Integer.parseInt(capi.getProperty(EngineProperties.CHECKPOINT_INTERVAL, "1000"));
+		} catch (NumberFormatException e) {
+			logger.warn("Invalid value for property {}; using the default value.", EngineProperties.CHECKPOINT_INTERVAL);
+			interval = 1000;
+		}
+		checkpoint = new StateCheckpoint(capi, new File(fileName), interval);
+	}
+
+	/*
+	 * Records the given update set, which is just fired, in the checkpoint. 
+	 * If writing the checkpoint fails, no more checkpoints are written.
+	 */
+	private void writeCheckpoint(Set<Update> updateSet) {
+		// the step count is incremented after a step's update set is fired 
+		int step = capi.getScheduler().getStepCount();
+		if (capi.getEngineMode() == EngineMode.emAggregation)
+			step++;
+		try {
+			checkpoint.record(this, updateSet, step);
+		} catch (IOException e) {
+			String msg = "Cannot write the checkpoint file " + checkpoint.getFile() + " (" + e.getMessage() + "); no more checkpoints are written.";
+			logger.error(msg);
+			capi.warning("Abstract Storage", msg);
+			checkpoint.close();
+			checkpoint = null;
+		}
+	}
+
+	public synchronized int resumeFromCheckpoint() {
+		if (checkpoint == null)
+			throw new CoreASMError("Cannot resume the run; no checkpoint file is specified.");
+		if (!checkpoint.getFile().exists()) {
+			logger.info("Checkpoint file {} does not exist; starting from the initial state.", checkpoint.getFile());
+			return 0;
+		}
+		try {
+			int step = checkpoint.restore(this);
+			monitoredCache.clear();
+			stateVersion++;
+			return step;
+		} catch (IOException e) {
+			throw new CoreASMError("Cannot resume the run from " + checkpoint.getFile() + ". " + e.getMessage());
+		}
 	}
 
 	public Element getChosenProgram(Element agent) {
@@ -266,7 +394,7 @@ public class HashStorage implements AbstractStorage {
 //
 	public Element getValue(Location l) throws InvalidLocationException {
 		Element e = null;
-		FunctionElement f = this.getFunction(l.name);
+		FunctionElement f = state.getFunction(l.getSlot(functionSlots));
 		
 		if (f != null) {
 			// Check if a monitored function is being probed
@@ -297,9 +425,16 @@ public class HashStorage implements AbstractStorage {
 	}
 
 	public synchronized void setValue(Location l, Element v) throws InvalidLocationException {
-		if (!isStateStacked()) 
-			state.setValue(l, v);
-		else
+		if (!isStateStacked()) {
+			if (history != null) {
+				// keeping the value of this location in the previous states
+				final Element previous = state.getValue(l);
+				state.setValue(l, v);
+				history.recordValue(l, previous, v);
+			} else
+				state.setValue(l, v);
+			stateVersion++;
+		} else
 			throw new EngineError("Cannot set state content when the state stack is not empty.");
 	}
 
@@ -307,31 +442,39 @@ public class HashStorage implements AbstractStorage {
 	 * Gets the value of a location possibly going through the stack of states.
 	 */
 	private Element getValueOverStack(Location loc) throws InvalidLocationException {
-		if (!isStateStacked()) 
-			return state.getValue(loc);
-		else {
-			Stack<Map<Location, Element>> updateStack = getUpdateStack();
-
-			// Looking through the stack from the top...
-			// This relies on the Vector implementation of the stack
-			Map<Location,Element> um = null;
-			for (int i=updateStack.size()-1; i >= 0; i--) {
-				um = updateStack.get(i);
-				// Look in all the update multisets
-				Element value = um.get(loc);
-				if (value != null)
-					return value;
-			}
-			return state.getValue(loc);
+		StateOverlay overlay = getStackedOverlay();
+		if (overlay != null) {
+			// the overlay keeps the top-most value of every stacked location
+			Element value = overlay.get(loc);
+			if (value != null)
+				return value;
 		}
+		return state.getValue(loc);
 	}
 
 	public void aggregateUpdates() {
+		aggregateUpdates(null);
+	}
+
+	/**
+	 * Aggregates the update instructions of the current step, like
+	 * {@link #aggregateUpdates()}. If a pool of threads is given, 
+	 * large sets of update instructions are partitioned by location 
+	 * and aggregated in the threads of the pool.
+	 * 
+	 * @param pool a pool of threads that are not busy otherwise 
+	 * (e.g., the agent execution threads), or <code>null</code>
+	 */
+	public void aggregateUpdates(ForkJoinPool pool) {
 		logger.debug("Aggregating updates.");
 		UpdateMultiset updateInsts = capi.getScheduler().getUpdateInstructions();
 		Collection<Update> tempUpdateSet = null;
 
-		tempUpdateSet = performAggregation(updateInsts);
+		// the consistency of the resultant updates is checked as part of the aggregation
+		Set<Update> conflictingUpdates = new HashSet<Update>();
+		tempUpdateSet = performAggregation(updateInsts, conflictingUpdates, pool);
+		aggregatedUpdateSetConsistent = conflictingUpdates.isEmpty();
+		lastInconsistentUpdates = aggregatedUpdateSetConsistent ? null : conflictingUpdates;
 		
 		Collection<Update> uSet = capi.getScheduler().getUpdateSet();
 		// clear the updateset of the scheduler 
@@ -367,6 +510,24 @@ public class HashStorage implements AbstractStorage {
 	 * @see AbstractStorage#performAggregation(UpdateMultiset)
 	 */
 	public Set<Update> performAggregation(UpdateMultiset updateInsts) {
+		return performAggregation(updateInsts, null, null);
+	}
+	
+	public boolean isAggregatedUpdateSetConsistent() {
+		return aggregatedUpdateSetConsistent;
+	}
+	
+	/*
+	 * Aggregates the given update instructions. If there are resultant 
+	 * updates that conflict with each other, a pair of them is added to 
+	 * the given set of conflicting updates (if it is not null). The 
+	 * given pool (if it is not null) may be used to aggregate the updates
+	 * in parallel.
+	 */
+	private Set<Update> performAggregation(UpdateMultiset updateInsts, Set<Update> conflictingUpdates, ForkJoinPool pool) {
+		if (isParallelAggregationPossible(updateInsts, pool))
+			return performPartitionedAggregation(updateInsts, pool, conflictingUpdates);
+		
 		// instantiate engine aggregation API, and set update multiset
 		AggregationAPIImp aggAPI = new AggregationAPIImp();
 		aggAPI.setUpdateInstructions(updateInsts);
@@ -375,24 +536,111 @@ public class HashStorage implements AbstractStorage {
 		for (Aggregator p: aggregatorPlugins) 
 			((Aggregator)p).aggregateUpdates(aggAPI);
 		
-		if (aggAPI.isConsistent() == false) {
-			String msg = "Inconsistent aggregated results.";
-			
-			if (aggAPI.getFailedInstructions().size() > 0) {
-				msg = msg + "\nFailed instructions: " + Tools.getEOL()
-						+ EngineTools.getContextInfo("", aggAPI.getFailedInstructions(), capi.getParser(), capi.getSpec());
-			}
-			if (aggAPI.getUnprocessedInstructions().size() > 0) {
-				msg = msg + "\nUnprocessed instructions: " + Tools.getEOL()
-						+ EngineTools.getContextInfo("", aggAPI.getUnprocessedInstructions(), capi.getParser(), capi.getSpec());
-			}
-			throw new EngineError(msg);
-		}
+		if (aggAPI.isConsistent() == false) 
+			throw inconsistentAggregationError(aggAPI.getFailedInstructions(), aggAPI.getUnprocessedInstructions());
+		
+		if (conflictingUpdates != null && aggAPI.getConflictingResultantUpdates() != null)
+			conflictingUpdates.addAll(aggAPI.getConflictingResultantUpdates());
 		
 		// get resultant updates from agg API
 		return aggAPI.getResultantUpdates();
 	}
 	
+	/*
+	 * Returns true if the given update instructions can be partitioned 
+	 * by location and aggregated in parallel in the given pool. This is 
+	 * only done at the end of a step, when no agent program is being 
+	 * evaluated.
+	 */
+	private boolean isParallelAggregationPossible(UpdateMultiset updateInsts, ForkJoinPool pool) {
+		return partitionedAggregation 
+				&& pool != null
+				&& capi.getEngineMode() == EngineMode.emAggregation
+				&& !isStateStacked()
+				&& updateInsts.size() >= PARALLEL_AGGREGATION_THRESHOLD
+				&& pool.getParallelism() > 1;
+	}
+	
+	/*
+	 * Partitions the update instructions by location and aggregates 
+	 * the partitions in parallel, each with its own aggregation API. 
+	 * As all the updates of a location end up in the same partition, 
+	 * the result is the same as aggregating all the updates together.
+	 */
+	private Set<Update> performPartitionedAggregation(UpdateMultiset updateInsts, ForkJoinPool pool, Set<Update> conflictingUpdates) {
+		final int partitionCount = pool.getParallelism() * PARTITIONS_PER_THREAD;
+		UpdateMultiset[] partitions = new UpdateMultiset[partitionCount];
+		for (int i = 0; i < partitionCount; i++)
+			partitions[i] = new UpdateMultiset();
+		for (Update u: updateInsts)
+			partitions[(u.loc.hashCode() & Integer.MAX_VALUE) % partitionCount].add(u);
+		
+		List<Callable<AggregationAPIImp>> tasks = new ArrayList<Callable<AggregationAPIImp>>(partitionCount);
+		for (final UpdateMultiset partition: partitions) {
+			if (partition.isEmpty())
+				continue;
+			tasks.add(new Callable<AggregationAPIImp>() {
+				public AggregationAPIImp call() {
+					AggregationAPIImp aggAPI = new AggregationAPIImp();
+					aggAPI.setUpdateInstructions(partition);
+					for (Aggregator p: aggregatorPlugins) 
+						p.aggregateUpdates(aggAPI);
+					return aggAPI;
+				}
+			});
+		}
+		
+		Set<Update> resultantUpdates = new HashSet<Update>();
+		Set<Update> failedUpdates = new HashSet<Update>();
+		Set<Update> unprocessedUpdates = new HashSet<Update>();
+		try {
+			for (Future<AggregationAPIImp> result: pool.invokeAll(tasks)) {
+				AggregationAPIImp aggAPI = result.get();
+				resultantUpdates.addAll(aggAPI.getResultantUpdates());
+				// all the updates of a location are in the same partition
+				if (conflictingUpdates != null && conflictingUpdates.isEmpty() 
+						&& aggAPI.getConflictingResultantUpdates() != null)
+					conflictingUpdates.addAll(aggAPI.getConflictingResultantUpdates());
+				if (aggAPI.isConsistent() == false) {
+					failedUpdates.addAll(aggAPI.getFailedInstructions());
+					unprocessedUpdates.addAll(aggAPI.getUnprocessedInstructions());
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new EngineError("Aggregation of updates is interrupted.");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException)cause;
+			if (cause instanceof Error)
+				throw (Error)cause;
+			throw new EngineError(cause);
+		}
+		
+		if (failedUpdates.size() > 0 || unprocessedUpdates.size() > 0)
+			throw inconsistentAggregationError(failedUpdates, unprocessedUpdates);
+		
+		return resultantUpdates;
+	}
+	
+	/*
+	 * Creates the error that reports an inconsistent aggregation.
+	 */
+	private EngineError inconsistentAggregationError(Collection<Update> failedUpdates, Collection<Update> unprocessedUpdates) {
+		String msg = "Inconsistent aggregated results.";
+		
+		if (failedUpdates.size() > 0) {
+			msg = msg + "\nFailed instructions: " + Tools.getEOL()
+					+ EngineTools.getContextInfo("", failedUpdates, capi.getParser(), capi.getSpec());
+		}
+		if (unprocessedUpdates.size() > 0) {
+			msg = msg + "\nUnprocessed instructions: " + Tools.getEOL()
+					+ EngineTools.getContextInfo("", unprocessedUpdates, capi.getParser(), capi.getSpec());
+		}
+		return new EngineError(msg);
+	}
+	
 	public synchronized boolean isConsistent(Collection<Update> updateSet) {
 		boolean isRegularUpdateSet = true;
 		Collection<Update> uSet = updateSet;
@@ -403,8 +651,14 @@ public class HashStorage implements AbstractStorage {
 				isRegularUpdateSet = false;
 		if (!isRegularUpdateSet) {
 			if (uSet instanceof UpdateMultiset) {
-				uSet = performAggregation((UpdateMultiset)uSet);
 				logger.debug("Consistency check is performing aggregation.");
+				// aggregation also checks the consistency of the resultant updates
+				Set<Update> conflictingUpdates = new HashSet<Update>();
+				performAggregation((UpdateMultiset)uSet, conflictingUpdates, null);
+				if (conflictingUpdates.isEmpty())
+					return true;
+				lastInconsistentUpdates = conflictingUpdates;
+				return false;
 			} else
 				throw new EngineError("Consistency check expects an update multiset.");
 		}                
@@ -448,10 +702,10 @@ public class HashStorage implements AbstractStorage {
 	 * Pushes the current state in the stack.
 	 */
 	public void pushState() {
-		Stack<Map<Location, Element>> updateStack = getUpdateStack();
-		setStateStackedFlag(true);
-		Map<Location,Element> updates = new HashMap<Location,Element>();
-		updateStack.push(updates);
+		StateOverlay overlay = getStateOverlay();
+		if (overlay.isEmpty())
+			stackingInterpreters.incrementAndGet();
+		overlay.push();
 	}
 
 	/**
@@ -459,12 +713,12 @@ public class HashStorage implements AbstractStorage {
 	 * (thus discarding the current state). 
 	 */
 	public void popState() {
-		Stack<Map<Location, Element>> updateStack = getUpdateStack();
-
-		if (updateStack.size() > 0)
-			updateStack.pop();
-		if (updateStack.size() == 0)
-			setStateStackedFlag(false);
+		StateOverlay overlay = getStateOverlay();
+		if (overlay.isEmpty())
+			return;
+		overlay.pop();
+		if (overlay.isEmpty())
+			stackingInterpreters.decrementAndGet();
 	}
 
 	/**
@@ -474,15 +728,13 @@ public class HashStorage implements AbstractStorage {
 	 * @param updates the update multiset
 	 * @see #pushState()
 	 */
-	public synchronized void apply(Set<Update> updates) {
-		if (isStateStacked()) {
-			Stack<Map<Location, Element>> updateStack = getUpdateStack();
-
-			// adding updates to the current update set in the stack
+	public void apply(Set<Update> updates) {
+		StateOverlay overlay = getStackedOverlay();
+		if (overlay != null) {
+			// adding updates to the top-most state in the stack
 			// this will overwrite updates to the same location
-			Map<Location,Element> lastUpdates = updateStack.peek();
 			for (Update u: updates)
-				lastUpdates.put(u.loc, u.value);
+				overlay.put(u.loc, u.value);
 			
 		} else
 			capi.error("Cannot apply updates when state stack is empty.");
@@ -508,6 +760,10 @@ public class HashStorage implements AbstractStorage {
 		return state.getFunction(name);
 	}
 
+	public FunctionElement getFunction(int slot) {
+		return state.getFunction(slot);
+	}
+
 	public synchronized void addFunction(String name, FunctionElement function) throws NameConflictException {
 		state.addFunction(name, function);
 	}
@@ -554,6 +810,10 @@ public class HashStorage implements AbstractStorage {
 
 	public synchronized void clearState() {
 		state = new HashState();
+		stateVersion++;
+		history = (historySize > 0) ? new StateHistory(state, historySize) : null;
+		if (locationTable != null)
+			locationTable.clear();
 		/*
 		 * The following universe and functions are moved to Kernel
 		try {
@@ -575,6 +835,27 @@ public class HashStorage implements AbstractStorage {
 		return state.toString();
 	}
 
+	public State getPrevState(int i) {
+		if (history == null)
+			return null;
+		else
+			return history.getState(i);
+	}
+
+	public Set<Update> getPrevUpdateSet(int i) {
+		if (history == null)
+			return null;
+		else
+			return history.getUpdateSet(i);
+	}
+
+	public Location internLocation(Location l) {
+		if (locationTable == null)
+			return l;
+		else
+			return locationTable.intern(l);
+	}
+
 	public Set<Update> getLastInconsistentUpdate() {
 		return lastInconsistentUpdates;
 	}
@@ -602,12 +883,17 @@ public class HashStorage implements AbstractStorage {
 		
 		private Map<String,E>table;
 		
-		public NameTableFunction() {
+		/** the state that is notified of changes in this table */
+		private final HashState owner;
+		
+		public NameTableFunction(HashState owner) {
 			table = new HashMap<String,E>();
+			this.owner = owner;
 		}
 		
 		public void setValue(String name, E value) {
 			table.put(name, value);
+			owner.identifierChanged(name);
 		}
 		
         public void setValue(List<? extends Element> args, Element value) throws UnmodifiableFunctionException {
@@ -698,6 +984,21 @@ public class HashStorage implements AbstractStorage {
 		 */
 		private NameTableFunction<RuleElement> ruleElements;
 		
+		/**
+		 * Universes, functions, and rules by the slots of their names
+		 * (as returned by {@link #getIdentifier(String)})
+		 */
+		private volatile Element[] identifiersBySlot = new Element[0];
+		
+		/**
+		 * Functions (including universes) by the slots of their names
+		 * (as returned by {@link #getFunction(String)})
+		 */
+		private volatile FunctionElement[] functionsBySlot = new FunctionElement[0];
+		
+		/** initial length of the slot tables */
+		private static final int MIN_SLOT_TABLE_LENGTH = 64;
+		
 		/**
 		 * Creates a new <code>HashState</code>.
 		 */
@@ -705,9 +1006,9 @@ public class HashStorage implements AbstractStorage {
 			super();
 			lastStateId++;
 			id = lastStateId;
-			universeElements = new NameTableFunction<AbstractUniverse>();
-			functionElements = new NameTableFunction<FunctionElement>();
-			ruleElements = new NameTableFunction<RuleElement>();
+			universeElements = new NameTableFunction<AbstractUniverse>(this);
+			functionElements = new NameTableFunction<FunctionElement>(this);
+			ruleElements = new NameTableFunction<RuleElement>(this);
 			functionElements.setValue(UNIVERSE_ELEMENT_FUNCTION_NAME, universeElements);
 			functionElements.setValue(RULE_ELEMENT_FUNCTION_NAME, ruleElements);
 			functionElements.setValue(FUNCTION_ELEMENT_FUNCTION_NAME, functionElements);
@@ -761,13 +1062,8 @@ public class HashStorage implements AbstractStorage {
 		}
 
 		public Element getValue(Location loc) throws InvalidLocationException {
-			if (nameExists(loc.name)) {
-				Element id;
-				try {
-					id = getIdentifier(loc.name);
-				} catch (IdentifierNotFoundException e) {
-					throw new InvalidLocationException(e);
-				}
+			final Element id = getIdentifier(loc.getSlot(functionSlots));
+			if (id != null) {
 				if (id instanceof FunctionElement) {
 					FunctionElement f = (FunctionElement)id;
 					if (f.isReadable()) 
@@ -874,6 +1170,44 @@ public class HashStorage implements AbstractStorage {
 			return id;
 		}
 
+		/*
+		 * Returns the rule/function/universe in the state 
+		 * that is kept in the given slot, or null if there is none.
+		 */
+		private Element getIdentifier(int slot) {
+			final Element[] ids = identifiersBySlot;
+			if (slot >= 0 && slot < ids.length)
+				return ids[slot];
+			else
+				return null;
+		}
+
+		/*
+		 * Updates the slot tables after the rule/function/universe 
+		 * with the given name is added or changed. The tables are 
+		 * written in place and only replaced (by tables of twice the
+		 * size) when the slot is beyond their length; they are assigned
+		 * again after every change, so readers need no locking.
+		 */
+		private synchronized void identifierChanged(String name) {
+			final int slot = functionSlots.slotOf(name);
+			Element[] ids = identifiersBySlot;
+			FunctionElement[] functions = functionsBySlot;
+			if (slot >= ids.length) {
+				final int length = Math.max(slot + 1, Math.max(ids.length * 2, MIN_SLOT_TABLE_LENGTH));
+				ids = Arrays.copyOf(ids, length);
+				functions = Arrays.copyOf(functions, length);
+			}
+			try {
+				ids[slot] = getIdentifier(name);
+			} catch (IdentifierNotFoundException e) {
+				ids[slot] = null;
+			}
+			functions[slot] = getFunction(name);
+			functionsBySlot = functions;
+			identifiersBySlot = ids;
+		}
+
 		/*
 		 * Returns true if a rule/function/universe with
 		 * the given name exists in the state.
@@ -891,6 +1225,14 @@ public class HashStorage implements AbstractStorage {
 			return res;
 		}
 
+		public FunctionElement getFunction(int slot) {
+			final FunctionElement[] functions = functionsBySlot;
+			if (slot >= 0 && slot < functions.length)
+				return functions[slot];
+			else
+				return null;
+		}
+
 		public AbstractUniverse getUniverse(String name) {
 			return universeElements.getValue(name);
 		}
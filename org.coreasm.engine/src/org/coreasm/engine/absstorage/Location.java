@@ -37,6 +37,15 @@ public class Location {
 	/** if not null, indicates whether this location is modifiable or not. */
 	public final Boolean isModifiable;
 	
+	/** cached hash code of this location; 0 if not computed yet */
+	private int hash = 0;
+	
+	/** slot of the function name of this location; resolved on first use */
+	private int slot = FunctionSlots.NO_SLOT;
+	
+	/** the slots by which {@link #slot} is resolved */
+	private FunctionSlots slots = null;
+	
 	/**
 	 * Creates a new location with the given
 	 * function and agruments.
@@ -49,7 +58,7 @@ public class Location {
 			throw new NullPointerException("Name of a location cannot be null.");
 		if (args == null)
 			throw new NullPointerException("Arguments of a location cannot be null.");
-		this.args = ElementList.create(args);
+		this.args = toElementList(args);
 		this.name = name;
 		this.isModifiable = null;
 	}
@@ -67,11 +76,58 @@ public class Location {
 			throw new NullPointerException("Name of a location cannot be null.");
 		if (args == null)
 			throw new NullPointerException("Arguments of a location cannot be null.");
-		this.args = ElementList.create(args);
+		this.args = toElementList(args);
 		this.name = name;
 		this.isModifiable = isModifiable;
 	}
 
+	/**
+	 * Creates a new location with the given function, arguments, 
+	 * and the already resolved slot of the function name.
+	 * 
+	 * @param name the name of the function element the new location
+	 * @param args list of abstract object values as arguments
+	 * @param isModifiable indicates whether this location is modifiable.
+	 * @param slots the slots by which <code>slot</code> is resolved
+	 * @param slot the slot of <code>name</code> in <code>slots</code>
+	 * @see FunctionSlots#slotOf(String)
+	 */
+	public Location(String name, List<? extends Element> args, boolean isModifiable, FunctionSlots slots, int slot) {
+		this(name, args, isModifiable);
+		this.slot = slot;
+		this.slots = slots;
+	}
+	
+	/**
+	 * Returns the slot of the function name of this location in the 
+	 * given slots, or {@link FunctionSlots#NO_SLOT} if no function, 
+	 * universe, or rule of that name has been added to a state of their 
+	 * storage yet. The slot is kept for later calls with the same slots.
+	 * 
+	 * @see FunctionSlots#lookup(String)
+	 */
+	public int getSlot(FunctionSlots slots) {
+		if (this.slots == slots && slot != FunctionSlots.NO_SLOT)
+			return slot;
+		final int result = slots.lookup(name);
+		if (result != FunctionSlots.NO_SLOT) {
+			slot = result;
+			this.slots = slots;
+		}
+		return result;
+	}
+
+	/*
+	 * Returns the given arguments as an element list. As element lists
+	 * are unmodifiable, a given element list is used as is. 
+	 */
+	private static ElementList toElementList(List<? extends Element> args) {
+		if (args instanceof ElementList)
+			return (ElementList)args;
+		else
+			return ElementList.create(args);
+	}
+
 	/**
 	 * Provides a <code>String</code> representation of this 
 	 * location.
@@ -93,10 +149,16 @@ public class Location {
 	 */
 	@Override
 	public boolean equals(Object o) {
+		if (this == o)
+			return true;
 		boolean result = false;
 		if (o instanceof Location) {
 			Location l = (Location)o;
-			result = this.name.equals(l.name) && this.args.equals(l.args);
+			// locations with different (cached) hash codes cannot be equal
+			if (this.hash != 0 && l.hash != 0 && this.hash != l.hash)
+				return false;
+			result = this.name.equals(l.name) 
+					&& (this.args == l.args || this.args.equals(l.args));
 		}
 		return result;
 	}
@@ -108,9 +170,13 @@ public class Location {
 	 */
 	@Override
 	public int hashCode() {
-		int result = name.hashCode();
-		for (Element e: args)
-			result += e.hashCode();
+		int result = hash;
+		if (result == 0) {
+			result = name.hashCode();
+			for (int i = 0; i < args.size(); i++)
+				result += args.get(i).hashCode();
+			hash = result;
+		}
 		return result;
 	}
 	
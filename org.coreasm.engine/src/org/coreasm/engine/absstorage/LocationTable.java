@@ -0,0 +1,92 @@
+/*	
+ * LocationTable.java
+ * 
+ * Copyright (C) 2013 Roozbeh Farahbod 
+ *
+ * Licensed under the Academic Free License version 3.0 
+ *   http://www.opensource.org/licenses/afl-3.0.php
+ *   http://www.coreasm.org/afl-3.0.php
+ *
+ */
+ 
+package org.coreasm.engine.absstorage;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/** 
+ * An interning table for locations. Interned locations that are equal
+ * are the same object; hence, they are compared by identity and their
+ * hash codes are computed only once.
+ * <p>
+ * The table forgets all its locations once it has grown beyond
+ * its capacity, so that the locations of earlier steps do not
+ * accumulate.
+ *   
+ * @author  Roozbeh Farahbod
+ * @see org.coreasm.engine.EngineProperties#INTERN_LOCATIONS
+ */
+public class LocationTable {
+
+	/** default maximum number of locations kept in a table */
+	public static final int DEFAULT_CAPACITY = 1 << 16;
+	
+	private final ConcurrentMap<Location, Location> table;
+	private final int capacity;
+	
+	/**
+	 * Creates a new location table with the default capacity.
+	 */
+	public LocationTable() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a new location table that keeps up to 
+	 * <code>capacity</code> locations.
+	 */
+	public LocationTable(int capacity) {
+		this.capacity = capacity;
+		this.table = new ConcurrentHashMap<Location, Location>();
+	}
+	
+	/**
+	 * Returns the location in this table that is equal to the given 
+	 * location, adding the given location to the table if there is 
+	 * no such location. The modifiability flag of locations is 
+	 * not considered in location equality, so a location is only 
+	 * replaced by a location with the same flag.
+	 * 
+	 * @param l a location
+	 * @return an equal location 
+	 */
+	public Location intern(Location l) {
+		Location result = table.get(l);
+		if (result == null) {
+			if (table.size() >= capacity)
+				table.clear();
+			result = table.putIfAbsent(l, l);
+			if (result == null)
+				return l;
+		}
+		if (result.isModifiable == l.isModifiable 
+				|| (result.isModifiable != null && result.isModifiable.equals(l.isModifiable)))
+			return result;
+		else
+			return l;
+	}
+	
+	/**
+	 * Removes all the locations from this table.
+	 */
+	public void clear() {
+		table.clear();
+	}
+	
+	/**
+	 * Returns the number of locations in this table.
+	 */
+	public int size() {
+		return table.size();
+	}
+}
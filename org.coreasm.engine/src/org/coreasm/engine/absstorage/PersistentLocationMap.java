@@ -0,0 +1,215 @@
+/*
+ * PersistentLocationMap.java
+ *
+ * Copyright (C) 2013 Roozbeh Farahbod
+ *
+ * Licensed under the Academic Free License version 3.0
+ *   http://www.opensource.org/licenses/afl-3.0.php
+ *   http://www.coreasm.org/afl-3.0.php
+ *
+ */
+
+package org.coreasm.engine.absstorage;
+
+/**
+ * An immutable map from locations to values, implemented as a
+ * hash array mapped trie. Adding a value to the map creates a new map
+ * that shares all but O(log n) of its nodes with the old one; hence,
+ * old versions of the map remain valid and cost nothing to keep.
+ *
+ * @author  Roozbeh Farahbod
+ */
+public final class PersistentLocationMap {
+
+	/** the empty map */
+	public static final PersistentLocationMap EMPTY = new PersistentLocationMap(BitmapNode.EMPTY, 0);
+
+	private static final int BITS = 5;
+	private static final int MASK = (1 << BITS) - 1;
+
+	private final Node root;
+	private final int size;
+
+	private PersistentLocationMap(Node root, int size) {
+		this.root = root;
+		this.size = size;
+	}
+
+	/**
+	 * Returns the value of the given location in this map,
+	 * or <code>null</code> if there is no value for the location.
+	 */
+	public Element get(Location loc) {
+		return root.find(0, loc.hashCode(), loc);
+	}
+
+	/**
+	 * Returns a map that has the same values as this map, except
+	 * that the given location has the given value. This map is not
+	 * changed.
+	 */
+	public PersistentLocationMap plus(Location loc, Element value) {
+		if (value == null)
+			throw new NullPointerException("Value of a location cannot be null.");
+		boolean[] added = new boolean[1];
+		Node newRoot = root.assoc(0, loc.hashCode(), loc, value, added);
+		if (newRoot == root)
+			return this;
+		return new PersistentLocationMap(newRoot, added[0] ? size + 1 : size);
+	}
+
+	/**
+	 * Returns the number of locations in this map.
+	 */
+	public int size() {
+		return size;
+	}
+
+	private static int bitpos(int hash, int shift) {
+		return 1 << ((hash >>> shift) & MASK);
+	}
+
+	private static Object[] cloneAndSet(Object[] array, int i, Object a) {
+		Object[] clone = array.clone();
+		clone[i] = a;
+		return clone;
+	}
+
+	private static Object[] cloneAndSet(Object[] array, int i, Object a, int j, Object b) {
+		Object[] clone = array.clone();
+		clone[i] = a;
+		clone[j] = b;
+		return clone;
+	}
+
+	/*
+	 * Creates a node that holds two locations with different keys.
+	 */
+	private static Node createNode(int shift, Location key1, Element value1, int hash2, Location key2, Element value2) {
+		int hash1 = key1.hashCode();
+		if (hash1 == hash2)
+			return new CollisionNode(hash1, new Object[] {key1, value1, key2, value2});
+		boolean[] added = new boolean[1];
+		return BitmapNode.EMPTY
+				.assoc(shift, hash1, key1, value1, added)
+				.assoc(shift, hash2, key2, value2, added);
+	}
+
+	/*
+	 * A node of the trie.
+	 */
+	private interface Node {
+		Element find(int shift, int hash, Location key);
+
+		Node assoc(int shift, int hash, Location key, Element value, boolean[] added);
+	}
+
+	/*
+	 * An inner node with up to 32 entries; every entry is either a
+	 * key/value pair or (with a null key) a sub-node.
+	 */
+	private static final class BitmapNode implements Node {
+
+		static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+		final int bitmap;
+		final Object[] array;
+
+		BitmapNode(int bitmap, Object[] array) {
+			this.bitmap = bitmap;
+			this.array = array;
+		}
+
+		private int index(int bit) {
+			return Integer.bitCount(bitmap & (bit - 1));
+		}
+
+		public Element find(int shift, int hash, Location key) {
+			int bit = bitpos(hash, shift);
+			if ((bitmap & bit) == 0)
+				return null;
+			int idx = index(bit);
+			Object k = array[2 * idx];
+			Object v = array[2 * idx + 1];
+			if (k == null)
+				return ((Node)v).find(shift + BITS, hash, key);
+			if (key.equals(k))
+				return (Element)v;
+			return null;
+		}
+
+		public Node assoc(int shift, int hash, Location key, Element value, boolean[] added) {
+			int bit = bitpos(hash, shift);
+			int idx = index(bit);
+			if ((bitmap & bit) != 0) {
+				Object k = array[2 * idx];
+				Object v = array[2 * idx + 1];
+				if (k == null) {
+					Node n = ((Node)v).assoc(shift + BITS, hash, key, value, added);
+					if (n == v)
+						return this;
+					return new BitmapNode(bitmap, cloneAndSet(array, 2 * idx + 1, n));
+				}
+				if (key.equals(k)) {
+					if (value == v)
+						return this;
+					return new BitmapNode(bitmap, cloneAndSet(array, 2 * idx + 1, value));
+				}
+				added[0] = true;
+				return new BitmapNode(bitmap, cloneAndSet(array, 2 * idx, null, 2 * idx + 1,
+						createNode(shift + BITS, (Location)k, (Element)v, hash, key, value)));
+			} else {
+				int n = Integer.bitCount(bitmap);
+				Object[] newArray = new Object[2 * (n + 1)];
+				System.arraycopy(array, 0, newArray, 0, 2 * idx);
+				newArray[2 * idx] = key;
+				newArray[2 * idx + 1] = value;
+				System.arraycopy(array, 2 * idx, newArray, 2 * (idx + 1), 2 * (n - idx));
+				added[0] = true;
+				return new BitmapNode(bitmap | bit, newArray);
+			}
+		}
+	}
+
+	/*
+	 * A leaf node for locations that have the same hash code.
+	 */
+	private static final class CollisionNode implements Node {
+
+		final int hash;
+		final Object[] array;
+
+		CollisionNode(int hash, Object[] array) {
+			this.hash = hash;
+			this.array = array;
+		}
+
+		public Element find(int shift, int hash, Location key) {
+			if (hash == this.hash)
+				for (int i = 0; i < array.length; i += 2)
+					if (key.equals(array[i]))
+						return (Element)array[i + 1];
+			return null;
+		}
+
+		public Node assoc(int shift, int hash, Location key, Element value, boolean[] added) {
+			if (hash == this.hash) {
+				for (int i = 0; i < array.length; i += 2)
+					if (key.equals(array[i])) {
+						if (array[i + 1] == value)
+							return this;
+						return new CollisionNode(hash, cloneAndSet(array, i + 1, value));
+					}
+				Object[] newArray = new Object[array.length + 2];
+				System.arraycopy(array, 0, newArray, 0, array.length);
+				newArray[array.length] = key;
+				newArray[array.length + 1] = value;
+				added[0] = true;
+				return new CollisionNode(hash, newArray);
+			}
+			// nesting this node in a bitmap node
+			return new BitmapNode(bitpos(this.hash, shift), new Object[] {null, this})
+					.assoc(shift, hash, key, value, added);
+		}
+	}
+}
@@ -76,6 +76,18 @@ public interface State {
 	 * such function exists.
 	 */
 	public FunctionElement getFunction(String name);
+	
+	/**
+	 * Finds a function element in the state by the slot of its name. 
+	 * This is the same as {@link #getFunction(String)} for the name 
+	 * of the given slot, without looking up the name.
+	 * 
+	 * @param slot slot of a function name in the slots of the storage
+	 * @return the found function element; <code>null</code> if no 
+	 * such function exists.
+	 * @see AbstractStorage#getFunctionSlots()
+	 */
+	public FunctionElement getFunction(int slot);
     
     /**
      * Returns the name of the given function element.
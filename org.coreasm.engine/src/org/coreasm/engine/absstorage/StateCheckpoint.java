@@ -0,0 +1,627 @@
+/*
+ * StateCheckpoint.java
+ *
+ * Copyright (C) 2013 Roozbeh Farahbod
+ *
+ * Licensed under the Academic Free License version 3.0
+ *   http://www.opensource.org/licenses/afl-3.0.php
+ *   http://www.coreasm.org/afl-3.0.php
+ *
+ */
+
+package org.coreasm.engine.absstorage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.coreasm.engine.ControlAPI;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps a checkpoint of the state of an abstract storage in a file,
+ * so that a run can be resumed later from where it stopped.
+ * <p>
+ * A checkpoint file starts with a base snapshot of all the modifiable
+ * locations of the state, followed by a log of the update sets fired on
+ * the state afterwards. Every record is written in a compact binary form
+ * and is appended to the file through a {@link FileChannel}; hence, the
+ * cost of a step is proportional to the size of its update set rather
+ * than to the size of the state. Every few steps (see
+ * {@link org.coreasm.engine.EngineProperties#CHECKPOINT_INTERVAL})
+ * a new base snapshot replaces the whole file, which bounds the length of
+ * the log that has to be replayed when resuming.
+ * <p>
+ * The format of the file is:
+ * <pre>
+ *   file      := MAGIC VERSION snapshot delta*
+ *   snapshot  := 'S' length step count (location value)*
+ *   delta     := 'D' length step count (location value)*
+ *   location  := name arity value*
+ * </pre>
+ * A record that is cut short (e.g., if the engine is killed while
+ * writing it) is ignored when the file is read.
+ * <p>
+ * Elements of backgrounds provided by plug-ins are written by their
+ * backgrounds (see {@link BackgroundElement#writeValue(Element, ElementOutput)}).
+ *
+ * @author  Roozbeh Farahbod
+ * @see org.coreasm.engine.EngineProperties#CHECKPOINT_FILE
+ */
+public class StateCheckpoint {
+
+	private static final Logger logger = LoggerFactory.getLogger(StateCheckpoint.class);
+
+	private static final int MAGIC = 0x43534350;
+	private static final short VERSION = 1;
+
+	private static final byte SNAPSHOT_RECORD = 'S';
+	private static final byte DELTA_RECORD = 'D';
+
+	/* size of the type and length of a record */
+	private static final int RECORD_HEADER_SIZE = 5;
+
+	/* tags of elements */
+	private static final byte UNDEF_TAG = 0;
+	private static final byte TRUE_TAG = 1;
+	private static final byte FALSE_TAG = 2;
+	private static final byte ELEMENT_TAG = 3;
+	private static final byte INIT_AGENT_TAG = 4;
+	private static final byte NAME_TAG = 5;
+	private static final byte RULE_TAG = 6;
+	private static final byte FUNCTION_TAG = 7;
+	private static final byte UNIVERSE_TAG = 8;
+	private static final byte BACKGROUND_TAG = 9;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final ControlAPI capi;
+	private final File file;
+	private final int interval;
+
+	private FileChannel channel = null;
+	private int deltasSinceSnapshot = 0;
+	private RecordWriter writer = null;
+
+	/**
+	 * Creates a checkpoint in the given file.
+	 *
+	 * @param capi the control API of the engine
+	 * @param file the checkpoint file
+	 * @param interval number of steps between base snapshots;
+	 * if it is zero, only one base snapshot is written
+	 */
+	public StateCheckpoint(ControlAPI capi, File file, int interval) {
+		this.capi = capi;
+		this.file = file;
+		this.interval = interval;
+	}
+
+	/**
+	 * Returns the checkpoint file.
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Records the given update set, which has just been fired on
+	 * the state of the given storage. If there is no base snapshot yet,
+	 * or if it is time for a new one, a base snapshot of the whole
+	 * state is written instead.
+	 *
+	 * @param storage the abstract storage
+	 * @param updateSet the fired update set
+	 * @param step number of steps performed so far, including this one
+	 */
+	public synchronized void record(AbstractStorage storage, Set<Update> updateSet, int step) throws IOException {
+		if (channel == null || (interval > 0 && deltasSinceSnapshot + 1 >= interval)) {
+			writeSnapshot(storage, step);
+			return;
+		}
+
+		int count = 0;
+		for (Update u: updateSet)
+			if (u.action.equals(Update.UPDATE_ACTION))
+				count++;
+
+		writer.begin(DELTA_RECORD, storage);
+		writer.writeInt(step);
+		writer.writeVarInt(count);
+		for (Update u: updateSet)
+			if (u.action.equals(Update.UPDATE_ACTION)) {
+				writer.writeLocation(u.loc);
+				writer.writeElement(u.value);
+			}
+		write(channel, writer.end());
+		deltasSinceSnapshot++;
+	}
+
+	/**
+	 * Writes a base snapshot of the state of the given storage into a
+	 * new file that replaces the checkpoint file.
+	 *
+	 * @param storage the abstract storage
+	 * @param step number of steps performed so far
+	 */
+	public synchronized void writeSnapshot(AbstractStorage storage, int step) throws IOException {
+		close();
+
+		Map<Location, Element> values = getValues(storage);
+		writer = new RecordWriter();
+		writer.begin(SNAPSHOT_RECORD, storage);
+		writer.writeInt(step);
+		writer.writeVarInt(values.size());
+		for (Entry<Location, Element> e: values.entrySet()) {
+			writer.writeLocation(e.getKey());
+			writer.writeElement(e.getValue());
+		}
+		ByteBuffer snapshot = writer.end();
+
+		Path path = file.toPath();
+		Path tempPath = new File(file.getPath() + ".tmp").toPath();
+		FileChannel tempChannel = FileChannel.open(tempPath, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+		try {
+			ByteBuffer header = ByteBuffer.allocate(6);
+			header.putInt(MAGIC).putShort(VERSION);
+			((Buffer)header).flip();
+			write(tempChannel, header);
+			write(tempChannel, snapshot);
+			tempChannel.force(false);
+		} finally {
+			tempChannel.close();
+		}
+		try {
+			Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+		}
+
+		channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		deltasSinceSnapshot = 0;
+		logger.debug("Wrote a base snapshot of {} locations at step {}.", values.size(), step);
+	}
+
+	/**
+	 * Restores the state of the given storage from the checkpoint file:
+	 * the base snapshot is copied into the state and the logged update
+	 * sets are fired on it. All the other locations of the state become
+	 * undefined.
+	 *
+	 * @param storage the abstract storage
+	 * @return the number of steps performed to reach the restored state
+	 */
+	public synchronized int restore(AbstractStorage storage) throws IOException {
+		ByteBuffer buffer = readFile();
+		if (buffer.remaining() < 6 || buffer.getInt() != MAGIC)
+			throw new IOException(file + " is not a checkpoint file.");
+		short version = buffer.getShort();
+		if (version != VERSION)
+			throw new IOException("Unsupported version of checkpoint file: " + version + ".");
+
+		RecordReader reader = new RecordReader(storage);
+		int step = -1;
+		int deltas = 0;
+		while (true) {
+			if (buffer.remaining() < RECORD_HEADER_SIZE)
+				break;
+			byte type = buffer.get();
+			int length = buffer.getInt();
+			if (length < 0 || buffer.remaining() < length)
+				break;
+			ByteBuffer record = buffer.slice();
+			((Buffer)record).limit(length);
+			((Buffer)buffer).position(buffer.position() + length);
+			reader.setRecord(record);
+
+			if (step < 0 && type != SNAPSHOT_RECORD)
+				throw new IOException("Checkpoint file does not start with a base snapshot.");
+			step = reader.readInt();
+			int count = reader.readVarInt();
+			if (type == SNAPSHOT_RECORD) {
+				Map<Location, Element> values = new HashMap<Location, Element>();
+				for (int i = 0; i < count; i++) {
+					Location l = reader.readLocation();
+					values.put(l, reader.readElement());
+				}
+				for (Location l: getValues(storage).keySet())
+					if (!values.containsKey(l))
+						setValue(storage, l, Element.UNDEF);
+				for (Entry<Location, Element> e: values.entrySet())
+					setValue(storage, e.getKey(), e.getValue());
+			} else if (type == DELTA_RECORD) {
+				for (int i = 0; i < count; i++) {
+					Location l = reader.readLocation();
+					setValue(storage, l, reader.readElement());
+				}
+				deltas++;
+			} else
+				throw new IOException("Unknown record in checkpoint file.");
+		}
+		if (step < 0)
+			throw new IOException("Checkpoint file has no base snapshot.");
+		if (buffer.hasRemaining())
+			logger.warn("Ignoring an incomplete record at the end of {}.", file);
+
+		logger.info("Restored the state of step {} from {} ({} logged update sets).", new Object[] {step, file, deltas});
+		return step;
+	}
+
+	/**
+	 * Closes the checkpoint file. The next recorded update set
+	 * starts a new base snapshot.
+	 */
+	public synchronized void close() {
+		if (channel != null) {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				logger.warn("Cannot close checkpoint file {}.", file);
+			}
+			channel = null;
+		}
+	}
+
+	/*
+	 * Returns the values of all the defined modifiable
+	 * locations of the given storage. The tables of the names of 
+	 * functions, universes, and rules are left out, as they are 
+	 * given by the specification (and by the functions that are 
+	 * created when their locations are restored).
+	 */
+	private Map<Location, Element> getValues(AbstractStorage storage) {
+		Map<Location, Element> values = new LinkedHashMap<Location, Element>();
+		for (Entry<String, FunctionElement> e: storage.getFunctions().entrySet())
+			if (e.getValue() != storage.getFunctionElementFunction()
+					&& e.getValue() != storage.getUniverseElementFunction()
+					&& e.getValue() != storage.getRuleElementFunction())
+				addValues(values, e.getKey(), e.getValue());
+		for (Entry<String, AbstractUniverse> e: storage.getUniverses().entrySet())
+			addValues(values, e.getKey(), e.getValue());
+		return values;
+	}
+
+	private void addValues(Map<Location, Element> values, String name, FunctionElement f) {
+		if (!f.isModifiable())
+			return;
+		for (Location l: f.getLocations(name)) {
+			Element value = f.getValue(l.args);
+			if (value != null && !value.equals(Element.UNDEF))
+				values.put(l, value);
+		}
+	}
+
+	private void setValue(AbstractStorage storage, Location l, Element value) throws IOException {
+		try {
+			storage.setValue(l, value);
+		} catch (InvalidLocationException e) {
+			throw new IOException("Cannot restore the value of " + l + ".", e);
+		}
+	}
+
+	private ByteBuffer readFile() throws IOException {
+		FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			long size = in.size();
+			if (size > Integer.MAX_VALUE)
+				throw new IOException("Checkpoint file is too large.");
+			ByteBuffer buffer = ByteBuffer.allocate((int)size);
+			while (buffer.hasRemaining())
+				if (in.read(buffer) < 0)
+					break;
+			((Buffer)buffer).flip();
+			return buffer;
+		} finally {
+			in.close();
+		}
+	}
+
+	private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+	}
+
+	/*
+	 * A byte array output stream whose content can be
+	 * wrapped in a byte buffer without copying it.
+	 */
+	private static class RecordBuffer extends ByteArrayOutputStream {
+
+		RecordBuffer() {
+			super(4096);
+		}
+
+		ByteBuffer toByteBuffer() {
+			ByteBuffer b = ByteBuffer.wrap(buf, 0, count);
+			b.putInt(1, count - RECORD_HEADER_SIZE);
+			return b;
+		}
+	}
+
+	/*
+	 * Writes records of a checkpoint file. Names of functions and
+	 * backgrounds are written only once per file; afterwards,
+	 * they are referred to by their index.
+	 */
+	private class RecordWriter extends DataOutputStream implements ElementOutput {
+
+		private final Map<String, Integer> names = new HashMap<String, Integer>();
+		private AbstractStorage storage = null;
+		private Element initAgent = null;
+		private Map<Element, String> stateElementNames = null;
+
+		RecordWriter() {
+			super(new RecordBuffer());
+		}
+
+		void begin(byte type, AbstractStorage storage) throws IOException {
+			this.storage = storage;
+			this.initAgent = capi.getScheduler().getInitAgent();
+			this.stateElementNames = null;
+			((RecordBuffer)out).reset();
+			writeByte(type);
+			writeInt(0);
+		}
+
+		ByteBuffer end() throws IOException {
+			flush();
+			return ((RecordBuffer)out).toByteBuffer();
+		}
+
+		void writeVarInt(int value) throws IOException {
+			while ((value & ~0x7F) != 0) {
+				writeByte((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			writeByte(value);
+		}
+
+		void writeName(String name) throws IOException {
+			Integer index = names.get(name);
+			if (index == null) {
+				names.put(name, names.size());
+				writeVarInt(0);
+				writeString(name);
+			} else
+				writeVarInt(index + 1);
+		}
+
+		void writeLocation(Location l) throws IOException {
+			writeName(l.name);
+			writeVarInt(l.args.size());
+			for (Element e: l.args)
+				writeElement(e);
+		}
+
+		public void writeString(String s) throws IOException {
+			byte[] bytes = s.getBytes(UTF8);
+			writeVarInt(bytes.length);
+			write(bytes);
+		}
+
+		public void writeElement(Element e) throws IOException {
+			if (e == null || e.equals(Element.UNDEF))
+				writeByte(UNDEF_TAG);
+			else if (e == initAgent)
+				writeByte(INIT_AGENT_TAG);
+			else if (e.getClass() == Element.class) {
+				writeByte(ELEMENT_TAG);
+				writeLong(e.id);
+			} else if (e instanceof BooleanElement)
+				writeByte(((BooleanElement)e).getValue() ? TRUE_TAG : FALSE_TAG);
+			else if (e instanceof NameElement) {
+				writeByte(NAME_TAG);
+				writeString(((NameElement)e).getName());
+			} else if (e instanceof RuleElement) {
+				writeByte(RULE_TAG);
+				writeName(((RuleElement)e).getName());
+			} else if (e instanceof FunctionElement && getStateElementName(e) != null) {
+				writeByte((e instanceof AbstractUniverse) ? UNIVERSE_TAG : FUNCTION_TAG);
+				writeName(getStateElementName(e));
+			} else {
+				AbstractUniverse u = storage.getUniverse(e.getBackground());
+				if (!(u instanceof BackgroundElement))
+					throw new IOException("Cannot write element " + e.denotation() + "; its background is unknown.");
+				writeByte(BACKGROUND_TAG);
+				writeName(e.getBackground());
+				try {
+					((BackgroundElement)u).writeValue(e, this);
+				} catch (UnsupportedOperationException x) {
+					throw new IOException("Cannot write element " + e.denotation() + " of background "
+							+ e.getBackground() + ".", x);
+				}
+			}
+		}
+
+		/*
+		 * Returns the name of the given function or universe in the state,
+		 * or null if it is not a function or universe of the state (e.g., 
+		 * if it is a collection).
+		 */
+		private String getStateElementName(Element e) {
+			if (stateElementNames == null) {
+				stateElementNames = new IdentityHashMap<Element, String>();
+				for (Entry<String, FunctionElement> f: storage.getFunctions().entrySet())
+					stateElementNames.put(f.getValue(), f.getKey());
+				for (Entry<String, AbstractUniverse> u: storage.getUniverses().entrySet())
+					stateElementNames.put(u.getValue(), u.getKey());
+			}
+			return stateElementNames.get(e);
+		}
+	}
+
+	/*
+	 * An input stream over a byte buffer.
+	 */
+	private static class ByteBufferInputStream extends InputStream {
+
+		private final ByteBuffer buffer;
+
+		ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? (buffer.get() & 0xFF) : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (len == 0)
+				return 0;
+			if (!buffer.hasRemaining())
+				return -1;
+			len = Math.min(len, buffer.remaining());
+			buffer.get(b, off, len);
+			return len;
+		}
+	}
+
+	/*
+	 * Reads records of a checkpoint file. Elements that
+	 * have no value (e.g., agents) are replaced by new elements.
+	 */
+	private class RecordReader extends DataInputStream implements ElementInput {
+
+		private final List<String> names = new ArrayList<String>();
+		private final Map<Long, Element> elements = new HashMap<Long, Element>();
+		private final AbstractStorage storage;
+
+		RecordReader(AbstractStorage storage) {
+			super(null);
+			this.storage = storage;
+		}
+
+		void setRecord(ByteBuffer record) {
+			in = new ByteBufferInputStream(record);
+		}
+
+		int readVarInt() throws IOException {
+			int value = 0;
+			for (int shift = 0; shift < 32; shift += 7) {
+				int b = readUnsignedByte();
+				value |= (b & 0x7F) << shift;
+				if ((b & 0x80) == 0)
+					return value;
+			}
+			throw new IOException("Malformed checkpoint file.");
+		}
+
+		String readName() throws IOException {
+			int index = readVarInt();
+			if (index == 0) {
+				String name = readString();
+				names.add(name);
+				return name;
+			}
+			if (index > names.size())
+				throw new IOException("Malformed checkpoint file.");
+			return names.get(index - 1);
+		}
+
+		Location readLocation() throws IOException {
+			String name = readName();
+			int arity = readVarInt();
+			List<Element> args = new ArrayList<Element>(arity);
+			for (int i = 0; i < arity; i++)
+				args.add(readElement());
+			return new Location(name, ElementList.create(args));
+		}
+
+		public String readString() throws IOException {
+			byte[] bytes = new byte[readVarInt()];
+			readFully(bytes);
+			return new String(bytes, UTF8);
+		}
+
+		public Element readElement() throws IOException {
+			byte tag = readByte();
+			switch (tag) {
+			case UNDEF_TAG:
+				return Element.UNDEF;
+			case TRUE_TAG:
+				return BooleanElement.TRUE;
+			case FALSE_TAG:
+				return BooleanElement.FALSE;
+			case INIT_AGENT_TAG:
+				return capi.getScheduler().getInitAgent();
+			case ELEMENT_TAG:
+				long id = readLong();
+				Element e = elements.get(id);
+				if (e == null) {
+					e = new Element();
+					elements.put(id, e);
+				}
+				return e;
+			case NAME_TAG:
+				return new NameElement(readString());
+			case RULE_TAG:
+				return notNull(storage.getRule(readName()));
+			case FUNCTION_TAG:
+				return getFunction(readName());
+			case UNIVERSE_TAG:
+				return notNull(storage.getUniverse(readName()));
+			case BACKGROUND_TAG:
+				String name = readName();
+				AbstractUniverse u = storage.getUniverse(name);
+				if (!(u instanceof BackgroundElement))
+					throw new IOException("Background " + name + " is not defined.");
+				try {
+					return ((BackgroundElement)u).readValue(this);
+				} catch (UnsupportedOperationException x) {
+					throw new IOException("Cannot read elements of background " + name + ".", x);
+				}
+			default:
+				throw new IOException("Malformed checkpoint file.");
+			}
+		}
+
+		/*
+		 * Returns the function of the given name. Functions that are declared 
+		 * implicitly (i.e., by being updated) do not exist before their locations 
+		 * are restored; as in setting the value of a location, they are created here. 
+		 */
+		private Element getFunction(String name) throws IOException {
+			FunctionElement f = storage.getFunction(name);
+			if (f == null) {
+				f = new MapFunction(Element.UNDEF);
+				try {
+					storage.addFunction(name, f);
+				} catch (NameConflictException e) {
+					throw new IOException("Checkpoint file refers to function " + name + ", which is not a function of the specification.", e);
+				}
+			}
+			return f;
+		}
+
+		private Element notNull(Element e) throws IOException {
+			if (e == null)
+				throw new IOException("Checkpoint file refers to an element that is not defined in the specification.");
+			return e;
+		}
+	}
+
+}
@@ -0,0 +1,269 @@
+/*
+ * StateHistory.java
+ *
+ * Copyright (C) 2013 Roozbeh Farahbod
+ *
+ * Licensed under the Academic Free License version 3.0
+ *   http://www.opensource.org/licenses/afl-3.0.php
+ *   http://www.coreasm.org/afl-3.0.php
+ *
+ */
+
+package org.coreasm.engine.absstorage;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps the last N states of a state and the update sets that were
+ * fired on them.
+ * <p>
+ * The values of all the locations updated so far are kept in a
+ * {@link PersistentLocationMap}; every fired update set creates a new
+ * version of this map that shares its structure with the previous one,
+ * so taking a snapshot of the state costs O(1). For a location that was
+ * updated after a snapshot was taken, its value before its first update
+ * is kept as well; all other locations have the same value as in the
+ * current state. Values that are set outside of update sets (see 
+ * {@link #recordValue(Location, Element, Element)}) are versioned in
+ * the same way.
+ *
+ * @author  Roozbeh Farahbod
+ * @see org.coreasm.engine.EngineProperties#STATE_HISTORY_SIZE
+ */
+public class StateHistory {
+
+	/** the current state */
+	private final State state;
+
+	/** values of all the locations updated or set so far */
+	private PersistentLocationMap values = PersistentLocationMap.EMPTY;
+
+	/** values of the updated or set locations before they were first changed */
+	private final ConcurrentMap<Location, Element> originalValues = new ConcurrentHashMap<Location, Element>();
+
+	/** ring of previous versions; the most recent one is at 'head' */
+	private final Version[] versions;
+	private int head = 0;
+	private int count = 0;
+
+	/**
+	 * Creates a new history for the given state that keeps
+	 * up to <code>size</code> previous states.
+	 *
+	 * @param state the current state
+	 * @param size maximum number of previous states to keep
+	 */
+	public StateHistory(State state, int size) {
+		if (size < 1)
+			throw new IllegalArgumentException("Size of the state history must be positive.");
+		this.state = state;
+		this.versions = new Version[size];
+	}
+
+	/**
+	 * Records the current state as the previous state of the
+	 * state that results from firing the given update set. This
+	 * must be called right before the update set is fired.
+	 *
+	 * @param updateSet an update set that is about to be fired
+	 */
+	public synchronized void record(Set<Update> updateSet) {
+		PersistentLocationMap newValues = values;
+		for (Update u: updateSet) {
+			if (u.action.equals(Update.UPDATE_ACTION)) {
+				if (newValues.get(u.loc) == null)
+					originalValues.putIfAbsent(u.loc, getCurrentValue(u.loc));
+				newValues = newValues.plus(u.loc, u.value);
+			}
+		}
+
+		head = (head + 1) % versions.length;
+		versions[head] = new Version(values, Collections.unmodifiableSet(new HashSet<Update>(updateSet)));
+		if (count < versions.length)
+			count++;
+		values = newValues;
+	}
+
+	/**
+	 * Records that the value of the given location in the current state
+	 * was just set outside of an update set (e.g., in initializing the state 
+	 * or in resuming a run from a checkpoint), so that the previous states
+	 * keep their value of this location.
+	 *
+	 * @param loc the location
+	 * @param previousValue value of the location before it was set
+	 * @param value the new value of the location
+	 */
+	public synchronized void recordValue(Location loc, Element previousValue, Element value) {
+		if (values.get(loc) == null)
+			originalValues.putIfAbsent(loc, previousValue);
+		values = values.plus(loc, value);
+	}
+
+	/**
+	 * Returns the i'th previous state, for i between 1 and the
+	 * number of recorded states. The returned state cannot be modified.
+	 *
+	 * @return the i'th previous state, or <code>null</code> if it is
+	 * not in the history.
+	 */
+	public synchronized State getState(int i) {
+		Version v = getVersion(i);
+		if (v == null)
+			return null;
+		else
+			return new Snapshot(v.values);
+	}
+
+	/**
+	 * Returns the update set that was fired on the i'th previous
+	 * state, for i between 1 and the number of recorded states.
+	 *
+	 * @return the update set, or <code>null</code> if it is
+	 * not in the history.
+	 */
+	public synchronized Set<Update> getUpdateSet(int i) {
+		Version v = getVersion(i);
+		if (v == null)
+			return null;
+		else
+			return v.updateSet;
+	}
+
+	/**
+	 * Returns the number of previous states in this history.
+	 */
+	public synchronized int size() {
+		return count;
+	}
+
+	private Version getVersion(int i) {
+		if (i < 1 || i > count)
+			return null;
+		return versions[(head - i + 1 + versions.length) % versions.length];
+	}
+
+	private Element getCurrentValue(Location loc) {
+		try {
+			return state.getValue(loc);
+		} catch (InvalidLocationException e) {
+			return Element.UNDEF;
+		}
+	}
+
+	/*
+	 * A previous state and the update set fired on it.
+	 */
+	private static class Version {
+		final PersistentLocationMap values;
+		final Set<Update> updateSet;
+
+		Version(PersistentLocationMap values, Set<Update> updateSet) {
+			this.values = values;
+			this.updateSet = updateSet;
+		}
+	}
+
+	/*
+	 * A read-only view of a previous state. Functions, universes, and
+	 * rules are those of the current state; only the values of locations
+	 * are versioned.
+	 */
+	private class Snapshot implements State {
+
+		private final PersistentLocationMap snapshotValues;
+
+		Snapshot(PersistentLocationMap values) {
+			this.snapshotValues = values;
+		}
+
+		public Element getValue(Location loc) throws InvalidLocationException {
+			Element value = snapshotValues.get(loc);
+			if (value == null)
+				value = originalValues.get(loc);
+			if (value == null)
+				value = state.getValue(loc);
+			return value;
+		}
+
+		public Set<Location> getLocations() {
+			Set<Location> candidates = new HashSet<Location>(state.getLocations());
+			candidates.addAll(originalValues.keySet());
+			Set<Location> locations = new HashSet<Location>();
+			for (Location l: candidates) {
+				try {
+					if (!getValue(l).equals(Element.UNDEF))
+						locations.add(l);
+				} catch (InvalidLocationException e) {
+					// not a location of this state
+				}
+			}
+			return locations;
+		}
+
+		public void setValue(Location loc, Element value) throws InvalidLocationException {
+			throw new UnsupportedOperationException("A previous state cannot be modified.");
+		}
+
+		public Map<String, AbstractUniverse> getUniverses() {
+			return state.getUniverses();
+		}
+
+		public AbstractUniverse getUniverse(String name) {
+			return state.getUniverse(name);
+		}
+
+		public void addUniverse(String name, AbstractUniverse universe) throws NameConflictException {
+			throw new UnsupportedOperationException("A previous state cannot be modified.");
+		}
+
+		public Map<String, FunctionElement> getFunctions() {
+			return state.getFunctions();
+		}
+
+		public FunctionElement getFunction(String name) {
+			return state.getFunction(name);
+		}
+
+		public FunctionElement getFunction(int slot) {
+			return state.getFunction(slot);
+		}
+
+		public String getFunctionName(FunctionElement function) {
+			return state.getFunctionName(function);
+		}
+
+		public void addFunction(String name, FunctionElement function) throws NameConflictException {
+			throw new UnsupportedOperationException("A previous state cannot be modified.");
+		}
+
+		public Map<String, RuleElement> getRules() {
+			return state.getRules();
+		}
+
+		public RuleElement getRule(String name) {
+			return state.getRule(name);
+		}
+
+		public void addRule(String name, RuleElement rule) throws NameConflictException {
+			throw new UnsupportedOperationException("A previous state cannot be modified.");
+		}
+
+		public FunctionElement getFunctionElementFunction() {
+			return state.getFunctionElementFunction();
+		}
+
+		public FunctionElement getRuleElementFunction() {
+			return state.getRuleElementFunction();
+		}
+
+		public FunctionElement getUniverseElementFunction() {
+			return state.getUniverseElementFunction();
+		}
+	}
+}
@@ -0,0 +1,143 @@
+/*
+ * StateOverlay.java
+ *
+ * Copyright (C) 2013 Roozbeh Farahbod
+ *
+ * Licensed under the Academic Free License version 3.0
+ *   http://www.opensource.org/licenses/afl-3.0.php
+ *   http://www.coreasm.org/afl-3.0.php
+ *
+ */
+
+package org.coreasm.engine.absstorage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A stack of states on top of the state of the abstract storage, as used
+ * by {@link AbstractStorage#pushState()} and {@link AbstractStorage#popState()}.
+ * <p>
+ * Instead of keeping one map of values for every stacked state, all the
+ * levels share a single map from locations to chains of values; the head
+ * of a chain is the value of the location in the top-most state that
+ * updated it. Hence, looking up a location costs one hash lookup no
+ * matter how many states are stacked. Every level remembers the locations
+ * it updated, so that popping it can restore their previous values.
+ * <p>
+ * An overlay belongs to one interpreter and is not thread-safe.
+ *
+ * @author  Roozbeh Farahbod
+ * @see org.coreasm.engine.interpreter.Interpreter#getStateOverlay()
+ */
+public class StateOverlay {
+
+	/** the current values of the updated locations */
+	private final Map<Location, Value> values = new HashMap<Location, Value>();
+
+	/** locations updated on each level; the list of level i is at i-1 */
+	private final List<List<Location>> updatedLocations = new ArrayList<List<Location>>();
+
+	/** number of stacked states */
+	private int level = 0;
+
+	/**
+	 * Pushes a new state on this overlay.
+	 */
+	public void push() {
+		level++;
+		if (updatedLocations.size() < level)
+			updatedLocations.add(new ArrayList<Location>());
+	}
+
+	/**
+	 * Discards the top-most state of this overlay.
+	 * If there is no stacked state, this method does nothing.
+	 */
+	public void pop() {
+		if (level == 0)
+			return;
+		List<Location> updated = updatedLocations.get(level - 1);
+		for (Location l: updated) {
+			Value v = values.get(l);
+			if (v.previous == null)
+				values.remove(l);
+			else
+				values.put(l, v.previous);
+		}
+		updated.clear();
+		level--;
+	}
+
+	/**
+	 * Sets the value of the given location in the top-most state.
+	 * There must be at least one stacked state.
+	 */
+	public void put(Location l, Element value) {
+		if (level == 0)
+			throw new IllegalStateException("There is no stacked state.");
+		Value v = values.get(l);
+		if (v != null && v.level == level)
+			v.element = value;
+		else {
+			values.put(l, new Value(value, level, v));
+			updatedLocations.get(level - 1).add(l);
+		}
+	}
+
+	/**
+	 * Returns the value of the given location in the top-most
+	 * state, or <code>null</code> if the location is not updated
+	 * in any of the stacked states.
+	 */
+	public Element get(Location l) {
+		Value v = values.get(l);
+		return (v == null) ? null : v.element;
+	}
+
+	/**
+	 * Returns <code>true</code> if there is no stacked state.
+	 */
+	public boolean isEmpty() {
+		return level == 0;
+	}
+
+	/**
+	 * Returns the number of stacked states.
+	 */
+	public int size() {
+		return level;
+	}
+
+	/**
+	 * Returns the current values of all the locations
+	 * updated in the stacked states.
+	 */
+	public Map<Location, Element> getValues() {
+		if (values.isEmpty())
+			return Collections.emptyMap();
+		Map<Location, Element> result = new HashMap<Location, Element>();
+		for (Map.Entry<Location, Value> e: values.entrySet())
+			result.put(e.getKey(), e.getValue().element);
+		return result;
+	}
+
+	/*
+	 * A value of a location on some level, with a link to the
+	 * value of the same location on a lower level.
+	 */
+	private static final class Value {
+		Element element;
+		final int level;
+		final Value previous;
+
+		Value(Element element, int level, Value previous) {
+			this.element = element;
+			this.level = level;
+			this.previous = previous;
+		}
+	}
+}
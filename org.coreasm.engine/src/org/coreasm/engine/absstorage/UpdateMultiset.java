@@ -13,6 +13,8 @@
 package org.coreasm.engine.absstorage;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
 
 import org.coreasm.util.HashMultiset;
 
@@ -25,6 +27,12 @@ import org.coreasm.util.HashMultiset;
  */
 public class UpdateMultiset extends HashMultiset<Update> {
 
+	/** 
+	 * An empty update multiset that cannot be modified; it is shared by 
+	 * all the nodes that are evaluated without producing any updates 
+	 */
+	public static final UpdateMultiset EMPTY = new EmptyUpdateMultiset();
+
 	/**
 	 * Creates a new empty update multiset.
 	 * 
@@ -52,4 +60,25 @@ public class UpdateMultiset extends HashMultiset<Update> {
 		super(elements);
 	}
 
+	/*
+	 * The empty update multiset, which throws 
+	 * UnsupportedOperationException on every change.
+	 */
+	private static final class EmptyUpdateMultiset extends UpdateMultiset {
+
+		@Override
+		protected Map<Update, Integer> createMap() {
+			return Collections.emptyMap();
+		}
+
+		@Override
+		public boolean add(Update o) {
+			throw new UnsupportedOperationException("The empty update multiset cannot be modified.");
+		}
+
+		@Override
+		public boolean addAll(Collection<? extends Update> c) {
+			throw new UnsupportedOperationException("The empty update multiset cannot be modified.");
+		}
+	}
 }
@@ -22,6 +22,7 @@ import org.coreasm.engine.absstorage.Element;
 import org.coreasm.engine.absstorage.Location;
 import org.coreasm.engine.absstorage.UpdateMultiset;
 import org.coreasm.engine.interpreter.Node;
+import org.coreasm.engine.plugin.InterpreterPlugin;
 
 /** 
  * Represents nodes of the abstract syntax tree.
@@ -48,9 +49,24 @@ public class ASTNode extends Node implements Serializable {
     public static final String TERNARY_OPERATOR_CLASS = "TernaryOperator";
     public static final String INDEX_OPERATOR_CLASS = "IndexOperator";
     
+	/** numeric codes of the grammar classes (see {@link #getGrammarClassCode()}) */
+	public static final int OTHER_CLASS_CODE = 0;
+	public static final int ID_CLASS_CODE = 1;
+	public static final int RULE_CLASS_CODE = 2;
+	public static final int EXPRESSION_CLASS_CODE = 3;
+	public static final int FUNCTION_RULE_CLASS_CODE = 4;
+	public static final int DECLARATION_CLASS_CODE = 5;
+	public static final int UNARY_OPERATOR_CLASS_CODE = 6;
+	public static final int BINARY_OPERATOR_CLASS_CODE = 7;
+	public static final int TERNARY_OPERATOR_CLASS_CODE = 8;
+	public static final int INDEX_OPERATOR_CLASS_CODE = 9;
+
 	/** grammar class of this node */
 	protected String grammarClass;
 	
+	/** numeric code of the grammar class of this node */
+	private int grammarClassCode;
+	
 	/** name of the grammar rule associated with this node */
 	protected String grammarRule;
 
@@ -63,6 +79,24 @@ public class ASTNode extends Node implements Serializable {
 	/** a location associated with this node */
 	protected Location location;
 
+	/** evaluator of this node in the compiled evaluation mode; shared by the copies of this node */
+	private transient NodeEvaluator evaluator;
+
+	/** interpreter plugin of this node, once it is resolved; shared by the copies of this node */
+	private transient InterpreterPlugin interpreterPlugin;
+
+	/** <code>true</code> if the plugin of this node is resolved (see {@link #interpreterPlugin}) */
+	private transient boolean pluginResolved;
+
+	/** inline cache of the operator providers of this node, if it is an operator; shared by the copies of this node */
+	private transient OperatorCache operatorCache;
+
+	/** evaluation epoch of the tree of this node, if the tree is cleared by epochs (see {@link EvaluationEpoch}) */
+	private transient EvaluationEpoch epoch;
+
+	/** the epoch in which this node was last evaluated */
+	private transient int evaluatedIn;
+
 	/** 
 	 * Creates a new abstract node.
      * 
@@ -86,6 +120,9 @@ public class ASTNode extends Node implements Serializable {
 			this.grammarClass = "";
 		if (this.grammarRule == null)
 			this.grammarRule = "";
+		this.grammarClassCode = grammarClassCode(this.grammarClass);
+		if (isOperator())
+			this.operatorCache = new OperatorCache();
 	}
 
 	/** 
@@ -111,9 +148,19 @@ public class ASTNode extends Node implements Serializable {
 	 * @param node an instance of {@link ASTNode}
 	 */
 	public ASTNode(ASTNode node) {
-		this(node.pluginName, node.grammarClass, 
-				node.grammarRule, 
-				node.token, node.scannerInfo, node.concreteType);
+		super(node.pluginName, node.token, node.scannerInfo, node.concreteType);
+		this.grammarClass = node.grammarClass;
+		this.grammarRule = node.grammarRule;
+		this.grammarClassCode = node.grammarClassCode;
+		this.operatorCache = node.operatorCache;
+		this.evaluator = node.evaluator;
+		this.interpreterPlugin = node.interpreterPlugin;
+		this.pluginResolved = node.pluginResolved;
+	}
+
+	@Override
+	protected ASTNode copy() {
+		return new ASTNode(this);
 	}
 	
 	/**
@@ -123,6 +170,18 @@ public class ASTNode extends Node implements Serializable {
 		return grammarClass;
 	}
 
+	/**
+	 * Returns the numeric code of the syntactical class of this node,
+	 * which is one of the <code>*_CLASS_CODE</code> constants of this class;
+	 * {@link #OTHER_CLASS_CODE} if the grammar class is not one of
+	 * the grammar classes defined in this class.
+	 * 
+	 * @see #getGrammarClass()
+	 */
+	public int getGrammarClassCode() {
+		return grammarClassCode;
+	}
+
 	/**
 	 * Returns the name of the grammar rule that produced this node.
 	 */
@@ -135,6 +194,46 @@ public class ASTNode extends Node implements Serializable {
 	 */
 	public void setGrammarClass(String grammarClass) {
 		this.grammarClass = grammarClass;
+		this.grammarClassCode = grammarClassCode(grammarClass);
+		if (!isOperator())
+			this.operatorCache = null;
+		else if (this.operatorCache == null)
+			this.operatorCache = new OperatorCache();
+	}
+
+	@Override
+	public void setPluginName(String pluginName) {
+		super.setPluginName(pluginName);
+		this.interpreterPlugin = null;
+		this.pluginResolved = false;
+	}
+
+	/*
+	 * Returns the numeric code of the given grammar class.
+	 */
+	private static int grammarClassCode(String grammarClass) {
+		if (grammarClass == null)
+			return OTHER_CLASS_CODE;
+		switch (grammarClass) {
+		case ID_CLASS: return ID_CLASS_CODE;
+		case RULE_CLASS: return RULE_CLASS_CODE;
+		case EXPRESSION_CLASS: return EXPRESSION_CLASS_CODE;
+		case FUNCTION_RULE_CLASS: return FUNCTION_RULE_CLASS_CODE;
+		case DECLARATION_CLASS: return DECLARATION_CLASS_CODE;
+		case UNARY_OPERATOR_CLASS: return UNARY_OPERATOR_CLASS_CODE;
+		case BINARY_OPERATOR_CLASS: return BINARY_OPERATOR_CLASS_CODE;
+		case TERNARY_OPERATOR_CLASS: return TERNARY_OPERATOR_CLASS_CODE;
+		case INDEX_OPERATOR_CLASS: return INDEX_OPERATOR_CLASS_CODE;
+		default: return OTHER_CLASS_CODE;
+		}
+	}
+
+	/**
+	 * Returns <code>true</code> if this node is an operator node 
+	 * (unary, binary, ternary, or index operator).
+	 */
+	public boolean isOperator() {
+		return grammarClassCode >= UNARY_OPERATOR_CLASS_CODE && grammarClassCode <= INDEX_OPERATOR_CLASS_CODE;
 	}
 
 	/**
@@ -151,7 +250,7 @@ public class ASTNode extends Node implements Serializable {
 	 * @return <code>Collection</code> of <code>Update</code>
 	 */
 	public UpdateMultiset getUpdates(){
-		return updates;
+		return isStale() ? null : updates;
 	}
 	
 	/**
@@ -159,21 +258,93 @@ public class ASTNode extends Node implements Serializable {
 	 * 
 	 */
 	public Element getValue() {
-		return value;
+		return isStale() ? null : value;
 	}
 	
 	/**
 	 * Returns the location associated with this node.
 	 */
 	public Location getLocation() {
-		return location;
+		return isStale() ? null : location;
+	}
+
+	/*
+	 * Returns true if the evaluation result of this node is 
+	 * from an older epoch of its tree and is hence cleared.
+	 */
+	private boolean isStale() {
+		return epoch != null && evaluatedIn != epoch.current;
+	}
+
+	/**
+	 * Returns the evaluation epoch of the tree of this node,
+	 * or <code>null</code> if the tree is not cleared by epochs.
+	 */
+	EvaluationEpoch getEpoch() {
+		return epoch;
+	}
+
+	/**
+	 * Sets the evaluation epoch of the tree of this node.
+	 */
+	void setEpoch(EvaluationEpoch epoch) {
+		this.epoch = epoch;
+		this.evaluatedIn = epoch.current;
 	}
 	
+	/**
+	 * Returns the evaluator of this node, or <code>null</code>
+	 * if this node is not compiled yet.
+	 */
+	NodeEvaluator getEvaluator() {
+		return evaluator;
+	}
+
+	/**
+	 * Sets the evaluator of this node.
+	 */
+	void setEvaluator(NodeEvaluator evaluator) {
+		this.evaluator = evaluator;
+	}
+
+	/**
+	 * Returns the inline cache of the operator providers of this node,
+	 * or <code>null</code> if this node is not an operator.
+	 */
+	OperatorCache getOperatorCache() {
+		return operatorCache;
+	}
+
+	/**
+	 * Returns <code>true</code> if the plugin of this node is resolved 
+	 * (see {@link #setInterpreterPlugin(InterpreterPlugin)}).
+	 */
+	boolean isPluginResolved() {
+		return pluginResolved;
+	}
+
+	/**
+	 * Returns the interpreter plugin of this node, or <code>null</code>
+	 * if this is a node of the kernel or the plugin is not resolved yet.
+	 */
+	InterpreterPlugin getInterpreterPlugin() {
+		return interpreterPlugin;
+	}
+
+	/**
+	 * Sets the interpreter plugin of this node; <code>null</code>
+	 * for the nodes of the kernel.
+	 */
+	void setInterpreterPlugin(InterpreterPlugin plugin) {
+		this.interpreterPlugin = plugin;
+		this.pluginResolved = true;
+	}
+
 	/**
 	 * Returns <code>true</code> if this node is evaluated.
 	 */
 	public boolean isEvaluated() {
-		return (updates != null || value != null || location != null);
+		return (updates != null || value != null || location != null) && !isStale();
 	}
 	
 	/**
@@ -188,6 +359,8 @@ public class ASTNode extends Node implements Serializable {
 		this.location = loc;
 		this.updates = updates;
 		this.value = value;
+		if (epoch != null)
+			evaluatedIn = epoch.current;
 	}
 
 	/**
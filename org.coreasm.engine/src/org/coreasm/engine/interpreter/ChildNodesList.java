@@ -15,7 +15,7 @@ package org.coreasm.engine.interpreter;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 
 import org.coreasm.engine.CoreASMError;
@@ -31,7 +31,12 @@ import org.coreasm.engine.interpreter.Node.NameNodeTuple;
 public class ChildNodesList {
 	private LinkedListTuple firstChild;
 	private LinkedListTuple lastChild;
-	private final HashMap<Node, LinkedListTuple> nodeWrappers;
+	/* 
+	 * keyed by reference, as copies of the same node are equal 
+	 * (e.g., the copies of an argument substituted for a parameter 
+	 * that is used twice in the same expression)
+	 */
+	private final IdentityHashMap<Node, LinkedListTuple> nodeWrappers;
 	private final Node parent;
 	private List<Node> childList = null;
 	private List<NameNodeTuple> childTupleList = null;
@@ -39,7 +44,7 @@ public class ChildNodesList {
 	public ChildNodesList(Node parent) {
 		this.firstChild = null;
 		this.lastChild = null;
-		this.nodeWrappers = new HashMap<Node, LinkedListTuple>();
+		this.nodeWrappers = new IdentityHashMap<Node, LinkedListTuple>();
 		this.parent = parent;
 	}
 	
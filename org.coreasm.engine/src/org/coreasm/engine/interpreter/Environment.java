@@ -0,0 +1,143 @@
+/*
+ * Environment.java
+ *
+ * Copyright (C) 2013 Roozbeh Farahbod
+ *
+ * Licensed under the Academic Free License version 3.0
+ *   http://www.opensource.org/licenses/afl-3.0.php
+ *   http://www.coreasm.org/afl-3.0.php
+ *
+ */
+
+package org.coreasm.engine.interpreter;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.coreasm.engine.absstorage.Element;
+import org.coreasm.engine.absstorage.FunctionSlots;
+
+/**
+ * Environment variables of an interpreter, kept in frames indexed by the
+ * slots of the variable names (see {@link InterpreterImp#getVariableSlots()}). 
+ * Variable names have their own slots, apart from the names of functions, 
+ * universes, and rules, so the frames only grow with the number of 
+ * distinct variable names bound by the specification. Every slot
+ * holds the stack of the values of its variable, the top-most of which
+ * is the visible value; a binding of a variable hides the outer
+ * bindings of the same name until it is removed.
+ * <p>
+ * The slot of an identifier is resolved once and kept with its node
+ * (see {@link FunctionRuleTermNode#getVariableSlot(FunctionSlots)}), so 
+ * reading a variable is an array access.
+ *
+ * @author  Roozbeh Farahbod
+ */
+final class Environment {
+
+	private static final int INITIAL_SLOTS = 64;
+	private static final int INITIAL_DEPTH = 4;
+
+	/** values of the variables, indexed by slot and depth */
+	private Element[][] values = new Element[INITIAL_SLOTS][];
+
+	/** number of values of the variable of every slot */
+	private int[] depths = new int[INITIAL_SLOTS];
+
+	/** names of the variables, indexed by slot */
+	private String[] names = new String[INITIAL_SLOTS];
+
+	/** number of slots that have a value */
+	private int bound = 0;
+
+	/**
+	 * Returns the current value of the variable with the given slot, or
+	 * <code>null</code> if the variable has no value (or the slot is
+	 * {@link FunctionSlots#NO_SLOT}).
+	 */
+	Element get(int slot) {
+		if (slot >= 0 && slot < depths.length) {
+			final int depth = depths[slot];
+			if (depth > 0)
+				return values[slot][depth - 1];
+		}
+		return null;
+	}
+
+	/**
+	 * Binds the variable with the given slot and name to the given value.
+	 */
+	void push(int slot, String name, Element value) {
+		if (slot >= depths.length)
+			grow(slot);
+		Element[] stack = values[slot];
+		final int depth = depths[slot];
+		if (stack == null) {
+			stack = new Element[INITIAL_DEPTH];
+			values[slot] = stack;
+			names[slot] = name;
+		} else if (depth == stack.length) {
+			final Element[] newStack = new Element[depth * 2];
+			System.arraycopy(stack, 0, newStack, 0, depth);
+			stack = newStack;
+			values[slot] = stack;
+		}
+		stack[depth] = value;
+		depths[slot] = depth + 1;
+		if (depth == 0)
+			bound++;
+	}
+
+	/**
+	 * Removes the current value of the variable with the given slot.
+	 *
+	 * @throws IllegalStateException if the variable has no value
+	 */
+	void pop(int slot) {
+		if (slot < 0 || slot >= depths.length || depths[slot] == 0)
+			throw new IllegalStateException("Removing an undefined environment variable.");
+		final int depth = --depths[slot];
+		values[slot][depth] = null;
+		if (depth == 0)
+			bound--;
+	}
+
+	/**
+	 * Returns the current values of all the variables that have a value.
+	 */
+	Map<String, Element> toMap() {
+		final Map<String, Element> result = new HashMap<String, Element>();
+		for (int slot = 0; slot < depths.length && result.size() < bound; slot++)
+			if (depths[slot] > 0)
+				result.put(names[slot], values[slot][depths[slot] - 1]);
+		return result;
+	}
+
+	/**
+	 * Removes all the values of all the variables.
+	 */
+	void clear() {
+		if (bound == 0)
+			return;
+		for (int slot = 0; slot < depths.length; slot++)
+			while (depths[slot] > 0)
+				values[slot][--depths[slot]] = null;
+		bound = 0;
+	}
+
+	/*
+	 * Makes room for the given slot.
+	 */
+	private void grow(int slot) {
+		final int size = Math.max(slot + 1, depths.length * 2);
+		final Element[][] newValues = new Element[size][];
+		System.arraycopy(values, 0, newValues, 0, values.length);
+		values = newValues;
+		final int[] newDepths = new int[size];
+		System.arraycopy(depths, 0, newDepths, 0, depths.length);
+		depths = newDepths;
+		final String[] newNames = new String[size];
+		System.arraycopy(names, 0, newNames, 0, names.length);
+		names = newNames;
+	}
+}
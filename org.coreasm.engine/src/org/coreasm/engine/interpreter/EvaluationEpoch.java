@@ -0,0 +1,65 @@
+/*
+ * EvaluationEpoch.java
+ *
+ * Copyright (C) 2013 Roozbeh Farahbod
+ *
+ * Licensed under the Academic Free License version 3.0
+ *   http://www.opensource.org/licenses/afl-3.0.php
+ *   http://www.coreasm.org/afl-3.0.php
+ *
+ */
+
+package org.coreasm.engine.interpreter;
+
+/**
+ * Evaluation epoch of a tree that is evaluated over and over again (e.g.,
+ * the copy of the program of an agent, which is evaluated in every step).
+ * Every node of the tree records the epoch in which it was evaluated; the
+ * evaluation results of the nodes from older epochs are ignored. Hence, 
+ * the whole tree is cleared by starting a new epoch, instead of 
+ * visiting all its nodes.
+ *
+ * @author  Roozbeh Farahbod
+ * @see Interpreter#prepareTreeForReuse(ASTNode)
+ */
+final class EvaluationEpoch {
+
+	/** root of the tree */
+	final ASTNode root;
+
+	/** the current epoch */
+	int current = 0;
+
+	private EvaluationEpoch(ASTNode root) {
+		this.root = root;
+	}
+
+	/**
+	 * Starts a new epoch, which clears the evaluation results 
+	 * of all the nodes of the tree.
+	 */
+	void advance() {
+		current++;
+	}
+
+	/**
+	 * Makes the tree with the given root be cleared by epochs. The nodes
+	 * added to the tree later on are cleared as usual.
+	 *
+	 * @param root root of a tree with no parent
+	 */
+	static void attach(ASTNode root) {
+		final EvaluationEpoch epoch = new EvaluationEpoch(root);
+		attach(root, epoch);
+	}
+
+	/*
+	 * Sets the epoch of the given node and its descendants.
+	 */
+	private static void attach(ASTNode node, EvaluationEpoch epoch) {
+		for (; node != null; node = node.getNext()) {
+			node.setEpoch(epoch);
+			attach(node.getFirst(), epoch);
+		}
+	}
+}
@@ -0,0 +1,359 @@
+/*
+ * Evaluators.java
+ *
+ * Copyright (C) 2013 Roozbeh Farahbod
+ *
+ * Licensed under the Academic Free License version 3.0
+ *   http://www.opensource.org/licenses/afl-3.0.php
+ *   http://www.coreasm.org/afl-3.0.php
+ *
+ */
+
+package org.coreasm.engine.interpreter;
+
+import org.coreasm.engine.EngineError;
+import org.coreasm.engine.EngineTools;
+import org.coreasm.engine.absstorage.AbstractStorage;
+import org.coreasm.engine.absstorage.BooleanElement;
+import org.coreasm.engine.absstorage.Element;
+import org.coreasm.engine.absstorage.ElementList;
+import org.coreasm.engine.absstorage.FunctionElement;
+import org.coreasm.engine.absstorage.FunctionSlots;
+import org.coreasm.engine.absstorage.InvalidLocationException;
+import org.coreasm.engine.absstorage.Location;
+import org.coreasm.engine.absstorage.RuleElement;
+import org.coreasm.engine.absstorage.Update;
+import org.coreasm.engine.absstorage.UpdateMultiset;
+import org.coreasm.engine.kernel.Kernel;
+import org.coreasm.engine.kernel.MacroCallRuleNode;
+import org.coreasm.engine.kernel.UpdateRuleNode;
+import org.coreasm.engine.plugin.EvaluatorProvider;
+import org.coreasm.engine.plugin.InterpreterPlugin;
+
+/**
+ * Compiles nodes of parse trees into evaluators for the compiled
+ * evaluation mode of {@link InterpreterImp}, and provides the
+ * evaluators of the kernel terms and rules.
+ * <p>
+ * Nodes of plugins that do not provide evaluators are evaluated by
+ * an adapter that applies the interpreter rule of the plugin to the
+ * node, and evaluates every node the interpreter rule asks for before
+ * applying it again.
+ *
+ * @author  Roozbeh Farahbod
+ */
+final class Evaluators {
+
+	/** evaluates kernel nodes through the kernel interpreter rules */
+	static final NodeEvaluator KERNEL = new KernelEvaluator();
+
+	private static final NodeEvaluator TRUE = new ConstantEvaluator(BooleanElement.TRUE);
+	private static final NodeEvaluator FALSE = new ConstantEvaluator(BooleanElement.FALSE);
+	private static final NodeEvaluator UNDEF = new ConstantEvaluator(Element.UNDEF);
+	private static final NodeEvaluator SELF = new SelfEvaluator();
+	private static final NodeEvaluator FUNCTION_TERM = new FunctionTermEvaluator();
+	private static final NodeEvaluator OPERATOR = new OperatorEvaluator();
+	private static final NodeEvaluator UPDATE_RULE = new UpdateRuleEvaluator();
+	private static final NodeEvaluator MACRO_CALL = new MacroCallEvaluator();
+	private static final NodeEvaluator IMPORT_RULE = new ImportRuleEvaluator();
+	private static final NodeEvaluator SKIP = new SkipEvaluator();
+
+	private Evaluators() {
+	}
+
+	/**
+	 * Returns the evaluator of the given node.
+	 *
+	 * @param interpreter the interpreter evaluating the node
+	 * @param node a node of a parse tree
+	 * @throws InterpreterException if the plugin of the node is not an interpreter plugin
+	 */
+	static NodeEvaluator compile(InterpreterImp interpreter, ASTNode node) throws InterpreterException {
+		final InterpreterPlugin p = interpreter.getInterpreterPlugin(node);
+		if (p != null) {
+			if (p instanceof EvaluatorProvider) {
+				final NodeEvaluator evaluator = ((EvaluatorProvider)p).getEvaluator(node);
+				if (evaluator != null)
+					return evaluator;
+			}
+			return new PluginEvaluator(p);
+		}
+
+		if (node instanceof UpdateRuleNode)
+			return UPDATE_RULE;
+		if (node instanceof MacroCallRuleNode)
+			return MACRO_CALL;
+		if ("ImportRule".equals(node.getGrammarRule()))
+			return IMPORT_RULE;
+
+		final String token = node.getToken();
+		if (token != null) {
+			if (token.equals(Kernel.KW_TRUE))
+				return TRUE;
+			if (token.equals(Kernel.KW_FALSE))
+				return FALSE;
+			if (token.equals(Kernel.KW_UNDEF))
+				return UNDEF;
+			if (token.equals(Kernel.KW_SELF))
+				return SELF;
+			if (token.equals(Kernel.KW_SKIP))
+				return SKIP;
+		}
+
+		if (node.getGrammarClassCode() == ASTNode.FUNCTION_RULE_CLASS_CODE && node instanceof FunctionRuleTermNode)
+			return FUNCTION_TERM;
+		if (node.isOperator())
+			return OPERATOR;
+		return KERNEL;
+	}
+
+	/**
+	 * Base class of evaluators that apply an interpreter rule to a node
+	 * until it is evaluated. Whenever the rule returns another node
+	 * instead of evaluating the node itself, that node is evaluated
+	 * before the rule is applied again.
+	 */
+	abstract static class SteppingEvaluator extends NodeEvaluator {
+
+		/**
+		 * Applies the interpreter rule to the given node and returns
+		 * the new value of <i>pos</i>.
+		 */
+		abstract ASTNode step(InterpreterImp interpreter, ASTNode node) throws InterpreterException;
+
+		@Override
+		public void evaluate(Interpreter interpreter, ASTNode node) throws InterpreterException {
+			final InterpreterImp inter = (InterpreterImp)interpreter;
+			while (!node.isEvaluated() && !inter.hasErrorOccurred()) {
+				final ASTNode next = step(inter, node);
+				if (next == null)
+					throw new InterpreterException("Interpreter rule of node " + node + " returned no node.");
+				if (next != node) {
+					if (!next.isEvaluated())
+						inter.evaluate(next);
+					else
+						inter.stepUntil(next, node);
+				}
+			}
+		}
+	}
+
+	/*
+	 * Evaluates kernel nodes through the kernel interpreter rules.
+	 */
+	private static final class KernelEvaluator extends SteppingEvaluator {
+		@Override
+		ASTNode step(InterpreterImp interpreter, ASTNode node) throws InterpreterException {
+			return interpreter.kernelStep(node);
+		}
+	}
+
+	/*
+	 * Evaluates the nodes of an interpreter plugin through its interpreter rule.
+	 */
+	private static final class PluginEvaluator extends SteppingEvaluator {
+		private final InterpreterPlugin plugin;
+
+		PluginEvaluator(InterpreterPlugin plugin) {
+			this.plugin = plugin;
+		}
+
+		@Override
+		ASTNode step(InterpreterImp interpreter, ASTNode node) throws InterpreterException {
+			return plugin.interpret(interpreter, node);
+		}
+	}
+
+	/*
+	 * Evaluates literals of the kernel.
+	 */
+	private static final class ConstantEvaluator extends NodeEvaluator {
+		private final Element value;
+
+		ConstantEvaluator(Element value) {
+			this.value = value;
+		}
+
+		@Override
+		public void evaluate(Interpreter interpreter, ASTNode node) {
+			node.setNode(null, null, value);
+		}
+	}
+
+	/*
+	 * Evaluates 'self'.
+	 */
+	private static final class SelfEvaluator extends NodeEvaluator {
+		@Override
+		public void evaluate(Interpreter interpreter, ASTNode node) {
+			node.setNode(null, null, interpreter.getSelf());
+		}
+	}
+
+	/*
+	 * Evaluates operators: all the operands are evaluated
+	 * before the operator is applied to them.
+	 */
+	private static final class OperatorEvaluator extends NodeEvaluator {
+		@Override
+		public void evaluate(Interpreter interpreter, ASTNode node) throws InterpreterException {
+			for (ASTNode operand = node.getFirst(); operand != null; operand = operand.getNext()) {
+				interpreter.evaluate(operand);
+				if (!operand.isEvaluated())
+					return;
+			}
+			KERNEL.evaluate(interpreter, node);
+		}
+	}
+
+	/*
+	 * Evaluates function terms of the form 'x' and 'x(...)' where 'x' is
+	 * a local variable or a function of the state. All other cases (e.g.,
+	 * rule calls and undefined identifiers) are left to the kernel
+	 * interpreter rules.
+	 */
+	private static final class FunctionTermEvaluator extends NodeEvaluator {
+		@Override
+		public void evaluate(Interpreter interpreter, ASTNode node) throws InterpreterException {
+			final FunctionRuleTermNode frNode = (FunctionRuleTermNode)node;
+			if (frNode.hasName()) {
+				final InterpreterImp inter = (InterpreterImp)interpreter;
+				final AbstractStorage storage = inter.getStorage();
+				final String x = frNode.getName();
+				final FunctionSlots slots = storage.getFunctionSlots();
+				final int slot = frNode.getNameSlot(slots);
+				if (!frNode.hasArguments()) {
+					final Element value = inter.getEnv(frNode.getVariableSlot(inter.getVariableSlots()));
+					if (value != null) {
+						node.setNode(null, null, value);
+						return;
+					}
+					final FunctionElement f = storage.getFunction(slot);
+					if (f != null) {
+						setLocation(storage, node, new Location(x, ElementList.NO_ARGUMENT, f.isModifiable(), slots, slot));
+						return;
+					}
+				} else {
+					final FunctionElement f = storage.getFunction(slot);
+					if (f != null) {
+						for (ASTNode arg: frNode.getArguments()) {
+							interpreter.evaluate(arg);
+							if (!arg.isEvaluated())
+								return;
+						}
+						final ElementList vList = EngineTools.getValueList(frNode.getArguments());
+						setLocation(storage, node, new Location(x, vList, f.isModifiable(), slots, slot));
+						return;
+					}
+				}
+			}
+			KERNEL.evaluate(interpreter, node);
+		}
+
+		private void setLocation(AbstractStorage storage, ASTNode node, Location loc) {
+			final Location l = storage.internLocation(loc);
+			try {
+				node.setNode(l, null, storage.getValue(l));
+			} catch (InvalidLocationException e) {
+				throw new EngineError("Location is invalid in 'interpretExpressions()'." +
+						"This cannot happen!");
+			}
+		}
+	}
+
+	/*
+	 * Evaluates 'skip'.
+	 */
+	private static final class SkipEvaluator extends NodeEvaluator {
+		@Override
+		public void evaluate(Interpreter interpreter, ASTNode node) {
+			node.setNode(null, new UpdateMultiset(), null);
+		}
+	}
+
+	/*
+	 * Evaluates assignments of the form 'l := v': the location and
+	 * the value are evaluated before the update is created.
+	 */
+	private static final class UpdateRuleEvaluator extends NodeEvaluator {
+		@Override
+		public void evaluate(Interpreter interpreter, ASTNode node) throws InterpreterException {
+			final InterpreterImp inter = (InterpreterImp)interpreter;
+			final ASTNode lhs = node.getFirst();
+			final ASTNode rhs = lhs.getNext();
+			interpreter.evaluate(lhs);
+			if (!lhs.isEvaluated())
+				return;
+			interpreter.evaluate(rhs);
+			if (!rhs.isEvaluated())
+				return;
+
+			final Location l = lhs.getLocation();
+			if (l == null)
+				inter.error("Cannot update a non-location!", node);
+			else if (l.isModifiable != null && l.isModifiable.equals(false))
+				inter.error("Left hand side of the assignment, " +
+						l + ", is not modifiable.", node);
+			else {
+				final Update u = new Update(l, rhs.getValue(), Update.UPDATE_ACTION, interpreter.getSelf(), node.getScannerInfo());
+				node.setNode(null, new UpdateMultiset(u), null);
+			}
+		}
+	}
+
+	/*
+	 * Evaluates 'import x do R': a new element is bound to 'x'
+	 * while the rule is evaluated.
+	 */
+	private static final class ImportRuleEvaluator extends NodeEvaluator {
+		@Override
+		public void evaluate(Interpreter interpreter, ASTNode node) throws InterpreterException {
+			final InterpreterImp inter = (InterpreterImp)interpreter;
+			final String id = node.getFirst().getToken();
+			final ASTNode ruleNode = node.getFirst().getNext();
+			interpreter.addEnv(id, inter.getStorage().getNewElement());
+			interpreter.evaluate(ruleNode);
+			interpreter.removeEnv(id);
+			if (ruleNode.isEvaluated())
+				node.setNode(null, ruleNode.getUpdates(), null);
+		}
+	}
+
+	/*
+	 * Evaluates macro call rules of the form 'r' and 'r(...)': the
+	 * work copy of the body of the rule is evaluated directly under
+	 * the call. Arguments are passed by name; hence, they are not
+	 * evaluated before the call.
+	 */
+	private static final class MacroCallEvaluator extends NodeEvaluator {
+		@Override
+		public void evaluate(Interpreter interpreter, ASTNode node) throws InterpreterException {
+			final InterpreterImp inter = (InterpreterImp)interpreter;
+			final FunctionRuleTermNode frNode = (FunctionRuleTermNode)node.getFirst();
+			if (!frNode.hasName()) {
+				KERNEL.evaluate(interpreter, node);
+				return;
+			}
+
+			final String x = frNode.getName();
+			if (!inter.getStorage().isRuleName(x)) {
+				inter.error("\"" + x + "\" is not a rule name.", node);
+				return;
+			}
+			final RuleElement rule = inter.getStorage().getRule(x);
+			final int arity = frNode.hasArguments() ? frNode.getArguments().size() : 0;
+			if (rule.getParam().size() != arity) {
+				inter.error("The number of arguments passed to '" + x  + 
+						"' does not match its signature.", node);
+				return;
+			}
+
+			final ASTNode body = inter.ruleCall(rule, frNode.hasArguments() ? frNode.getArguments() : null, node);
+			if (body == node)
+				return;
+			interpreter.evaluate(body);
+			if (body.isEvaluated())
+				inter.ruleCall(rule, frNode.hasArguments() ? frNode.getArguments() : null, node);
+		}
+	}
+}
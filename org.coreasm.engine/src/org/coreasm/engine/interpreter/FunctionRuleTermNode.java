@@ -17,6 +17,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+import org.coreasm.engine.absstorage.FunctionSlots;
 import org.coreasm.engine.kernel.Kernel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -37,6 +38,16 @@ public class FunctionRuleTermNode extends ASTNode {
     private ASTNode actualNode = null;
 
 	private List<ASTNode> argsList = null;
+	
+	private String name = null;
+	
+	private int nameSlot = FunctionSlots.NO_SLOT;
+	
+	/** the slots by which {@link #nameSlot} is resolved */
+	private FunctionSlots nameSlots = null;
+	
+	/** the slot of the name as an environment variable; resolved on use */
+	private VariableSlot variableSlot = null;
 
 	public FunctionRuleTermNode(ScannerInfo info) {
 		super(Kernel.PLUGIN_NAME,
@@ -50,6 +61,11 @@ public class FunctionRuleTermNode extends ASTNode {
     	super((ASTNode)node);
    }
 
+    @Override
+    protected FunctionRuleTermNode copy() {
+        return new FunctionRuleTermNode(this);
+    }
+
     protected void checkNodeValidity() {
 		if (!this.getGrammarClass().equals(ASTNode.FUNCTION_RULE_CLASS))
 			throw new IllegalArgumentException("Expecting a FunctionRuleTerm node.");
@@ -93,6 +109,8 @@ public class FunctionRuleTermNode extends ASTNode {
 	 * Returns <code>true</code> if this function/rule term starts with a name (id).
 	 */
 	public boolean hasName() {
+		if (this.name != null)
+			return true;
 		Node name = getActualFunctionRuleNode().getChildNode("alpha");
 		if (name instanceof ASTNode) 
 			return ((ASTNode)name).getGrammarClass().equals(ASTNode.ID_CLASS);
@@ -102,13 +120,52 @@ public class FunctionRuleTermNode extends ASTNode {
 
 	/**
 	 * If this function/rule term has a name, returns the name. Otherwise, returns
-	 * <code>null</code>.
+	 * <code>null</code>. This method caches the name, assuming that
+	 * the node structure does not change.
 	 */
 	public String getName() {
-		if (hasName()) { 
-			return getActualFunctionRuleNode().getChildNode("alpha").getToken();
-		} else
-			return null;
+		if (name == null && hasName()) 
+			name = getActualFunctionRuleNode().getChildNode("alpha").getToken();
+		return name;
+	}
+	
+	/**
+	 * Returns the slot of the name of this function/rule term in the
+	 * given slots, or {@link FunctionSlots#NO_SLOT} if the name has no 
+	 * slot yet (i.e., it is neither bound as a variable nor the name of 
+	 * a function, universe, or rule). The slot is kept once it exists. 
+	 * This node must have a name.
+	 * 
+	 * @see FunctionSlots#lookup(String)
+	 */
+	public int getNameSlot(FunctionSlots slots) {
+		if (nameSlots == slots && nameSlot != FunctionSlots.NO_SLOT)
+			return nameSlot;
+		final int result = slots.lookup(getName());
+		if (result != FunctionSlots.NO_SLOT) {
+			nameSlot = result;
+			nameSlots = slots;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the slot of the name of this function/rule term in the
+	 * given slots of environment variables, or {@link FunctionSlots#NO_SLOT} 
+	 * if no variable of that name has been bound yet. Both results are 
+	 * kept; the latter until a new variable name is given a slot. 
+	 * This node must have a name.
+	 * 
+	 * @see InterpreterImp#getVariableSlots()
+	 */
+	public int getVariableSlot(FunctionSlots slots) {
+		final VariableSlot v = variableSlot;
+		if (v != null && v.slots == slots && (v.slot != FunctionSlots.NO_SLOT || v.size == slots.size()))
+			return v.slot;
+		final int size = slots.size();
+		final int slot = slots.lookup(getName());
+		variableSlot = new VariableSlot(slots, slot, size);
+		return slot;
 	}
 
 	public ASTNode getActualFunctionRuleNode() {
@@ -120,5 +177,20 @@ public class FunctionRuleTermNode extends ASTNode {
 		}
 		return actualNode;
 	}
+
+	/*
+	 * The slot of a variable name, with the slots it is looked up in
+	 * and the number of slots at the time of the look-up.
+	 */
+	private static final class VariableSlot {
+		final FunctionSlots slots;
+		final int slot;
+		final int size;
 		
+		VariableSlot(FunctionSlots slots, int slot, int size) {
+			this.slots = slots;
+			this.slot = slot;
+			this.size = size;
+		}
+	}
 }
@@ -20,6 +20,7 @@ import java.util.Stack;
 
 import org.coreasm.engine.absstorage.Element;
 import org.coreasm.engine.absstorage.RuleElement;
+import org.coreasm.engine.absstorage.StateOverlay;
 
 /** 
  *	Defines the interface of the interpreter.
@@ -40,7 +41,18 @@ public interface Interpreter {
 	 * <i>(parent(pos) == null)</i>
 	 */
 	public boolean isExecutionComplete();
-	
+
+	/**
+	 * Evaluates the given node (and the nodes it depends on) at once,
+	 * using the evaluator the node is compiled to. This is how node
+	 * evaluators evaluate the child nodes they need; the given node
+	 * must be part of the tree being executed.
+	 *
+	 * @param node the node to be evaluated
+	 * @see NodeEvaluator
+	 */
+	public void evaluate(ASTNode node) throws InterpreterException;
+
 	/**
 	 * Sets the value of "pos" to the given node. 
 	 * This method does not make a duplicate copy 
@@ -80,6 +92,16 @@ public interface Interpreter {
 	 */
 	public void clearTree(ASTNode root);
 
+	/**
+	 * Prepares the given tree to be evaluated and cleared over and over
+	 * again; afterwards, {@link #clearTree(ASTNode)} clears the whole tree
+	 * in constant time, by starting a new evaluation epoch of the tree.
+	 * This has no effect if the given node has a parent.
+	 * 
+	 * @param root root of a tree with no parent
+	 */
+	public void prepareTreeForReuse(ASTNode root);
+
 	/**
 	 * Returns a copy of the given parse tree, where every instance 
 	 * of an identifier node in a given sequence (formal parameters) 
@@ -147,6 +169,17 @@ public interface Interpreter {
 	 */
 	public Element getEnv(String name);
 
+	/**
+	 * Returns the top-most value of the environment variable
+	 * whose name has the given slot. This is the same as 
+	 * {@link #getEnv(String)}, without looking up the slot of the name.
+	 * 
+	 * @param slot slot of the name of the variable in the slots of 
+	 * environment variables, which the interpreters of an engine share
+	 * @see FunctionRuleTermNode#getVariableSlot(org.coreasm.engine.absstorage.FunctionSlots)
+	 */
+	public Element getEnv(int slot);
+
 	/**
 	 * Removes the top-most instance of the
 	 * environment variable with the given name.
@@ -172,6 +205,14 @@ public interface Interpreter {
 	 */
 	public Interpreter getInterpreterInstance();
 	
+	/**
+	 * Returns the stack of states pushed by this interpreter
+	 * on top of the state of the abstract storage.
+	 * 
+	 * @see org.coreasm.engine.absstorage.AbstractStorage#pushState()
+	 */
+	public StateOverlay getStateOverlay();
+	
     /**
      * Interprets (evaluates) the given ASTNode.
      * 
@@ -15,10 +15,13 @@
  
 package org.coreasm.engine.interpreter;
 
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -27,16 +30,19 @@ import java.util.Stack;
 
 import org.coreasm.engine.ControlAPI;
 import org.coreasm.engine.EngineError;
+import org.coreasm.engine.EngineProperties;
 import org.coreasm.engine.EngineTools;
 import org.coreasm.engine.absstorage.AbstractStorage;
 import org.coreasm.engine.absstorage.BooleanElement;
 import org.coreasm.engine.absstorage.Element;
 import org.coreasm.engine.absstorage.ElementList;
 import org.coreasm.engine.absstorage.FunctionElement;
+import org.coreasm.engine.absstorage.FunctionSlots;
 import org.coreasm.engine.absstorage.InvalidLocationException;
 import org.coreasm.engine.absstorage.Location;
 import org.coreasm.engine.absstorage.NameElement;
 import org.coreasm.engine.absstorage.RuleElement;
+import org.coreasm.engine.absstorage.StateOverlay;
 import org.coreasm.engine.absstorage.Update;
 import org.coreasm.engine.absstorage.UpdateMultiset;
 import org.coreasm.engine.interpreter.Node.NameNodeTuple;
@@ -47,6 +53,7 @@ import org.coreasm.engine.kernel.RuleOrFuncElementNode;
 import org.coreasm.engine.kernel.UpdateRuleNode;
 import org.coreasm.engine.parser.OperatorRegistry;
 import org.coreasm.engine.plugin.InterpreterPlugin;
+import org.coreasm.engine.plugin.NodeMutatingPlugin;
 import org.coreasm.engine.plugin.OperatorProvider;
 import org.coreasm.engine.plugin.Plugin;
 import org.coreasm.engine.plugin.UndefinedIdentifierHandler;
@@ -75,8 +82,8 @@ public class InterpreterImp implements Interpreter {
 	/** Link to the ControlAPI module */
 	private final ControlAPI capi;
 
-	//private Map<String,Element> envMap;
-	private final Map<String,Stack<Element>> envMap;
+	/** environment variables, in frames indexed by the slots of their names */
+	private final Environment env;
 	
 	/** Work copy of a tree */
 	private final Map<ASTNode,Stack<ASTNode>> workCopy;
@@ -84,11 +91,57 @@ public class InterpreterImp implements Interpreter {
 	/** Link to the abstract storage module */
 	private final AbstractStorage storage;
 	
+	/** slots of the names of the storage */
+	private final FunctionSlots slots;
+	
+	/** slots of the names of environment variables, shared by the interpreters of an engine */
+	private final FunctionSlots variableSlots;
+	
 	private OperatorRegistry oprReg = null;
 	
 	private final Map<String, Collection<String>> oprImpPluginsCache = new HashMap<String, Collection<String>>();
 	
 	private final Stack<CallStackElement> ruleCallStack = new Stack<CallStackElement>();
+	
+	/** states pushed by this interpreter on top of the state of the storage */
+	private final StateOverlay stateOverlay = new StateOverlay();
+
+	/** <code>true</code> if copies of rule bodies are reused by later rule calls */
+	private boolean sharedRuleBodies;
+
+	/** <code>true</code> if trees are evaluated by the evaluators they are compiled to */
+	private boolean compiledEvaluation;
+
+	/** <code>true</code> if operators are always evaluated by all the plugins implementing them */
+	private boolean strictOperators;
+
+	/** snapshot of the interpreter listeners, taken at every step */
+	private InterpreterListener[] listeners = NO_LISTENERS;
+
+	/** listeners are notified of every n-th event (see {@link EngineProperties#LISTENER_SAMPLING}) */
+	private int listenerSampling = 1;
+
+	/** number of node evaluations started and finished, and rule calls, if listeners are sampling */
+	private int beforeNodeEvents = 0;
+	private int afterNodeEvents = 0;
+	private int ruleCallEvents = 0;
+
+	/** the rule calls of the call stack that the listeners are notified of (indexed by depth) */
+	private final BitSet notifiedRuleCalls = new BitSet();
+
+	private static final InterpreterListener[] NO_LISTENERS = new InterpreterListener[0];
+
+	/** pools of copies of the bodies of the rules called by this interpreter, if rule bodies are shared */
+	private final Map<RuleElement, RuleTemplate> ruleTemplates = new HashMap<RuleElement, RuleTemplate>();
+
+	/** reusable copies of rule bodies that are being evaluated */
+	private final Map<ASTNode, RuleBody> bodiesInUse = new IdentityHashMap<ASTNode, RuleBody>();
+
+	/** references to rule parameters in the reusable copies of rule bodies */
+	private final Map<ASTNode, ParameterReference> parameterReferences = new IdentityHashMap<ASTNode, ParameterReference>();
+
+	/** copies of the arguments being evaluated for references to rule parameters */
+	private final Map<ASTNode, ASTNode> argumentCopies = new IdentityHashMap<ASTNode, ASTNode>();
 
 	/**
 	 * Creates a new interpreter with a link to the given
@@ -97,12 +150,61 @@ public class InterpreterImp implements Interpreter {
 	public InterpreterImp(ControlAPI capi) {
 		((ch.qos.logback.classic.Logger)logger).setLevel(ch.qos.logback.classic.Level.ERROR);	// added this line to temporarily turn off the logger
 		this.capi = capi;
-		this.envMap = new HashMap<String, Stack<Element>>();
+		this.env = new Environment();
 		this.storage = capi.getStorage();
+		this.slots = storage.getFunctionSlots();
+		final Interpreter main = capi.getInterpreter();
+		if (main instanceof InterpreterImp)
+			this.variableSlots = ((InterpreterImp)main).variableSlots;
+		else
+			this.variableSlots = new FunctionSlots();
 		this.workCopy = new HashMap<ASTNode,Stack<ASTNode>>();
+		this.sharedRuleBodies = isSharedRuleCallMode();
+		this.compiledEvaluation = isCompiledEvaluationMode();
+		this.strictOperators = isStrictOperatorMode();
+		refreshListeners();
 		interpreters.set(this);
 	}
 	
+	/*
+	 * Returns true if the rule call mode of the engine is 'shared'.
+	 */
+	private boolean isSharedRuleCallMode() {
+		return EngineProperties.RULE_CALL_SHARED.equals(
+				capi.getProperty(EngineProperties.RULE_CALL_MODE, EngineProperties.RULE_CALL_COPY));
+	}
+	
+	/*
+	 * Returns true if the evaluation mode of the engine is 'compiled'.
+	 */
+	private boolean isCompiledEvaluationMode() {
+		return EngineProperties.EVALUATION_COMPILED.equals(
+				capi.getProperty(EngineProperties.EVALUATION_MODE, EngineProperties.EVALUATION_STEPPING));
+	}
+	
+	/*
+	 * Returns true if operators are always evaluated by all the plugins implementing them.
+	 */
+	private boolean isStrictOperatorMode() {
+		return EngineProperties.YES.equals(
+				capi.getProperty(EngineProperties.STRICT_OPERATORS, EngineProperties.NO));
+	}
+	
+	/*
+	 * Takes a snapshot of the interpreter listeners of the engine and of
+	 * the sampling rate, which are then used until the next step.
+	 */
+	private void refreshListeners() {
+		final List<InterpreterListener> list = capi.getInterpreterListeners();
+		listeners = (list == null || list.isEmpty()) ? NO_LISTENERS : list.toArray(new InterpreterListener[list.size()]);
+		try {
+			listenerSampling = Math.max(1, Integer.parseInt(capi.getProperty(EngineProperties.LISTENER_SAMPLING, "1")));
+		} catch (NumberFormatException e) {
+			logger.warn("Invalid value for property {}; listeners are notified of every event.", EngineProperties.LISTENER_SAMPLING);
+			listenerSampling = 1;
+		}
+	}
+	
 	public Interpreter getInterpreterInstance() {
 		Interpreter result = interpreters.get();
 		if (result == null)
@@ -110,8 +212,22 @@ public class InterpreterImp implements Interpreter {
 		else 
 			return result;
 	}
+	
+	public StateOverlay getStateOverlay() {
+		return stateOverlay;
+	}
     
 	public void executeTree() throws InterpreterException {
+		if (compiledEvaluation && !pos.isEvaluated())
+			evaluate(pos);
+		else
+			stepTree();
+	}
+
+	/*
+	 * Performs one step of the interpretation of the tree at 'pos'.
+	 */
+	private void stepTree() throws InterpreterException {
 	
 		// !!! IMPORTANT !!!
 		// 'pos' should not be changed by other methods that are called
@@ -123,22 +239,20 @@ public class InterpreterImp implements Interpreter {
 			// notification for observers (i.e. debugger)
 			notifyListenersBeforeNodeEvaluation(pos);
 			
-			final String pName = pos.getPluginName();
-			
 			if (logger.isDebugEnabled()) {
 				logger.debug("Interpreting node {} @ {}.", pos.toString(), pos.getContext(capi.getParser(), capi.getSpec()));
 			}
 			
-			if (pName != null && !pName.equals(Kernel.PLUGIN_NAME)) {
-				logger.debug("Using plugin {}.", pName);
-				Plugin p = capi.getPlugin(pName);
-				if (p instanceof InterpreterPlugin){
-					pos = ((InterpreterPlugin)p).interpret(this, pos);
-				} else {
-					throw new InterpreterException("Pluging '" + p.getName() + "' is not an interpreter plugin.");
-				}
+			final ParameterReference ref = parameterReferences.isEmpty() ? null : parameterReferences.get(pos);
+			if (ref != null) {
+				pos = parameterReference(ref, pos);
 			} else {
-				pos = kernelInterpreter(pos);
+				final InterpreterPlugin p = getInterpreterPlugin(pos);
+				if (p != null) {
+					logger.debug("Using plugin {}.", pos.getPluginName());
+					pos = p.interpret(this, pos);
+				} else 
+					pos = kernelInterpreter(pos);
 			}
 
 			// TODO Deviating from the spec (needs to be handled properly)
@@ -160,13 +274,119 @@ public class InterpreterImp implements Interpreter {
 		}
 	}
 
+	public void evaluate(ASTNode node) throws InterpreterException {
+		if (node.isEvaluated())
+			return;
+		
+		notifyListenersBeforeNodeEvaluation(node);
+		
+		final ParameterReference ref = parameterReferences.isEmpty() ? null : parameterReferences.get(node);
+		if (ref != null) 
+			evaluateParameterReference(ref, node);
+		else {
+			NodeEvaluator evaluator = node.getEvaluator();
+			if (evaluator == null) {
+				evaluator = Evaluators.compile(this, node);
+				node.setEvaluator(evaluator);
+			}
+			evaluator.evaluate(this, node);
+		}
+		
+		if (node.isEvaluated() && node.getUpdates() == null)
+			node.setNode(node.getLocation(), UpdateMultiset.EMPTY, node.getValue());
+		
+		if (node.isEvaluated())
+			notifyListenersAfterNodeEvaluation(node);
+	}
+
+	/**
+	 * Returns the interpreter plugin of the given node, or <code>null</code>
+	 * if it is a node of the kernel. The plugin is looked up once and 
+	 * is then cached on the node (and its copies).
+	 * 
+	 * @throws InterpreterException if the plugin of the node is not an interpreter plugin
+	 */
+	InterpreterPlugin getInterpreterPlugin(ASTNode node) throws InterpreterException {
+		if (node.isPluginResolved())
+			return node.getInterpreterPlugin();
+		
+		InterpreterPlugin result = null;
+		final String pName = node.getPluginName();
+		if (pName != null && !pName.equals(Kernel.PLUGIN_NAME)) {
+			final Plugin p = capi.getPlugin(pName);
+			if (p instanceof InterpreterPlugin)
+				result = (InterpreterPlugin)p;
+			else
+				throw new InterpreterException("Pluging '" + p.getName() + "' is not an interpreter plugin.");
+		}
+		node.setInterpreterPlugin(result);
+		return result;
+	}
+
+	/**
+	 * Interprets the tree step by step, starting at <code>from</code>,
+	 * until the interpretation gets back to <code>node</code>. 
+	 * This is used by the compiled evaluation mode when an interpreter 
+	 * rule continues the interpretation at a node that is already evaluated.
+	 */
+	void stepUntil(ASTNode from, ASTNode node) throws InterpreterException {
+		final ASTNode oldPos = pos;
+		pos = from;
+		try {
+			while (pos != node && !isExecutionComplete() && !capi.hasErrorOccurred())
+				stepTree();
+		} finally {
+			pos = oldPos;
+		}
+	}
+
+	/**
+	 * Applies the kernel interpreter rules to the given node
+	 * and returns the new value of <i>pos</i>.
+	 */
+	ASTNode kernelStep(ASTNode node) throws InterpreterException {
+		return kernelInterpreter(node);
+	}
+
+	/**
+	 * Returns <code>true</code> if an error has occurred in the engine.
+	 */
+	boolean hasErrorOccurred() {
+		return capi.hasErrorOccurred();
+	}
+
+	/**
+	 * Returns the abstract storage of the engine.
+	 */
+	AbstractStorage getStorage() {
+		return storage;
+	}
+
+	/**
+	 * Returns the slots of the names of environment variables, which 
+	 * are shared by all the interpreters of the engine.
+	 */
+	FunctionSlots getVariableSlots() {
+		return variableSlots;
+	}
+
+	/**
+	 * Reports an error in the evaluation of the given node to the engine.
+	 */
+	void error(String msg, ASTNode node) {
+		capi.error(msg, node, this);
+	}
+
 	/**
 	 * Notifies the listeners before a node is being evaluated.
 	 * 
 	 * @param pos the node being evaluated
 	 */
 	private void notifyListenersAfterNodeEvaluation(ASTNode pos) {
-		for (InterpreterListener listener : capi.getInterpreterListeners())
+		if (listeners.length == 0 
+				|| (listenerSampling > 1 && ++afterNodeEvents % listenerSampling != 0))
+			return;
+		for (InterpreterListener listener : listeners)
 			listener.afterNodeEvaluation(pos);
 	}
 
@@ -176,7 +396,10 @@ public class InterpreterImp implements Interpreter {
 	 * @param pos the node being evaluated
 	 */
 	private void notifyListenersBeforeNodeEvaluation(ASTNode pos) {
-		for (InterpreterListener listener : capi.getInterpreterListeners())
+		if (listeners.length == 0 
+				|| (listenerSampling > 1 && ++beforeNodeEvents % listenerSampling != 0))
+			return;
+		for (InterpreterListener listener : listeners)
 			listener.beforeNodeEvaluation(pos);
 	}
 
@@ -253,21 +476,15 @@ public class InterpreterImp implements Interpreter {
 	
 	@Override
 	public Map<String, Element> getEnvVars() {
-		Map<String, Element> envVars = new HashMap<String, Element>();
-		for (Entry<String, Stack<Element>> envVar : this.envMap.entrySet()) {
-			Stack<Element> stack = envVar.getValue();
-			if (!stack.isEmpty())
-				envVars.put(envVar.getKey(), stack.peek());
-		}
-		return envVars;
+		return env.toMap();
 	}
 
 	public Element getEnv(String token) {
-		Stack<Element> stack = envMap.get(token);
-		if (stack == null || stack.size() == 0) 
-			return null;
-		else
-			return stack.peek();
+		return env.get(variableSlots.lookup(token));
+	}
+
+	public Element getEnv(int slot) {
+		return env.get(slot);
 	}
 
 	/*
@@ -282,23 +499,11 @@ public class InterpreterImp implements Interpreter {
 	
 
 	public void addEnv(String name, Element value) {
-		Stack<Element> stack = envMap.get(name);
-		if (stack == null) {
-			// if this is the first time
-			// setting a value for this variable,
-			// create the stack
-			stack = new Stack<Element>();
-			envMap.put(name, stack);
-		}
-		stack.push(value);
+		env.push(variableSlots.slotOf(name), name, value);
 	}
 
 	public void removeEnv(String name) {
-		Stack<Element> stack = envMap.get(name);
-		if (stack == null || stack.size() <= 0) 
-			throw new IllegalStateException("Removing an undefined environment variable.");
-
-		stack.pop();
+		env.pop(variableSlots.lookup(name));
 	}
 	
 	/**
@@ -325,11 +530,11 @@ public class InterpreterImp implements Interpreter {
 	 */
 	private ASTNode interpretExpressions(ASTNode pos) throws InterpreterException {
 		final AbstractStorage storage = capi.getStorage();
-		final String gClass = pos.getGrammarClass();
+		final int gClass = pos.getGrammarClassCode();
 		String x = pos.getToken();
 		
 		// If the current node is a function/rule term
-		if (gClass.equals(ASTNode.FUNCTION_RULE_CLASS)) {
+		if (gClass == ASTNode.FUNCTION_RULE_CLASS_CODE) {
 			if (pos instanceof FunctionRuleTermNode) {
 				FunctionRuleTermNode frNode = (FunctionRuleTermNode)pos;
 				
@@ -337,19 +542,21 @@ public class InterpreterImp implements Interpreter {
 				if (frNode.hasName()) {
 	
 					x = frNode.getName();
+					final int slot = frNode.getNameSlot(slots);
 					
 					// If the current node is of the form 'x' with no arguments
 					if (!frNode.hasArguments()) {
 						
 						// If we have a local value for that...
-						if (getEnv(x) != null)
-							pos.setNode(null, null, getEnv(x));
+						final Element local = env.get(frNode.getVariableSlot(variableSlots));
+						if (local != null)
+							pos.setNode(null, null, local);
 						else {
 							// If this 'x' refers to a function in the state...
-							final FunctionElement f = storage.getFunction(x);
+							final FunctionElement f = storage.getFunction(slot);
 //							if (storage.isFunctionName(x)) {
 							if (f != null) {
-								final Location l = new Location(x, ElementList.NO_ARGUMENT, f.isModifiable());
+								final Location l = storage.internLocation(new Location(x, ElementList.NO_ARGUMENT, f.isModifiable(), slots, slot));
 								try {
 									pos.setNode(l, null, storage.getValue(l));
 								} catch (InvalidLocationException e) {
@@ -365,7 +572,7 @@ public class InterpreterImp implements Interpreter {
 					} else { // if current node is 'x(...)' (with arguments)
 						
 						// If this 'x' refers to a function in the state...
-						final FunctionElement f = storage.getFunction(x);
+						final FunctionElement f = storage.getFunction(slot);
 						if (f != null) {
 							final List<ASTNode> args = frNode.getArguments();
 							// look for the parameter that needs to be evaluated
@@ -373,7 +580,7 @@ public class InterpreterImp implements Interpreter {
 							if (toBeEvaluated == null) {
 								// if all nodes are evaluated...
 								final ElementList vList = EngineTools.getValueList(args);
-								final Location l = new Location(x, vList, f.isModifiable());
+								final Location l = storage.internLocation(new Location(x, vList, f.isModifiable(), slots, slot));
 								try {
 									pos.setNode(l, null, storage.getValue(l));
 								} catch (InvalidLocationException e) {
@@ -403,15 +610,12 @@ public class InterpreterImp implements Interpreter {
 		} //endif of the current node being a function/rule term
 		
 		// if class is an operator then
-		else if (gClass.equals(ASTNode.UNARY_OPERATOR_CLASS) || 
-                 gClass.equals(ASTNode.BINARY_OPERATOR_CLASS) ||
-                 gClass.equals(ASTNode.TERNARY_OPERATOR_CLASS) ||
-                 gClass.equals(ASTNode.INDEX_OPERATOR_CLASS))
+		else if (pos.isOperator())
 		{
 			pos = interpretOperators(pos);
 		}
 		// else another general type of expression
-		else if (gClass.equals(ASTNode.EXPRESSION_CLASS))
+		else if (gClass == ASTNode.EXPRESSION_CLASS_CODE)
 		{
 			// for 'ruleelement' expression
 			if (pos.getGrammarRule().equals(Kernel.GR_RULEELEMENT_TERM))
@@ -464,7 +668,7 @@ public class InterpreterImp implements Interpreter {
 				if (pos instanceof EnclosedTermNode) {
 					final ASTNode innerNode = pos.getFirst();
 					if (innerNode.isEvaluated())
-						pos.setNode(null, null, innerNode.value);
+						pos.setNode(null, null, innerNode.getValue());
 					else
 						pos = innerNode;
 				}
@@ -605,6 +809,23 @@ public class InterpreterImp implements Interpreter {
 		// else no unevaluated children, so we can commence operator interpretation
 		else
 		{
+			// first try the plugin that evaluated this node last time
+			final OperatorCache oprCache = pos.getOperatorCache();
+			if (oprCache != null && !strictOperators) {
+				final OperatorProvider cachedImp = oprCache.lookup(pos);
+				if (cachedImp != null) {
+					try {
+						final Element result = cachedImp.interpretOperatorNode(this, pos);
+						if (result != null && !result.equals(Element.UNDEF)) {
+							pos.setNode(null, null, result);
+							return pos;
+						}
+					} catch (InterpreterException e) {
+						// all the implementations will be tried below
+					}
+				}
+			}
+			
 			if (oprReg == null) 
 				oprReg = OperatorRegistry.getInstance(capi);
 			
@@ -663,8 +884,18 @@ public class InterpreterImp implements Interpreter {
 				setResultElements.remove(Element.UNDEF);
 			
 			// one result so return it
-			if (setResultElements.size() == 1)
-				pos.setNode(null,null,(Element)setResultElements.toArray()[0]);
+			if (setResultElements.size() == 1) {
+				final Element result = setResultElements.iterator().next();
+				pos.setNode(null,null,result);
+				
+				// remember the plugin that produced the result
+				if (oprCache != null && !strictOperators && !result.equals(Element.UNDEF)) 
+					for (Entry<String, Element> impResult: impResults.entrySet())
+						if (impResult.getValue().equals(result)) {
+							oprCache.update(pos, (OperatorProvider)capi.getPlugin(impResult.getKey()));
+							break;
+						}
+			}
 			// multiple results so error
 			else if (setResultElements.size() > 1)
 			{
@@ -848,10 +1079,14 @@ public class InterpreterImp implements Interpreter {
 				capi.error("Number of arguments does not match the number of parameters.", pos, this);
 				return pos;
 			}
-			wCopy = copyTreeSub(rule.getBody(), rule.getParam(), args);
+			if (sharedRuleBodies)
+				wCopy = acquireRuleBody(rule, args);
+			if (wCopy == null)
+				wCopy = copyTreeSub(rule.getBody(), rule.getParam(), args);
 			wCopyStack.push(wCopy);
 			wCopy.setParent(pos);
-			notifyOnRuleCall(rule, args, pos, self);
+			if (listeners.length > 0)
+				notifyOnRuleCall(rule, args, pos, self);
 			return wCopy; // as new value of 'pos'
 		} else { // if there already is a work copy
 			Element value = wCopy.getValue();
@@ -859,15 +1094,17 @@ public class InterpreterImp implements Interpreter {
 				value = Element.UNDEF;
 			pos.setNode(null, wCopy.getUpdates(), value);
 		
-			// making it easier for the garbage collector 
-			// to throw this copy out! :)
-			wCopy.dipose();
+			if (!releaseRuleBody(wCopy))
+				// making it easier for the garbage collector 
+				// to throw this copy out! :)
+				wCopy.dipose();
 			
 			wCopyStack.pop();
 			if (wCopyStack.isEmpty())
 				workCopy.remove(pos);
 			ruleCallStack.pop();
-			notifyOnRuleExit(rule, args, pos, self);
+			if (listeners.length > 0)
+				notifyOnRuleExit(rule, args, pos, self);
 			return pos;
 		}
 	}
@@ -880,7 +1117,10 @@ public class InterpreterImp implements Interpreter {
 	 * @param agent the executing agent
 	 */
 	private void notifyOnRuleExit(RuleElement rule, List<ASTNode> args, ASTNode pos, Element agent) {
-		for (InterpreterListener listener : capi.getInterpreterListeners())
+		// the exit is notified if the call was (the call is already popped)
+		if (!notifiedRuleCalls.get(ruleCallStack.size()))
+			return;
+		for (InterpreterListener listener : listeners)
 			listener.onRuleExit(rule, args, pos, agent);
 	}
 	
@@ -892,7 +1132,11 @@ public class InterpreterImp implements Interpreter {
 	 * @param agent the executing agent
 	 */
 	private void notifyOnRuleCall(RuleElement rule, List<ASTNode> args, ASTNode pos, Element agent) {
-		for (InterpreterListener listener : capi.getInterpreterListeners())
+		final boolean sampled = listenerSampling == 1 || ++ruleCallEvents % listenerSampling == 0;
+		notifiedRuleCalls.set(ruleCallStack.size() - 1, sampled);
+		if (!sampled)
+			return;
+		for (InterpreterListener listener : listeners)
 			listener.onRuleCall(rule, args, pos, agent);
 	}
 
@@ -928,10 +1172,10 @@ public class InterpreterImp implements Interpreter {
 			// if this node belongs to the abstract syntax tree
 			// and it is a FunctionRuleTerm and its child is a parameter of the rule
 			if (a instanceof ASTNode 
-					&& ast.getGrammarClass().equals(ASTNode.FUNCTION_RULE_CLASS) 
-					&& (ast.getFirst().getGrammarClass().equals(ASTNode.ID_CLASS) 
+					&& ast.getGrammarClassCode() == ASTNode.FUNCTION_RULE_CLASS_CODE 
+					&& (ast.getFirst().getGrammarClassCode() == ASTNode.ID_CLASS_CODE 
 							&& (i = params.indexOf(ast.getFirst().getToken())) >= 0)) {
-				result = copyTree(args.get(i));
+				result = copyArgument(args.get(i));
 				result.setParent(parent);
 				//result.setNext(copyTreeSub(a.getNext(), params, args, result.getParent()));
 			} else { 
@@ -950,6 +1194,148 @@ public class InterpreterImp implements Interpreter {
 	public Node copyTree(Node a) {
 		return a.cloneTree();
 	}
+
+	/*
+	 * Returns a copy of the given argument in which every reference to
+	 * a rule parameter is substituted by a copy of the argument bound
+	 * to the parameter.
+	 */
+	private Node copyArgument(Node a) {
+		if (parameterReferences.isEmpty())
+			return copyTree(a);
+		final ParameterReference ref = parameterReferences.get(a);
+		if (ref != null)
+			return copyArgument(ref.body.args.get(ref.index));
+		final Node result = a.duplicate();
+		for (NameNodeTuple child: a.getChildNodesWithNames())
+			result.addChild(child.name, copyArgument(child.node));
+		return result;
+	}
+
+	/*
+	 * Returns a reusable copy of the body of the given rule, with the
+	 * parameters of the rule bound to the given arguments. Returns
+	 * null if the body of the rule cannot be shared between calls. 
+	 */
+	private ASTNode acquireRuleBody(RuleElement rule, List<ASTNode> args) {
+		RuleTemplate template = ruleTemplates.get(rule);
+		if (template == null) {
+			template = new RuleTemplate(rule, isShareable(rule));
+			ruleTemplates.put(rule, template);
+		}
+		if (!template.shareable)
+			return null;
+		
+		final RuleBody body;
+		if (template.freeBodies.isEmpty()) {
+			body = new RuleBody(template, (ASTNode)copyTree(rule.getBody()));
+			registerParameters(body, body.root);
+		} else
+			body = template.freeBodies.remove(template.freeBodies.size() - 1);
+		body.args = args;
+		bodiesInUse.put(body.root, body);
+		return body.root;
+	}
+
+	/*
+	 * Clears the given copy of a rule body and keeps it for later calls 
+	 * to the rule. Returns false if the given tree is not a reusable copy
+	 * of a rule body.
+	 */
+	private boolean releaseRuleBody(ASTNode root) {
+		final RuleBody body = bodiesInUse.remove(root);
+		if (body == null)
+			return false;
+		body.args = null;
+		root.setParent(null);
+		clearTree(root);
+		body.template.freeBodies.add(body);
+		return true;
+	}
+
+	/*
+	 * Evaluates a reference to a rule parameter by evaluating a copy of
+	 * the argument bound to the parameter in its place (call by name).
+	 */
+	private ASTNode parameterReference(ParameterReference ref, ASTNode pos) {
+		final ASTNode argCopy = argumentCopies.remove(pos);
+		if (argCopy == null) {
+			final ASTNode newCopy = (ASTNode)copyArgument(ref.body.args.get(ref.index));
+			newCopy.setParent(pos);
+			argumentCopies.put(pos, newCopy);
+			return newCopy;
+		} else {
+			pos.setNode(argCopy.getLocation(), argCopy.getUpdates(), argCopy.getValue());
+			argCopy.dipose();
+			return pos;
+		}
+	}
+
+	/*
+	 * Evaluates a reference to a rule parameter at once (see 
+	 * parameterReference(ParameterReference, ASTNode)).
+	 */
+	private void evaluateParameterReference(ParameterReference ref, ASTNode node) throws InterpreterException {
+		final ASTNode argCopy = (ASTNode)copyArgument(ref.body.args.get(ref.index));
+		argCopy.setParent(node);
+		evaluate(argCopy);
+		if (argCopy.isEvaluated())
+			node.setNode(argCopy.getLocation(), argCopy.getUpdates(), argCopy.getValue());
+		argCopy.dipose();
+	}
+
+	/*
+	 * Records the references to the parameters of the rule in 
+	 * the given subtree of a reusable copy of the rule body. 
+	 */
+	private void registerParameters(RuleBody body, ASTNode node) {
+		final int i = parameterIndex(node, body.template.rule.getParam());
+		if (i >= 0)
+			parameterReferences.put(node, new ParameterReference(body, i));
+		else
+			for (ASTNode child: node.getAbstractChildNodes())
+				registerParameters(body, child);
+	}
+
+	/*
+	 * If the given node is a reference to one of the given parameters,
+	 * returns the index of the parameter; otherwise, returns -1. 
+	 */
+	private int parameterIndex(ASTNode node, List<String> params) {
+		if (params == null || params.isEmpty() || node.getGrammarClassCode() != ASTNode.FUNCTION_RULE_CLASS_CODE)
+			return -1;
+		final ASTNode first = node.getFirst();
+		if (first == null || first.getGrammarClassCode() != ASTNode.ID_CLASS_CODE)
+			return -1;
+		return params.indexOf(first.getToken());
+	}
+
+	/*
+	 * Returns true if the body of the given rule can be shared between
+	 * calls to the rule. This is not the case if the body has nodes of a
+	 * plugin that changes its nodes, or if a rule parameter is used in a
+	 * place where its name is read without evaluating it (e.g., as the
+	 * name of a called rule).
+	 */
+	private boolean isShareable(RuleElement rule) {
+		return parameterIndex(rule.getBody(), rule.getParam()) < 0
+				&& isShareable(rule.getBody(), rule.getParam());
+	}
+
+	private boolean isShareable(ASTNode node, List<String> params) {
+		final String pName = node.getPluginName();
+		if (pName != null && !pName.equals(Kernel.PLUGIN_NAME) 
+				&& capi.getPlugin(pName) instanceof NodeMutatingPlugin)
+			return false;
+		for (ASTNode child: node.getAbstractChildNodes()) {
+			if (parameterIndex(child, params) >= 0) {
+				if (node instanceof MacroCallRuleNode)
+					return false;
+			} else if (!isShareable(child, params))
+				return false;
+		}
+		return true;
+	}
 	
 	/* The following methods are removed/changed by Roozbeh Farahbod */ 
 //
@@ -1040,11 +1426,25 @@ public class InterpreterImp implements Interpreter {
 	 * @see org.coreasm.engine.interpreter.Interpreter#clearTree(org.coreasm.engine.interpreter.ASTNode)
 	 */
 	public void clearTree(ASTNode root) {
-		if (root != null) {
-			root.setNode(null, null, null);
-			clearTree(root.getFirst());
-			clearTree(root.getNext());
+		if (root == null)
+			return;
+		
+		// a tree that is cleared by epochs is cleared by starting a new epoch
+		final EvaluationEpoch epoch = root.getEpoch();
+		if (epoch != null && epoch.root == root) {
+			epoch.advance();
+			return;
 		}
+		
+		for (ASTNode node = root; node != null; node = node.getNext()) {
+			node.setNode(null, null, null);
+			clearTree(node.getFirst());
+		}
+	}
+
+	public void prepareTreeForReuse(ASTNode root) {
+		if (root.getParent() == null && root.getEpoch() == null)
+			EvaluationEpoch.attach(root);
 	}
 	
 	public void prepareInitialState() {
@@ -1117,7 +1517,7 @@ public class InterpreterImp implements Interpreter {
 		// concurrent version of the Engine
 		// clearTree(pos);
 		// removing environment (temporary) values
-		envMap.clear();
+		env.clear();
 		notifyInitProgramExecution(self, (RuleElement)storage.getChosenProgram(self));
  	}
 
@@ -1128,7 +1528,7 @@ public class InterpreterImp implements Interpreter {
 	 * @param program the program that is being initialized
 	 */
 	private void notifyInitProgramExecution(Element agent, RuleElement program) {
-		for (InterpreterListener listener : capi.getInterpreterListeners())
+		for (InterpreterListener listener : listeners)
 			listener.initProgramExecution(agent, program);
 	}
 
@@ -1163,9 +1563,66 @@ public class InterpreterImp implements Interpreter {
 
 	public void cleanUp() {
 		interpreters.set(this);
+		// copies of rule bodies left in use by an interrupted evaluation
+		for (ASTNode root: new ArrayList<ASTNode>(bodiesInUse.keySet()))
+			releaseRuleBody(root);
+		argumentCopies.clear();
+		sharedRuleBodies = isSharedRuleCallMode();
+		compiledEvaluation = isCompiledEvaluationMode();
+		strictOperators = isStrictOperatorMode();
+		refreshListeners();
+		if (!sharedRuleBodies && !ruleTemplates.isEmpty()) {
+			ruleTemplates.clear();
+			parameterReferences.clear();
+		}
 		workCopy.clear();
-		envMap.clear();
+		env.clear();
 		ruleCallStack.clear();
+		// states left on the stack by an interrupted evaluation
+		while (!stateOverlay.isEmpty())
+			storage.popState();
 	}
 
+	/*
+	 * A rule called by this interpreter, with the copies
+	 * of its body that can be reused by later calls.
+	 */
+	private static final class RuleTemplate {
+		final RuleElement rule;
+		final boolean shareable;
+		final List<RuleBody> freeBodies = new ArrayList<RuleBody>();
+		
+		RuleTemplate(RuleElement rule, boolean shareable) {
+			this.rule = rule;
+			this.shareable = shareable;
+		}
+	}
+
+	/*
+	 * A reusable copy of a rule body and the arguments 
+	 * of the call that is evaluating it.
+	 */
+	private static final class RuleBody {
+		final RuleTemplate template;
+		final ASTNode root;
+		List<ASTNode> args;
+		
+		RuleBody(RuleTemplate template, ASTNode root) {
+			this.template = template;
+			this.root = root;
+		}
+	}
+
+	/*
+	 * A reference to the i'th parameter of a rule in a reusable copy of its body.
+	 */
+	private static final class ParameterReference {
+		final RuleBody body;
+		final int index;
+		
+		ParameterReference(RuleBody body, int index) {
+			this.body = body;
+			this.index = index;
+		}
+	}
 }
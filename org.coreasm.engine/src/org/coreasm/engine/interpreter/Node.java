@@ -14,6 +14,9 @@
 package org.coreasm.engine.interpreter;
 
 import java.io.Serializable;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -365,16 +368,20 @@ public class Node implements Serializable {
 	 * node is not duplicated nor are they copied (they will be <code>null</code>). 
 	 */
 	public final Node duplicate() {
-		Node node = null;
-		try {
-			Class<? extends Node> c = this.getClass();
-            node = (Node)c.getConstructor(c).newInstance(this);
-            node.id = this.id;
-        } catch (Exception e) {
-            throw new EngineError("Cannot duplicate node of (" + this.getClass().getName() + ").");
-        }
-        
-        return node;
+		Node node = copiers.get(this.getClass()).copy(this);
+		node.id = this.id;
+		return node;
+	}
+	
+	/**
+	 * Returns a new node of the same class as this node, created by
+	 * the copy constructor of the class. Every subclass that
+	 * declares a copy constructor should override this method to 
+	 * call it; for a node class that does not, {@link #duplicate()}
+	 * calls its public copy constructor through a cached method handle.
+	 */
+	protected Node copy() {
+		return new Node(this);
 	}
 	
 	/**
@@ -675,7 +682,51 @@ public class Node implements Serializable {
 		
 	}
 
-	
+	/*
+	 * Copies nodes of one class.
+	 */
+	private static abstract class Copier {
+		abstract Node copy(Node node);
+	}
+
+	/* copiers of node classes, looked up once per class */
+	private static final ClassValue<Copier> copiers = new ClassValue<Copier>() {
+		@Override
+		protected Copier computeValue(final Class<?> c) {
+			try {
+				c.getDeclaredMethod("copy");
+				return new Copier() {
+					Node copy(Node node) {
+						return node.copy();
+					}
+				};
+			} catch (NoSuchMethodException e) {
+				// falling back to the copy constructor
+			}
+			try {
+				final MethodHandle constructor = MethodHandles.publicLookup()
+						.findConstructor(c, MethodType.methodType(void.class, c))
+						.asType(MethodType.methodType(Node.class, Node.class));
+				return new Copier() {
+					Node copy(Node node) {
+						try {
+							return (Node)constructor.invokeExact(node);
+						} catch (RuntimeException e) {
+							throw e;
+						} catch (Throwable e) {
+							throw new EngineError("Cannot duplicate node of (" + c.getName() + ").");
+						}
+					}
+				};
+			} catch (Exception e) {
+				return new Copier() {
+					Node copy(Node node) {
+						throw new EngineError("Cannot duplicate node of (" + c.getName() + ").");
+					}
+				};
+			}
+		}
+	};
 }
 
 
@@ -0,0 +1,40 @@
+/*
+ * NodeEvaluator.java
+ *
+ * Copyright (C) 2013 Roozbeh Farahbod
+ *
+ * Licensed under the Academic Free License version 3.0
+ *   http://www.opensource.org/licenses/afl-3.0.php
+ *   http://www.coreasm.org/afl-3.0.php
+ *
+ */
+
+package org.coreasm.engine.interpreter;
+
+/**
+ * Evaluates nodes of one kind in the compiled evaluation mode of the
+ * interpreter. Every node of a parse tree is compiled once into an
+ * evaluator, which evaluates the node by evaluating the child nodes it
+ * needs through {@link Interpreter#evaluate(ASTNode)} and then setting
+ * the value, location, and updates of the node.
+ * <p>
+ * Evaluators are shared by the copies of a node and by all the
+ * threads of the simulation; hence, they must not keep any state
+ * of the evaluation of a node.
+ *
+ * @author  Roozbeh Farahbod
+ * @see org.coreasm.engine.EngineProperties#EVALUATION_COMPILED
+ * @see org.coreasm.engine.plugin.EvaluatorProvider
+ */
+public abstract class NodeEvaluator {
+
+	/**
+	 * Evaluates the given node. When this method returns, the
+	 * node is evaluated, unless an error has occurred.
+	 *
+	 * @param interpreter the interpreter evaluating the node
+	 * @param node the node being evaluated
+	 */
+	public abstract void evaluate(Interpreter interpreter, ASTNode node) throws InterpreterException;
+
+}
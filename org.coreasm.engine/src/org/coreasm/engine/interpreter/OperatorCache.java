@@ -0,0 +1,94 @@
+/*
+ * OperatorCache.java
+ *
+ * Copyright (C) 2013 Roozbeh Farahbod
+ *
+ * Licensed under the Academic Free License version 3.0
+ *   http://www.opensource.org/licenses/afl-3.0.php
+ *   http://www.coreasm.org/afl-3.0.php
+ *
+ */
+
+package org.coreasm.engine.interpreter;
+
+import org.coreasm.engine.absstorage.Element;
+import org.coreasm.engine.plugin.OperatorProvider;
+
+/**
+ * Inline cache of an operator node. It remembers the operator provider
+ * that produced the value of the node for the element classes of the
+ * operands last seen, so that the interpreter can ask only that provider
+ * as long as the operands are of the same classes.
+ * <p>
+ * The cache is shared by the copies of a node, and possibly by several
+ * threads; every update replaces the whole entry.
+ *
+ * @author  Roozbeh Farahbod
+ * @see org.coreasm.engine.EngineProperties#STRICT_OPERATORS
+ */
+final class OperatorCache {
+
+	private volatile Entry entry = null;
+
+	/**
+	 * Returns the provider that produced the value of the given node
+	 * for operands of the same classes as the current operands of the node;
+	 * <code>null</code> if there is no such provider.
+	 *
+	 * @param node an operator node with evaluated operands
+	 */
+	OperatorProvider lookup(ASTNode node) {
+		final Entry e = entry;
+		if (e == null)
+			return null;
+		final Class<?>[] types = e.operandTypes;
+		int i = 0;
+		for (ASTNode opr = node.getFirst(); opr != null; opr = opr.getNext()) {
+			final Element value = opr.getValue();
+			if (i == types.length || value == null || value.getClass() != types[i])
+				return null;
+			i++;
+		}
+		if (i == types.length)
+			return e.provider;
+		else
+			return null;
+	}
+
+	/**
+	 * Remembers that the given provider produced the value of the
+	 * given node for the current classes of its operands.
+	 *
+	 * @param node an operator node with evaluated operands
+	 * @param provider the provider of the value of the node
+	 */
+	void update(ASTNode node, OperatorProvider provider) {
+		int count = 0;
+		for (ASTNode opr = node.getFirst(); opr != null; opr = opr.getNext())
+			count++;
+		final Class<?>[] types = new Class<?>[count];
+		int i = 0;
+		for (ASTNode opr = node.getFirst(); opr != null; opr = opr.getNext()) {
+			final Element value = opr.getValue();
+			if (value == null) {
+				entry = null;
+				return;
+			}
+			types[i++] = value.getClass();
+		}
+		entry = new Entry(types, provider);
+	}
+
+	/*
+	 * The operand classes and the provider they were last seen with.
+	 */
+	private static final class Entry {
+		final Class<?>[] operandTypes;
+		final OperatorProvider provider;
+
+		Entry(Class<?>[] operandTypes, OperatorProvider provider) {
+			this.operandTypes = operandTypes;
+			this.provider = provider;
+		}
+	}
+}
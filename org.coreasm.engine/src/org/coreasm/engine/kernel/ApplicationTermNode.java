@@ -40,6 +40,11 @@ public class ApplicationTermNode extends ASTNode {
 	public ApplicationTermNode(ApplicationTermNode node) {
 		super(node);
 	}
+
+	@Override
+	protected ApplicationTermNode copy() {
+		return new ApplicationTermNode(this);
+	}
 	
 	public ApplicationTermNode(Node firstNode) {
 		super(Kernel.PLUGIN_NAME,
@@ -30,6 +30,11 @@ public class EnclosedTermNode extends ASTNode {
 	public EnclosedTermNode(EnclosedTermNode node) {
 		super(node);
 	}
+
+	@Override
+	protected EnclosedTermNode copy() {
+		return new EnclosedTermNode(this);
+	}
 	
 	public EnclosedTermNode(ScannerInfo info) {
 		super(
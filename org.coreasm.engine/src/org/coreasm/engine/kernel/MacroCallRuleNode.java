@@ -30,6 +30,11 @@ public class MacroCallRuleNode extends ASTNode {
 		super(node);
 	}
 
+	@Override
+	protected MacroCallRuleNode copy() {
+		return new MacroCallRuleNode(this);
+	}
+
 	public MacroCallRuleNode(ScannerInfo info) {
 		super(
 				Kernel.PLUGIN_NAME,
@@ -29,6 +29,11 @@ public class RuleOrFuncElementNode extends ASTNode {
 	public RuleOrFuncElementNode(RuleOrFuncElementNode node) {
 		super(node);
 	}
+
+	@Override
+	protected RuleOrFuncElementNode copy() {
+		return new RuleOrFuncElementNode(this);
+	}
 	
 	public RuleOrFuncElementNode(ScannerInfo info) {
 		super(
@@ -51,5 +51,10 @@ public class SkipRuleNode extends ASTNode {
 	public SkipRuleNode(SkipRuleNode node) {
 		super(node);
 	}
+
+	@Override
+	protected SkipRuleNode copy() {
+		return new SkipRuleNode(this);
+	}
 	
 }
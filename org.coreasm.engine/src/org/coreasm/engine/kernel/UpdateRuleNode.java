@@ -30,6 +30,11 @@ public class UpdateRuleNode extends ASTNode {
 	public UpdateRuleNode(UpdateRuleNode node) {
 		super(node);
 	}
+
+	@Override
+	protected UpdateRuleNode copy() {
+		return new UpdateRuleNode(this);
+	}
 	
 	public UpdateRuleNode(ScannerInfo info) {
 		super(null,
@@ -0,0 +1,39 @@
+/*
+ * EvaluatorProvider.java
+ *
+ * Copyright (C) 2013 Roozbeh Farahbod
+ *
+ * Licensed under the Academic Free License version 3.0
+ *   http://www.opensource.org/licenses/afl-3.0.php
+ *   http://www.coreasm.org/afl-3.0.php
+ *
+ */
+
+package org.coreasm.engine.plugin;
+
+import org.coreasm.engine.interpreter.ASTNode;
+import org.coreasm.engine.interpreter.NodeEvaluator;
+
+/**
+ * Interface for interpreter plugins that provide evaluators for their
+ * nodes in the compiled evaluation mode. Nodes for which no evaluator
+ * is provided, as well as all nodes of interpreter plugins that do not
+ * implement this interface, are evaluated through
+ * {@link InterpreterPlugin#interpret(org.coreasm.engine.interpreter.Interpreter, ASTNode)}.
+ *
+ * @author  Roozbeh Farahbod
+ * @see org.coreasm.engine.EngineProperties#EVALUATION_COMPILED
+ */
+public interface EvaluatorProvider {
+
+	/**
+	 * Returns an evaluator for the given node of this plugin, or
+	 * <code>null</code> if the node should be evaluated through the
+	 * interpreter rule of this plugin. The returned evaluator may
+	 * be shared by all the nodes of the same kind.
+	 *
+	 * @param node a node of this plugin
+	 */
+	public NodeEvaluator getEvaluator(ASTNode node);
+
+}
@@ -0,0 +1,36 @@
+/*
+ * NodeMutatingPlugin.java
+ *
+ * Copyright (C) 2013 Roozbeh Farahbod
+ *
+ * Licensed under the Academic Free License version 3.0
+ *   http://www.opensource.org/licenses/afl-3.0.php
+ *   http://www.coreasm.org/afl-3.0.php
+ *
+ */
+
+package org.coreasm.engine.plugin;
+
+/**
+ * Marks interpreter plugins that change the structure of the nodes
+ * they interpret (e.g., by adding or replacing child nodes), or that
+ * keep state in their nodes which is not cleared by
+ * {@link org.coreasm.engine.interpreter.Interpreter#clearTree(org.coreasm.engine.interpreter.ASTNode)}.
+ * <p>
+ * When rule bodies are shared between rule calls (see
+ * {@link org.coreasm.engine.EngineProperties#RULE_CALL_SHARED}), the
+ * body of a rule that has a node of such a plugin is still copied for
+ * every call to the rule.
+ * <p>
+ * Plugins that keep the state of the evaluation of a node outside the
+ * node (e.g., in a map keyed by the node, as the forall rule does) need
+ * not implement this interface, as long as they reset that state whenever
+ * they start to evaluate the node afresh: a shared copy of a rule body is
+ * cleared and evaluated again by later calls, also after an evaluation of
+ * it has been interrupted by an error.
+ *
+ * @author  Roozbeh Farahbod
+ */
+public interface NodeMutatingPlugin {
+
+}
@@ -0,0 +1,26 @@
+/*
+ * PartitionableAggregator.java
+ *
+ * Copyright (C) 2013 Roozbeh Farahbod
+ *
+ * Licensed under the Academic Free License version 3.0
+ *   http://www.opensource.org/licenses/afl-3.0.php
+ *   http://www.coreasm.org/afl-3.0.php
+ *
+ */
+
+package org.coreasm.engine.plugin;
+
+/**
+ * Marks aggregator plug-ins that aggregate the updates of every location 
+ * independently of the updates of other locations and are safe to be 
+ * called concurrently. If all the aggregators of a specification implement 
+ * this interface, the engine may partition the update instructions by 
+ * location and aggregate the partitions in parallel.
+ *  
+ * @author  Roozbeh Farahbod
+ * 
+ */
+public interface PartitionableAggregator extends Aggregator {
+
+}
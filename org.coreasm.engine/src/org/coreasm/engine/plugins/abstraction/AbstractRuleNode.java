@@ -42,6 +42,11 @@ public class AbstractRuleNode extends ASTNode {
 		super(node);
 	}
 
+	@Override
+	protected AbstractRuleNode copy() {
+		return new AbstractRuleNode(this);
+	}
+
 	/**
 	 * @return the message part of this node
 	 */
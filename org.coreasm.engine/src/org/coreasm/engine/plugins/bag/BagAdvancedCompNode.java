@@ -13,7 +13,7 @@
  
 package org.coreasm.engine.plugins.bag;
 
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import org.coreasm.engine.EngineException;
@@ -48,6 +48,11 @@ public class BagAdvancedCompNode extends ASTNode {
 	public BagAdvancedCompNode(BagAdvancedCompNode node) {
 		super(node);
 	}
+
+	@Override
+	protected BagAdvancedCompNode copy() {
+		return new BagAdvancedCompNode(this);
+	}
 	
 	/**
 	 * @return the first occurrence of the specifier variable
@@ -63,11 +68,14 @@ public class BagAdvancedCompNode extends ASTNode {
 		return this.getFirst().getNext();
 	}
 	
+	/**
+	 * @return the domains of the constrainer variables, in the order of their declaration
+	 */
 	public Map<String,ASTNode> getVarBindings() throws EngineException {
 		if (varMapCache == null) {
 			ASTNode curVar = this.getFirst().getNext().getNext();
 			ASTNode curDomain = curVar.getNext();
-			varMapCache = new HashMap<String,ASTNode>();
+			varMapCache = new LinkedHashMap<String,ASTNode>();
 			
 			while (curDomain != null) {
 				if (varMapCache.containsKey(curVar)) 
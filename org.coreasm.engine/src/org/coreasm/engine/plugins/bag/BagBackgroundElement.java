@@ -13,9 +13,17 @@
  
 package org.coreasm.engine.plugins.bag;
 
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
 import org.coreasm.engine.absstorage.BackgroundElement;
 import org.coreasm.engine.absstorage.BooleanElement;
 import org.coreasm.engine.absstorage.Element;
+import org.coreasm.engine.absstorage.ElementInput;
+import org.coreasm.engine.absstorage.ElementOutput;
+import org.coreasm.engine.plugins.number.NumberElement;
 
 /** 
  * Background of bags.
@@ -63,4 +71,25 @@ public class BagBackgroundElement extends BackgroundElement {
 		return (e instanceof BagElement)?BooleanElement.TRUE:BooleanElement.FALSE;
 	}
 
+	@Override
+	public void writeValue(Element value, ElementOutput out) throws IOException {
+		Map<Element, Element> map = ((BagElement)value).getMap();
+		out.writeInt(map.size());
+		for (Entry<Element, Element> e: map.entrySet()) {
+			out.writeElement(e.getKey());
+			out.writeInt((int)((NumberElement)e.getValue()).getValue());
+		}
+	}
+
+	@Override
+	public Element readValue(ElementInput in) throws IOException {
+		int size = in.readInt();
+		Map<Element, Integer> map = new HashMap<Element, Integer>();
+		for (int i = 0; i < size; i++) {
+			Element e = in.readElement();
+			map.put(e, in.readInt());
+		}
+		return new BagElement(map);
+	}
+
 }
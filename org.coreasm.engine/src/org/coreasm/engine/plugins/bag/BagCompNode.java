@@ -44,6 +44,11 @@ public class BagCompNode extends ASTNode {
 		super(node);
 	}
 
+	@Override
+	protected BagCompNode copy() {
+		return new BagCompNode(this);
+	}
+
 	/**
 	 * @return the first occurrence of the specifier variable
 	 */
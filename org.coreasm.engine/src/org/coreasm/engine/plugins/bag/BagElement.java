@@ -32,6 +32,7 @@ import org.coreasm.engine.plugins.bag.BagUpdateElement.BagUpdateType;
 import org.coreasm.engine.plugins.collection.AbstractBagElement;
 import org.coreasm.engine.plugins.collection.ModifiableCollection;
 import org.coreasm.engine.plugins.number.NumberElement;
+import org.coreasm.util.PersistentHashMap;
 
 
 /** 
@@ -42,29 +43,67 @@ import org.coreasm.engine.plugins.number.NumberElement;
  */
 public class BagElement extends AbstractBagElement implements ModifiableCollection {
 
-	protected final Map<Element,Integer> members;
+	protected final PersistentHashMap<Element,Integer> members;
+	
+	/** number of members of this bag, counting repetitions */
+	private final int size;
 	
 	// It is a list to improve performance
 	protected List<Element> enumerationCachse = null;
 	
 	public BagElement() {
-		members = new HashMap<Element,Integer>();
+		this(PersistentHashMap.<Element,Integer>empty(), 0);
 	}
 	
 	public BagElement(Collection<? extends Element> newMembers) {
-		this();
+		PersistentHashMap<Element,Integer> m = PersistentHashMap.empty();
 		for (Element e: newMembers) 
-			this.addMember(e);
+			m = addMember(m, e, 1);
+		this.members = m;
+		this.size = newMembers.size();
 	}
 	
 	public BagElement(Map<? extends Element, Integer> map) {
-		this();
-		for (Entry<? extends Element, Integer> e: map.entrySet()) 
-			this.addMember(e.getKey(), e.getValue());
+		PersistentHashMap<Element,Integer> m = PersistentHashMap.empty();
+		int c = 0;
+		for (Entry<? extends Element, Integer> e: map.entrySet()) {
+			m = addMember(m, e.getKey(), e.getValue());
+			c += e.getValue();
+		}
+		this.members = m;
+		this.size = c;
 	}
 	
 	public BagElement(BagElement anotherBag) {
-		this(anotherBag.members);
+		this(anotherBag.members, anotherBag.size);
+	}
+	
+	private BagElement(PersistentHashMap<Element,Integer> members, int size) {
+		this.members = members;
+		this.size = size;
+	}
+	
+	/**
+	 * Returns a bag with the members of this bag and 
+	 * one more instance of the given element. 
+	 */
+	public BagElement plus(Element e) {
+		return new BagElement(addMember(members, e, 1), size + 1);
+	}
+	
+	/**
+	 * Returns a bag with the members of this bag except one instance 
+	 * of the given element. If the given element is not a member of 
+	 * this bag, this bag is returned.
+	 */
+	public BagElement minus(Element e) {
+		Integer c = members.get(e);
+		if (c == null || c <= 0)
+			return this;
+		if (c == 1)
+			return new BagElement(members.minus(e), size - 1);
+		else
+			return new BagElement(members.plus(e, c - 1), size - 1);
 	}
 	
 	public String getBackground() {
@@ -72,25 +111,16 @@ public class BagElement extends AbstractBagElement implements ModifiableCollecti
 	}
 
 	/* 
-	 * Adds a new member to this element 'count' times. Bag elements should not 
-	 * be modified when created; so, this method should only 
-	 * be called from a constructor. 
+	 * Returns the given members with 'count' more instances of 
+	 * the given element.
 	 */
-	private void addMember(Element newMember, int count) { 
+	private static PersistentHashMap<Element,Integer> addMember(PersistentHashMap<Element,Integer> members, 
+			Element newMember, int count) { 
 		Integer c = members.get(newMember);
 		if (c == null) {
 			c = 0;
 		}
-		members.put(newMember, c + count);
-	}
-	
-	/* 
-	 * Adds a new member to this element. Bag elements should not 
-	 * be modified when created; so, this method should only 
-	 * be called from a constructor. 
-	 */
-	private void addMember(Element newMember) {
-		addMember(newMember, 1);
+		return members.plus(newMember, c + count);
 	}
 	
 	@Override
@@ -201,8 +231,9 @@ public class BagElement extends AbstractBagElement implements ModifiableCollecti
 		int resultantHashCode = 0;
 		
 		// sum up hashcode of member elements
-		for (Element e : enumerate())
-		    resultantHashCode = resultantHashCode + (e==null ? 0 : e.hashCode());
+		for (Entry<Element, Integer> e: members.entrySet())
+			if (e.getValue() > 0)
+				resultantHashCode = resultantHashCode + e.getValue() * e.getKey().hashCode();
 		
 		return resultantHashCode; 
 	}
@@ -262,11 +293,7 @@ public class BagElement extends AbstractBagElement implements ModifiableCollecti
 	 * Returns the size of this set in integer.
 	 */
 	public int intSize() {
-		int c = 0;
-		for (Entry<? extends Element, Integer> e: members.entrySet()) 
-			if (e.getValue() != null)
-				c += e.getValue();
-		return c;
+		return size;
 	}
 	
 	@Override
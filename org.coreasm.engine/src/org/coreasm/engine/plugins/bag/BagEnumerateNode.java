@@ -50,6 +50,11 @@ public class BagEnumerateNode extends ASTNode {
 		super(node);
 	}
 
+	@Override
+	protected BagEnumerateNode copy() {
+		return new BagEnumerateNode(this);
+	}
+
 	/**
      * Returns an unevaluated child node if any. If none exists, <code>null<code> is returned
      * 
@@ -54,12 +54,13 @@ import org.coreasm.engine.parser.OperatorRule;
 import org.coreasm.engine.parser.OperatorRule.OpType;
 import org.coreasm.engine.parser.ParserTools;
 import org.coreasm.engine.parser.ParserTools.ArrayParseMap;
-import org.coreasm.engine.plugin.Aggregator;
 import org.coreasm.engine.plugin.InterpreterPlugin;
 import org.coreasm.engine.plugin.OperatorProvider;
 import org.coreasm.engine.plugin.ParserPlugin;
+import org.coreasm.engine.plugin.PartitionableAggregator;
 import org.coreasm.engine.plugin.Plugin;
 import org.coreasm.engine.plugin.VocabularyExtender;
+import org.coreasm.engine.plugins.collection.ComprehensionJoin;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -70,7 +71,7 @@ import org.slf4j.LoggerFactory;
  *  
  */
 public class BagPlugin extends Plugin 
-		implements VocabularyExtender, OperatorProvider, Aggregator, 
+		implements VocabularyExtender, OperatorProvider, PartitionableAggregator, 
 				ParserPlugin, InterpreterPlugin {
 
 	private static final Logger logger = LoggerFactory.getLogger(BagPlugin.class);
@@ -101,7 +102,7 @@ public class BagPlugin extends Plugin
 	private ThreadLocal<Map<ASTNode, Collection<Element>>> tobeConsidered;
 	
 	/* keeps track of to-be-considered values in an advanced bag comprehension */
-	private ThreadLocal<Map<ASTNode, Collection<Map<String, Element>>>> tobeConsideredAdv;
+	private ThreadLocal<Map<ASTNode, ComprehensionJoin>> tobeConsideredAdv;
 	
 	/* keeps new bags created on a bag comprehension node */
 	private ThreadLocal<Map<ASTNode, Collection<Element>>> newBags;
@@ -136,10 +137,10 @@ public class BagPlugin extends Plugin
 				return new HashMap<ASTNode, Collection<Element>>();
 			}
 		};
-		tobeConsideredAdv = new ThreadLocal<Map<ASTNode,Collection<Map<String,Element>>>>() {
+		tobeConsideredAdv = new ThreadLocal<Map<ASTNode,ComprehensionJoin>>() {
 			@Override
-			protected Map<ASTNode, Collection<Map<String, Element>>> initialValue() {
-				return new HashMap<ASTNode, Collection<Map<String,Element>>>();
+			protected Map<ASTNode, ComprehensionJoin> initialValue() {
+				return new HashMap<ASTNode, ComprehensionJoin>();
 			}
 		};
 		newBags = new ThreadLocal<Map<ASTNode, Collection<Element>>>() {
@@ -161,7 +162,7 @@ public class BagPlugin extends Plugin
 	/*
 	 * Returns the instance of 'tobeConsideredAdv' map for this thread.
 	 */
-	private Map<ASTNode, Collection<Map<String, Element>>> getToBeConsideredAdvMap() {
+	private Map<ASTNode, ComprehensionJoin> getToBeConsideredAdvMap() {
 		return tobeConsideredAdv.get();
 	}
 	
@@ -185,12 +186,12 @@ public class BagPlugin extends Plugin
 	/* (non-Javadoc)
 	 * @see org.coreasm.engine.Plugin#interpret(org.coreasm.engine.interpreter.ASTNode)
 	 */
-	public ASTNode interpret(Interpreter interpreter, ASTNode pos) {
+	public ASTNode interpret(Interpreter interpreter, ASTNode pos) throws InterpreterException {
 		ASTNode nextPos = pos;
 		String gClass = pos.getGrammarClass();
         
 		Map<ASTNode, Collection<Element>> tobeConsidered = getToBeConsideredMap();
-		Map<ASTNode, Collection<Map<String, Element>>> tobeConsideredAdv = getToBeConsideredAdvMap();
+		Map<ASTNode, ComprehensionJoin> tobeConsideredAdv = getToBeConsideredAdvMap();
 		Map<ASTNode, Collection<Element>> newBag = getNewBagMap();
 		
 		// if bag related expression
@@ -279,7 +280,7 @@ public class BagPlugin extends Plugin
 			// if the node is an advanced set comprehension (expression specifier) ...
 			else if (pos instanceof BagAdvancedCompNode) {
 				BagAdvancedCompNode node = (BagAdvancedCompNode)pos;
-				Map<String, ASTNode> bindings = null;
+				Map<String,ASTNode> bindings = null;
 				
 				// get variable to domain bindings
 				try {
@@ -288,18 +289,21 @@ public class BagPlugin extends Plugin
 					// "No two constrainer variables may have the same name."
 					capi.error(e);
 				}
-				ASTNode guard = node.getGuard();
 				ASTNode expression = node.getSetFunction();
+				ComprehensionJoin join = tobeConsideredAdv.get(pos);
 
-				if (!guard.isEvaluated()) {
+				// if the domains are not evaluated yet
+				if (join == null || (!expression.isEvaluated() && !join.isResumable())) {
 	 				if (bindings.size() >= 1) {
 						if (bindings.containsKey(node.getSpecifierVar())) 
 							capi.error("Constrainer variable cannot have same name as specifier.", node, interpreter);
 						
 						// evaluate all the domains
 						for (ASTNode domain: bindings.values())
-							if (!domain.isEvaluated()) 
+							if (!domain.isEvaluated()) {
+								tobeConsideredAdv.remove(pos);
 								return domain;
+							}
 						
 						// if all domains are evaluated
 						for (ASTNode domain: bindings.values()) {
@@ -314,118 +318,33 @@ public class BagPlugin extends Plugin
 								}
 						}
 						
-						// else
-					
-						// TODO Inconsistent with the spec
-						// !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!
-						// !!!                                          !!!
-						// !!! FROM THIS POINT, IT DEFERS FROM THE SPEC !!!
-						// !!!                                          !!!
-						// !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!
-						
-						// create the resulting bag
+						// create the resulting collection and enumerate the bindings 
+						// that satisfy the guard one by one, starting from the first one
 						newBag.put(pos, new ArrayList<Element>());
-						
-						// collection of all possible bindings
-						Collection<Map<String,Element>> possibleBindings = new ArrayList<Map<String,Element>>();
-						
-						// set of all variables
-						ArrayList<String> allVariables = new ArrayList<String>(bindings.keySet());
-						
-						// set of all possible values for variables 
-						Map<String,ArrayList<Element>> possibleValues = new HashMap<String,ArrayList<Element>>();
-						for (String var: bindings.keySet()) {
-							Enumerable set = (Enumerable)(bindings.get(var).getValue());
-							possibleValues.put(var, new ArrayList<Element>(set.enumerate()));
-						}
-	
-						// create all possible combination of values for variables
-						createAllPossibleBindings(
-								allVariables, possibleValues, 0, possibleBindings, new HashMap<String,Element>());
-	
-						// set the superset of values
-						tobeConsideredAdv.put(pos, possibleBindings);
-						
-						// pick the first combination
-						Map<String,Element> firstBinding = possibleBindings.iterator().next();
-						
-						// bind the combination to the variables
-						bindVariables(interpreter, firstBinding);
-						
-						// remove the already chosen combination
-						possibleBindings.remove(firstBinding);
-						
-						return guard;
-						
-					} else
+						join = new ComprehensionJoin(bindings, node.getGuard());
+						tobeConsideredAdv.put(pos, join);
+					} else {
 						capi.error("At least one constrainer variable must be present.", node, interpreter);
-				} 
-				
-				// if guard is evaluated but the expression is not
-				else if (!expression.isEvaluated()) {
-					if (guard.getValue().equals(BooleanElement.TRUE)) 
-						return expression;
-					else {
-						// remove previous bindings
-						unbindVariables(interpreter, bindings.keySet());
-
-						// get the remaining combinations
-						Collection<Map<String,Element>> possibleBindings = tobeConsideredAdv.get(pos);
-						
-						// if there is more combination to be tried...
-						if (possibleBindings.size() > 0) {
-
-							// pick the next combination
-							Map<String,Element> nextBinding = possibleBindings.iterator().next();
-							
-							// bind the combination to the variables
-							bindVariables(interpreter, nextBinding);
-							
-							// remove the already chosen combination
-							possibleBindings.remove(nextBinding);
-							
-							// clear the guard
-							interpreter.clearTree(guard);
-							
-							return guard;
-						} else {
-							pos.setNode(null, null, new BagElement(newBag.get(pos)));
-						}
-							
+						return pos;
 					}
 				} 
 				
-				// if everything is evaluated
-				else {
-					// remove previous bindings
-					unbindVariables(interpreter, bindings.keySet());
-
+				// if the expression is evaluated under the current binding
+				else if (expression.isEvaluated()) {
 					Collection<Element> result = newBag.get(pos);
 					result.add(expression.getValue());
-					// get the remaining combinations
-					Collection<Map<String,Element>> possibleBindings = tobeConsideredAdv.get(pos);
-					if (possibleBindings.size() > 0) {
-
-						// pick the first combination
-						Map<String,Element> nextBinding = possibleBindings.iterator().next();
-						
-						// bind the combination to the variables
-						bindVariables(interpreter, nextBinding);
-						
-						// remove the already chosen combination
-						possibleBindings.remove(nextBinding);
-
-						// clear the guard and the expression
-						interpreter.clearTree(guard);
-						interpreter.clearTree(expression);
-						
-						return guard;
-					} else {
-						pos.setNode(null, null, new BagElement(newBag.get(pos)));
-						return pos;
-					}
+					ComprehensionJoin.clearNode(interpreter, expression);
 				}
+
+				// bind the variables to the next binding that satisfies the guard
+				if (join.next(interpreter))
+					return expression;
+				if (join.getPendingNode() != null)
+					return join.getPendingNode();
 				
+				tobeConsideredAdv.remove(pos);
+				if (!capi.hasErrorOccurred())
+					pos.setNode(null, null, new BagElement(newBag.get(pos)));
 				return pos;
 			}
 			
@@ -438,63 +357,6 @@ public class BagPlugin extends Plugin
         return nextPos;
 	}
 
-	/*
-	 * This recursive method creates all the possible combinations of values
-	 * for variables. 
-	 */
-	private void createAllPossibleBindings(
-			ArrayList<String> allVariables, 
-			Map<String,ArrayList<Element>> possibleValues, 
-			int index, 
-			Collection<Map<String,Element>> possibleBindings, 
-			Map<String,Element> currentBinding) {
-
-		// get possible values for this particular variable
-		String var = allVariables.get(index);
-		ArrayList<Element> values = new ArrayList<Element>(possibleValues.get(var));
-		
-		while (values.size() > 0) {
-			// get the first element of those values
-			Element value = values.get(0);
-			
-			// put it as a possible binding
-			currentBinding.put(var, value);
-			
-			// if this is not the last variable in the list
-			if (index < (allVariables.size() - 1)) {
-				// get all the possible values for the remaining variables
-				createAllPossibleBindings(
-						allVariables, possibleValues, index+1, possibleBindings, currentBinding);
-			} 
-			
-			// if this is the last variable
-			else {
-				// currentBinding is a draft copy that keeps changing, so you want
-				// to add a new map to the set
-				possibleBindings.add(new HashMap<String,Element>(currentBinding));
-			}
-			values.remove(0);
-		}
-	}
-	
-	/*
-	 * Binds values to variables.
-	 */
-	private void bindVariables(Interpreter interpreter, Map<String,Element> binding) {
-		for (String var: binding.keySet()) {
-			interpreter.addEnv(var, binding.get(var));
-		}
-	}
-	
-	/*
-	 * Unbinds environment variables.
-	 */
-	private void unbindVariables(Interpreter interpreter, Set<String> variables) {
-		for (String var: variables){
-			interpreter.removeEnv(var);
-		}
-	}
-	
 	public Set<Parser<? extends Object>> getLexers() {
 		return Collections.emptySet();
 	}
@@ -26,10 +26,13 @@ import org.coreasm.engine.VersionInfo;
 import org.coreasm.engine.absstorage.UpdateMultiset;
 import org.coreasm.engine.interpreter.ASTNode;
 import org.coreasm.engine.interpreter.Interpreter;
+import org.coreasm.engine.interpreter.InterpreterException;
 import org.coreasm.engine.interpreter.Node;
+import org.coreasm.engine.interpreter.NodeEvaluator;
 import org.coreasm.engine.kernel.KernelServices;
 import org.coreasm.engine.parser.GrammarRule;
 import org.coreasm.engine.parser.ParserTools;
+import org.coreasm.engine.plugin.EvaluatorProvider;
 import org.coreasm.engine.plugin.InterpreterPlugin;
 import org.coreasm.engine.plugin.ParserPlugin;
 import org.coreasm.engine.plugin.Plugin;
@@ -50,7 +53,7 @@ import org.slf4j.LoggerFactory;
  */
 
 public class BlockRulePlugin extends Plugin 
-		implements InterpreterPlugin, ParserPlugin {
+		implements InterpreterPlugin, ParserPlugin, EvaluatorProvider {
  
 	private static final Logger logger = LoggerFactory.getLogger(BlockRulePlugin.class);
 	
@@ -105,6 +108,36 @@ public class BlockRulePlugin extends Plugin
         }
     }
 
+    public NodeEvaluator getEvaluator(ASTNode node) {
+    	if ("BlockRule".equals(node.getGrammarRule()))
+    		return blockEvaluator;
+    	else
+    		return null;
+    }
+
+    /*
+     * Evaluates all the rules of a block and accumulates their updates,
+     * as in 'interpret()'.
+     */
+    private final NodeEvaluator blockEvaluator = new NodeEvaluator() {
+		@Override
+		public void evaluate(Interpreter interpreter, ASTNode node) throws InterpreterException {
+			for (ASTNode currentRule = node.getFirst(); currentRule != null; currentRule = currentRule.getNext()) {
+				interpreter.evaluate(currentRule);
+				if (!currentRule.isEvaluated())
+					return;
+			}
+
+			UpdateMultiset updates = new UpdateMultiset();
+			for (ASTNode currentRule = node.getFirst(); currentRule != null; currentRule = currentRule.getNext()) {
+				if (!EngineTools.hasUpdates(interpreter, currentRule, capi, logger))
+					return;
+				updates.addAll(currentRule.getUpdates());
+			}
+			node.setNode(null, updates, null);
+		}
+    };
+
     @Override
     public void initialize() {
         
@@ -46,6 +46,11 @@ public class CaseRuleNode extends ASTNode {
     public CaseRuleNode(CaseRuleNode node) {
     	super(node);
     }
+
+    @Override
+    protected CaseRuleNode copy() {
+        return new CaseRuleNode(this);
+    }
     
     public ASTNode getCaseTerm() {
     	return (ASTNode)getChildNode("alpha");
@@ -32,6 +32,11 @@ public class ChooseRuleNode extends ASTNode {
 		super(node);
 	}
 
+    @Override
+    protected ChooseRuleNode copy() {
+        return new ChooseRuleNode(this);
+    }
+
 	public ChooseRuleNode(ScannerInfo scannerInfo) {
 		super(ChooseRulePlugin.PLUGIN_NAME, 
 				ASTNode.RULE_CLASS, 
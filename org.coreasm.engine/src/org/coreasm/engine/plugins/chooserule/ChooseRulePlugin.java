@@ -14,10 +14,8 @@
  
 package org.coreasm.engine.plugins.chooserule;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -33,10 +31,12 @@ import org.coreasm.engine.interpreter.ASTNode;
 import org.coreasm.engine.interpreter.Interpreter;
 import org.coreasm.engine.interpreter.InterpreterException;
 import org.coreasm.engine.interpreter.Node;
+import org.coreasm.engine.interpreter.NodeEvaluator;
 import org.coreasm.engine.kernel.KernelServices;
 import org.coreasm.engine.parser.GrammarRule;
 import org.coreasm.engine.parser.ParserTools;
 import org.coreasm.engine.parser.ParseMapN;
+import org.coreasm.engine.plugin.EvaluatorProvider;
 import org.coreasm.engine.plugin.InterpreterPlugin;
 import org.coreasm.engine.plugin.ParserPlugin;
 import org.coreasm.engine.plugin.Plugin;
@@ -49,7 +49,7 @@ import org.coreasm.util.Tools;
  *  
  */
 public class ChooseRulePlugin extends Plugin implements ParserPlugin,
-        InterpreterPlugin {
+        InterpreterPlugin, EvaluatorProvider {
 
 	public static final VersionInfo VERSION_INFO = new VersionInfo(0, 9, 3, "");
 	
@@ -62,21 +62,21 @@ public class ChooseRulePlugin extends Plugin implements ParserPlugin,
 	private final String[] keywords = {"choose", "pick", "with", "in", "do", "ifnone", "endchoose"};
 	private final String[] operators = {};
 	
-    private ThreadLocal<Map<Node,List<Element>>> remained;
+    private ThreadLocal<Map<Node,DomainSampler>> remained;
 
     private Map<String, GrammarRule> parsers;
     
     @Override
     public void initialize() {
-        remained = new ThreadLocal<Map<Node, List<Element>>>() {
+        remained = new ThreadLocal<Map<Node, DomainSampler>>() {
 			@Override
-			protected Map<Node, List<Element>> initialValue() {
-				return new HashMap<Node, List<Element>>();
+			protected Map<Node, DomainSampler> initialValue() {
+				return new HashMap<Node, DomainSampler>();
 			}
         };
     }
 
-    private Map<Node, List<Element>> getRemainedMap() {
+    private Map<Node, DomainSampler> getRemainedMap() {
     	return remained.get();
     }
     
@@ -207,6 +207,129 @@ public class ChooseRulePlugin extends Plugin implements ParserPlugin,
         return pos;
     }
 
+    public NodeEvaluator getEvaluator(ASTNode node) {
+    	if (node instanceof ChooseRuleNode)
+    		return chooseEvaluator;
+    	else if (node instanceof PickExpNode)
+    		return pickEvaluator;
+    	else
+    		return null;
+    }
+
+    /*
+     * Evaluates all four forms of the choose rule, as in 'interpret()'.
+     * The candidates are drawn by a sampler local to the evaluation.
+     */
+    private final NodeEvaluator chooseEvaluator = new NodeEvaluator() {
+		@Override
+		public void evaluate(Interpreter interpreter, ASTNode node) throws InterpreterException {
+			ChooseRuleNode chooseNode = (ChooseRuleNode) node;
+			String x = chooseNode.getVariable().getToken();
+			ASTNode doRule = chooseNode.getDoRule();
+
+			Enumerable domain = evaluateDomain(interpreter, chooseNode.getDomain(), "choose", "Choose");
+			if (domain == null)
+				return;
+
+			boolean chosen;
+			if (chooseNode.getCondition() == null) {
+				Element t = DomainSampler.pick(domain);
+				chosen = (t != null);
+				if (chosen)
+					interpreter.addEnv(x, t);
+			}
+			else
+				chosen = chooseCandidate(interpreter, x, new DomainSampler(domain), chooseNode.getCondition(), "choose");
+
+			if (chosen) {
+				interpreter.evaluate(doRule);
+				interpreter.removeEnv(x);
+				if (doRule.isEvaluated())
+					node.setNode(null, doRule.getUpdates(), null);
+			}
+			else if (!capi.hasErrorOccurred()) {
+				ASTNode ifnoneRule = chooseNode.getIfnoneRule();
+				if (ifnoneRule == null)
+					node.setNode(null, new UpdateMultiset(), null);
+				else {
+					interpreter.evaluate(ifnoneRule);
+					if (ifnoneRule.isEvaluated())
+						node.setNode(null, ifnoneRule.getUpdates(), null);
+				}
+			}
+		}
+    };
+
+    /*
+     * Evaluates both forms of the pick expression, as in 'interpret()'.
+     */
+    private final NodeEvaluator pickEvaluator = new NodeEvaluator() {
+		@Override
+		public void evaluate(Interpreter interpreter, ASTNode node) throws InterpreterException {
+			PickExpNode pickNode = (PickExpNode) node;
+			String x = pickNode.getVariable().getToken();
+
+			Enumerable domain = evaluateDomain(interpreter, pickNode.getDomain(), "pick", "Pick");
+			if (domain == null)
+				return;
+
+			Element picked;
+			if (pickNode.getCondition() == null)
+				picked = DomainSampler.pick(domain);
+			else if (chooseCandidate(interpreter, x, new DomainSampler(domain), pickNode.getCondition(), "pick")) {
+				picked = interpreter.getEnv(x);
+				interpreter.removeEnv(x);
+			}
+			else if (capi.hasErrorOccurred())
+				return;
+			else
+				picked = null;
+
+			node.setNode(null, null, (picked == null) ? Element.UNDEF : picked);
+		}
+    };
+
+    /*
+     * Evaluates the domain of a choose rule or pick expression and returns
+     * its value, or null if the domain is not an enumerable element.
+     */
+    private Enumerable evaluateDomain(Interpreter interpreter, ASTNode domainNode, String keyword, String name) throws InterpreterException {
+		interpreter.evaluate(domainNode);
+		if (!domainNode.isEvaluated())
+			return null;
+		if (domainNode.getValue() instanceof Enumerable)
+			return (Enumerable) domainNode.getValue();
+		capi.error("Cannot " + keyword + " from " + Tools.sizeLimit(domainNode.getValue().denotation()) + ". " +
+        		name + " domain should be an enumerable element.", domainNode, interpreter);
+		return null;
+    }
+
+    /*
+     * Draws candidates from the sampler until one satisfies the condition.
+     * Returns true if a candidate is found, in which case it is left bound
+     * to the variable in the environment.
+     */
+    private boolean chooseCandidate(Interpreter interpreter, String x, DomainSampler s, ASTNode condition, String keyword) throws InterpreterException {
+		while (s.hasNext()) {
+			interpreter.addEnv(x, s.next());
+			interpreter.evaluate(condition);
+			if (!condition.isEvaluated()) {
+				interpreter.removeEnv(x);
+				return false;
+			}
+			if (!(condition.getValue() instanceof BooleanElement)) {
+				interpreter.removeEnv(x);
+				capi.error("Value of " + keyword + " condition is not Boolean.", condition, interpreter);
+				return false;
+			}
+			if (((BooleanElement) condition.getValue()).getValue())
+				return true;
+			interpreter.clearTree(condition);
+			interpreter.removeEnv(x);
+		}
+		return false;
+    }
+
     private ASTNode interpretPickExpression_NoCondition(Interpreter interpreter, PickExpNode node) {
 		// if domain 'E' is not evaluated
     	if (!node.getDomain().isEvaluated()) {
@@ -217,16 +340,9 @@ public class ChooseRulePlugin extends Plugin implements ParserPlugin,
     	// if domain 'E' is evaluated, but rule 'R' is not evaluated
     	else if (node.getDomain().getValue() instanceof Enumerable) {
         	// s := enumerate(v)
-			Enumerable domain = (Enumerable)node.getDomain().getValue();
-			List<Element> elements = null;
-			if (domain.supportsIndexedView())
-				elements = domain.getIndexedView();
-			else
-				elements = new ArrayList<Element>(((Enumerable) node.getDomain().getValue()).enumerate());
-            if (elements.size() > 0) {
-                // choose t in s
-            	int i = Tools.randInt(elements.size());
-                Element picked = elements.get(i);
+        	// choose t in s
+			Element picked = DomainSampler.pick((Enumerable)node.getDomain().getValue());
+            if (picked != null) {
                 node.setNode(null, null, picked);
             }
             else {
@@ -245,7 +361,7 @@ public class ChooseRulePlugin extends Plugin implements ParserPlugin,
     private ASTNode interpretPickExpression_WithCondition(Interpreter interpreter, PickExpNode node) {
         String x = node.getVariable().getToken();
         
-        Map<Node, List<Element>> remained = getRemainedMap();
+        Map<Node, DomainSampler> remained = getRemainedMap();
         
 		// if domain 'E' is not evaluated
         if (!node.getDomain().isEvaluated()) {
@@ -260,24 +376,17 @@ public class ChooseRulePlugin extends Plugin implements ParserPlugin,
             if (node.getDomain().getValue() instanceof Enumerable) {
             	// s := enumerate(v)
                 // s := enumerate(v)/considered(beta)
-            	List<Element> s = null;
-            	Enumerable domain = (Enumerable)node.getDomain().getValue();
-        		s = remained.get(node.getDomain());
+            	DomainSampler s = remained.get(node.getDomain());
             	if (s == null) {
-            		if (domain.supportsIndexedView())
-            			s = new ArrayList<Element>(domain.getIndexedView());
-            		else 
-                    	s = new ArrayList<Element>(((Enumerable) node.getDomain().getValue()).enumerate());
+            		s = new DomainSampler((Enumerable)node.getDomain().getValue());
             		remained.put(node.getDomain(), s);
             	}
-                if (s.size() > 0) {
+                if (s.hasNext()) {
                     // choose t in s
-                	int i = Tools.randInt(s.size());
-                    Element chosen = s.get(i);
+                    // considered := considered union {t}
+                    Element chosen = s.next();
                     // AddEnv(x,t)s
                     interpreter.addEnv(x, chosen);
-                    // considered := considered union {t}
-                	s.remove(i);
                     //considered.get(chooseNode.getDomain()).add(chosen);
                     // pos := gamma
                     return node.getCondition();
@@ -346,16 +455,9 @@ public class ChooseRulePlugin extends Plugin implements ParserPlugin,
     	else if (!chooseNode.getDoRule().isEvaluated()) { 
     		if (chooseNode.getDomain().getValue() instanceof Enumerable) {
             	// s := enumerate(v)
-    			Enumerable domain = (Enumerable) chooseNode.getDomain().getValue();
-    			List<Element> s = null;
-    			if (domain.supportsIndexedView())
-    				s = domain.getIndexedView();
-    			else 
-    				s = new ArrayList<Element>(((Enumerable) chooseNode.getDomain().getValue()).enumerate());
-                if (s.size() > 0) {
-                    // choose t in s
-                	int i = Tools.randInt(s.size());
-                    Element chosen = s.get(i);
+                // choose t in s
+    			Element chosen = DomainSampler.pick((Enumerable) chooseNode.getDomain().getValue());
+                if (chosen != null) {
                     // AddEnv(x,t)s
                     interpreter.addEnv(x, chosen);
                     // pos := gamma
@@ -403,16 +505,9 @@ public class ChooseRulePlugin extends Plugin implements ParserPlugin,
     	else if (!chooseNode.getDoRule().isEvaluated() && !chooseNode.getIfnoneRule().isEvaluated()) { 
         	if (chooseNode.getDomain().getValue() instanceof Enumerable) {
             	// s := enumerate(v)
-    			Enumerable domain = (Enumerable) chooseNode.getDomain().getValue();
-    			List<Element> s = null;
-    			if (domain.supportsIndexedView())
-    				s = domain.getIndexedView();
-    			else 
-    				s = new ArrayList<Element>(((Enumerable) chooseNode.getDomain().getValue()).enumerate());
-                if (s.size() > 0) {
-                    // choose t in s
-                	int i = Tools.randInt(s.size());
-                    Element chosen = s.get(i);
+                // choose t in s
+    			Element chosen = DomainSampler.pick((Enumerable) chooseNode.getDomain().getValue());
+                if (chosen != null) {
                     // AddEnv(x,t)s
                     interpreter.addEnv(x, chosen);
                     // pos := gamma
@@ -457,7 +552,7 @@ public class ChooseRulePlugin extends Plugin implements ParserPlugin,
         ChooseRuleNode chooseNode = (ChooseRuleNode) pos;
         String x = chooseNode.getVariable().getToken();
         
-        Map<Node, List<Element>> remained = getRemainedMap();
+        Map<Node, DomainSampler> remained = getRemainedMap();
         
 		// if domain 'E' is not evaluated
         if (!chooseNode.getDomain().isEvaluated()) {
@@ -472,23 +567,17 @@ public class ChooseRulePlugin extends Plugin implements ParserPlugin,
             if (chooseNode.getDomain().getValue() instanceof Enumerable) {
             	// s := enumerate(v)
                 // s := enumerate(v)/considered(beta)
-            	List<Element> s = remained.get(chooseNode.getDomain());
+            	DomainSampler s = remained.get(chooseNode.getDomain());
                 if (s == null) {
-        			Enumerable domain = (Enumerable) chooseNode.getDomain().getValue();
-        			if (domain.supportsIndexedView())
-        				s = new ArrayList<Element>(domain.getIndexedView());
-        			else 
-        				s = new ArrayList<Element>(((Enumerable) chooseNode.getDomain().getValue()).enumerate());
+                	s = new DomainSampler((Enumerable) chooseNode.getDomain().getValue());
                 	remained.put(chooseNode.getDomain(), s);
                 }
-                if (s.size() > 0) {
+                if (s.hasNext()) {
                     // choose t in s
-                	int i = Tools.randInt(s.size());
-                    Element chosen = s.get(i);
+                    // considered := considered union {t}
+                    Element chosen = s.next();
                     // AddEnv(x,t)s
                     interpreter.addEnv(x, chosen);
-                    // considered := considered union {t}
-                	s.remove(i);
                     //considered.get(chooseNode.getDomain()).add(chosen);
                     // pos := gamma
                     return chooseNode.getCondition();
@@ -555,7 +644,7 @@ public class ChooseRulePlugin extends Plugin implements ParserPlugin,
         ChooseRuleNode chooseNode = (ChooseRuleNode) pos;
         String x = chooseNode.getVariable().getToken();
         
-        Map<Node, List<Element>> remained = getRemainedMap();
+        Map<Node, DomainSampler> remained = getRemainedMap();
         
 		// if domain 'E' is not evaluated
         if (!chooseNode.getDomain().isEvaluated()) {
@@ -570,24 +659,17 @@ public class ChooseRulePlugin extends Plugin implements ParserPlugin,
             if (chooseNode.getDomain().getValue() instanceof Enumerable) {
             	// s := enumerate(v)
                 // s := enumerate(v)/considered(beta)
-            	List<Element> s = remained.get(chooseNode.getDomain());
+            	DomainSampler s = remained.get(chooseNode.getDomain());
                 if (s == null) {
-        			Enumerable domain = (Enumerable) chooseNode.getDomain().getValue();
-        			if (domain.supportsIndexedView())
-        				s = new ArrayList<Element>(domain.getIndexedView());
-        			else 
-        				s = new ArrayList<Element>(((Enumerable) chooseNode.getDomain().getValue()).enumerate());
+                	s = new DomainSampler((Enumerable) chooseNode.getDomain().getValue());
                 	remained.put(chooseNode.getDomain(), s);
                 }
-                if (s.size() > 0) {
+                if (s.hasNext()) {
                     // choose t in s
-                	int i = Tools.randInt(s.size());
-                    Element chosen = s.get(i);
+                    // considered := considered union {t}
+                    Element chosen = s.next();
                     // AddEnv(x,t)s
                     interpreter.addEnv(x, chosen);
-                    // considered := considered union {t}
-                	s.remove(i);
-                	
                     //considered.get(chooseNode.getDomain()).add(chosen);
                     // pos := gamma
                     return chooseNode.getCondition();
@@ -0,0 +1,102 @@
+/*
+ * DomainSampler.java
+ *
+ * Copyright (C) 2013 Roozbeh Farahbod
+ *
+ * Licensed under the Academic Free License version 3.0
+ *   http://www.opensource.org/licenses/afl-3.0.php
+ *   http://www.coreasm.org/afl-3.0.php
+ *
+ */
+
+package org.coreasm.engine.plugins.chooserule;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.coreasm.engine.absstorage.Element;
+import org.coreasm.engine.absstorage.Enumerable;
+import org.coreasm.util.Tools;
+
+/**
+ * Draws the elements of an enumerable domain in random order, without
+ * replacement. Every draw takes constant expected time and the domain is
+ * not copied if it supports an indexed view; the elements drawn so far
+ * are recorded as the swaps of a lazy Fisher-Yates shuffle of the view.
+ *
+ * @author  Roozbeh Farahbod
+ */
+class DomainSampler {
+
+	private final List<Element> elements;
+
+	/** number of elements not drawn yet */
+	private int remaining;
+
+	/** elements moved by the shuffle, by index; other indices hold their own element */
+	private final Map<Integer, Integer> swaps = new HashMap<Integer, Integer>();
+
+	/**
+	 * Creates a new sampler over the given domain.
+	 */
+	DomainSampler(Enumerable domain) {
+		if (domain.supportsIndexedView())
+			elements = domain.getIndexedView();
+		else
+			elements = new ArrayList<Element>(domain.enumerate());
+		remaining = elements.size();
+	}
+
+	/**
+	 * Returns <code>true</code> if there are elements not drawn yet.
+	 */
+	boolean hasNext() {
+		return remaining > 0;
+	}
+
+	/**
+	 * Draws a random element among those not drawn yet.
+	 */
+	Element next() {
+		final int i = Tools.randInt(remaining);
+		remaining--;
+		final int chosen = indexAt(i);
+		if (i != remaining)
+			swaps.put(i, indexAt(remaining));
+		swaps.remove(remaining);
+		return elements.get(chosen);
+	}
+
+	/**
+	 * Returns a random element of the given domain, or <code>null</code>
+	 * if the domain is empty. The domain is not copied.
+	 */
+	static Element pick(Enumerable domain) {
+		if (domain.supportsIndexedView()) {
+			final List<Element> elements = domain.getIndexedView();
+			if (elements.isEmpty())
+				return null;
+			return elements.get(Tools.randInt(elements.size()));
+		}
+
+		final Collection<? extends Element> all = domain.enumerate();
+		if (all.isEmpty())
+			return null;
+		final Iterator<? extends Element> it = all.iterator();
+		for (int i = Tools.randInt(all.size()); i > 0; i--)
+			it.next();
+		return it.next();
+	}
+
+	/*
+	 * Returns the index of the element currently at the given position of the shuffle.
+	 */
+	private int indexAt(int i) {
+		final Integer j = swaps.get(i);
+		return (j == null) ? i : j;
+	}
+}
@@ -42,6 +42,11 @@ public class PickExpNode extends ASTNode {
     public PickExpNode(PickExpNode node) {
     	super(node);
     }
+
+    @Override
+    protected PickExpNode copy() {
+        return new PickExpNode(this);
+    }
     
     /**
      * Returns the node representing the bound variable of the 'pick' expression
@@ -47,6 +47,11 @@ public class AddToRuleNode extends ASTNode {
 		super(node);
 	}
 
+	@Override
+	protected AddToRuleNode copy() {
+		return new AddToRuleNode(this);
+	}
+
 	/**
      * Returns an unevaluated term node if any. If none exists, <code>null<code> is returned
      * 
@@ -0,0 +1,406 @@
+/*
+ * ComprehensionJoin.java
+ *
+ * Copyright (C) 2013 Roozbeh Farahbod
+ *
+ * Licensed under the Academic Free License version 3.0
+ *   http://www.opensource.org/licenses/afl-3.0.php
+ *   http://www.coreasm.org/afl-3.0.php
+ *
+ */
+
+package org.coreasm.engine.plugins.collection;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.coreasm.engine.absstorage.BooleanElement;
+import org.coreasm.engine.absstorage.Element;
+import org.coreasm.engine.absstorage.Enumerable;
+import org.coreasm.engine.interpreter.ASTNode;
+import org.coreasm.engine.interpreter.FunctionRuleTermNode;
+import org.coreasm.engine.interpreter.Interpreter;
+
+/**
+ * Enumerates the bindings of the constrainer variables of a comprehension
+ * (e.g., <code>{x + y | x in A, y in B with x &lt; y}</code>) that satisfy
+ * its guard, one binding at a time.
+ * <p>
+ * The bindings are enumerated by nested loops over the domains, in the
+ * order in which the variables are declared. The guard is split into its
+ * conjuncts (operands of <code>and</code>), and every conjunct is checked
+ * as soon as all the variables it refers to are bound, so that a binding
+ * of the outer variables that fails a conjunct is not extended. A conjunct
+ * of the form <code>x = t</code>, where <code>t</code> refers only to
+ * variables declared before <code>x</code>, is used to look up the value
+ * of <code>x</code> in a hash index of its domain instead of looping over
+ * the domain.
+ * <p>
+ * The domains are enumerated with their repetitions; i.e., a value that
+ * occurs twice in a domain is bound twice.
+ * <p>
+ * The join does not evaluate the guard itself. Whenever it needs the value
+ * of a conjunct or of a join key, it stops and offers the node through
+ * {@link #getPendingNode()}; the interpreter rule of the comprehension
+ * returns that node to the interpreter, and calls {@link #next(Interpreter)}
+ * again once the node is evaluated. Hence, the guard is evaluated in the
+ * evaluation mode of the interpreter.
+ *
+ * @author  Roozbeh Farahbod
+ */
+public class ComprehensionJoin {
+
+	private static final String AND_OP = "and";
+	private static final String EQUALITY_OP = "=";
+
+	private final String[] variables;
+	private final Enumerable[] domains;
+	private final ASTNode guard;
+
+	/** conjuncts of the guard that do not refer to any variable */
+	private final List<ASTNode> constantConjuncts = new ArrayList<ASTNode>();
+
+	/** conjuncts of the guard checked when the variable of each level is bound */
+	private final List<List<ASTNode>> conjuncts = new ArrayList<List<ASTNode>>();
+
+	/** for every level, the term a variable is looked up by, or null */
+	private final ASTNode[] joinKeys;
+
+	/** hash indices of the domains of levels with a join key */
+	private final List<Map<Element, Integer>> joinIndices = new ArrayList<Map<Element, Integer>>();
+
+	/** candidate values of the variable of every bound level and the level being bound */
+	private final Iterator<?>[] candidates;
+
+	/** number of variables bound so far */
+	private int depth = 0;
+
+	/** the part of the enumeration to go on with */
+	private int state = CHECK_CONSTANTS;
+
+	/** number of conjuncts of the current list that are checked to be true */
+	private int checked = 0;
+
+	/** node to be evaluated by the interpreter before the enumeration goes on */
+	private ASTNode pending = null;
+
+	/** whether the enumeration goes on with the value of a pending node */
+	private boolean resumed = false;
+
+	private boolean started = false;
+	private boolean finished = false;
+
+	private static final int CHECK_CONSTANTS = 0;
+	private static final int OPEN_LEVEL = 1;
+	private static final int NEXT_CANDIDATE = 2;
+	private static final int CHECK_LEVEL = 3;
+
+	/**
+	 * Creates a new join over the given domains and guard.
+	 *
+	 * @param bindings the evaluated domains of the constrainer variables, in
+	 * the order of declaration; the value of every domain is {@link Enumerable}
+	 * @param guard the guard of the comprehension
+	 */
+	public ComprehensionJoin(Map<String, ASTNode> bindings, ASTNode guard) {
+		final int n = bindings.size();
+		variables = new String[n];
+		domains = new Enumerable[n];
+		joinKeys = new ASTNode[n];
+		candidates = new Iterator<?>[n];
+		this.guard = guard;
+
+		int i = 0;
+		for (Entry<String, ASTNode> binding: bindings.entrySet()) {
+			variables[i] = binding.getKey();
+			domains[i] = (Enumerable)binding.getValue().getValue();
+			conjuncts.add(new ArrayList<ASTNode>());
+			joinIndices.add(null);
+			i++;
+		}
+
+		List<ASTNode> allConjuncts = new ArrayList<ASTNode>();
+		splitConjuncts(guard, allConjuncts);
+		for (ASTNode conjunct: allConjuncts) {
+			final int level = levelOf(conjunct);
+			if (level < 0)
+				constantConjuncts.add(conjunct);
+			else {
+				if (joinKeys[level] == null)
+					joinKeys[level] = joinKeyOf(conjunct, level);
+				conjuncts.get(level).add(conjunct);
+			}
+		}
+	}
+
+	/**
+	 * Binds the constrainer variables to the next binding that satisfies
+	 * the guard, in the environment of the given interpreter. The previous
+	 * binding returned by this method, if any, is unbound first.
+	 * <p>
+	 * If this method needs the value of a node of the guard, it returns
+	 * <code>false</code> and the node is available through
+	 * {@link #getPendingNode()}. This method must then be called again
+	 * once the interpreter has evaluated that node.
+	 *
+	 * @return <code>true</code> if the variables are bound to the next
+	 * binding; <code>false</code> if a node has to be evaluated first, if
+	 * there are no more bindings, or if an error occurred in evaluating the
+	 * guard. In the latter two cases, no variable is left bound.
+	 */
+	public boolean next(Interpreter interpreter) {
+		if (finished)
+			return false;
+
+		if (pending != null) {
+			resumed = true;
+			pending = null;
+		} else if (!started)
+			started = true;
+		else {
+			depth--;
+			interpreter.removeEnv(variables[depth]);
+			state = NEXT_CANDIDATE;
+		}
+
+		while (true) {
+			switch (state) {
+			case CHECK_CONSTANTS:
+				if (!check(interpreter, constantConjuncts)) {
+					if (pending == null)
+						finished = true;
+					return false;
+				}
+				state = OPEN_LEVEL;
+				break;
+
+			case OPEN_LEVEL:
+				if (!open(interpreter, depth)) {
+					if (pending == null)
+						unbindAll(interpreter);
+					return false;
+				}
+				state = NEXT_CANDIDATE;
+				break;
+
+			case NEXT_CANDIDATE:
+				final Iterator<?> it = candidates[depth];
+				if (!it.hasNext()) {
+					candidates[depth] = null;
+					if (depth == 0) {
+						finished = true;
+						return false;
+					}
+					depth--;
+					interpreter.removeEnv(variables[depth]);
+					break;
+				}
+				interpreter.addEnv(variables[depth], (Element)it.next());
+				checked = 0;
+				state = CHECK_LEVEL;
+				break;
+
+			case CHECK_LEVEL:
+				if (!check(interpreter, conjuncts.get(depth))) {
+					if (pending != null)
+						return false;
+					interpreter.removeEnv(variables[depth]);
+					if (finished) {
+						unbindAll(interpreter);
+						return false;
+					}
+					state = NEXT_CANDIDATE;
+					break;
+				}
+				depth++;
+				if (depth == variables.length)
+					return true;
+				state = OPEN_LEVEL;
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Returns the node the interpreter has to evaluate before
+	 * {@link #next(Interpreter)} is called again, or <code>null</code>
+	 * if there is no such node.
+	 */
+	public ASTNode getPendingNode() {
+		return pending;
+	}
+
+	/**
+	 * Returns <code>true</code> if the pending node is evaluated; i.e.,
+	 * if the enumeration can go on with its value.
+	 */
+	public boolean isResumable() {
+		return pending != null && pending.isEvaluated();
+	}
+
+	/**
+	 * Clears the evaluation results of the given node and
+	 * its descendants, leaving its siblings untouched.
+	 */
+	public static void clearNode(Interpreter interpreter, ASTNode node) {
+		node.setNode(null, null, null);
+		if (node.getFirst() != null)
+			interpreter.clearTree(node.getFirst());
+	}
+
+	/*
+	 * Prepares the candidate values of the variable of the given level.
+	 * Returns false if its join key is pending, or if an error occurred
+	 * in evaluating it.
+	 */
+	private boolean open(Interpreter interpreter, int level) {
+		final ASTNode key = joinKeys[level];
+		if (key == null) {
+			candidates[level] = domains[level].enumerate().iterator();
+			return true;
+		}
+
+		if (!evaluate(interpreter, key))
+			return false;
+
+		Map<Element, Integer> index = joinIndices.get(level);
+		if (index == null) {
+			index = new HashMap<Element, Integer>();
+			for (Element e: domains[level].enumerate()) {
+				final Integer c = index.get(e);
+				index.put(e, (c == null) ? 1 : c + 1);
+			}
+			joinIndices.set(level, index);
+		}
+
+		final Integer count = index.get(key.getValue());
+		if (count == null)
+			candidates[level] = Collections.emptyList().iterator();
+		else
+			candidates[level] = Collections.nCopies(count, key.getValue()).iterator();
+		return true;
+	}
+
+	/*
+	 * Checks the given conjuncts under the current binding, going on
+	 * from the first one not checked yet. Returns true if all of them
+	 * are true; returns false if one of them is pending, is not true,
+	 * or could not be evaluated.
+	 */
+	private boolean check(Interpreter interpreter, List<ASTNode> conjuncts) {
+		while (checked < conjuncts.size()) {
+			final ASTNode conjunct = conjuncts.get(checked);
+			if (!evaluate(interpreter, conjunct))
+				return false;
+			if (!BooleanElement.TRUE.equals(conjunct.getValue())) {
+				checked = 0;
+				return false;
+			}
+			checked++;
+		}
+		checked = 0;
+		return true;
+	}
+
+	/*
+	 * Returns true if the given node is evaluated. Unless the enumeration
+	 * goes on with the value of this node, the node is cleared and
+	 * becomes pending, and false is returned. If the pending node could
+	 * not be evaluated, marks this join as finished.
+	 */
+	private boolean evaluate(Interpreter interpreter, ASTNode node) {
+		if (!resumed) {
+			clearNode(interpreter, node);
+			pending = node;
+			// the interpreter goes on with the parent of an evaluated node; the nodes
+			// between the pending node and the comprehension are passed over, as their
+			// conjuncts are evaluated one by one (and cleared before)
+			for (ASTNode n = node; n != guard; ) {
+				n = n.getParent();
+				n.setNode(null, null, Element.UNDEF);
+			}
+			return false;
+		}
+		resumed = false;
+		if (!node.isEvaluated()) {
+			finished = true;
+			return false;
+		}
+		return true;
+	}
+
+	/*
+	 * Unbinds all the variables bound so far.
+	 */
+	private void unbindAll(Interpreter interpreter) {
+		finished = true;
+		while (depth > 0) {
+			depth--;
+			interpreter.removeEnv(variables[depth]);
+		}
+	}
+
+	/*
+	 * Adds the conjuncts of the given guard to the given list.
+	 */
+	private static void splitConjuncts(ASTNode guard, Collection<ASTNode> result) {
+		if (guard.getGrammarClassCode() == ASTNode.BINARY_OPERATOR_CLASS_CODE
+				&& AND_OP.equals(guard.getToken())) {
+			splitConjuncts(guard.getFirst(), result);
+			splitConjuncts(guard.getFirst().getNext(), result);
+		} else
+			result.add(guard);
+	}
+
+	/*
+	 * Returns the level of the last declared variable the given
+	 * node refers to, or -1 if it refers to none of the variables.
+	 */
+	private int levelOf(ASTNode node) {
+		int level = -1;
+		if (node.getGrammarClassCode() == ASTNode.ID_CLASS_CODE) {
+			for (int i = variables.length - 1; i > level; i--)
+				if (variables[i].equals(node.getToken())) {
+					level = i;
+					break;
+				}
+		}
+		for (ASTNode child = node.getFirst(); child != null; child = child.getNext())
+			level = Math.max(level, levelOf(child));
+		return level;
+	}
+
+	/*
+	 * If the given conjunct is of the form 'x = t' or 't = x', where 'x' is
+	 * the variable of the given level and 't' refers only to the variables of
+	 * lower levels, returns 't'; otherwise, returns null.
+	 */
+	private ASTNode joinKeyOf(ASTNode conjunct, int level) {
+		if (conjunct.getGrammarClassCode() != ASTNode.BINARY_OPERATOR_CLASS_CODE
+				|| !EQUALITY_OP.equals(conjunct.getToken()))
+			return null;
+		final ASTNode left = conjunct.getFirst();
+		final ASTNode right = left.getNext();
+		if (isVariable(left, level) && levelOf(right) < level)
+			return right;
+		if (isVariable(right, level) && levelOf(left) < level)
+			return left;
+		return null;
+	}
+
+	/*
+	 * Returns true if the given node is just the variable of the given level.
+	 */
+	private boolean isVariable(ASTNode node, int level) {
+		if (!(node instanceof FunctionRuleTermNode))
+			return false;
+		final FunctionRuleTermNode frNode = (FunctionRuleTermNode)node;
+		return frNode.hasName() && !frNode.hasArguments() && frNode.getName().equals(variables[level]);
+	}
+}
@@ -46,6 +46,11 @@ public class RemoveFromRuleNode extends ASTNode {
 		super(node);
 	}
 
+	@Override
+	protected RemoveFromRuleNode copy() {
+		return new RemoveFromRuleNode(this);
+	}
+
 	/**
      * Returns an unevaluated term node if any. If none exists, <code>null<code> is returned
      * 
@@ -43,6 +43,11 @@ public class ConditionalRuleNode extends ASTNode {
     public ConditionalRuleNode(ConditionalRuleNode node) {
     	super(node);
     }
+
+    @Override
+    protected ConditionalRuleNode copy() {
+        return new ConditionalRuleNode(this);
+    }
     
     /**
      * Returns the node representing the guard of the conditional rule
@@ -30,6 +30,7 @@ import org.coreasm.engine.interpreter.ASTNode;
 import org.coreasm.engine.interpreter.Interpreter;
 import org.coreasm.engine.interpreter.InterpreterException;
 import org.coreasm.engine.interpreter.Node;
+import org.coreasm.engine.interpreter.NodeEvaluator;
 import org.coreasm.engine.kernel.KernelServices;
 import org.coreasm.engine.parser.GrammarRule;
 import org.coreasm.engine.parser.ParserTools;
@@ -38,6 +39,7 @@ import org.coreasm.engine.parser.OperatorRule;
 import org.coreasm.engine.parser.ParseMapN;
 import org.coreasm.engine.parser.ParserTools.ArrayParseMap;
 import org.coreasm.engine.parser.OperatorRule.OpType;
+import org.coreasm.engine.plugin.EvaluatorProvider;
 import org.coreasm.engine.plugin.InterpreterPlugin;
 import org.coreasm.engine.plugin.OperatorProvider;
 import org.coreasm.engine.plugin.ParserPlugin;
@@ -50,7 +52,7 @@ import org.coreasm.engine.plugin.Plugin;
  *  
  */
 public class ConditionalRulePlugin extends Plugin 
-    implements ParserPlugin, InterpreterPlugin, OperatorProvider {
+    implements ParserPlugin, InterpreterPlugin, OperatorProvider, EvaluatorProvider {
 
 	public static final VersionInfo VERSION_INFO = new VersionInfo(0, 9, 1, "");
 	
@@ -116,6 +118,41 @@ public class ConditionalRulePlugin extends Plugin
         }
     }
 
+    public NodeEvaluator getEvaluator(ASTNode node) {
+    	if (node instanceof ConditionalRuleNode)
+    		return CONDITIONAL_RULE_EVALUATOR;
+    	else
+    		return null;
+    }
+
+    /*
+     * Evaluates the guard and then only the chosen rule, as in 'interpret()'.
+     */
+    private static final NodeEvaluator CONDITIONAL_RULE_EVALUATOR = new NodeEvaluator() {
+		@Override
+		public void evaluate(Interpreter interpreter, ASTNode node) throws InterpreterException {
+			ConditionalRuleNode conditionalNode = (ConditionalRuleNode) node;
+			ASTNode guard = conditionalNode.getGuard();
+			interpreter.evaluate(guard);
+			if (!guard.isEvaluated())
+				return;
+
+			ASTNode rule;
+			if (guard.getValue().equals(BooleanElement.TRUE))
+				rule = conditionalNode.getIfRule();
+			else {
+				rule = conditionalNode.getElseRule();
+				if (rule == null) { // there is no else
+					node.setNode(null, new UpdateMultiset(), null);
+					return;
+				}
+			}
+			interpreter.evaluate(rule);
+			if (rule.isEvaluated())
+				node.setNode(null, rule.getUpdates(), null);
+		}
+    };
+
 	public Set<Parser<? extends Object>> getLexers() {
 		return Collections.emptySet();
 	}
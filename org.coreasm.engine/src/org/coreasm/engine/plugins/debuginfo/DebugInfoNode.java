@@ -38,6 +38,11 @@ public class DebugInfoNode extends ASTNode {
 		super(node);
 	}
 
+	@Override
+	protected DebugInfoNode copy() {
+		return new DebugInfoNode(this);
+	}
+
 	/**
 	 * @return the channel id node
 	 */
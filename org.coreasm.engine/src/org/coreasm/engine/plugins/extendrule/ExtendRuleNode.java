@@ -42,6 +42,11 @@ public class ExtendRuleNode extends ASTNode {
 	public ExtendRuleNode(ExtendRuleNode node) {
 		super(node);
 	}
+
+	@Override
+	protected ExtendRuleNode copy() {
+		return new ExtendRuleNode(this);
+	}
 	
 	/**
 	 * Returns the universe part of this rule
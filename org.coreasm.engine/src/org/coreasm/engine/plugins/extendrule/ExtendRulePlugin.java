@@ -141,7 +141,7 @@ public class ExtendRulePlugin extends Plugin implements ParserPlugin, Interprete
 					} else
 						capi.error("Cannot extend a non-universe!", node.getUniverseNode(), interpreter);
 			} else {
-				UpdateMultiset augU = node.getRuleNode().getUpdates();
+				UpdateMultiset augU = new UpdateMultiset(node.getRuleNode().getUpdates());
 
 				if (domain instanceof UniverseElement) {
 					// create an update to add the new element to the universe
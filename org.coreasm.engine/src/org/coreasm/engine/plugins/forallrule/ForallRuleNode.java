@@ -40,6 +40,11 @@ public class ForallRuleNode extends ASTNode {
     	super(node);
     }
 
+    @Override
+    protected ForallRuleNode copy() {
+        return new ForallRuleNode(this);
+    }
+
     /**
      * 
      */
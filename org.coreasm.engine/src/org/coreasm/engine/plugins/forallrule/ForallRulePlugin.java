@@ -14,10 +14,9 @@
  
 package org.coreasm.engine.plugins.forallrule;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.List;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 
@@ -32,10 +31,12 @@ import org.coreasm.engine.interpreter.ASTNode;
 import org.coreasm.engine.interpreter.Interpreter;
 import org.coreasm.engine.interpreter.InterpreterException;
 import org.coreasm.engine.interpreter.Node;
+import org.coreasm.engine.interpreter.NodeEvaluator;
 import org.coreasm.engine.kernel.KernelServices;
 import org.coreasm.engine.parser.GrammarRule;
 import org.coreasm.engine.parser.ParserTools;
 import org.coreasm.engine.parser.ParseMapN;
+import org.coreasm.engine.plugin.EvaluatorProvider;
 import org.coreasm.engine.plugin.InterpreterPlugin;
 import org.coreasm.engine.plugin.ParserPlugin;
 import org.coreasm.engine.plugin.Plugin;
@@ -48,7 +49,7 @@ import org.coreasm.util.Tools;
  *  
  */
 public class ForallRulePlugin extends Plugin implements ParserPlugin,
-        InterpreterPlugin {
+        InterpreterPlugin, EvaluatorProvider {
 
 	public static final VersionInfo VERSION_INFO = new VersionInfo(0, 9, 3, "");
 	
@@ -57,7 +58,7 @@ public class ForallRulePlugin extends Plugin implements ParserPlugin,
 	private final String[] keywords = {"forall", "in", "with", "do", "endforall"};
 	private final String[] operators = {};
 	
-    private ThreadLocal<Map<Node,List<Element>>> remains;
+    private ThreadLocal<Map<Node,Iterator<? extends Element>>> remains;
     private ThreadLocal<Map<Node,UpdateMultiset>> updates;
     
     private Map<String, GrammarRule> parsers;
@@ -65,10 +66,10 @@ public class ForallRulePlugin extends Plugin implements ParserPlugin,
     @Override
     public void initialize() {
         //considered = new HashMap<Node,ArrayList<Element>>();
-        remains = new ThreadLocal<Map<Node, List<Element>>>() {
+        remains = new ThreadLocal<Map<Node, Iterator<? extends Element>>>() {
 			@Override
-			protected Map<Node, List<Element>> initialValue() {
-				return new HashMap<Node, List<Element>>();
+			protected Map<Node, Iterator<? extends Element>> initialValue() {
+				return new HashMap<Node, Iterator<? extends Element>>();
 			}
         };
         updates= new ThreadLocal<Map<Node,UpdateMultiset>>() {
@@ -79,7 +80,7 @@ public class ForallRulePlugin extends Plugin implements ParserPlugin,
         };
     }
  
-    private Map<Node, List<Element>> getRemainsMap() {
+    private Map<Node, Iterator<? extends Element>> getRemainsMap() {
     	return remains.get();
     }
 
@@ -133,7 +134,7 @@ public class ForallRulePlugin extends Plugin implements ParserPlugin,
         if (pos instanceof ForallRuleNode) {
             ForallRuleNode forallNode = (ForallRuleNode) pos;
             
-            Map<Node, List<Element>> remains = getRemainsMap();
+            Map<Node, Iterator<? extends Element>> remains = getRemainsMap();
             Map<Node, UpdateMultiset> updates = getUpdatesMap();
             
             if (!forallNode.getDomain().isEvaluated()) {
@@ -157,29 +158,27 @@ public class ForallRulePlugin extends Plugin implements ParserPlugin,
                     // ArrayList<Element> s = new ArrayList<Element>(((Enumerable) forallNode.getDomain().getValue()).enumerate());
                     // s.removeAll(considered.get(forallNode.getDomain()));
                 	// 
-                	// changed to the following to improve performance:
-        			List<Element> s = remains.get(forallNode.getDomain());
+                	// changed to the following to improve performance; the elements
+                	// are visited in order by a cursor over the domain, without copying it:
+        			Iterator<? extends Element> s = remains.get(forallNode.getDomain());
                 	if (s == null) {
             			Enumerable domain = (Enumerable)forallNode.getDomain().getValue();
             			if (domain.supportsIndexedView())
-            				s = new ArrayList<Element>(domain.getIndexedView());
+            				s = domain.getIndexedView().iterator();
             			else
-            				s = new ArrayList<Element>(((Enumerable) forallNode.getDomain().getValue()).enumerate());
+            				s = domain.enumerate().iterator();
                 		remains.put(forallNode.getDomain(), s);
                 	}
                     
-                    if (s.size() > 0) {
-                        // choose t in s, for simplicty choose the first 
+                    if (s.hasNext()) {
+                        // choose t in s, for simplicty choose the next one 
                         // since we have to go through all of them
-                        Element chosen = s.get(0);
+                        // SPEC: considered := considered union {t}
+                        Element chosen = s.next();
                         
                         // SPEC: AddEnv(x,t)
                         interpreter.addEnv(forallNode.getVariable().getToken(),chosen);
                         
-                        // SPEC: considered := considered union {t}
-                        //considered.get(forallNode.getDomain()).add(chosen);
-                        s.remove(0);
-                        
                         if (forallNode.getCondition() != null) {                            
                             // pos := gamma
                             return forallNode.getCondition();
@@ -258,6 +257,75 @@ public class ForallRulePlugin extends Plugin implements ParserPlugin,
         return pos;
     }
 
+    public NodeEvaluator getEvaluator(ASTNode node) {
+    	if (node instanceof ForallRuleNode)
+    		return forallEvaluator;
+    	else
+    		return null;
+    }
+
+    /*
+     * Evaluates the rule for every element of the domain that satisfies
+     * the condition and accumulates the updates, as in 'interpret()'. The
+     * elements are visited by a cursor local to the evaluation.
+     */
+    private final NodeEvaluator forallEvaluator = new NodeEvaluator() {
+		@Override
+		public void evaluate(Interpreter interpreter, ASTNode node) throws InterpreterException {
+			ForallRuleNode forallNode = (ForallRuleNode) node;
+			ASTNode domainNode = forallNode.getDomain();
+			ASTNode condition = forallNode.getCondition();
+			ASTNode doRule = forallNode.getDoRule();
+			String x = forallNode.getVariable().getToken();
+
+			interpreter.evaluate(domainNode);
+			if (!domainNode.isEvaluated())
+				return;
+			if (!(domainNode.getValue() instanceof Enumerable)) {
+				capi.error("Cannot perform a 'forall' over " + Tools.sizeLimit(domainNode.getValue().denotation())
+						+ ". Forall domain must be an enumerable element.", domainNode, interpreter);
+				return;
+			}
+
+			Enumerable domain = (Enumerable) domainNode.getValue();
+			Iterator<? extends Element> s;
+			if (domain.supportsIndexedView())
+				s = domain.getIndexedView().iterator();
+			else
+				s = domain.enumerate().iterator();
+
+			UpdateMultiset updates = new UpdateMultiset();
+			while (s.hasNext()) {
+				interpreter.addEnv(x, s.next());
+				try {
+					if (condition != null) {
+						interpreter.evaluate(condition);
+						if (!condition.isEvaluated())
+							return;
+						if (!(condition.getValue() instanceof BooleanElement)) {
+							capi.error("Value of forall condition is not Boolean.", condition, interpreter);
+							return;
+						}
+						boolean value = ((BooleanElement) condition.getValue()).getValue();
+						interpreter.clearTree(condition);
+						if (!value)
+							continue;
+					}
+					interpreter.evaluate(doRule);
+					if (!doRule.isEvaluated())
+						return;
+					if (doRule.getUpdates() != null)
+						updates.addAll(doRule.getUpdates());
+					interpreter.clearTree(doRule);
+				}
+				finally {
+					interpreter.removeEnv(x);
+				}
+			}
+			node.setNode(null, updates, null);
+		}
+    };
+
 	public VersionInfo getVersionInfo() {
 		return VERSION_INFO;
 	}
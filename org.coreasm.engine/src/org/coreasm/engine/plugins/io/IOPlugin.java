@@ -47,10 +47,10 @@ import org.coreasm.engine.interpreter.ScannerInfo;
 import org.coreasm.engine.kernel.KernelServices;
 import org.coreasm.engine.parser.GrammarRule;
 import org.coreasm.engine.parser.ParserTools;
-import org.coreasm.engine.plugin.Aggregator;
 import org.coreasm.engine.plugin.ExtensionPointPlugin;
 import org.coreasm.engine.plugin.InterpreterPlugin;
 import org.coreasm.engine.plugin.ParserPlugin;
+import org.coreasm.engine.plugin.PartitionableAggregator;
 import org.coreasm.engine.plugin.Plugin;
 import org.coreasm.engine.plugin.PluginServiceInterface;
 import org.coreasm.engine.plugin.VocabularyExtender;
@@ -65,7 +65,7 @@ import org.slf4j.LoggerFactory;
  * 
  */
 public class IOPlugin extends Plugin implements 
-		ParserPlugin, InterpreterPlugin, VocabularyExtender, ExtensionPointPlugin, Aggregator {
+		ParserPlugin, InterpreterPlugin, VocabularyExtender, ExtensionPointPlugin, PartitionableAggregator {
 
 	private static final Logger logger = LoggerFactory.getLogger(IOPlugin.class);
 	
@@ -42,6 +42,11 @@ public class PrintRuleNode extends ASTNode {
 		super(node);
 	}
 
+	@Override
+	protected PrintRuleNode copy() {
+		return new PrintRuleNode(this);
+	}
+
 	/**
 	 * @return the message part of this node
 	 */
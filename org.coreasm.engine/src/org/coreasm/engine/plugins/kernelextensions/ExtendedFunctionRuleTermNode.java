@@ -46,6 +46,11 @@ public class ExtendedFunctionRuleTermNode extends ASTNode {
     public ExtendedFunctionRuleTermNode(ExtendedFunctionRuleTermNode node) {
     	super(node);
     }
+
+    @Override
+    protected ExtendedFunctionRuleTermNode copy() {
+        return new ExtendedFunctionRuleTermNode(this);
+    }
     
     /**
      * Returns the node representing the basic function-rule term
@@ -42,6 +42,11 @@ public class ExtendedRuleCallNode extends ASTNode {
     public ExtendedRuleCallNode(ExtendedRuleCallNode node) {
     	super(node);
     }
+
+    @Override
+    protected ExtendedRuleCallNode copy() {
+        return new ExtendedRuleCallNode(this);
+    }
     
     /**
      * Returns the node representing the basic function-rule term
@@ -272,9 +272,9 @@ public class KernelExtensionsPlugin extends Plugin implements ParserPlugin, Inte
 						final List<String> params = re.getParam();
 						if (args.size() == params.size()) {
 							if (args.size()==0)
-								pos = capi.getInterpreter().ruleCall(re, null, pos);
+								pos = interpreter.ruleCall(re, null, pos);
 							else
-								pos = capi.getInterpreter().ruleCall(re, args, pos);
+								pos = interpreter.ruleCall(re, args, pos);
 						} else {
 							capi.error("The number of arguments passed to '" + re.getName()  + 
 									"' does not match its signature.", pos, interpreter);
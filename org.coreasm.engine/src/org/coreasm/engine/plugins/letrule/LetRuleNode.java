@@ -50,6 +50,11 @@ public class LetRuleNode extends ASTNode {
     	super(node);
     }
 
+    @Override
+    protected LetRuleNode copy() {
+        return new LetRuleNode(this);
+    }
+
     /**
      * Returns a map of the variable names to the nodes which
      * represent the terms that will be aliased
@@ -24,11 +24,14 @@ import org.codehaus.jparsec.Parsers;
 import org.coreasm.engine.VersionInfo;
 import org.coreasm.engine.interpreter.ASTNode;
 import org.coreasm.engine.interpreter.Interpreter;
+import org.coreasm.engine.interpreter.InterpreterException;
 import org.coreasm.engine.interpreter.Node;
+import org.coreasm.engine.interpreter.NodeEvaluator;
 import org.coreasm.engine.kernel.KernelServices;
 import org.coreasm.engine.parser.GrammarRule;
 import org.coreasm.engine.parser.ParserTools;
 import org.coreasm.engine.parser.ParseMapN;
+import org.coreasm.engine.plugin.EvaluatorProvider;
 import org.coreasm.engine.plugin.InterpreterPlugin;
 import org.coreasm.engine.plugin.ParserPlugin;
 import org.coreasm.engine.plugin.Plugin;
@@ -39,7 +42,7 @@ import org.coreasm.engine.plugin.Plugin;
  *  @author  George Ma
  *  
  */
-public class LetRulePlugin extends Plugin implements ParserPlugin, InterpreterPlugin {
+public class LetRulePlugin extends Plugin implements ParserPlugin, InterpreterPlugin, EvaluatorProvider {
 
 	public static final VersionInfo VERSION_INFO = new VersionInfo(0, 9, 1, "");
 	   
@@ -106,6 +109,49 @@ public class LetRulePlugin extends Plugin implements ParserPlugin, InterpreterPl
         return pos;
     }
 
+    public NodeEvaluator getEvaluator(ASTNode node) {
+    	if (node instanceof LetRuleNode)
+    		return letEvaluator;
+    	else
+    		return null;
+    }
+
+    /*
+     * Evaluates the aliased terms and then the rule with the aliases
+     * in the environment, as in 'interpret()'.
+     */
+    private final NodeEvaluator letEvaluator = new NodeEvaluator() {
+		@Override
+		public void evaluate(Interpreter interpreter, ASTNode node) throws InterpreterException {
+			LetRuleNode letNode = (LetRuleNode) node;
+			Map<String, ASTNode> variableMap = null;
+
+			try {
+				variableMap = letNode.getVariableMap();
+			}
+			catch (Exception e) {
+				capi.error(e.getMessage(), node, interpreter);
+				return;
+			}
+
+			for (ASTNode n: variableMap.values()) {
+				interpreter.evaluate(n);
+				if (!n.isEvaluated())
+					return;
+			}
+
+			for (Map.Entry<String, ASTNode> v: variableMap.entrySet())
+				interpreter.addEnv(v.getKey(), v.getValue().getValue());
+			ASTNode inRule = letNode.getInRule();
+			interpreter.evaluate(inRule);
+			for (String v: variableMap.keySet())
+				interpreter.removeEnv(v);
+
+			if (inRule.isEvaluated())
+				node.setNode(null, inRule.getUpdates(), null);
+		}
+    };
+
 	public Set<Parser<? extends Object>> getLexers() {
 		return Collections.emptySet();
 	}
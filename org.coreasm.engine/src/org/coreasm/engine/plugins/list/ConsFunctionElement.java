@@ -40,9 +40,14 @@ public class ConsFunctionElement extends FunctionElement {
 	public Element getValue(List<? extends Element> args) {
 		Element result = Element.UNDEF;
 		if (checkArguments(args)) {
-			List<Element> newData = new ArrayList<Element>(((AbstractListElement)args.get(1)).getList());
-			newData.add(0, args.get(0));
-			result = new ListElement(newData);
+			AbstractListElement list = (AbstractListElement)args.get(1);
+			if (list instanceof ListElement)
+				result = new ListElement(args.get(0), (ListElement)list);
+			else {
+				List<Element> newData = new ArrayList<Element>(list.getList());
+				newData.add(0, args.get(0));
+				result = new ListElement(newData);
+			}
 		}
 		return result;
 	}
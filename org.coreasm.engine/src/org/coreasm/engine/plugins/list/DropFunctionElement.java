@@ -13,7 +13,6 @@
  
 package org.coreasm.engine.plugins.list;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import org.coreasm.engine.ControlAPI;
@@ -44,15 +43,9 @@ public class DropFunctionElement extends TakeFunctionElement {
 		if (checkArguments(args)) {
 			AbstractListElement list = (AbstractListElement)args.get(0);
 			NumberElement n = (NumberElement)args.get(1);
-			List<Element> resultValues = new ArrayList<Element>();
-
-			int i = (int)n.getValue() + 1;
-			while (i <= list.size()) {
-				resultValues.add(list.get(NumberElement.getInstance(i)));
-				i++;
-			}
+			int count = (int)Math.min(n.getValue(), list.size());
 			
-			result = new ListElement(resultValues);
+			result = new ListElement(list.getList().subList(count, list.size()));
 		}
 		
 		return result;
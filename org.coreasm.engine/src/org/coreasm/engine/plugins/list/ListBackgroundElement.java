@@ -13,11 +13,15 @@
  
 package org.coreasm.engine.plugins.list;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.coreasm.engine.absstorage.BackgroundElement;
 import org.coreasm.engine.absstorage.BooleanElement;
 import org.coreasm.engine.absstorage.Element;
+import org.coreasm.engine.absstorage.ElementInput;
+import org.coreasm.engine.absstorage.ElementOutput;
 
 /** 
  * Background of list elements.
@@ -53,4 +57,21 @@ public class ListBackgroundElement extends BackgroundElement {
 		return BooleanElement.valueOf(e instanceof ListElement);
 	}
 
+	@Override
+	public void writeValue(Element value, ElementOutput out) throws IOException {
+		List<? extends Element> list = ((ListElement)value).getList();
+		out.writeInt(list.size());
+		for (Element e: list)
+			out.writeElement(e);
+	}
+
+	@Override
+	public Element readValue(ElementInput in) throws IOException {
+		int size = in.readInt();
+		List<Element> list = new ArrayList<Element>(size);
+		for (int i = 0; i < size; i++)
+			list.add(in.readElement());
+		return new ListElement(list);
+	}
+
 }
@@ -15,7 +15,6 @@ package org.coreasm.engine.plugins.list;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -30,27 +29,31 @@ import org.coreasm.engine.interpreter.Node;
 import org.coreasm.engine.plugins.collection.AbstractListElement;
 import org.coreasm.engine.plugins.collection.ModifiableIndexedCollection;
 import org.coreasm.engine.plugins.number.NumberElement;
+import org.coreasm.util.PersistentList;
 
 /** 
  * This class implements list elements in CoreASM.
+ * <p>
+ * The elements are kept in a {@link PersistentList}, so lists derived 
+ * from this list (e.g., by adding, removing, or replacing an element) 
+ * share most of their structure with it.
  *   
  * @author  Roozbeh Farahbod
  * 
  */
 public class ListElement extends AbstractListElement implements ModifiableIndexedCollection {
 
-	private List<Element> listElements;
-	private List<Element> enumerationCache = null;
+	private final PersistentList<Element> listElements;
+	
+	/** hash code of this list; 0 if not computed yet */
+	private int hashCode = 0;
 	
 	public ListElement() {
-		listElements = Collections.emptyList();
+		listElements = PersistentList.empty();
 	}
 	
 	public ListElement(Collection<? extends Element> collection) {
-		if (collection.size() == 0)
-			listElements = Collections.emptyList();
-		else
-			listElements = Collections.unmodifiableList(new ArrayList<Element>(collection));
+		listElements = PersistentList.from(collection);
 	}
 	
 	public ListElement(ListElement list) {
@@ -58,23 +61,14 @@ public class ListElement extends AbstractListElement implements ModifiableIndexe
 	}
 	
 	public ListElement(Element ... elements) {
-		if (elements.length == 0)
-			listElements = Collections.emptyList();
-		else {
-			listElements = new ArrayList<Element>();
-			for (Element e: elements) 
-				listElements.add(e);
-			listElements = Collections.unmodifiableList(listElements);
-		}
+		listElements = PersistentList.of(elements);
 	}
 	
 	/**
 	 * Creates a new list which is <i>cons(e, list)</i>.
 	 */
 	public ListElement(Element e, ListElement list) {
-		listElements = new ArrayList<Element>(list.listElements);
-		listElements.add(0, e);
-		listElements = Collections.unmodifiableList(listElements);
+		listElements = list.listElements.plus(0, e);
 	}
 	
 	@Override
@@ -84,13 +78,7 @@ public class ListElement extends AbstractListElement implements ModifiableIndexe
 				return true;
 			else {
 				List<Element> otherList = (List<Element>)((ListElement)anElement).enumerate();
-				if (otherList.size() == listElements.size()) {
-					for (int i=0; i < listElements.size(); i++)
-						if (!otherList.get(i).equals(listElements.get(i))) {
-							return false;
-						}
-					return true;
-				}
+				return listElements.equals(otherList);
 			}
 		}
 		
@@ -108,7 +96,7 @@ public class ListElement extends AbstractListElement implements ModifiableIndexe
 	 * @see AbstractListElement#getList()
 	 */
 	public List<? extends Element> getList() {
-		return Collections.unmodifiableList(listElements);
+		return listElements;
 	}
 	
 	@Override
@@ -149,9 +137,12 @@ public class ListElement extends AbstractListElement implements ModifiableIndexe
 
 	@Override
 	public int hashCode() {
-		int result = 0;
-		for (Element e: listElements) 
-		    result = 31*result + (e==null ? 0 : e.hashCode());
+		int result = hashCode;
+		if (result == 0) {
+			for (Element e: listElements) 
+			    result = 31*result + (e==null ? 0 : e.hashCode());
+			hashCode = result;
+		}
 		return result;
 	}
 
@@ -184,9 +175,7 @@ public class ListElement extends AbstractListElement implements ModifiableIndexe
 	@Override
 	public UpdateMultiset computeAddUpdate(Location loc, NumberElement index, Element e, Element agent, Node node) {
 		if (isValidIndex(index) && index.getValue() <= this.intSize()+1) {
-			List<Element> newListData = new ArrayList<Element>(this.listElements);
-			newListData.add(index.intValue() - 1, e);
-			ListElement newList = new ListElement(newListData);
+			ListElement newList = new ListElement(listElements.plus(index.intValue() - 1, e));
 			Update u = new Update(loc, newList, Update.UPDATE_ACTION, agent, node.getScannerInfo());
 			return new UpdateMultiset(u);
 		} else
@@ -196,9 +185,7 @@ public class ListElement extends AbstractListElement implements ModifiableIndexe
 	@Override
 	public UpdateMultiset computeRemoveUpdate(Location loc, NumberElement index, Element agent, Node node) {
 		if (isValidIndex(index) && index.getValue() <= this.intSize()) {
-			List<Element> newListData = new ArrayList<Element>(this.listElements);
-			newListData.remove(index.intValue() - 1);
-			ListElement newList = new ListElement(newListData);
+			ListElement newList = new ListElement(listElements.minus(index.intValue() - 1));
 			Update u = new Update(loc, newList, Update.UPDATE_ACTION, agent, node.getScannerInfo());
 			return new UpdateMultiset(u);
 		} else
@@ -230,6 +217,17 @@ public class ListElement extends AbstractListElement implements ModifiableIndexe
 		return get(NumberElement.getInstance(index));
 	}
 	
+	/**
+	 * Returns a list which is the same as this list, except that its 
+	 * element at the given index is the given element. As in {@link #get(int)},
+	 * indices start from 1.
+	 * 
+	 * @throws IndexOutOfBoundsException if there is no element at the given index
+	 */
+	public ListElement setNth(int index, Element e) {
+		return new ListElement(listElements.with(index - 1, e));
+	}
+	
 	@Override
 	public NumberElement indexOf(Element e) {
 		// note: in CoreASM list indices start from 1
@@ -261,9 +259,9 @@ public class ListElement extends AbstractListElement implements ModifiableIndexe
 
 	@Override
 	public UpdateMultiset computeRemoveUpdate(Location loc, Element e, Element agent, Node node) {
-		List<Element> newListData = new ArrayList<Element>(listElements);
-		if (newListData.remove(e)) {
-			ListElement newList = new ListElement(newListData);
+		final int i = listElements.indexOf(e);
+		if (i >= 0) {
+			ListElement newList = new ListElement(listElements.minus(i));
 			Update u = new Update(loc, newList, Update.UPDATE_ACTION, agent, node.getScannerInfo());
 			return new UpdateMultiset(u);
 		} else
@@ -346,7 +344,7 @@ public class ListElement extends AbstractListElement implements ModifiableIndexe
 		if (this.intSize() < 2)
 			return new ListElement();
 		else {
-			return new ListElement(new ArrayList<Element>(listElements.subList(1, listElements.size())));
+			return new ListElement(listElements.minus(0));
 		}
 			
 	}
@@ -361,9 +359,7 @@ public class ListElement extends AbstractListElement implements ModifiableIndexe
 		if (e.size() == 0)
 			return this;
 		else {
-			List<Element> list = new ArrayList<Element>(this.getList());
-			list.addAll(e.enumerate());
-			return new ListElement(list);
+			return new ListElement(listElements.concat(PersistentList.from(e.enumerate())));
 		}
 	}
 
@@ -379,9 +375,7 @@ public class ListElement extends AbstractListElement implements ModifiableIndexe
 	}
 
 	public List<Element> getIndexedView() throws UnsupportedOperationException {
-		if (enumerationCache == null) 
-			enumerationCache = Collections.unmodifiableList(listElements);
-		return enumerationCache;
+		return listElements;
 	}
 
 	public boolean supportsIndexedView() {
@@ -40,6 +40,11 @@ public class ListTermNode extends ASTNode {
 		super(node);
 	}
 
+	@Override
+	protected ListTermNode copy() {
+		return new ListTermNode(this);
+	}
+
 	/**
 	 * @return the list of elements (nodes) in this list
 	 */
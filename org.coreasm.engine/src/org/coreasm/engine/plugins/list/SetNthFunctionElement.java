@@ -13,7 +13,6 @@
  
 package org.coreasm.engine.plugins.list;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import org.coreasm.engine.ControlAPI;
@@ -57,12 +56,7 @@ public class SetNthFunctionElement extends ListFunctionElement {
 			ListElement list = (ListElement) args.get(0);
 			NumberElement n = (NumberElement)args.get(1);
 			if (n.getValue() <= list.size() + 1) {
-				List<Element> resultValues = new ArrayList<Element>();
-				for (Element e: list.enumerate()) 
-					resultValues.add(e);
-				resultValues.set((int)n.getValue()-1, args.get(2));
-				
-				result = new ListElement(resultValues);
+				result = list.setNth((int)n.getValue(), args.get(2));
 			}
 		}
 		
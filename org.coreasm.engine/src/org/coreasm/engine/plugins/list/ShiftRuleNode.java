@@ -32,6 +32,11 @@ public class ShiftRuleNode extends ASTNode {
 		super(node);
 		this.isLeft = node.isLeft;
 	}
+
+	@Override
+	protected ShiftRuleNode copy() {
+		return new ShiftRuleNode(this);
+	}
 	
 	public ShiftRuleNode(ScannerInfo info, boolean isLeft) {
 		super(ListPlugin.PLUGIN_NAME,
@@ -13,7 +13,6 @@
  
 package org.coreasm.engine.plugins.list;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import org.coreasm.engine.ControlAPI;
@@ -48,17 +47,9 @@ public class TakeFunctionElement extends NthFunctionElement {
 		if (checkArguments(args)) {
 			AbstractListElement list = (AbstractListElement)args.get(0);
 			NumberElement n = (NumberElement)args.get(1);
-			List<Element> newValues = new ArrayList<Element>();
+			int count = (int)Math.min(n.getValue(), list.size());
 			
-			int i = 1;
-			while (i <= (int)n.getValue()) {
-				if (i > list.size())
-					break;
-				newValues.add(list.get(NumberElement.getInstance(i)));
-				i++;
-			}
-			
-			result = new ListElement(newValues);
+			result = new ListElement(list.getList().subList(0, count));
 		}
 		
 		return result;
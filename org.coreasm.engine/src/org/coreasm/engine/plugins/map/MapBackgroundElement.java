@@ -13,9 +13,16 @@
  
 package org.coreasm.engine.plugins.map;
 
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
 import org.coreasm.engine.absstorage.BackgroundElement;
 import org.coreasm.engine.absstorage.BooleanElement;
 import org.coreasm.engine.absstorage.Element;
+import org.coreasm.engine.absstorage.ElementInput;
+import org.coreasm.engine.absstorage.ElementOutput;
 
 /** 
  * Background of MapElements.
@@ -48,4 +55,25 @@ public class MapBackgroundElement extends BackgroundElement {
 			return BooleanElement.FALSE;
 	}
 
+	@Override
+	public void writeValue(Element value, ElementOutput out) throws IOException {
+		Map<Element, Element> map = ((MapElement)value).getMap();
+		out.writeInt(map.size());
+		for (Entry<Element, Element> e: map.entrySet()) {
+			out.writeElement(e.getKey());
+			out.writeElement(e.getValue());
+		}
+	}
+
+	@Override
+	public Element readValue(ElementInput in) throws IOException {
+		int size = in.readInt();
+		Map<Element, Element> map = new HashMap<Element, Element>();
+		for (int i = 0; i < size; i++) {
+			Element key = in.readElement();
+			map.put(key, in.readElement());
+		}
+		return new MapElement(map);
+	}
+
 }
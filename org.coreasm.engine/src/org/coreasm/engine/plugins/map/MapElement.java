@@ -34,6 +34,7 @@ import org.coreasm.engine.plugins.collection.AbstractListElement;
 import org.coreasm.engine.plugins.collection.AbstractMapElement;
 import org.coreasm.engine.plugins.collection.ModifiableCollection;
 import org.coreasm.engine.plugins.list.ListElement;
+import org.coreasm.util.PersistentHashMap;
 
 /** 
  * Map elements
@@ -43,7 +44,7 @@ import org.coreasm.engine.plugins.list.ListElement;
  */
 public class MapElement extends AbstractMapElement implements ModifiableCollection {
 
-	protected final Map<Element, Element> map;
+	protected final PersistentHashMap<Element, Element> map;
 	protected Set<Element> keySet = null;
 	protected Set<Element> valueSet = null;
 	protected Collection<Element> valueCollection = null;
@@ -51,11 +52,11 @@ public class MapElement extends AbstractMapElement implements ModifiableCollecti
 	protected List<Element> enumListCache = null;
 	
 	public MapElement() {
-		this.map = Collections.unmodifiableMap(new HashMap<Element, Element>());
+		this.map = PersistentHashMap.empty();
 	}
 	
 	public MapElement(Map<? extends Element, ? extends Element> map) {
-		this.map = Collections.unmodifiableMap(new HashMap<Element, Element>(map));
+		this.map = PersistentHashMap.from(map);
 	}
 	
 	public MapElement(MapElement anotherMap) {
@@ -201,7 +202,7 @@ public class MapElement extends AbstractMapElement implements ModifiableCollecti
 
 	@Override
 	public Map<Element, Element> getMap() {
-		return Collections.unmodifiableMap(map);
+		return map;
 	}
 
 	public List<Element> getIndexedView() throws UnsupportedOperationException {
@@ -227,8 +228,9 @@ public class MapElement extends AbstractMapElement implements ModifiableCollecti
 	public UpdateMultiset computeAddUpdate(Location loc, Element e,
 			Element agent, Node node) throws InterpreterException {
 		if (e instanceof AbstractMapElement) {
-			HashMap<Element, Element> tempMap = new HashMap<Element, Element>(this.map);
-			tempMap.putAll(((AbstractMapElement)e).getMap());
+			PersistentHashMap<Element, Element> tempMap = this.map;
+			for (Entry<? extends Element, ? extends Element> me: ((AbstractMapElement)e).getMap().entrySet())
+				tempMap = tempMap.plus(me.getKey(), me.getValue());
 			MapElement newMap = new MapElement(tempMap);
 			Update u = new Update(loc, newMap, Update.UPDATE_ACTION, agent, node.getScannerInfo());
 			return new UpdateMultiset(u);
@@ -248,7 +250,7 @@ public class MapElement extends AbstractMapElement implements ModifiableCollecti
 	@Override
 	public UpdateMultiset computeRemoveUpdate(Location loc, Element e,
 			Element agent, Node node) throws InterpreterException {
-		HashMap<Element, Element> tempMap = new HashMap<Element, Element>(this.map);
+		PersistentHashMap<Element, Element> tempMap = this.map;
 		if (e instanceof MapElement) {
 			/*
 			 * if the element is a MapElement then remove all the key-value 
@@ -257,15 +259,15 @@ public class MapElement extends AbstractMapElement implements ModifiableCollecti
 			for (Entry<Element, Element> me: ((MapElement)e).map.entrySet()) {
 				final Element key = me.getKey();
 				if (tempMap.get(key) != null && tempMap.get(key).equals(me.getValue()))
-					tempMap.remove(key);
+					tempMap = tempMap.minus(key);
 			}
 		} else
 			if (e instanceof Enumerable) {
 				for (Element ei: ((Enumerable)e).enumerate()) {
-					tempMap.remove(ei);
+					tempMap = tempMap.minus(ei);
 				}
 			} else
-				tempMap.remove(e);
+				tempMap = tempMap.minus(e);
 		
 		MapElement newMap = new MapElement(tempMap);
 		Update u = new Update(loc, newMap, Update.UPDATE_ACTION, agent, node.getScannerInfo());
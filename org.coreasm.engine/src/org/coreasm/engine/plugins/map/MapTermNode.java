@@ -35,4 +35,9 @@ public class MapTermNode extends ASTNode {
 	public MapTermNode(MapTermNode node) {
 		super(node);
 	}
+
+	@Override
+	protected MapTermNode copy() {
+		return new MapTermNode(this);
+	}
 }
@@ -43,6 +43,11 @@ public class MapletNode extends ASTNode {
 		super(node);
 	}
 
+	@Override
+	protected MapletNode copy() {
+		return new MapletNode(this);
+	}
+
 	/**
 	 * @return the first child of this node (which is the 'key' part)
 	 */
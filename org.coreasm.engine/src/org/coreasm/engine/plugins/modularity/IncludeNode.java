@@ -24,6 +24,11 @@ public class IncludeNode extends Node {
 	public IncludeNode(IncludeNode self){
 		this( self.getPluginName(), self.getToken(), self.getScannerInfo(), self.getConcreteNodeType() );
 	}
+
+	@Override
+	protected IncludeNode copy() {
+		return new IncludeNode(this);
+	}
 	
 	public IncludeNode(ScannerInfo scannerInfo) {
 		super(ModularityPlugin.PLUGIN_NAME, "include", scannerInfo, "Include");
@@ -12,9 +12,13 @@
  
 package org.coreasm.engine.plugins.number;
 
+import java.io.IOException;
+
 import org.coreasm.engine.absstorage.BackgroundElement;
 import org.coreasm.engine.absstorage.BooleanElement;
 import org.coreasm.engine.absstorage.Element;
+import org.coreasm.engine.absstorage.ElementInput;
+import org.coreasm.engine.absstorage.ElementOutput;
 
 /** 
  *	Background of numbers.
@@ -84,4 +88,14 @@ public class NumberBackgroundElement extends BackgroundElement {
 		return (e instanceof NumberElement)?BooleanElement.TRUE:BooleanElement.FALSE;
 	}
 
+	@Override
+	public void writeValue(Element value, ElementOutput out) throws IOException {
+		out.writeDouble(((NumberElement)value).getValue());
+	}
+
+	@Override
+	public Element readValue(ElementInput in) throws IOException {
+		return NumberElement.getInstance(in.readDouble());
+	}
+
 }
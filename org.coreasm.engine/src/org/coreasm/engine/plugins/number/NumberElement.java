@@ -27,7 +27,21 @@ public class NumberElement extends Element implements Comparable<NumberElement>
 	public static final NumberElement MAX_VALUE = new NumberElement(Double.MAX_VALUE);
 	public static final NumberElement MIN_VALUE = new NumberElement(Double.MIN_VALUE);
 	
-	protected final Double value;
+	/** the smallest and the largest integral values whose elements are cached */
+	private static final int CACHE_LOW = -128;
+	private static final int CACHE_HIGH = 1023;
+	
+	/** shared elements of the small integral values */
+	private static final NumberElement[] cache = new NumberElement[CACHE_HIGH - CACHE_LOW + 1];
+	
+	static {
+		for (int i = 0; i < cache.length; i++)
+			cache[i] = new NumberElement(i + CACHE_LOW);
+	}
+	
+	private static final long NEGATIVE_ZERO_BITS = Double.doubleToRawLongBits(-0.0);
+	
+	protected final double value;
 	protected final boolean isInteger;
 	
 	/*
@@ -37,16 +51,23 @@ public class NumberElement extends Element implements Comparable<NumberElement>
 	 */
 	protected NumberElement(double number)
 	{
-		this.value = new Double(number);
-		this.isInteger = (this.value - this.value.longValue() == 0);
+		this.value = number;
+		this.isInteger = (number - (long)number == 0);
 	}
 	
 	/**
-	 * Creates a new NumberElement instance with the given double value.
+	 * Returns a NumberElement instance with the given double value. 
+	 * The instances of small integral values (-128 to 1023) are shared.
 	 * 
 	 * @param d double value
 	 */
-	public synchronized static NumberElement getInstance(double d) {
+	public static NumberElement getInstance(double d) {
+		if (d >= CACHE_LOW && d <= CACHE_HIGH) {
+			final int i = (int)d;
+			// -0.0 is not equal to 0.0 (see equals(Object))
+			if (i == d && Double.doubleToRawLongBits(d) != NEGATIVE_ZERO_BITS)
+				return cache[i - CACHE_LOW];
+		}
 		return new NumberElement(d);
 	}
 
@@ -60,7 +81,7 @@ public class NumberElement extends Element implements Comparable<NumberElement>
 	 */
 	@Override
 	public String denotation() {
-		return value.toString();
+		return Double.toString(value);
 	}
 	
 	/**
@@ -72,7 +93,7 @@ public class NumberElement extends Element implements Comparable<NumberElement>
 		if (isInteger)
 			return String.valueOf(longValue());
 		else
-			return value.toString();
+			return Double.toString(value);
 	}
 	
 	/**
@@ -105,7 +126,7 @@ public class NumberElement extends Element implements Comparable<NumberElement>
 	 * as a double.
 	 */
 	public double doubleValue() {
-		return this.getValue();
+		return value;
 	}
 
 	/**
@@ -115,7 +136,7 @@ public class NumberElement extends Element implements Comparable<NumberElement>
 	 * @see Double#longValue()
 	 */
 	public long longValue() {
-		return value.longValue();
+		return (long)value;
 	}
 	
 	/**
@@ -125,7 +146,7 @@ public class NumberElement extends Element implements Comparable<NumberElement>
 	 * @see Double#intValue()
 	 */
 	public int intValue() {
-		return value.intValue();
+		return (int)value;
 	}
 	
 	//----------------------
@@ -142,7 +163,7 @@ public class NumberElement extends Element implements Comparable<NumberElement>
  	 * @throws IllegalArgumentException if <code>anElement</code> is not an instance
  	 * of <code>Element</code>
  	 */
- 	public synchronized boolean equals(Object anElement) {
+ 	public boolean equals(Object anElement) {
  		// if both java objects are idential, no further checks are required
  		if (this == anElement)
  			return true;
@@ -154,8 +175,8 @@ public class NumberElement extends Element implements Comparable<NumberElement>
 	 		if (anElement instanceof NumberElement)
 	 		{
 	 			// if the current number and the other number equal each other
-	 			// then objects are equal
-	 			return value.equals(((NumberElement)anElement).value);
+	 			// then objects are equal (as in Double.equals)
+	 			return Double.doubleToLongBits(value) == Double.doubleToLongBits(((NumberElement)anElement).value);
 	 		} else
 	 			return false;
  		}
@@ -168,7 +189,9 @@ public class NumberElement extends Element implements Comparable<NumberElement>
 	 */
 	@Override
 	public int hashCode() {
-		return value.hashCode(); 
+		// as in Double.hashCode()
+		final long bits = Double.doubleToLongBits(value);
+		return (int)(bits ^ (bits >>> 32)); 
 	}
 
 	/**
@@ -177,7 +200,7 @@ public class NumberElement extends Element implements Comparable<NumberElement>
 	 * @see Comparable#compareTo(Object)
 	 */
 	public int compareTo(NumberElement n) {
-		return value.compareTo(n.value);
+		return Double.compare(value, n.value);
 	}
 
     /**
@@ -185,7 +208,7 @@ public class NumberElement extends Element implements Comparable<NumberElement>
      * 
      */
     public double getNumber() {
-        return value.doubleValue();
+        return value;
     }
 
     /**
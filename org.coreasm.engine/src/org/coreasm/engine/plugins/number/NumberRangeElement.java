@@ -12,15 +12,19 @@
  
 package org.coreasm.engine.plugins.number;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.RandomAccess;
 
 import org.coreasm.engine.absstorage.Element;
 import org.coreasm.engine.absstorage.Enumerable;
 
 /** 
  *	Class for Number Range Elements;
+ *	a range counts down if its step is negative, and it is 
+ *	empty if its step leads away from its end.
  *   
  *  @author  George Ma
  *  
@@ -34,6 +38,9 @@ public class NumberRangeElement extends Element implements Enumerable {
     private List<Element> enumeration = null;
 	
     private static final double DEFAULT_STEP = 1.0;
+    
+    /** bound below which all integers are exactly representable as doubles */
+    private static final double MAX_EXACT = 9007199254740992.0;
 	
     /**
      * Creates a new NumberRangeElement
@@ -48,14 +55,11 @@ public class NumberRangeElement extends Element implements Enumerable {
      * Creates a new NumberRangeElement
      * @param start - lower bound of range
      * @param end - upper bound of range
-     * @param step - range increment size, must be greater than 0
+     * @param step - range increment size, must not be 0
      */
     public NumberRangeElement(double start, double end, double step) {
-        if (step <= 0) {
-            throw new IllegalArgumentException("Step size for a NumberRangeElement must be greater than 0.");
-        }
-        if (start > end) {
-            throw new IllegalArgumentException("Start value must be less than end value for NumberRangeElement.");
+        if (step == 0) {
+            throw new IllegalArgumentException("Step size for a NumberRangeElement must not be 0.");
         }
         this.start = start;
         this.end = end;
@@ -125,8 +129,7 @@ public class NumberRangeElement extends Element implements Enumerable {
         if (NumberUtil.isInteger(e)) {
             NumberElement n = (NumberElement) e;
             
-            return (n.value >= start) 
-            		&& (n.value <= end) 
+            return (step > 0 ? n.value >= start && n.value <= end : n.value <= start && n.value >= end) 
             		&& NumberUtil.isInteger(NumberElement.getInstance((n.value - start) / step));
         }
         
@@ -161,12 +164,17 @@ public class NumberRangeElement extends Element implements Enumerable {
 
 	public List<Element> getIndexedView() throws UnsupportedOperationException {
     	if (enumeration == null) {
-	        enumeration = new ArrayList<Element>();
-	        
-	        for (double n = start; n <= end; n+=step) {
-	            enumeration.add(NumberElement.getInstance(n));
-	        }
-	        
+    		if (isIntegral())
+    			// the members are computed on demand, so that ranges
+    			// can be iterated over without being stored in memory
+    			enumeration = new RangeView(Math.max(0, (int)Math.floor((end - start) / step) + 1));
+    		else {
+		        enumeration = new ArrayList<Element>();
+		        
+		        for (double n = start; (step > 0) ? n <= end : n >= end; n+=step) {
+		            enumeration.add(NumberElement.getInstance(n));
+		        }
+    		}
     	} 
     	return enumeration;
 	}
@@ -178,4 +186,38 @@ public class NumberRangeElement extends Element implements Enumerable {
 	public int size() {
 		return getIndexedView().size();
 	}
+
+	/*
+	 * Returns true if the members of this range are integers that
+	 * can be computed exactly as start + i * step, and there are
+	 * at most Integer.MAX_VALUE of them.
+	 */
+	private boolean isIntegral() {
+		return start == Math.rint(start) && step == Math.rint(step)
+				&& Math.abs(start) < MAX_EXACT && Math.abs(end) < MAX_EXACT
+				&& (end - start) / step < Integer.MAX_VALUE;
+	}
+
+	/*
+	 * An unmodifiable view of the members of an integral range.
+	 */
+	private class RangeView extends AbstractList<Element> implements RandomAccess {
+		private final int size;
+
+		RangeView(int size) {
+			this.size = size;
+		}
+
+		@Override
+		public Element get(int index) {
+			if (index < 0 || index >= size)
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+			return NumberElement.getInstance(start + index * step);
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+	}
 }
@@ -46,6 +46,11 @@ public class NumberRangeNode extends ASTNode {
     	super(node);
     }
 
+    @Override
+    protected NumberRangeNode copy() {
+        return new NumberRangeNode(this);
+    }
+
     /**
      * Returns the node representing the guard of the conditional rule
      */
@@ -47,4 +47,9 @@ public class NumberTermNode extends ASTNode {
     	super(node);
     }
 
+    @Override
+    protected NumberTermNode copy() {
+        return new NumberTermNode(this);
+    }
+
 }
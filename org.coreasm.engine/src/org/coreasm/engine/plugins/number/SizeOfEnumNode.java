@@ -39,6 +39,11 @@ public class SizeOfEnumNode extends ASTNode {
 	public SizeOfEnumNode(SizeOfEnumNode node) {
 		super(node);
 	}
+
+	@Override
+	protected SizeOfEnumNode copy() {
+		return new SizeOfEnumNode(this);
+	}
 	
 	/**
 	 * @return the node containing the enumberable element
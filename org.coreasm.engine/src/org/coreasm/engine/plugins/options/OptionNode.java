@@ -39,6 +39,11 @@ public class OptionNode extends ASTNode {
 	public OptionNode(OptionNode node) {
 		super(node);
 	}
+
+	@Override
+	protected OptionNode copy() {
+		return new OptionNode(this);
+	}
 	
 	/**
 	 * @return the name of this property/option
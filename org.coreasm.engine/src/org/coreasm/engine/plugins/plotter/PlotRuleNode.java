@@ -40,6 +40,11 @@ public class PlotRuleNode extends ASTNode {
 		super(node);
 	}
 
+	@Override
+	protected PlotRuleNode copy() {
+		return new PlotRuleNode(this);
+	}
+
 	/**
 	 * Returns the node that contains the function to be plotted.
 	 * 
@@ -47,6 +47,11 @@ public class ExistsExpNode extends ASTNode {
     public ExistsExpNode(ExistsExpNode node) {
     	super(node);
     }
+
+    @Override
+    protected ExistsExpNode copy() {
+        return new ExistsExpNode(this);
+    }
     
     /**
      * Returns the node representing the bound variable of the Exists expression
@@ -47,6 +47,11 @@ public class ForallExpNode extends ASTNode {
     	super(node);
     }
 
+    @Override
+    protected ForallExpNode copy() {
+        return new ForallExpNode(this);
+    }
+
     /**
      * Returns the node representing the bound variable of the forall expression
      */
@@ -43,6 +43,11 @@ public class DequeueRuleNode extends ASTNode {
 		super(node);
 	}
 
+	@Override
+	protected DequeueRuleNode copy() {
+		return new DequeueRuleNode(this);
+	}
+
 	/**
 	 * @return the node representing the location where the popped value should be stored
 	 */
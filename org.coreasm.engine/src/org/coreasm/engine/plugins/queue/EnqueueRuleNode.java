@@ -43,6 +43,11 @@ public class EnqueueRuleNode extends ASTNode {
 		super(node);
 	}
 
+	@Override
+	protected EnqueueRuleNode copy() {
+		return new EnqueueRuleNode(this);
+	}
+
 	/**
 	 * @return the node representing the location where the popped value should be stored
 	 */
@@ -38,6 +38,11 @@ public class AgentManagementRuleNode extends ASTNode {
 		super(node);
 	}
 
+	@Override
+	protected AgentManagementRuleNode copy() {
+		return new AgentManagementRuleNode(this);
+	}
+
 	/**
 	 * @return the keyword part of this node
 	 */
@@ -38,6 +38,11 @@ public class ResumeAgentNode extends ASTNode {
 		super(node);
 	}
 
+	@Override
+	protected ResumeAgentNode copy() {
+		return new ResumeAgentNode(this);
+	}
+
 	/**
 	 * @return the term part of this node that refers to the agent
 	 */
@@ -12,9 +12,16 @@
 
 package org.coreasm.engine.plugins.set;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
 import org.coreasm.engine.absstorage.BackgroundElement;
 import org.coreasm.engine.absstorage.BooleanElement;
 import org.coreasm.engine.absstorage.Element;
+import org.coreasm.engine.absstorage.ElementInput;
+import org.coreasm.engine.absstorage.ElementOutput;
 
 /**
  * An abstract class that implements the SET background Element.
@@ -62,4 +69,21 @@ public class SetBackgroundElement extends BackgroundElement {
 		return (e instanceof SetElement)?BooleanElement.TRUE:BooleanElement.FALSE;
 	}
 
+	@Override
+	public void writeValue(Element value, ElementOutput out) throws IOException {
+		Collection<? extends Element> members = ((SetElement)value).enumerate();
+		out.writeInt(members.size());
+		for (Element e: members)
+			out.writeElement(e);
+	}
+
+	@Override
+	public Element readValue(ElementInput in) throws IOException {
+		int size = in.readInt();
+		List<Element> members = new ArrayList<Element>(size);
+		for (int i = 0; i < size; i++)
+			members.add(in.readElement());
+		return new SetElement(members);
+	}
+
 }
@@ -44,6 +44,11 @@ public class SetCompNode extends ASTNode {
 		super(node);
 	}
 
+	@Override
+	protected SetCompNode copy() {
+		return new SetCompNode(this);
+	}
+
 	/**
 	 * @return the first occurrence of the specifier variable
 	 */
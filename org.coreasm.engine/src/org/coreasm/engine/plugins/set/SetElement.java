@@ -32,9 +32,14 @@ import org.coreasm.engine.interpreter.Node;
 import org.coreasm.engine.plugins.collection.AbstractMapElement;
 import org.coreasm.engine.plugins.collection.AbstractSetElement;
 import org.coreasm.engine.plugins.collection.ModifiableCollection;
+import org.coreasm.util.PersistentHashSet;
 
 /** 
  *	This implements the Set Element.
+ *  <p>
+ *  The members are kept in a {@link PersistentHashSet}, so sets that differ in a 
+ *  few members (see {@link #plus(Element)} and {@link #minus(Element)}) 
+ *  share most of their structure.
  *   
  *  @author  Mashaal Memon, Roozbeh Farahbod
  *  
@@ -43,9 +48,8 @@ public class SetElement extends AbstractSetElement implements ModifiableCollecti
 
 	protected static final Set<Element> falseValues;
 	protected static final Set<Element> booleanValues;
-	protected final Set<Element> members;
+	protected final PersistentHashSet<Element> members;
 	
-	protected Set<Element> enumCache = null;
 	protected List<Element> enumListCache = null;
 	protected Map<Element, Element> map = null;
 	
@@ -60,11 +64,11 @@ public class SetElement extends AbstractSetElement implements ModifiableCollecti
 	}
 	
 	public SetElement() {
-		members = Collections.emptySet();
+		members = PersistentHashSet.empty();
 	}
 	
 	public SetElement(Collection<? extends Element> members) {
-		this.members = Collections.unmodifiableSet(new HashSet<Element>(members));
+		this.members = PersistentHashSet.from(members);
 	}
 	
 	public SetElement(SetElement anotherSet) {
@@ -75,6 +79,22 @@ public class SetElement extends AbstractSetElement implements ModifiableCollecti
 		return SetBackgroundElement.SET_BACKGROUND_NAME;
 	}
 
+	/**
+	 * Returns a set with the members of this set and the given element.
+	 */
+	public SetElement plus(Element e) {
+		final PersistentHashSet<Element> newMembers = members.plus(e);
+		return (newMembers == members) ? this : new SetElement(newMembers);
+	}
+
+	/**
+	 * Returns a set with the members of this set except the given element.
+	 */
+	public SetElement minus(Element e) {
+		final PersistentHashSet<Element> newMembers = members.minus(e);
+		return (newMembers == members) ? this : new SetElement(newMembers);
+	}
+
 	/*
 	 * Adds a member element to this set. Returns true if element was not already present in set,
 	 * and false otherwise.
@@ -204,15 +224,8 @@ public class SetElement extends AbstractSetElement implements ModifiableCollecti
 	@Override
 	public int hashCode() {
 		// two set elements with the same members will have members with the same
-		// hashCodes so add it up
-		
-		int resultantHashCode = 0;
-		
-		// sum up hashcode of member elements
-		for (Element e : enumerate())
-		    resultantHashCode = resultantHashCode + (e==null ? 0 : e.hashCode());
-		
-		return resultantHashCode; 
+		// hashCodes so add it up (the members cache the sum)
+		return members.hashCode(); 
 	}
 
 	@Override
@@ -264,7 +277,7 @@ public class SetElement extends AbstractSetElement implements ModifiableCollecti
 
 	@Override
 	public Set<Element> keySet() {
-		return Collections.unmodifiableSet(members);
+		return members;
 	}
 
 	public int size() {
@@ -291,9 +304,7 @@ public class SetElement extends AbstractSetElement implements ModifiableCollecti
 	//----------------------
 
 	public Collection<Element> enumerate() {
-		if (enumCache == null)
-			enumCache = Collections.unmodifiableSet(this.keySet());
-		return enumCache;
+		return members;
 	}
 	
 	public boolean contains(Element e) {
@@ -329,7 +340,7 @@ public class SetElement extends AbstractSetElement implements ModifiableCollecti
 
 	@Override
 	public Set<Element> getSet() {
-		return Collections.unmodifiableSet(members);
+		return members;
 	}
 
 }
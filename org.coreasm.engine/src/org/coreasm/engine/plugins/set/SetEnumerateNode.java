@@ -48,6 +48,11 @@ public class SetEnumerateNode extends ASTNode {
 		super(node);
 	}
 
+	@Override
+	protected SetEnumerateNode copy() {
+		return new SetEnumerateNode(this);
+	}
+
 	/**
      * Returns an unevaluated child node if any. If none exists, <code>null<code> is returned
      * 
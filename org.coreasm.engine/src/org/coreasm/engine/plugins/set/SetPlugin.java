@@ -50,13 +50,15 @@ import org.coreasm.engine.parser.GrammarRule;
 import org.coreasm.engine.parser.OperatorRule;
 import org.coreasm.engine.parser.OperatorRule.OpType;
 import org.coreasm.engine.parser.ParserTools;
-import org.coreasm.engine.plugin.Aggregator;
 import org.coreasm.engine.plugin.InterpreterPlugin;
 import org.coreasm.engine.plugin.OperatorProvider;
 import org.coreasm.engine.plugin.ParserPlugin;
+import org.coreasm.engine.plugin.PartitionableAggregator;
 import org.coreasm.engine.plugin.Plugin;
 import org.coreasm.engine.plugin.VocabularyExtender;
 import org.coreasm.engine.plugins.collection.AbstractSetElement;
+import org.coreasm.engine.plugins.collection.ComprehensionJoin;
+import org.coreasm.util.PersistentHashSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -68,7 +70,7 @@ import org.slf4j.LoggerFactory;
  *  
  */
 public class SetPlugin extends Plugin 
-		implements VocabularyExtender, OperatorProvider, Aggregator, 
+		implements VocabularyExtender, OperatorProvider, PartitionableAggregator, 
 				ParserPlugin, InterpreterPlugin {
 
 	public static final VersionInfo VERSION_INFO = new VersionInfo(0, 10, 2, "");
@@ -106,7 +108,7 @@ public class SetPlugin extends Plugin
 	private ThreadLocal<Map<ASTNode, Collection<Element>>> tobeConsidered;
 	
 	/* keeps track of to-be-considered values in an advanced set comprehension */
-	private ThreadLocal<Map<ASTNode, Collection<Map<String,Element>>>> tobeConsideredAdv;
+	private ThreadLocal<Map<ASTNode, ComprehensionJoin>> tobeConsideredAdv;
 	
 	/* keeps new sets created on a set comprehension node */
 	private ThreadLocal<Map<ASTNode, Set<Element>>> newSet;
@@ -141,10 +143,10 @@ public class SetPlugin extends Plugin
 				return new HashMap<ASTNode, Collection<Element>>();
 			}
 		};
-		tobeConsideredAdv= new ThreadLocal<Map<ASTNode,Collection<Map<String,Element>>>>() {
+		tobeConsideredAdv= new ThreadLocal<Map<ASTNode,ComprehensionJoin>>() {
 			@Override
-			protected Map<ASTNode, Collection<Map<String, Element>>> initialValue() {
-				return new HashMap<ASTNode, Collection<Map<String,Element>>>();
+			protected Map<ASTNode, ComprehensionJoin> initialValue() {
+				return new HashMap<ASTNode, ComprehensionJoin>();
 			}
 		};
 		newSet= new ThreadLocal<Map<ASTNode,Set<Element>>>() {
@@ -167,7 +169,7 @@ public class SetPlugin extends Plugin
 	/*
 	 * Returns the instance of 'tobeConsideredAdv' map for this thread.
 	 */
-	private Map<ASTNode, Collection<Map<String, Element>>> getToBeConsideredAdvMap() {
+	private Map<ASTNode, ComprehensionJoin> getToBeConsideredAdvMap() {
 		return tobeConsideredAdv.get();
 	}
 	
@@ -190,12 +192,12 @@ public class SetPlugin extends Plugin
 	/* (non-Javadoc)
 	 * @see org.coreasm.engine.Plugin#interpret(org.coreasm.engine.interpreter.ASTNode)
 	 */
-	public ASTNode interpret(Interpreter interpreter, ASTNode pos) {
+	public ASTNode interpret(Interpreter interpreter, ASTNode pos) throws InterpreterException {
 		ASTNode nextPos = pos;
 		String gClass = pos.getGrammarClass();
         
 		Map<ASTNode, Collection<Element>> tobeConsidered = getToBeConsideredMap();
-		Map<ASTNode, Collection<Map<String, Element>>> tobeConsideredAdv = getToBeConsideredAdvMap();
+		Map<ASTNode, ComprehensionJoin> tobeConsideredAdv = getToBeConsideredAdvMap();
 		Map<ASTNode, Set<Element>> newSet = getNewSetMap();
 		
 		// if set related expression
@@ -294,18 +296,21 @@ public class SetPlugin extends Plugin
 					// "No two constrainer variables may have the same name."
 					capi.error(e);
 				}
-				ASTNode guard = node.getGuard();
 				ASTNode expression = node.getSetFunction();
+				ComprehensionJoin join = tobeConsideredAdv.get(pos);
 
-				if (!guard.isEvaluated()) {
+				// if the domains are not evaluated yet
+				if (join == null || (!expression.isEvaluated() && !join.isResumable())) {
 	 				if (bindings.size() >= 1) {
 						if (bindings.containsKey(node.getSpecifierVar())) 
 							capi.error("Constrainer variable cannot have same name as specifier.", node, interpreter);
 						
 						// evaluate all the domains
 						for (ASTNode domain: bindings.values())
-							if (!domain.isEvaluated()) 
+							if (!domain.isEvaluated()) {
+								tobeConsideredAdv.remove(pos);
 								return domain;
+							}
 						
 						// if all domains are evaluated
 						for (ASTNode domain: bindings.values()) {
@@ -320,118 +325,33 @@ public class SetPlugin extends Plugin
 								}
 						}
 						
-						// else
-					
-						// TODO Incosistent with the spec
-						// !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!
-						// !!!                                          !!!
-						// !!! FROM THIS POINT, IT DEFERS FROM THE SPEC !!!
-						// !!!                                          !!!
-						// !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!
-						
-						// create the resulting set
+						// create the resulting collection and enumerate the bindings 
+						// that satisfy the guard one by one, starting from the first one
 						newSet.put(pos, new HashSet<Element>());
-						
-						// Set of all possible bindings
-						HashSet<Map<String,Element>> possibleBindings = new HashSet<Map<String,Element>>();
-						
-						// set of all variables
-						ArrayList<String> allVariables = new ArrayList<String>(bindings.keySet());
-						
-						// set of all possible values for variables 
-						Map<String,ArrayList<Element>> possibleValues = new HashMap<String,ArrayList<Element>>();
-						for (String var: bindings.keySet()) {
-							Enumerable set = (Enumerable)(bindings.get(var).getValue());
-							possibleValues.put(var, new ArrayList<Element>(set.enumerate()));
-						}
-	
-						// create all possible combination of values for variables
-						createAllPossibleBindings(
-								allVariables, possibleValues, 0, possibleBindings, new HashMap<String,Element>());
-	
-						// set the superset of values
-						tobeConsideredAdv.put(pos, possibleBindings);
-						
-						// pick the first combination
-						Map<String,Element> firstBinding = possibleBindings.iterator().next();
-						
-						// bind the combination to the variables
-						bindVariables(interpreter, firstBinding);
-						
-						// remove the already chosen combination
-						possibleBindings.remove(firstBinding);
-						
-						return guard;
-						
-					} else
+						join = new ComprehensionJoin(bindings, node.getGuard());
+						tobeConsideredAdv.put(pos, join);
+					} else {
 						capi.error("At least one constrainer variable must be present.", node, interpreter);
-				} 
-				
-				// if guard is evaluated but the expression is not
-				else if (!expression.isEvaluated()) {
-					if (guard.getValue().equals(BooleanElement.TRUE)) 
-						return expression;
-					else {
-						// remove previous bindings
-						unbindVariables(interpreter, bindings.keySet());
-
-						// get the remaining combinations
-						Collection<Map<String,Element>> possibleBindings = tobeConsideredAdv.get(pos);
-						
-						// if there is more combination to be tried...
-						if (possibleBindings.size() > 0) {
-
-							// pick the next combination
-							Map<String,Element> nextBinding = possibleBindings.iterator().next();
-							
-							// bind the combination to the variables
-							bindVariables(interpreter, nextBinding);
-							
-							// remove the already chosen combination
-							possibleBindings.remove(nextBinding);
-							
-							// clear the guard
-							interpreter.clearTree(guard);
-							
-							return guard;
-						} else {
-							pos.setNode(null, null, new SetElement(newSet.get(pos)));
-						}
-							
+						return pos;
 					}
 				} 
 				
-				// if everything is evaluated
-				else {
-					// remove previous bindings
-					unbindVariables(interpreter, bindings.keySet());
-
+				// if the expression is evaluated under the current binding
+				else if (expression.isEvaluated()) {
 					Set<Element> result = newSet.get(pos);
 					result.add(expression.getValue());
-					// get the remaining combinations
-					Collection<Map<String,Element>> possibleBindings = tobeConsideredAdv.get(pos);
-					if (possibleBindings.size() > 0) {
-
-						// pick the first combination
-						Map<String,Element> nextBinding = possibleBindings.iterator().next();
-						
-						// bind the combination to the variables
-						bindVariables(interpreter, nextBinding);
-						
-						// remove the already chosen combination
-						possibleBindings.remove(nextBinding);
-
-						// clear the guard and the expression
-						interpreter.clearTree(guard);
-						interpreter.clearTree(expression);
-						
-						return guard;
-					} else {
-						pos.setNode(null, null, new SetElement(newSet.get(pos)));
-						return pos;
-					}
+					ComprehensionJoin.clearNode(interpreter, expression);
 				}
+
+				// bind the variables to the next binding that satisfies the guard
+				if (join.next(interpreter))
+					return expression;
+				if (join.getPendingNode() != null)
+					return join.getPendingNode();
 				
+				tobeConsideredAdv.remove(pos);
+				if (!capi.hasErrorOccurred())
+					pos.setNode(null, null, new SetElement(newSet.get(pos)));
 				return pos;
 			}
 			
@@ -444,63 +364,6 @@ public class SetPlugin extends Plugin
         return nextPos;
 	}
 
-	/*
-	 * This recursive method creates all the possible combinations of values
-	 * for variables. 
-	 */
-	private void createAllPossibleBindings(
-			ArrayList<String> allVariables, 
-			Map<String,ArrayList<Element>> possibleValues, 
-			int index, 
-			HashSet<Map<String,Element>> possibleBindings, 
-			Map<String,Element> currentBinding) {
-
-		// get possible values for this particular variable
-		String var = allVariables.get(index);
-		ArrayList<Element> values = new ArrayList<Element>(possibleValues.get(var));
-		
-		while (values.size() > 0) {
-			// get the first element of those values
-			Element value = values.get(0);
-			
-			// put it as a possible binding
-			currentBinding.put(var, value);
-			
-			// if this is not the last variable in the list
-			if (index < (allVariables.size() - 1)) {
-				// get all the possible values for the remaining variables
-				createAllPossibleBindings(
-						allVariables, possibleValues, index+1, possibleBindings, currentBinding);
-			} 
-			
-			// if this is the last variable
-			else {
-				// currentBinding is a draft copy that keeps changing, so you want
-				// to add a new map to the set
-				possibleBindings.add(new HashMap<String,Element>(currentBinding));
-			}
-			values.remove(0);
-		}
-	}
-	
-	/*
-	 * Binds values to variables.
-	 */
-	private void bindVariables(Interpreter interpreter, Map<String,Element> binding) {
-		for (String var: binding.keySet()) {
-			interpreter.addEnv(var, binding.get(var));
-		}
-	}
-	
-	/*
-	 * Unbinds environment variables.
-	 */
-	private void unbindVariables(Interpreter interpreter, Set<String> variables) {
-		for (String var: variables){
-			interpreter.removeEnv(var);
-		}
-	}
-	
 	public Set<Parser<? extends Object>> getLexers() {
 		return Collections.emptySet();
 	}
@@ -883,9 +746,9 @@ public class SetPlugin extends Plugin
 
 		// value should be a set
 		if (value instanceof SetElement) {
-			Set<Element> resultSet = new HashSet<Element>(((SetElement)value).enumerate());
-			
-			for (Element e: resultSet) {
+			Set<Element> resultSet = new HashSet<Element>();
+
+			for (Element e: ((SetElement)value).enumerate()) {
 				Update removeUpdate = new Update(l, e, SETREMOVE_ACTION, (Element)null, null);
 				
 				if (!uMset2.contains(removeUpdate)) 
@@ -1141,23 +1004,21 @@ public class SetPlugin extends Plugin
 		}
 		Enumerable enumerableViewExistingSet = (Enumerable)existingSet;
 		
-		// resultant set element 
-		Set<Element> resultantSet = new HashSet<Element>();
+		// resultant set element, sharing the members of the existing set
+		PersistentHashSet<Element> resultantSet = PersistentHashSet.from(enumerableViewExistingSet.enumerate());
 		Set<Element> contributingAgents = new HashSet<Element>();
 		Set<ScannerInfo> contributingNodes = new HashSet<ScannerInfo>();
 		//SetElement resultantSet = (SetElement)setBackground.getNewValue();
 		
-		// add all existing elements less those removed with setRemoveAction
-		for (Element e : enumerableViewExistingSet.enumerate()) {
-			Update update = new Update(loc, e, SETREMOVE_ACTION, (Element)null, null);
-			if (!locUpdates.contains(update)) 
-				resultantSet.add(e);
-		}
+		// remove the elements removed with setRemoveAction
+		for (Update u : locUpdates)
+			if (u.action.equals(SETREMOVE_ACTION))
+				resultantSet = resultantSet.minus(u.value);
 		
 		// add all values resulting from setAddAction
 		for (Update u : locUpdates)
 			if (u.action.equals(SETADD_ACTION))
-				resultantSet.add(u.value);
+				resultantSet = resultantSet.plus(u.value);
 		
 		// all updates added successfully, so flag them
 		// and add their agents to the contributing agent set
@@ -14,10 +14,14 @@
 package org.coreasm.engine.plugins.signature;
 
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.coreasm.engine.ControlAPI;
+import org.coreasm.engine.absstorage.AbstractStorage;
 import org.coreasm.engine.absstorage.Element;
+import org.coreasm.engine.absstorage.ElementList;
 import org.coreasm.engine.absstorage.FunctionElement;
 import org.coreasm.engine.interpreter.ASTNode;
 import org.coreasm.engine.interpreter.Interpreter;
@@ -27,9 +31,21 @@ import org.coreasm.engine.interpreter.InterpreterException;
  * Derived functions keep a copy of the expression tree and call the 
  * interpreter to evaluate the subtree everytime they are asked for
  * their value.
+ * <p>
+ * A memoized derived function remembers its values for the current
+ * state: as long as the state does not change (i.e., within a step), 
+ * it evaluates its expression only once for the same arguments. 
+ * The values are not used (nor remembered) while the interpreter 
+ * has states pushed in the stack (e.g., inside a sequence), where the 
+ * visible state differs from the current state. The values are 
+ * remembered per agent, as the expression may refer to 'self' (also 
+ * through other derived functions). Hence, the value of a memoized 
+ * derived function must only depend on its arguments, the agent and 
+ * the state.
  *   
  * @author  Roozbeh Farahbod
  * 
+ * @see SignaturePlugin#MEMOIZE_DERIVED_PROPERTY
  */
 public class DerivedFunctionElement extends FunctionElement {
 
@@ -37,17 +53,45 @@ public class DerivedFunctionElement extends FunctionElement {
 	protected final List<String> params;
 	protected final ASTNode expr;
 	
+	/** 
+	 * values of the function for the current state; <code>null</code> if not memoized;
+	 * guarded by the lock of this function 
+	 */
+	private Memo memo = null;
+	
+	private final boolean memoized;
+	
 	/**
 	 * Creates a new derived function with the given list 
 	 * of parameters.
 	 */
 	public DerivedFunctionElement(ControlAPI capi, List<String> params, ASTNode expr) {
+		this(capi, params, expr, false);
+	}
+	
+	/**
+	 * Creates a new derived function with the given list 
+	 * of parameters, which memoizes its values for the current 
+	 * state if <code>memoized</code> is <code>true</code>.
+	 */
+	public DerivedFunctionElement(ControlAPI capi, List<String> params, ASTNode expr, boolean memoized) {
 		this.capi = capi;
 		this.params = Collections.unmodifiableList(params);
 		this.expr = expr;
+		this.memoized = memoized;
+		if (memoized)
+			memo = new Memo(-1);
 		setFClass(FunctionClass.fcDerived);
 	}
 	
+	/**
+	 * Returns <code>true</code> if this function memoizes its values
+	 * for the current state.
+	 */
+	public boolean isMemoized() {
+		return memoized;
+	}
+	
 	/*
 	 * @see org.coreasm.engine.absstorage.FunctionElement#getValue(java.util.List)
 	 */
@@ -56,14 +100,31 @@ public class DerivedFunctionElement extends FunctionElement {
 		Element result = Element.UNDEF;
 		if (args.size() == params.size()) {
 			Interpreter interpreter = capi.getInterpreter().getInterpreterInstance();
-			bindArguments(interpreter, args);
 			
 			synchronized(this) {
+				// the memo is swapped, read and filled under the lock, so that
+				// agents evaluating this function in parallel see the same memo
+				MemoKey key = null;
+				if (memo != null && interpreter.getStateOverlay().isEmpty()) {
+					final long version = capi.getStorage().getStateVersion();
+					if (memo.version != version)
+						memo = new Memo(version);
+					key = new MemoKey(interpreter.getSelf(), 
+							(args instanceof ElementList) ? (ElementList)args : ElementList.create(args));
+					final Element value = memo.values.get(key);
+					if (value != null)
+						return value;
+				}
+				
+				bindArguments(interpreter, args);
+				
 				ASTNode exprCopy = (ASTNode)interpreter.copyTree(expr);
 				try {
 					interpreter.interpret(exprCopy, interpreter.getSelf());
 					if (exprCopy.getValue() != null)
 						result = exprCopy.getValue();
+					if (key != null)
+						memo.values.put(key, result);
 				} catch (InterpreterException e) {
 					capi.error(e, expr, interpreter);
 				} finally {
@@ -84,4 +145,47 @@ public class DerivedFunctionElement extends FunctionElement {
 		for (int i=0; i < params.size(); i++)
 			interpreter.removeEnv(params.get(i));
 	}
+
+	/*
+	 * The values of the function for a version of the state.
+	 * 
+	 * @see AbstractStorage#getStateVersion()
+	 */
+	private static final class Memo {
+		final long version;
+		final Map<MemoKey, Element> values = new HashMap<MemoKey, Element>();
+		
+		Memo(long version) {
+			this.version = version;
+		}
+	}
+
+	/*
+	 * The agent and the arguments of a memoized value.
+	 */
+	private static final class MemoKey {
+		final Element agent;
+		final ElementList args;
+		final int hash;
+		
+		MemoKey(Element agent, ElementList args) {
+			this.agent = agent;
+			this.args = args;
+			this.hash = 31 * (agent == null ? 0 : agent.hashCode()) + args.hashCode();
+		}
+		
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof MemoKey))
+				return false;
+			final MemoKey other = (MemoKey)obj;
+			return (agent == null ? other.agent == null : agent.equals(other.agent)) 
+					&& args.equals(other.args);
+		}
+	}
 }
@@ -37,6 +37,11 @@ public class DerivedFunctionNode extends ASTNode {
     public DerivedFunctionNode(DerivedFunctionNode node) {
     	super(node);
     }
+
+    @Override
+    protected DerivedFunctionNode copy() {
+        return new DerivedFunctionNode(this);
+    }
     
     /**
      * @return the name signature of the function
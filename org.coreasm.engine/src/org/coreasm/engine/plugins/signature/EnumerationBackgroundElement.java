@@ -12,6 +12,7 @@
  
 package org.coreasm.engine.plugins.signature;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -19,6 +20,8 @@ import java.util.List;
 
 import org.coreasm.engine.absstorage.BackgroundElement;
 import org.coreasm.engine.absstorage.Element;
+import org.coreasm.engine.absstorage.ElementInput;
+import org.coreasm.engine.absstorage.ElementOutput;
 import org.coreasm.engine.absstorage.Enumerable;
 import org.coreasm.engine.absstorage.BooleanElement;
 
@@ -75,4 +78,18 @@ public class EnumerationBackgroundElement extends BackgroundElement
 		return enumCache.size();
 	}
 
+    @Override
+    public void writeValue(Element value, ElementOutput out) throws IOException {
+        out.writeString(((EnumerationElement)value).getName());
+    }
+
+    @Override
+    public Element readValue(ElementInput in) throws IOException {
+        String name = in.readString();
+        for (EnumerationElement e: members)
+            if (e.getName().equals(name))
+                return e;
+        throw new IOException("Enumeration has no member named " + name + ".");
+    }
+
 }
@@ -49,6 +49,11 @@ public class EnumerationNode extends ASTNode {
     	super(node);
     }
 
+    @Override
+    protected EnumerationNode copy() {
+        return new EnumerationNode(this);
+    }
+
     
     /**
      * Returns the name of the enumeration
@@ -51,6 +51,11 @@ public class FunctionNode extends ASTNode {
     public FunctionNode(FunctionNode node) {
     	super(node);
     }
+
+    @Override
+    protected FunctionNode copy() {
+        return new FunctionNode(this);
+    }
     
     
     /**
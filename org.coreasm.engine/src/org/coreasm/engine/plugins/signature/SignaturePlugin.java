@@ -91,6 +91,16 @@ public class SignaturePlugin extends Plugin
 	 */
 	public static final String TYPE_CHECKING_PROPERTY = "Signature.TypeChecking";
 	
+	/**
+	 * The name of the Signature.MemoizeDerived property. If the value of this 
+	 * property is "on", all derived functions memoize their values within 
+	 * every step; otherwise, it can be a comma-separated list of the names 
+	 * of the derived functions that memoize their values.
+	 * 
+	 * @see DerivedFunctionElement
+	 */
+	public static final String MEMOIZE_DERIVED_PROPERTY = "Signature.MemoizeDerived";
+	
     private HashMap<String,FunctionElement> functions;
     private HashMap<String,UniverseElement> universes;
     private HashMap<String,BackgroundElement> backgrounds;
@@ -384,6 +394,23 @@ public class SignaturePlugin extends Plugin
     	return typeCheckingMode;
     }
     
+    /*
+     * Returns true if the derived function with the given name 
+     * should memoize its values, based on the 
+     * MEMOIZE_DERIVED_PROPERTY of the engine.
+     */
+    private boolean isMemoized(String name) {
+    	String value = capi.getProperty(MEMOIZE_DERIVED_PROPERTY);
+    	if (value == null || value.equals("off"))
+    		return false;
+    	if (value.equals("on"))
+    		return true;
+    	for (String n: value.split(","))
+    		if (n.trim().equals(name))
+    			return true;
+    	return false;
+    }
+    
     /*
      * Returns the id checking mode policy based on the 
      * NO_UNDEFINED_ID_PROPERTY of the engine.
@@ -913,7 +940,8 @@ public class SignaturePlugin extends Plugin
 			currentParams = currentParams.getNext();
 		}
 
-		DerivedFunctionElement func = new DerivedFunctionElement(capi, params, exprNode);
+		DerivedFunctionElement func = new DerivedFunctionElement(capi, params, exprNode, 
+				isMemoized(idNode.getToken()));
 		
 		addFunction(idNode.getToken(), func, currentSignature, interpreter);
 
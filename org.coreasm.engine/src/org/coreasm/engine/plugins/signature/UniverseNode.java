@@ -46,6 +46,11 @@ public class UniverseNode extends ASTNode {
     public UniverseNode(UniverseNode node) {
     	super(node);
     }
+
+    @Override
+    protected UniverseNode copy() {
+        return new UniverseNode(this);
+    }
     
     /**
      * Returns the name of the universe
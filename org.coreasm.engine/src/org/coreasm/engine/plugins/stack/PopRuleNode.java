@@ -43,6 +43,11 @@ public class PopRuleNode extends ASTNode {
 		super(node);
 	}
 
+	@Override
+	protected PopRuleNode copy() {
+		return new PopRuleNode(this);
+	}
+
 	/**
 	 * @return the node representing the location where the popped value should be stored
 	 */
@@ -40,6 +40,11 @@ public class PushRuleNode extends ASTNode {
 	public PushRuleNode(PushRuleNode node) {
 		super(node);
 	}
+
+	@Override
+	protected PushRuleNode copy() {
+		return new PushRuleNode(this);
+	}
 	
 	/**
 	 * @return the node representing the element being pushed into stack
@@ -36,5 +36,10 @@ public class StepBlockRuleNode extends ASTNode {
     public StepBlockRuleNode(StepBlockRuleNode node) {
     	super(node);
     }
+
+    @Override
+    protected StepBlockRuleNode copy() {
+        return new StepBlockRuleNode(this);
+    }
     
 }
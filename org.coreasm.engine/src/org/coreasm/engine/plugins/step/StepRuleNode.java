@@ -36,6 +36,11 @@ public class StepRuleNode extends ASTNode {
     public StepRuleNode(StepRuleNode node) {
     	super(node);
     }
+
+    @Override
+    protected StepRuleNode copy() {
+        return new StepRuleNode(this);
+    }
     
     /**
      * Returns the first rule 
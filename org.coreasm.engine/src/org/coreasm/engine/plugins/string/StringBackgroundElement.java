@@ -12,9 +12,13 @@
  
 package org.coreasm.engine.plugins.string;
 
+import java.io.IOException;
+
 import org.coreasm.engine.absstorage.BackgroundElement;
 import org.coreasm.engine.absstorage.BooleanElement;
 import org.coreasm.engine.absstorage.Element;
+import org.coreasm.engine.absstorage.ElementInput;
+import org.coreasm.engine.absstorage.ElementOutput;
 
 /** 
  *	Background of strings.
@@ -73,4 +77,14 @@ public class StringBackgroundElement extends BackgroundElement {
 		return (e instanceof StringElement)?BooleanElement.TRUE:BooleanElement.FALSE;
 	}
 
+	@Override
+	public void writeValue(Element value, ElementOutput out) throws IOException {
+		out.writeString(((StringElement)value).getValue());
+	}
+
+	@Override
+	public Element readValue(ElementInput in) throws IOException {
+		return new StringElement(in.readString());
+	}
+
 }
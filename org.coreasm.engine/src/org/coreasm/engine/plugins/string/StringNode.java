@@ -30,6 +30,11 @@ public class StringNode extends ASTNode {
 	public StringNode(StringNode node) {
 		super(node);
 	}
+
+	@Override
+	protected StringNode copy() {
+		return new StringNode(this);
+	}
 	
 	public StringNode(String token, ScannerInfo info) {
 		super(
@@ -44,6 +44,11 @@ public class AddChildToRuleNode extends ASTNode  {
 		super(node);
 	}
 
+	@Override
+	protected AddChildToRuleNode copy() {
+		return new AddChildToRuleNode(this);
+	}
+
 	
 	/**
 	 * @return the second parameter of this rule
@@ -44,6 +44,11 @@ public class MakeTreeRuleNode extends ASTNode  {
 		super(node);
 	}
 
+	@Override
+	protected MakeTreeRuleNode copy() {
+		return new MakeTreeRuleNode(this);
+	}
+
 	
 	/**
 	 * @return returns the Tree parameter of this rule
@@ -44,6 +44,11 @@ public class RemoveChildAtRuleNode extends ASTNode  {
 		super(node);
 	}
 
+	@Override
+	protected RemoveChildAtRuleNode copy() {
+		return new RemoveChildAtRuleNode(this);
+	}
+
 	
 	/**
 	 * @return the second parameter 
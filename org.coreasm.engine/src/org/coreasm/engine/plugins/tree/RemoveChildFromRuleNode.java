@@ -44,6 +44,11 @@ public class RemoveChildFromRuleNode extends ASTNode  {
 		super(node);
 	}
 
+	@Override
+	protected RemoveChildFromRuleNode copy() {
+		return new RemoveChildFromRuleNode(this);
+	}
+
 	
 	/**
 	 * @return returns the second parameter of this rule
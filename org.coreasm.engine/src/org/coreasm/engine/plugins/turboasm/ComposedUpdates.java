@@ -0,0 +1,73 @@
+/*
+ * ComposedUpdates.java
+ *
+ * Copyright (C) 2013 Roozbeh Farahbod
+ *
+ * Licensed under the Academic Free License version 3.0
+ *   http://www.opensource.org/licenses/afl-3.0.php
+ *   http://www.coreasm.org/afl-3.0.php
+ *
+ */
+
+package org.coreasm.engine.plugins.turboasm;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.coreasm.engine.absstorage.AbstractStorage;
+import org.coreasm.engine.absstorage.Location;
+import org.coreasm.engine.absstorage.Update;
+import org.coreasm.engine.absstorage.UpdateMultiset;
+
+/**
+ * The composition of the updates of the iterations of a loop 
+ * (<code>iterate</code> or <code>while</code>), kept by location.
+ * <p>
+ * Composition is done location by location, so the updates of an 
+ * iteration are only composed with the updates of the previous iterations 
+ * on the same locations; all other locations keep their composed updates.
+ * The cost of an iteration is thus proportional to the number of 
+ * its updates, rather than to the number of updates composed so far.
+ *
+ * @author  Roozbeh Farahbod
+ */
+final class ComposedUpdates {
+
+	/** composed updates of every location */
+	private final Map<Location, UpdateMultiset> updates = new HashMap<Location, UpdateMultiset>();
+
+	/**
+	 * Composes the updates composed so far with the given updates
+	 * of the next iteration.
+	 *
+	 * @param storage the abstract storage that composes the updates
+	 * @param next updates of the next iteration
+	 * @see AbstractStorage#compose(UpdateMultiset, UpdateMultiset)
+	 */
+	void compose(AbstractStorage storage, UpdateMultiset next) {
+		final UpdateMultiset previous = new UpdateMultiset();
+		for (Update u: next) {
+			final UpdateMultiset locUpdates = updates.remove(u.loc);
+			if (locUpdates != null)
+				previous.addAll(locUpdates);
+		}
+		for (Update u: storage.compose(previous, next)) {
+			UpdateMultiset locUpdates = updates.get(u.loc);
+			if (locUpdates == null) {
+				locUpdates = new UpdateMultiset();
+				updates.put(u.loc, locUpdates);
+			}
+			locUpdates.add(u);
+		}
+	}
+
+	/**
+	 * Returns the updates composed so far.
+	 */
+	UpdateMultiset getUpdates() {
+		final UpdateMultiset result = new UpdateMultiset();
+		for (UpdateMultiset locUpdates: updates.values())
+			result.addAll(locUpdates);
+		return result;
+	}
+}
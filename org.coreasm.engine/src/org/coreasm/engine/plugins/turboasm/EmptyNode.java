@@ -39,4 +39,9 @@ public class EmptyNode extends ASTNode {
 		super(node);
 	}
 
+	@Override
+	protected EmptyNode copy() {
+		return new EmptyNode(this);
+	}
+
 }
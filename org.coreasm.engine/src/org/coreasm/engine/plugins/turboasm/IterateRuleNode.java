@@ -42,6 +42,11 @@ public class IterateRuleNode extends ASTNode {
 	public IterateRuleNode(IterateRuleNode node) {
 		super(node);
 	}
+
+	@Override
+	protected IterateRuleNode copy() {
+		return new IterateRuleNode(this);
+	}
 	
 	/**
 	 * Returns the first rule of the sequence.
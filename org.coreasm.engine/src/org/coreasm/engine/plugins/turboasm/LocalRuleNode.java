@@ -47,6 +47,11 @@ public class LocalRuleNode extends ASTNode {
 	public LocalRuleNode(LocalRuleNode node) {
 		super(node);
 	}
+
+	@Override
+	protected LocalRuleNode copy() {
+		return new LocalRuleNode(this);
+	}
 	
 	/**
 	 * Returns the set local function names. This method
@@ -40,6 +40,11 @@ public class ReturnResultNode extends ASTNode {
 	public ReturnResultNode(ReturnResultNode node) {
 		super(node);
 	}
+
+	@Override
+	protected ReturnResultNode copy() {
+		return new ReturnResultNode(this);
+	}
 	
 	/**
 	 * Returns the location part of this rule
@@ -40,6 +40,11 @@ public class ReturnRuleNode extends ASTNode {
 	public ReturnRuleNode(ReturnRuleNode node) {
 		super(node);
 	}
+
+	@Override
+	protected ReturnRuleNode copy() {
+		return new ReturnRuleNode(this);
+	}
 	
 	/**
 	 * Returns the location part of this rule
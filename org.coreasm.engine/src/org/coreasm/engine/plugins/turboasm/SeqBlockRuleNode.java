@@ -40,4 +40,9 @@ public class SeqBlockRuleNode extends SeqRuleNode {
 		super(node);
 	}
 
+	@Override
+	protected SeqBlockRuleNode copy() {
+		return new SeqBlockRuleNode(this);
+	}
+
 }
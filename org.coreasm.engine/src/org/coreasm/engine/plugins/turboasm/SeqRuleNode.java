@@ -44,6 +44,11 @@ public class SeqRuleNode extends ASTNode {
 	public SeqRuleNode(SeqRuleNode node) {
 		super(node);
 	}
+
+	@Override
+	protected SeqRuleNode copy() {
+		return new SeqRuleNode(this);
+	}
 	
 	/**
 	 * Returns the first rule of the sequence.
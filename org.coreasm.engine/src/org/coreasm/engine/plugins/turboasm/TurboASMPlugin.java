@@ -44,12 +44,14 @@ import org.coreasm.engine.interpreter.FunctionRuleTermNode;
 import org.coreasm.engine.interpreter.Interpreter;
 import org.coreasm.engine.interpreter.InterpreterException;
 import org.coreasm.engine.interpreter.Node;
+import org.coreasm.engine.interpreter.NodeEvaluator;
 import org.coreasm.engine.kernel.Kernel;
 import org.coreasm.engine.kernel.KernelServices;
 import org.coreasm.engine.parser.GrammarRule;
 import org.coreasm.engine.parser.ParseMap;
 import org.coreasm.engine.parser.ParserTools;
 import org.coreasm.engine.parser.ParserTools.ArrayParseMap;
+import org.coreasm.engine.plugin.EvaluatorProvider;
 import org.coreasm.engine.plugin.InterpreterPlugin;
 import org.coreasm.engine.plugin.ParserPlugin;
 import org.coreasm.engine.plugin.Plugin;
@@ -69,7 +71,7 @@ import org.slf4j.LoggerFactory;
  * 
  */
 public class TurboASMPlugin extends Plugin implements ParserPlugin, InterpreterPlugin, 
-														VocabularyExtender {
+														VocabularyExtender, EvaluatorProvider {
 
 	public static final VersionInfo VERSION_INFO = new VersionInfo(0, 9, 1, "beta");
 
@@ -81,7 +83,7 @@ public class TurboASMPlugin extends Plugin implements ParserPlugin, InterpreterP
 	private ThreadLocal<Map<ASTNode, ASTNode>> workCopies;
 	
 	/* composed updates cache */
-	private ThreadLocal<Map<ASTNode,UpdateMultiset>> composedUpdatesMap;
+	private ThreadLocal<Map<ASTNode,ComposedUpdates>> composedUpdatesMap;
 
 	private Map<String, GrammarRule> parsers = null;
 	
@@ -109,10 +111,10 @@ public class TurboASMPlugin extends Plugin implements ParserPlugin, InterpreterP
 				return new HashMap<ASTNode, ASTNode>();
 			}
 		};
-		composedUpdatesMap = new ThreadLocal<Map<ASTNode,UpdateMultiset>>() {
+		composedUpdatesMap = new ThreadLocal<Map<ASTNode,ComposedUpdates>>() {
 			@Override
-			protected Map<ASTNode, UpdateMultiset> initialValue() {
-				return new HashMap<ASTNode, UpdateMultiset>();
+			protected Map<ASTNode, ComposedUpdates> initialValue() {
+				return new HashMap<ASTNode, ComposedUpdates>();
 			}
 		};
 		logger.debug("TurboASM is loaded!");
@@ -121,7 +123,7 @@ public class TurboASMPlugin extends Plugin implements ParserPlugin, InterpreterP
 	/*
 	 * Returns the composed updates cache for this thread
 	 */
-	private Map<ASTNode, UpdateMultiset> getThreadComposedUpdates() {
+	private Map<ASTNode, ComposedUpdates> getThreadComposedUpdates() {
 		return composedUpdatesMap.get();
 	}
 	
@@ -378,11 +380,11 @@ public class TurboASMPlugin extends Plugin implements ParserPlugin, InterpreterP
 				IterateRuleNode node = (IterateRuleNode)pos;
 				ASTNode childRule = node.getChildRule();
 				
-				Map<ASTNode, UpdateMultiset> composedUpdates = getThreadComposedUpdates();
+				Map<ASTNode, ComposedUpdates> composedUpdates = getThreadComposedUpdates();
 
 				if (!childRule.isEvaluated()) {
 					storage.pushState();
-					composedUpdates.put(pos, new UpdateMultiset()); 
+					composedUpdates.put(pos, new ComposedUpdates()); 
 					return childRule;
 				} else {
 					UpdateMultiset u = childRule.getUpdates();
@@ -390,7 +392,7 @@ public class TurboASMPlugin extends Plugin implements ParserPlugin, InterpreterP
 						Set<Update> uSet = null;
 						try {
 							uSet = storage.performAggregation(u);
-							composedUpdates.put(pos, storage.compose(composedUpdates.get(pos), u));
+							composedUpdates.get(pos).compose(storage, u);
 							if (storage.isConsistent(uSet)) {
 								storage.apply(uSet);
 								interpreter.clearTree(childRule);
@@ -401,12 +403,12 @@ public class TurboASMPlugin extends Plugin implements ParserPlugin, InterpreterP
 						} catch (EngineError e) {
 							storage.popState();
 							// inconsistent aggregation or updateset
-							pos.setNode(null, composedUpdates.get(pos), null);
+							pos.setNode(null, composedUpdates.get(pos).getUpdates(), null);
 							composedUpdates.remove(pos);
 						}
 					} else {
 						storage.popState();
-						pos.setNode(null, composedUpdates.get(pos), null);
+						pos.setNode(null, composedUpdates.get(pos).getUpdates(), null);
 						composedUpdates.remove(pos);
 					}
 				}
@@ -416,12 +418,12 @@ public class TurboASMPlugin extends Plugin implements ParserPlugin, InterpreterP
 					ASTNode childRule = node.getChildRule();
 					ASTNode whileCond = node.getCondition();
 	
-					Map<ASTNode, UpdateMultiset> composedUpdates = getThreadComposedUpdates();
+					Map<ASTNode, ComposedUpdates> composedUpdates = getThreadComposedUpdates();
 					
 					// if the guard is not evaluated, evaluate it
 					if (!whileCond.isEvaluated()) {
 						storage.pushState();
-						composedUpdates.put(pos, new UpdateMultiset()); 
+						composedUpdates.put(pos, new ComposedUpdates()); 
 						return whileCond;
 					}
 					
@@ -435,7 +437,7 @@ public class TurboASMPlugin extends Plugin implements ParserPlugin, InterpreterP
 								Set<Update> uSet = null;
 								try {
 									uSet = storage.performAggregation(u);
-									composedUpdates.put(pos, storage.compose(composedUpdates.get(pos), u));
+									composedUpdates.get(pos).compose(storage, u);
 									if (storage.isConsistent(uSet)) {
 										storage.apply(uSet);
 										interpreter.clearTree(childRule);
@@ -447,18 +449,18 @@ public class TurboASMPlugin extends Plugin implements ParserPlugin, InterpreterP
 								} catch (EngineError e) {
 									storage.popState();
 									// inconsistent aggregation or updateset
-									pos.setNode(null, composedUpdates.get(pos), null);
+									pos.setNode(null, composedUpdates.get(pos).getUpdates(), null);
 									composedUpdates.remove(pos);
 								}
 							} else {
 								storage.popState();
-								pos.setNode(null, composedUpdates.get(pos), null);
+								pos.setNode(null, composedUpdates.get(pos).getUpdates(), null);
 								composedUpdates.remove(pos);
 							}
 						}
 					} else {
 						storage.popState();
-						pos.setNode(null, composedUpdates.get(pos), null);
+						pos.setNode(null, composedUpdates.get(pos).getUpdates(), null);
 						composedUpdates.remove(pos);
 					}
 				} else
@@ -548,6 +550,151 @@ public class TurboASMPlugin extends Plugin implements ParserPlugin, InterpreterP
 		return pos;
 	}
 
+	/**
+	 * Provides evaluators for the sequence, iterate, while and local rules.
+	 * Rule calls with results and return rules are left to the interpreter rule.
+	 */
+	public NodeEvaluator getEvaluator(ASTNode node) {
+		if (node instanceof SeqRuleNode)
+			return seqEvaluator;
+		if (node instanceof IterateRuleNode || node instanceof WhileRuleNode)
+			return iterateEvaluator;
+		if (node instanceof LocalRuleNode)
+			return localEvaluator;
+		if (node instanceof EmptyNode)
+			return emptyEvaluator;
+		return null;
+	}
+
+	/*
+	 * Evaluates 'R1 seq R2': the second rule is evaluated in the state
+	 * updated by the first one, as in 'interpret()'.
+	 */
+	private final NodeEvaluator seqEvaluator = new NodeEvaluator() {
+		@Override
+		public void evaluate(Interpreter interpreter, ASTNode node) throws InterpreterException {
+			AbstractStorage storage = capi.getStorage();
+			SeqRuleNode seqNode = (SeqRuleNode)node;
+			ASTNode firstRule = seqNode.getFirstRule();
+			ASTNode secondRule = seqNode.getSecondRule();
+
+			interpreter.evaluate(firstRule);
+			if (!firstRule.isEvaluated())
+				return;
+
+			try {
+				Set<Update> aggregatedUpdate = storage.performAggregation(firstRule.getUpdates());
+				if (!storage.isConsistent(aggregatedUpdate))
+					// this will be catched in the 'catch' phrase 
+					throw new EngineError();
+				storage.pushState();
+				storage.apply(aggregatedUpdate);
+			} catch (EngineError e) {
+				// inconsistent aggregation or inconsistent updateset
+				capi.warning(PLUGIN_NAME, "TurboASM Plugin: Inconsistent updates computed in sequence. Leaving the sequence", 
+						secondRule, interpreter);
+				node.setNode(null, firstRule.getUpdates(), null);
+				return;
+			}
+
+			interpreter.evaluate(secondRule);
+			if (secondRule.isEvaluated()) 
+				node.setNode(null, storage.compose(firstRule.getUpdates(), secondRule.getUpdates()), null);
+			storage.popState();
+		}
+	};
+
+	/*
+	 * Evaluates 'iterate R' and 'while (C) R': the rule is evaluated and its 
+	 * updates are applied and composed until it produces no updates, its updates 
+	 * are inconsistent, or the condition does not hold, as in 'interpret()'.
+	 */
+	private final NodeEvaluator iterateEvaluator = new NodeEvaluator() {
+		@Override
+		public void evaluate(Interpreter interpreter, ASTNode node) throws InterpreterException {
+			AbstractStorage storage = capi.getStorage();
+			ASTNode childRule;
+			ASTNode whileCond;
+			if (node instanceof WhileRuleNode) {
+				childRule = ((WhileRuleNode)node).getChildRule();
+				whileCond = ((WhileRuleNode)node).getCondition();
+			} else {
+				childRule = ((IterateRuleNode)node).getChildRule();
+				whileCond = null;
+			}
+
+			ComposedUpdates composed = new ComposedUpdates();
+			storage.pushState();
+			try {
+				while (true) {
+					if (whileCond != null) {
+						interpreter.evaluate(whileCond);
+						if (!whileCond.isEvaluated())
+							return;
+						if (!whileCond.getValue().equals(BooleanElement.TRUE))
+							break;
+					}
+
+					interpreter.evaluate(childRule);
+					if (!childRule.isEvaluated())
+						return;
+					UpdateMultiset u = childRule.getUpdates();
+					if (u.isEmpty())
+						break;
+					try {
+						Set<Update> uSet = storage.performAggregation(u);
+						composed.compose(storage, u);
+						if (!storage.isConsistent(uSet))
+							break;
+						storage.apply(uSet);
+					} catch (EngineError e) {
+						// inconsistent aggregation
+						break;
+					}
+					interpreter.clearTree(childRule);
+					if (whileCond != null)
+						interpreter.clearTree(whileCond);
+				}
+				node.setNode(null, composed.getUpdates(), null);
+			} finally {
+				storage.popState();
+			}
+		}
+	};
+
+	/*
+	 * Evaluates 'local f in R': the updates of the local functions 
+	 * are removed from the updates of the rule, as in 'interpret()'.
+	 */
+	private final NodeEvaluator localEvaluator = new NodeEvaluator() {
+		@Override
+		public void evaluate(Interpreter interpreter, ASTNode node) throws InterpreterException {
+			LocalRuleNode localNode = (LocalRuleNode)node;
+			ASTNode rule = localNode.getRuleNode();
+			interpreter.evaluate(rule);
+			if (!rule.isEvaluated())
+				return;
+
+			UpdateMultiset newUpdates = new UpdateMultiset();
+			Collection<String> fNames = localNode.getFunctionNames();
+			for (Update u: rule.getUpdates()) {
+				if (!fNames.contains(u.loc.name))
+					newUpdates.add(u);
+			}
+			node.setNode(null, newUpdates, rule.getValue());
+		}
+	};
+
+	/*
+	 * Evaluates empty rules.
+	 */
+	private final NodeEvaluator emptyEvaluator = new NodeEvaluator() {
+		@Override
+		public void evaluate(Interpreter interpreter, ASTNode node) {
+			node.setNode(null, new UpdateMultiset(), null);
+		}
+	};
+
 	/**
 	 * Handles a call to a rule that has <b>result</b>.
 	 * 
@@ -567,6 +714,12 @@ public class TurboASMPlugin extends Plugin implements ParserPlugin, InterpreterP
 		Map<ASTNode, ASTNode> workCopy = getThreadWorkCopy();
 
 		ASTNode wCopy = workCopy.get(pos);
+		// a work copy that is not evaluated is left by an interrupted evaluation
+		// (the node may be evaluated again if it is in a shared rule body)
+		if (wCopy != null && !wCopy.isEvaluated()) {
+			wCopy.dipose();
+			wCopy = null;
+		}
 		// If there is no work copy created for this rule call
 		if (wCopy == null) {
 			wCopy = interpreter.copyTreeSub(rule.getBody(), exParams, exArgs);
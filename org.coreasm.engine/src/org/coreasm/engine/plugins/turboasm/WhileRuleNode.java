@@ -39,6 +39,11 @@ public class WhileRuleNode extends ASTNode {
 		super(node);
 	}
 
+	@Override
+	protected WhileRuleNode copy() {
+		return new WhileRuleNode(this);
+	}
+
 	/**
 	 * @return the guard node of this while
 	 */
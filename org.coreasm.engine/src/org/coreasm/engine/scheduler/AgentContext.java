@@ -29,6 +29,9 @@ public class AgentContext {
 	public Interpreter interpreter = null;
 	
 	public Map<ASTNode, ASTNode> nodeCopyCache = new HashMap<ASTNode, ASTNode>();
+	
+	/** time (in nanoseconds) it took to evaluate the program of the agent in its last step */
+	public volatile long lastEvaluationTime = 0;
 
 	public AgentContext(Element agent) {
 		this.agent = agent;
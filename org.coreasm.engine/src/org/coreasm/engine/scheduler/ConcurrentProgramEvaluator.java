@@ -15,12 +15,14 @@
 package org.coreasm.engine.scheduler;
 
 import java.util.List;
+import java.util.concurrent.RecursiveTask;
 
 import org.coreasm.engine.ControlAPI;
 import org.coreasm.engine.EngineException;
 import org.coreasm.engine.absstorage.AbstractStorage;
 import org.coreasm.engine.absstorage.Element;
 import org.coreasm.engine.absstorage.RuleElement;
+import org.coreasm.engine.absstorage.ConcatUpdateMultiset;
 import org.coreasm.engine.absstorage.UpdateMultiset;
 import org.coreasm.engine.interpreter.ASTNode;
 import org.coreasm.engine.interpreter.Interpreter;
@@ -28,20 +30,30 @@ import org.coreasm.engine.interpreter.InterpreterImp;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import EDU.oswego.cs.dl.util.concurrent.FJTask;
-
 /**
  * Evaluates programs of a set of agents in parallel using
- * Java concurrency methods.
+ * Java concurrency methods. Instances of this class are 
+ * fork/join tasks and are meant to be invoked in a 
+ * {@link java.util.concurrent.ForkJoinPool}; the computed 
+ * value of the task is the resultant update multiset, or 
+ * <code>null</code> if an error occurred (see {@link #getError()}).
  *   
  * @author Roozbeh Farahbod
  *
  */
 
-public class ConcurrentProgramEvaluator extends FJTask {
+public class ConcurrentProgramEvaluator extends RecursiveTask<UpdateMultiset> {
+
+	private static final long serialVersionUID = 1L;
 
 	public static final int DEFAULT_BATCH_SIZE = 1;
 
+	/** 
+	 * number of tasks per execution thread that the adaptive partitioning 
+	 * aims at; a few tasks per thread leave some room for work stealing 
+	 */
+	public static final int TASKS_PER_THREAD = 4;
+
 	protected static final Logger logger = LoggerFactory.getLogger(ConcurrentProgramEvaluator.class);
 
 	public final AgentContextMap agentContextMap;
@@ -55,6 +67,10 @@ public class ConcurrentProgramEvaluator extends FJTask {
 	private final int end;
 	private final int batchSize;
 	
+	/* prefix sums of estimated agent costs (can be null) */
+	private final long[] costs;
+	private final long maxTaskCost;
+	
 	/**
 	 * Creates a new program evaluator working on agents [start, ..., end-1] in the list.
 	 * 
@@ -76,6 +92,15 @@ public class ConcurrentProgramEvaluator extends FJTask {
 	 * @param end
 	 */
 	public ConcurrentProgramEvaluator(ControlAPI capi, AgentContextMap agentContextMap, List<? extends Element> agents,  int start, int end, int batchSize) {
+		this(capi, agentContextMap, agents, start, end, batchSize, null, 0);
+	}
+	
+	/*
+	 * Creates a new program evaluator working on agents [start, ..., end-1] in the list,
+	 * splitting the work based on the given prefix sums of agent costs.
+	 */
+	private ConcurrentProgramEvaluator(ControlAPI capi, AgentContextMap agentContextMap, List<? extends Element> agents,  
+			int start, int end, int batchSize, long[] costs, long maxTaskCost) {
 		this.agents = agents;
 		this.capi = capi;
 		this.storage = capi.getStorage();
@@ -83,15 +108,61 @@ public class ConcurrentProgramEvaluator extends FJTask {
 		this.end = end;
 		this.batchSize = batchSize;
 		this.agentContextMap = agentContextMap;
+		this.costs = costs;
+		this.maxTaskCost = maxTaskCost;
 	}
 	
-	public void run() {
-		if (end - start > batchSize) {
-			int cut = start + (end - start) / 2;
-			ConcurrentProgramEvaluator cpe1 = new ConcurrentProgramEvaluator(capi, agentContextMap, agents, start, cut);
-			ConcurrentProgramEvaluator cpe2 = new ConcurrentProgramEvaluator(capi, agentContextMap, agents, cut, end);
+	/**
+	 * Creates a new program evaluator working on all the agents in the list
+	 * that partitions the agents based on the time it took to evaluate 
+	 * their programs in the previous steps. Cheap agents are grouped into 
+	 * one task while expensive agents end up in tasks of their own; no task 
+	 * is split into batches of less than <code>batchSize</code> agents. 
+	 * Agents with no measured cost are assumed to be of average cost.
+	 * 
+	 * @param capi
+	 * @param agentContextMap
+	 * @param agents
+	 * @param batchSize the minimum number of agents per task
+	 * @param threads the number of threads evaluating the programs
+	 */
+	public static ConcurrentProgramEvaluator createAdaptiveEvaluator(ControlAPI capi, 
+			AgentContextMap agentContextMap, List<? extends Element> agents, int batchSize, int threads) {
+		final int size = agents.size();
+		final long[] agentCosts = new long[size];
+		long knownCost = 0;
+		int known = 0;
+		for (int i=0; i < size; i++) {
+			AgentContext context = agentContextMap.get(agents.get(i));
+			if (context != null && context.lastEvaluationTime > 0) {
+				agentCosts[i] = context.lastEvaluationTime;
+				knownCost += agentCosts[i];
+				known++;
+			}
+		}
+		final long defaultCost = (known == 0) ? 1 : Math.max(1, knownCost / known);
+		final long[] costs = new long[size + 1];
+		for (int i=0; i < size; i++) 
+			costs[i + 1] = costs[i] + (agentCosts[i] > 0 ? agentCosts[i] : defaultCost);
+		
+		final long maxTaskCost;
+		if (threads <= 1)
+			maxTaskCost = costs[size];
+		else
+			maxTaskCost = Math.max(1, costs[size] / ((long)threads * TASKS_PER_THREAD));
+		
+		return new ConcurrentProgramEvaluator(capi, agentContextMap, agents, 0, size, 
+				Math.max(1, batchSize), costs, maxTaskCost);
+	}
+	
+	@Override
+	protected UpdateMultiset compute() {
+		if (shouldSplit()) {
+			int cut = getCut();
+			ConcurrentProgramEvaluator cpe1 = new ConcurrentProgramEvaluator(capi, agentContextMap, agents, start, cut, batchSize, costs, maxTaskCost);
+			ConcurrentProgramEvaluator cpe2 = new ConcurrentProgramEvaluator(capi, agentContextMap, agents, cut, end, batchSize, costs, maxTaskCost);
 			
-			coInvoke(cpe1, cpe2);
+			invokeAll(cpe1, cpe2);
 			
 			UpdateMultiset result1 = cpe1.getResultantUpdateSet();
 			UpdateMultiset result2 = cpe2.getResultantUpdateSet();
@@ -104,11 +175,14 @@ public class ConcurrentProgramEvaluator extends FJTask {
 					result = null;
 					error = cpe2.error;
 				} else {
-					result = new UpdateMultiset(cpe1.getResultantUpdateSet());
-					result.addAll(cpe2.getResultantUpdateSet());
+					// linking instead of copying the updates
+					ConcatUpdateMultiset merged = new ConcatUpdateMultiset();
+					merged.link(result1);
+					merged.link(result2);
+					result = merged;
 				}
 		} else {
-			UpdateMultiset aggregatedResult = new UpdateMultiset();
+			ConcatUpdateMultiset aggregatedResult = new ConcatUpdateMultiset();
 			for (int i=start; i < end; i++) {
 				Element agent = agents.get(i);
 				try {
@@ -116,12 +190,52 @@ public class ConcurrentProgramEvaluator extends FJTask {
 				} catch(Exception e) {
 					result = null;
 					error = e;
-					return;
+					return null;
 				}
-				aggregatedResult.addAll(result);
+				aggregatedResult.link(result);
 			}
 			result = aggregatedResult;
 		}
+		return result;
+	}
+
+	/*
+	 * Returns true if the work of this task should be split further;
+	 * a task is only split if both parts get at least batchSize agents.
+	 */
+	private boolean shouldSplit() {
+		if (end - start < 2 * batchSize)
+			return false;
+		if (costs == null)
+			return true;
+		return costs[end] - costs[start] > maxTaskCost;
+	}
+	
+	/*
+	 * Returns the index at which the agents of this task are split;
+	 * this is the point that halves the estimated cost of this task, 
+	 * kept at least batchSize agents away from both ends. 
+	 */
+	private int getCut() {
+		if (costs == null)
+			return start + (end - start) / 2;
+		
+		final long half = costs[start] + (costs[end] - costs[start]) / 2;
+		final int first = start + batchSize;
+		int low = first;
+		int high = end - batchSize;
+		// finding the first index with a cost prefix of at least half the cost
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (costs[mid] < half)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		// picking the closer one of the two candidates
+		if (low > first && half - costs[low - 1] < costs[low] - half)
+			low--;
+		return low;
 	}
 
 	public UpdateMultiset getResultantUpdateSet() {
@@ -158,10 +272,12 @@ public class ConcurrentProgramEvaluator extends FJTask {
 		if (!(program instanceof RuleElement)) 
 			throw new EngineException("Program of agent " + agent.denotation() + " is not a rule element.");
 		
+		final long startTime = System.nanoTime();
 		ASTNode ruleNode = ((RuleElement)program).getBody();
 		rootNode = context.nodeCopyCache.get(ruleNode);
 		if (rootNode == null) {
 			rootNode = (ASTNode)inter.copyTree(ruleNode); 
+			inter.prepareTreeForReuse(rootNode);
 			context.nodeCopyCache.put(ruleNode, rootNode);
 		} else {
 			inter.clearTree(rootNode);
@@ -186,6 +302,8 @@ public class ConcurrentProgramEvaluator extends FJTask {
 		else
 			result = rootNode.getUpdates();
 		
+		context.lastEvaluationTime = System.nanoTime() - startTime;
+		
 		if (logger.isDebugEnabled())
 			logger.debug("Updates are: " + result.toString());
 
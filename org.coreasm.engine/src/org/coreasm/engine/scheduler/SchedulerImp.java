@@ -18,6 +18,9 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.coreasm.engine.ControlAPI;
 import org.coreasm.engine.EngineError;
@@ -39,8 +42,6 @@ import org.coreasm.engine.plugin.SchedulerPlugin;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import EDU.oswego.cs.dl.util.concurrent.FJTaskRunnerGroup;
-
 /**
  * Implemetation of scheduler.
  * 
@@ -65,9 +66,11 @@ public class SchedulerImp implements Scheduler {
 
 	private Element initAgent;
 
-	// private FJTaskRunnerGroup runnerGroup = null;
 	private int batchSize = -1;
 	private int numberOfCPUs = -1;
+	private boolean reuseAgentPool = true;
+	private ForkJoinPool agentPool = null;
+	private final AgentThreadFactory agentThreadFactory = new AgentThreadFactory();
 	private SchedulingPolicy schedulingPolicy = null;
 	private Iterator<Set<Element>> schedule = null;
 	private boolean shouldPrintProcessorStats = false;
@@ -104,6 +107,10 @@ public class SchedulerImp implements Scheduler {
 
 		agentContextMap = new AgentContextMap();
 
+		// a new run may come with new limits
+		shutdownAgentPool();
+		batchSize = -1;
+
 		logger.debug("Done preparing the initial state.");
 	}
 
@@ -230,46 +237,46 @@ public class SchedulerImp implements Scheduler {
 		 * appeared to be problamatic with regard to memory issues. Changing it
 		 * to one instance per time...
 		 * 
-		 * if (runnerGroup == null) { //TODO the number of available processes
-		 * may change! int cpus = getNumberOfProcessorsToBeUsed(); batchSize =
-		 * getThreadBatchSize(); runnerGroup = new FJTaskRunnerGroup(cpus); if
-		 * (Logger.verbosityLevel == Logger.INFORMATION) {
-		 * Logger.log(Logger.INFORMATION, Logger.scheduler, "Using " + cpus +
-		 * " thread(s) on " + Runtime.getRuntime().availableProcessors() +
-		 * " processors."); Logger.log(Logger.INFORMATION, Logger.scheduler,
-		 * "Using a batch size of " + batchSize + " agent(s) per thread."); } }
+		 * Now, the agent programs are evaluated by a ForkJoinPool that is 
+		 * (by default) kept alive for the whole run; see 
+		 * EngineProperties.AGENT_EXECUTOR. 
 		 */
 
 		if (batchSize == -1) {
 			numberOfCPUs = getNumberOfProcessorsToBeUsed();
 			batchSize = getThreadBatchSize();
+			reuseAgentPool = !EngineProperties.EXECUTOR_PER_STEP.equals(
+					capi.getProperty(EngineProperties.AGENT_EXECUTOR, EngineProperties.EXECUTOR_POOLED));
 			if (logger.isDebugEnabled()) {
 				logger.debug("Using " + numberOfCPUs + " thread(s) on "
 						+ Runtime.getRuntime().availableProcessors()
 						+ " processors.");
 				logger.debug("Using a batch size of " + batchSize
 						+ " agent(s) per thread.");
+				logger.debug("Using a " + (reuseAgentPool?"pooled":"per-step") 
+						+ " agent executor.");
 			}
 		}
-		final FJTaskRunnerGroup runnerGroup = new FJTaskRunnerGroup(
-				numberOfCPUs);
+		final ForkJoinPool pool = getAgentPool();
+		final long threadsBefore = agentThreadFactory.getCreatedThreadCount();
+		final long stealsBefore = pool.getStealCount();
 
-		ConcurrentProgramEvaluator cpe = new ConcurrentProgramEvaluator(capi,
-				agentContextMap, agentsList, 0, agentsList.size(), batchSize);
+		ConcurrentProgramEvaluator cpe = ConcurrentProgramEvaluator.createAdaptiveEvaluator(capi,
+				agentContextMap, agentsList, batchSize, numberOfCPUs);
+		UpdateMultiset updates = null;
 		try {
-			runnerGroup.invoke(cpe);
-		} catch (InterruptedException e) {
-			runnerGroup.interruptAll();
-			throw new EngineException(
-					"Could not finish program evaluation due to "
-							+ "the following interrupted exception: " + e);
+			updates = pool.invoke(cpe);
+		} finally {
+			if (shouldPrintProcessorStats)
+				printProcessorStats(pool, agentsList.size(), 
+						agentThreadFactory.getCreatedThreadCount() - threadsBefore,
+						pool.getStealCount() - stealsBefore);
+			// worker threads of a failed step may hold a stale 
+			// thread-bound state, so we do not keep them around
+			if (!reuseAgentPool || updates == null)
+				shutdownAgentPool();
 		}
 
-		if (shouldPrintProcessorStats)
-			runnerGroup.stats();
-
-		UpdateMultiset updates = cpe.getResultantUpdateSet();
-
 		if (updates == null) {
 			logger.error(cpe.getError().toString());
 			StackTraceElement[] trace = cpe.getError().getStackTrace();
@@ -280,10 +287,52 @@ public class SchedulerImp implements Scheduler {
 			// capi.error(cpe.getError());
 		}
 
-		runnerGroup.interruptAll();
 		updateInstructions = updates;
 	}
 
+	/**
+	 * Releases the execution threads held by the scheduler.
+	 * This is called when the engine is terminated.
+	 */
+	public void dispose() {
+		shutdownAgentPool();
+	}
+
+	/**
+	 * Returns the pool that executes agent programs, creating a new one
+	 * if there is no live pool. Other components of the engine (e.g., 
+	 * the abstract storage in aggregating updates) may be given this pool 
+	 * when agent programs are not being evaluated.
+	 */
+	public synchronized ForkJoinPool getAgentPool() {
+		if (agentPool == null || agentPool.isShutdown())
+			agentPool = new ForkJoinPool(numberOfCPUs, agentThreadFactory, null, false);
+		return agentPool;
+	}
+
+	/*
+	 * Shuts down the current pool of agent execution threads (if any).
+	 */
+	private synchronized void shutdownAgentPool() {
+		if (agentPool != null) {
+			agentPool.shutdownNow();
+			agentPool = null;
+		}
+	}
+
+	/*
+	 * Prints some stats on processor utilization in the last step.
+	 */
+	private void printProcessorStats(ForkJoinPool pool, int agents, long newThreads, long steals) {
+		System.out.println("Agent execution stats (step " + stepCount + "): " 
+				+ agents + " agent(s), "
+				+ "parallelism " + pool.getParallelism() + ", "
+				+ "pool size " + pool.getPoolSize() + ", " 
+				+ newThreads + " thread(s) created in this step ("
+				+ agentThreadFactory.getCreatedThreadCount() + " in total), "
+				+ steals + " task(s) stolen.");
+	}
+
 	/*
 	 * removed from the concurrent version of the Engine
 	 * 
@@ -440,4 +489,24 @@ public class SchedulerImp implements Scheduler {
 		return size;
 	}
 
+	/*
+	 * Creates the worker threads of the agent execution pool and 
+	 * keeps count of them, so that thread churn can be reported.
+	 */
+	private static class AgentThreadFactory implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+		
+		private final AtomicLong createdThreads = new AtomicLong(0);
+
+		public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+			ForkJoinWorkerThread thread = new ForkJoinWorkerThread(pool) {};
+			thread.setName("CoreASM-Agent-" + createdThreads.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+		
+		public long getCreatedThreadCount() {
+			return createdThreads.get();
+		}
+	}
+
 }
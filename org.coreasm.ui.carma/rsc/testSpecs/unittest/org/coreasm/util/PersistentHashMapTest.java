@@ -0,0 +1,269 @@
+/*
+ * PersistentHashMapTest.java
+ *
+ * Copyright (C) 2013 Roozbeh Farahbod
+ *
+ * Licensed under the Academic Free License version 3.0
+ *   http://www.opensource.org/licenses/afl-3.0.php
+ *   http://www.coreasm.org/afl-3.0.php
+ *
+ */
+
+package org.coreasm.util;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Testing the persistent hash map against {@link HashMap}.
+ *
+ * @author Roozbeh Farahbod
+ */
+public class PersistentHashMapTest {
+
+	/**
+	 * A key with a given hash code, to force collisions.
+	 */
+	static final class Key {
+		final String name;
+		final int hash;
+
+		Key(String name, int hash) {
+			this.name = name;
+			this.hash = hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return (o instanceof Key) && ((Key)o).name.equals(name);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+
+	/**
+	 * Test method for {@link PersistentHashMap#plus(Object, Object)} and {@link PersistentHashMap#minus(Object)}.
+	 */
+	@Test
+	public void testPlusAndMinus() {
+		Random random = new Random(13);
+		PersistentHashMap<Integer, Integer> map = PersistentHashMap.empty();
+		Map<Integer, Integer> expected = new HashMap<Integer, Integer>();
+
+		for (int i = 0; i < 5000; i++) {
+			Integer key = random.nextInt(1000);
+			if (random.nextInt(3) == 0) {
+				map = map.minus(key);
+				expected.remove(key);
+			} else {
+				Integer value = random.nextInt(10);
+				map = map.plus(key, value);
+				expected.put(key, value);
+			}
+			assertEquals(expected.size(), map.size());
+			assertEquals(expected.get(key), map.get(key));
+		}
+		assertEquals(expected, map);
+		for (Integer key: expected.keySet())
+			assertTrue(map.containsKey(key));
+		assertFalse(map.containsKey(1000));
+		assertNull(map.get(1000));
+	}
+
+	/**
+	 * Maps that are extended or reduced stay unchanged.
+	 */
+	@Test
+	public void testPersistence() {
+		PersistentHashMap<String, Integer> m1 = PersistentHashMap.<String, Integer>empty().plus("a", 1).plus("b", 2);
+		PersistentHashMap<String, Integer> m2 = m1.plus("c", 3);
+		PersistentHashMap<String, Integer> m3 = m2.minus("a").plus("b", 5);
+
+		assertEquals(2, m1.size());
+		assertFalse(m1.containsKey("c"));
+		assertEquals(3, m2.size());
+		assertEquals(Integer.valueOf(1), m2.get("a"));
+		assertEquals(Integer.valueOf(2), m2.get("b"));
+		assertEquals(2, m3.size());
+		assertEquals(Integer.valueOf(5), m3.get("b"));
+
+		// no change, no new map
+		assertSame(m1, m1.plus("a", 1));
+		assertSame(m1, m1.minus("z"));
+	}
+
+	/**
+	 * Keys with the same hash code, and keys whose hash codes
+	 * only differ in their higher bits.
+	 */
+	@Test
+	public void testCollisions() {
+		List<Key> keys = new ArrayList<Key>();
+		for (int i = 0; i < 6; i++)
+			keys.add(new Key("same" + i, 42));
+		for (int i = 0; i < 6; i++)
+			keys.add(new Key("prefix" + i, 42 | (i + 1) << 10));
+		keys.add(new Key("near", 42 | 1 << 30));
+
+		PersistentHashMap<Key, Integer> map = PersistentHashMap.empty();
+		Map<Key, Integer> expected = new HashMap<Key, Integer>();
+		for (int i = 0; i < keys.size(); i++) {
+			map = map.plus(keys.get(i), i);
+			expected.put(keys.get(i), i);
+			assertEquals(expected, map);
+		}
+
+		// replace the value of colliding keys
+		map = map.plus(keys.get(2), 100);
+		expected.put(keys.get(2), 100);
+		assertEquals(expected, map);
+		assertEquals(Integer.valueOf(100), map.get(new Key("same2", 42)));
+		assertNull(map.get(new Key("same9", 42)));
+		assertSame(map, map.minus(new Key("same9", 42)));
+
+		// remove them in another order, down to the empty map
+		Collections.shuffle(keys, new Random(7));
+		for (Key key: keys) {
+			map = map.minus(key);
+			expected.remove(key);
+			assertEquals(expected, map);
+			assertEquals(expected.size(), map.size());
+			for (Key k: expected.keySet())
+				assertEquals(expected.get(k), map.get(k));
+		}
+		assertTrue(map.isEmpty());
+		assertSame(PersistentHashMap.empty(), map);
+	}
+
+	/**
+	 * Test method for {@link PersistentHashMap#minus(Object)}, down to the empty map.
+	 */
+	@Test
+	public void testRemoveToEmpty() {
+		List<Integer> keys = new ArrayList<Integer>();
+		for (int i = 0; i < 2000; i++)
+			keys.add(i * 7919);
+		PersistentHashMap<Integer, String> map = PersistentHashMap.empty();
+		for (Integer key: keys)
+			map = map.plus(key, key.toString());
+
+		Collections.shuffle(keys, new Random(3));
+		int size = keys.size();
+		for (Integer key: keys) {
+			assertTrue(map.containsKey(key));
+			map = map.minus(key);
+			assertFalse(map.containsKey(key));
+			assertEquals(--size, map.size());
+		}
+		assertTrue(map.isEmpty());
+		assertFalse(map.entrySet().iterator().hasNext());
+		assertEquals(new HashMap<Integer, String>(), map);
+		assertEquals(0, map.hashCode());
+	}
+
+	/**
+	 * Test method for {@link PersistentHashMap#equals(Object)} and {@link PersistentHashMap#hashCode()}.
+	 */
+	@Test
+	public void testEqualsAndHashCode() {
+		Map<Object, String> expected = new HashMap<Object, String>();
+		for (int i = 0; i < 300; i++)
+			expected.put(i, "v" + i);
+		expected.put(new Key("k1", 5), "x");
+		expected.put(new Key("k2", 5), "y");
+
+		PersistentHashMap<Object, String> map = PersistentHashMap.from(expected);
+		assertEquals(expected, map);
+		assertEquals(map, expected);
+		assertEquals(expected.hashCode(), map.hashCode());
+		assertEquals(expected.entrySet(), map.entrySet());
+		assertEquals(expected.keySet(), map.keySet());
+
+		PersistentHashMap<Object, String> other = map.plus(new Key("k2", 5), "z");
+		assertFalse(other.equals(expected));
+		assertFalse(expected.equals(other));
+		assertFalse(map.minus(0).equals(expected));
+	}
+
+	/**
+	 * Iteration visits every mapping once, in an order that only
+	 * depends on the keys and not on the order they were added.
+	 */
+	@Test
+	public void testIteratorOrder() {
+		List<Integer> keys = new ArrayList<Integer>();
+		for (int i = 0; i < 500; i++)
+			keys.add(i * 31 + 11);
+		PersistentHashMap<Integer, Integer> m1 = PersistentHashMap.empty();
+		for (Integer key: keys)
+			m1 = m1.plus(key, key);
+		Collections.shuffle(keys, new Random(5));
+		PersistentHashMap<Integer, Integer> m2 = PersistentHashMap.empty();
+		for (Integer key: keys)
+			m2 = m2.plus(key, key);
+
+		List<Integer> order1 = new ArrayList<Integer>(m1.keySet());
+		List<Integer> order2 = new ArrayList<Integer>(m2.keySet());
+		assertEquals(order1, order2);
+		assertEquals(keys.size(), order1.size());
+		assertTrue(order1.containsAll(keys));
+
+		Iterator<Entry<Integer, Integer>> it = m1.entrySet().iterator();
+		while (it.hasNext()) {
+			Entry<Integer, Integer> e = it.next();
+			assertEquals(e.getKey(), e.getValue());
+		}
+		try {
+			it.next();
+			fail("NoSuchElementException expected.");
+		} catch (NoSuchElementException e) {
+		}
+	}
+
+	/**
+	 * The map cannot be modified and rejects null keys and values.
+	 */
+	@Test
+	public void testUnsupported() {
+		PersistentHashMap<String, String> map = PersistentHashMap.<String, String>empty().plus("a", "b");
+		try {
+			map.put("c", "d");
+			fail("UnsupportedOperationException expected.");
+		} catch (UnsupportedOperationException e) {
+		}
+		try {
+			map.entrySet().iterator().next().setValue("c");
+			fail("UnsupportedOperationException expected.");
+		} catch (UnsupportedOperationException e) {
+		}
+		try {
+			map.plus(null, "c");
+			fail("NullPointerException expected.");
+		} catch (NullPointerException e) {
+		}
+		try {
+			map.plus("c", null);
+			fail("NullPointerException expected.");
+		} catch (NullPointerException e) {
+		}
+	}
+}
@@ -0,0 +1,151 @@
+/*
+ * PersistentHashSetTest.java
+ *
+ * Copyright (C) 2013 Roozbeh Farahbod
+ *
+ * Licensed under the Academic Free License version 3.0
+ *   http://www.opensource.org/licenses/afl-3.0.php
+ *   http://www.coreasm.org/afl-3.0.php
+ *
+ */
+
+package org.coreasm.util;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.coreasm.util.PersistentHashMapTest.Key;
+import org.junit.Test;
+
+/**
+ * Testing the persistent hash set against {@link HashSet}.
+ *
+ * @author Roozbeh Farahbod
+ */
+public class PersistentHashSetTest {
+
+	/**
+	 * Test method for {@link PersistentHashSet#plus(Object)} and {@link PersistentHashSet#minus(Object)}.
+	 */
+	@Test
+	public void testPlusAndMinus() {
+		Random random = new Random(17);
+		PersistentHashSet<Integer> set = PersistentHashSet.empty();
+		Set<Integer> expected = new HashSet<Integer>();
+
+		for (int i = 0; i < 5000; i++) {
+			Integer e = random.nextInt(800);
+			if (random.nextInt(3) == 0) {
+				set = set.minus(e);
+				expected.remove(e);
+			} else {
+				set = set.plus(e);
+				expected.add(e);
+			}
+			assertEquals(expected.size(), set.size());
+			assertEquals(expected.contains(e), set.contains(e));
+		}
+		assertEquals(expected, set);
+
+		// no change, no new set
+		Integer member = set.iterator().next();
+		assertSame(set, set.plus(member));
+		assertSame(set, set.minus(800));
+	}
+
+	/**
+	 * Members with the same hash code, removed down to the empty set.
+	 */
+	@Test
+	public void testCollisions() {
+		List<Key> members = new ArrayList<Key>();
+		for (int i = 0; i < 5; i++)
+			members.add(new Key("same" + i, -7));
+		for (int i = 0; i < 5; i++)
+			members.add(new Key("other" + i, i));
+
+		PersistentHashSet<Key> set = PersistentHashSet.<Key>empty().plusAll(members);
+		assertEquals(new HashSet<Key>(members), set);
+		assertTrue(set.contains(new Key("same3", -7)));
+		assertFalse(set.contains(new Key("same7", -7)));
+
+		Collections.shuffle(members, new Random(11));
+		Set<Key> expected = new HashSet<Key>(members);
+		for (Key k: members) {
+			set = set.minus(k);
+			expected.remove(k);
+			assertEquals(expected, set);
+			assertFalse(set.contains(k));
+		}
+		assertTrue(set.isEmpty());
+		assertSame(PersistentHashSet.empty(), set);
+	}
+
+	/**
+	 * Test method for {@link PersistentHashSet#equals(Object)} and {@link PersistentHashSet#hashCode()}.
+	 */
+	@Test
+	public void testEqualsAndHashCode() {
+		Set<Object> expected = new HashSet<Object>();
+		for (int i = 0; i < 200; i++)
+			expected.add("e" + i);
+		expected.add(new Key("k1", 9));
+		expected.add(new Key("k2", 9));
+
+		PersistentHashSet<Object> set = PersistentHashSet.from(expected);
+		assertEquals(expected, set);
+		assertEquals(set, expected);
+		assertEquals(expected.hashCode(), set.hashCode());
+		assertFalse(set.minus("e0").equals(expected));
+		assertFalse(expected.equals(set.plus("e200")));
+
+		assertEquals(new HashSet<Object>(), PersistentHashSet.empty());
+		assertEquals(0, PersistentHashSet.empty().hashCode());
+	}
+
+	/**
+	 * Iteration visits every member once, in an order that only
+	 * depends on the members and not on the order they were added.
+	 */
+	@Test
+	public void testIteratorOrder() {
+		List<String> members = new ArrayList<String>();
+		for (int i = 0; i < 300; i++)
+			members.add("m" + i);
+		PersistentHashSet<String> s1 = PersistentHashSet.from(members);
+		Collections.reverse(members);
+		PersistentHashSet<String> s2 = PersistentHashSet.from(members);
+
+		List<String> order = new ArrayList<String>(s1);
+		assertEquals(order, new ArrayList<String>(s2));
+		assertEquals(members.size(), order.size());
+		assertEquals(new HashSet<String>(members), new HashSet<String>(order));
+		assertEquals(new ArrayList<String>(s1.plus("m0").minus("x")), order);
+	}
+
+	/**
+	 * The set cannot be modified.
+	 */
+	@Test
+	public void testUnsupported() {
+		PersistentHashSet<String> set = PersistentHashSet.from(Arrays.asList("a", "b"));
+		try {
+			set.add("c");
+			fail("UnsupportedOperationException expected.");
+		} catch (UnsupportedOperationException e) {
+		}
+		try {
+			set.iterator().remove();
+			fail("UnsupportedOperationException expected.");
+		} catch (UnsupportedOperationException e) {
+		} catch (IllegalStateException e) {
+		}
+	}
+}
@@ -0,0 +1,284 @@
+/*
+ * PersistentListTest.java
+ *
+ * Copyright (C) 2013 Roozbeh Farahbod
+ *
+ * Licensed under the Academic Free License version 3.0
+ *   http://www.opensource.org/licenses/afl-3.0.php
+ *   http://www.coreasm.org/afl-3.0.php
+ *
+ */
+
+package org.coreasm.util;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Testing the persistent list against {@link ArrayList}. The tree
+ * of the list is checked to be balanced after every change.
+ *
+ * @author Roozbeh Farahbod
+ */
+public class PersistentListTest {
+
+	/**
+	 * Test method for {@link PersistentList#plus(int, Object)} and {@link PersistentList#minus(int)}
+	 * at arbitrary indices.
+	 */
+	@Test
+	public void testInsertAndRemove() throws Exception {
+		Random random = new Random(23);
+		PersistentList<Integer> list = PersistentList.empty();
+		List<Integer> expected = new ArrayList<Integer>();
+
+		for (int i = 0; i < 3000; i++) {
+			if (!expected.isEmpty() && random.nextInt(3) == 0) {
+				int index = random.nextInt(expected.size());
+				list = list.minus(index);
+				expected.remove(index);
+			} else {
+				int index = random.nextInt(expected.size() + 1);
+				list = list.plus(index, i);
+				expected.add(index, i);
+			}
+			assertEquals(expected.size(), list.size());
+			assertBalanced(list);
+		}
+		assertEquals(expected, list);
+
+		while (!expected.isEmpty()) {
+			int index = random.nextInt(expected.size());
+			assertEquals(expected.remove(index), list.get(index));
+			list = list.minus(index);
+			assertBalanced(list);
+		}
+		assertTrue(list.isEmpty());
+		assertSame(PersistentList.empty(), list);
+	}
+
+	/**
+	 * Inserting and removing only at the ends is the worst case
+	 * for an unbalanced tree.
+	 */
+	@Test
+	public void testRebalancing() throws Exception {
+		PersistentList<Integer> list = PersistentList.empty();
+		for (int i = 0; i < 1024; i++) {
+			list = list.plus(i);
+			assertBalanced(list);
+		}
+		for (int i = 0; i < 1024; i++) {
+			list = list.plus(0, -i);
+			assertBalanced(list);
+		}
+		assertEquals(2048, list.size());
+		assertEquals(Integer.valueOf(-1023), list.get(0));
+		assertEquals(Integer.valueOf(1023), list.get(2047));
+		// an AVL tree of 2048 nodes is at most 1.44 * log2(2049) high
+		assertTrue(height(root(list)) <= 16);
+
+		for (int i = 0; i < 1000; i++) {
+			list = list.minus(0);
+			assertBalanced(list);
+		}
+		for (int i = 0; i < 1000; i++) {
+			list = list.minus(list.size() - 1);
+			assertBalanced(list);
+		}
+		assertEquals(Arrays.asList(-23, -22, -21, -20, -19, -18, -17, -16, -15, -14, -13, -12, -11, -10,
+				-9, -8, -7, -6, -5, -4, -3, -2, -1, 0, 0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15,
+				16, 17, 18, 19, 20, 21, 22, 23), list);
+	}
+
+	/**
+	 * Test method for {@link PersistentList#with(int, Object)}, {@link PersistentList#concat(PersistentList)}
+	 * and {@link PersistentList#subList(int, int)}.
+	 */
+	@Test
+	public void testWithConcatAndSubList() throws Exception {
+		Random random = new Random(29);
+		List<Integer> expected = new ArrayList<Integer>();
+		for (int i = 0; i < 200; i++)
+			expected.add(i);
+		PersistentList<Integer> list = PersistentList.from(expected);
+		assertBalanced(list);
+
+		for (int i = 0; i < 100; i++) {
+			int index = random.nextInt(expected.size());
+			list = list.with(index, -i);
+			expected.set(index, -i);
+		}
+		assertEquals(expected, list);
+
+		for (int i = 0; i < 200; i++) {
+			int from = random.nextInt(expected.size() + 1);
+			int to = from + random.nextInt(expected.size() - from + 1);
+			PersistentList<Integer> sub = list.subList(from, to);
+			assertEquals(expected.subList(from, to), sub);
+			assertBalanced(sub);
+
+			int length = random.nextInt(300);
+			List<Integer> other = new ArrayList<Integer>();
+			for (int j = 0; j < length; j++)
+				other.add(1000 + j);
+			PersistentList<Integer> joined = sub.concat(PersistentList.from(other));
+			List<Integer> expectedJoined = new ArrayList<Integer>(expected.subList(from, to));
+			expectedJoined.addAll(other);
+			assertEquals(expectedJoined, joined);
+			assertBalanced(joined);
+		}
+
+		assertSame(list, list.concat(PersistentList.<Integer>empty()));
+		assertEquals(list, PersistentList.<Integer>empty().concat(list));
+		assertSame(list, list.subList(0, list.size()));
+		assertTrue(list.subList(5, 5).isEmpty());
+	}
+
+	/**
+	 * Lists that are changed stay unchanged.
+	 */
+	@Test
+	public void testPersistence() {
+		PersistentList<String> l1 = PersistentList.of(new Object[] {"a", "b", "c"});
+		PersistentList<String> l2 = l1.plus(1, "x");
+		PersistentList<String> l3 = l2.minus(0).with(0, "y");
+
+		assertEquals(Arrays.asList("a", "b", "c"), l1);
+		assertEquals(Arrays.asList("a", "x", "b", "c"), l2);
+		assertEquals(Arrays.asList("y", "b", "c"), l3);
+	}
+
+	/**
+	 * Test method for {@link PersistentList#equals(Object)} and {@link PersistentList#hashCode()}.
+	 */
+	@Test
+	public void testEqualsAndHashCode() {
+		List<Object> expected = new LinkedList<Object>(Arrays.<Object>asList("a", 1, 2.5, "a", Arrays.asList(3, 4)));
+		PersistentList<Object> list = PersistentList.from(expected);
+
+		assertEquals(expected, list);
+		assertEquals(list, expected);
+		assertEquals(new ArrayList<Object>(expected), list);
+		assertEquals(expected.hashCode(), list.hashCode());
+		assertEquals(3, list.lastIndexOf("a"));
+		assertEquals(0, list.indexOf("a"));
+		assertTrue(list.contains(2.5));
+		assertFalse(list.contains("b"));
+
+		assertFalse(list.equals(list.minus(4)));
+		assertFalse(list.with(1, 5).equals(expected));
+		assertFalse(expected.equals(list.plus("b")));
+
+		assertEquals(new ArrayList<Object>(), PersistentList.empty());
+		assertEquals(1, PersistentList.empty().hashCode());
+	}
+
+	/**
+	 * Iteration visits the elements in the order of their indices.
+	 */
+	@Test
+	public void testIteratorOrder() {
+		PersistentList<Integer> list = PersistentList.empty();
+		for (int i = 0; i < 100; i++)
+			list = list.plus(i / 2, i);
+		List<Integer> byIndex = new ArrayList<Integer>();
+		for (int i = 0; i < list.size(); i++)
+			byIndex.add(list.get(i));
+
+		Iterator<Integer> it = list.iterator();
+		for (Integer e: byIndex)
+			assertEquals(e, it.next());
+		assertFalse(it.hasNext());
+		try {
+			it.next();
+			fail("NoSuchElementException expected.");
+		} catch (NoSuchElementException e) {
+		}
+		assertEquals(byIndex, new ArrayList<Integer>(list));
+		assertFalse(PersistentList.empty().iterator().hasNext());
+	}
+
+	/**
+	 * The list cannot be modified and checks its indices.
+	 */
+	@Test
+	public void testUnsupported() {
+		PersistentList<String> list = PersistentList.of(new Object[] {"a"});
+		try {
+			list.add("b");
+			fail("UnsupportedOperationException expected.");
+		} catch (UnsupportedOperationException e) {
+		}
+		try {
+			list.get(1);
+			fail("IndexOutOfBoundsException expected.");
+		} catch (IndexOutOfBoundsException e) {
+		}
+		try {
+			list.plus(2, "b");
+			fail("IndexOutOfBoundsException expected.");
+		} catch (IndexOutOfBoundsException e) {
+		}
+		try {
+			list.minus(-1);
+			fail("IndexOutOfBoundsException expected.");
+		} catch (IndexOutOfBoundsException e) {
+		}
+		try {
+			list.subList(0, 2);
+			fail("IndexOutOfBoundsException expected.");
+		} catch (IndexOutOfBoundsException e) {
+		}
+	}
+
+	/*
+	 * Checks that the subtrees of every node of the tree of the list
+	 * differ in height by at most one, and that the sizes and heights
+	 * kept in the nodes are correct.
+	 */
+	private static void assertBalanced(PersistentList<?> list) throws Exception {
+		checkNode(root(list));
+	}
+
+	/*
+	 * Returns the size of the subtree, after checking it.
+	 */
+	private static int checkNode(Object node) throws Exception {
+		if (node == null)
+			return 0;
+		Object left = field(node, "left");
+		Object right = field(node, "right");
+		int size = checkNode(left) + checkNode(right) + 1;
+		int hl = height(left);
+		int hr = height(right);
+		assertTrue("unbalanced node: " + hl + " / " + hr, Math.abs(hl - hr) <= 1);
+		assertEquals(Math.max(hl, hr) + 1, height(node));
+		assertEquals(size, ((Integer)field(node, "size")).intValue());
+		return size;
+	}
+
+	private static Object root(PersistentList<?> list) throws Exception {
+		return field(list, "root");
+	}
+
+	private static int height(Object node) throws Exception {
+		return (node == null) ? 0 : ((Integer)field(node, "height")).intValue();
+	}
+
+	private static Object field(Object o, String name) throws Exception {
+		Field f = o.getClass().getDeclaredField(name);
+		f.setAccessible(true);
+		return f.get(o);
+	}
+}
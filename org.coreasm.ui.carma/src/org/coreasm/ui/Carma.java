@@ -103,6 +103,8 @@ public class Carma implements EngineStepObserver, EngineErrorObserver, VersionIn
 	private static final String ARG_PRINT_PROCESSOR_STATS = "print-processor-stats";
 	private static final String ARG_MAX_THREADS = "max-threads";
 	private static final String ARG_MIN_BATCH_SIZE = "thread-batch-size";
+	private static final String ARG_CHECKPOINT = "checkpoint";
+	private static final String ARG_RESUME = "resume";
 	private static final String ARG_PRINT_SPEC = "print-spec";
 	private static final String ARG_PRINT_LOADED_SPEC = "print-loaded-spec";
 	private static final String ARG_LATEX_OUTPUT = "tolatex";
@@ -137,6 +139,8 @@ public class Carma implements EngineStepObserver, EngineErrorObserver, VersionIn
 	private String[] engineProperties = null;
 	private int maxThreads = 1;
 	private int batchSize = 1;
+	private String checkpointFile = null;
+	private boolean resume = false;
 	private String[] arguments = null;
 	
 	/* Other information gathered in run */
@@ -179,6 +183,11 @@ public class Carma implements EngineStepObserver, EngineErrorObserver, VersionIn
 				            
 			        	new FlaggedOption( ARG_MIN_BATCH_SIZE, JSAP.INTEGER_PARSER, "1", JSAP.REQUIRED, JSAP.NO_SHORTFLAG , ARG_MIN_BATCH_SIZE, 
 				                "Sets the minimum number of agents assigned to every thread in a multi-threaded simulation."),
+				            
+			        	new FlaggedOption( ARG_CHECKPOINT, JSAP.STRING_PARSER, JSAP.NO_DEFAULT, JSAP.NOT_REQUIRED, JSAP.NO_SHORTFLAG , ARG_CHECKPOINT, 
+				                "Checkpoints the state to the given file after every step."),
+				            
+			            new Switch( ARG_RESUME, JSAP.NO_SHORTFLAG, ARG_RESUME, "Resume the run from the checkpoint file."),
 				
 				        propOption,
 				        
@@ -273,6 +282,8 @@ public class Carma implements EngineStepObserver, EngineErrorObserver, VersionIn
 		printInfo = config.getBoolean(ARG_PRINT_INFO);
 		maxThreads = config.getInt(ARG_MAX_THREADS);
 		batchSize = config.getInt(ARG_MIN_BATCH_SIZE);
+		checkpointFile = config.getString(ARG_CHECKPOINT);
+		resume = config.getBoolean(ARG_RESUME);
 		toLatex = config.getBoolean(ARG_LATEX_OUTPUT);
 		printSpec = config.getBoolean(ARG_PRINT_SPEC);
 		printLoadedSpec = config.getBoolean(ARG_PRINT_LOADED_SPEC);
@@ -568,6 +579,9 @@ public class Carma implements EngineStepObserver, EngineErrorObserver, VersionIn
 		//logln(" done.");
 		*/
 		
+		if (resume && engine.getStepCount() > 0)
+			logln("Resuming the run after step " + engine.getStepCount() + ".");
+		
 		int currentStep = 1;
 		//int agentsSum = 0;
 		logln("Starting the execution using " + maxThreads + " thread(s).\n");
@@ -626,6 +640,10 @@ public class Carma implements EngineStepObserver, EngineErrorObserver, VersionIn
 	private void setEngineProperties(CoreASMEngine engine) {
 		engine.setProperty(EngineProperties.MAX_PROCESSORS, String.valueOf(maxThreads));
 		engine.setProperty(EngineProperties.AGENT_EXECUTION_THREAD_BATCH_SIZE, String.valueOf(batchSize));
+		if (checkpointFile != null)
+			engine.setProperty(EngineProperties.CHECKPOINT_FILE, checkpointFile);
+		if (resume)
+			engine.setProperty(EngineProperties.CHECKPOINT_RESUME, EngineProperties.YES);
 		if (engineProperties != null && engineProperties.length > 0) {
 			String prop;
 			String value;
@@ -186,20 +186,20 @@ public abstract class AbstractMultiset<E> implements Multiset<E> {
 	 * @see java.util.Collection#addAll(java.util.Collection)
 	 */
 	public boolean addAll(Collection<? extends E> c) {
-		int size = this.size();
+		boolean changed = false;
 		for (E e: c) 
-			this.add(e);
-		return size != this.size();
+			changed |= this.add(e);
+		return changed;
 	}
 
 	/* (non-Javadoc)
 	 * @see java.util.Collection#removeAll(java.util.Collection)
 	 */
 	public boolean removeAll(Collection<?> c) {
-		int size = this.size();
+		boolean changed = false;
 		for (Object o: c) 
-			this.remove(o);
-		return size != this.size();
+			changed |= this.remove(o);
+		return changed;
 	}
 
 	/* (non-Javadoc)
@@ -0,0 +1,470 @@
+/*
+ * PersistentHashMap.java
+ *
+ * Copyright (C) 2013 Roozbeh Farahbod
+ *
+ * Licensed under the Academic Free License version 3.0
+ *   http://www.opensource.org/licenses/afl-3.0.php
+ *   http://www.coreasm.org/afl-3.0.php
+ *
+ */
+
+package org.coreasm.util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An immutable map implemented as a hash array mapped trie.
+ * {@link #plus(Object, Object)} and {@link #minus(Object)} return new maps
+ * in <i>O(log n)</i> time, sharing all but the changed path of the
+ * trie with this map. Null keys and values are not supported.
+ * <p>
+ * The methods of {@link Map} that modify the map throw
+ * {@link UnsupportedOperationException}.
+ *
+ * @author  Roozbeh Farahbod
+ */
+public final class PersistentHashMap<K, V> extends AbstractMap<K, V> {
+
+	private static final int BITS = 5;
+	private static final int MASK = (1 << BITS) - 1;
+	private static final int MAX_DEPTH = 8;
+
+	@SuppressWarnings("rawtypes")
+	private static final PersistentHashMap EMPTY = new PersistentHashMap(null, 0);
+
+	private final BitmapNode root;
+	private final int size;
+	private Set<Entry<K, V>> entrySet = null;
+
+	private PersistentHashMap(BitmapNode root, int size) {
+		this.root = root;
+		this.size = size;
+	}
+
+	/**
+	 * Returns the empty map.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <K, V> PersistentHashMap<K, V> empty() {
+		return EMPTY;
+	}
+
+	/**
+	 * Returns a map with the mappings of the given map.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <K, V> PersistentHashMap<K, V> from(Map<? extends K, ? extends V> map) {
+		if (map instanceof PersistentHashMap)
+			return (PersistentHashMap<K, V>)map;
+		PersistentHashMap<K, V> result = empty();
+		for (Entry<? extends K, ? extends V> e: map.entrySet())
+			result = result.plus(e.getKey(), e.getValue());
+		return result;
+	}
+
+	/**
+	 * Returns a map that maps the given key to the given value,
+	 * and is otherwise the same as this map.
+	 */
+	public PersistentHashMap<K, V> plus(K key, V value) {
+		if (key == null || value == null)
+			throw new NullPointerException("Persistent maps do not support null keys or values.");
+		final int hash = hash(key);
+		final Leaf leaf = new Leaf(hash, key, value);
+		if (root == null)
+			return new PersistentHashMap<K, V>(new BitmapNode(bit(hash, 0), new Object[] {leaf}), 1);
+		final boolean[] added = new boolean[1];
+		final BitmapNode newRoot = (BitmapNode)root.plus(leaf, 0, added);
+		if (newRoot == root)
+			return this;
+		return new PersistentHashMap<K, V>(newRoot, added[0] ? size + 1 : size);
+	}
+
+	/**
+	 * Returns a map without the mapping of the given key,
+	 * and otherwise the same as this map.
+	 */
+	public PersistentHashMap<K, V> minus(Object key) {
+		if (root == null || key == null)
+			return this;
+		final Object newRoot = root.minus(key, hash(key), 0);
+		if (newRoot == root)
+			return this;
+		if (size == 1)
+			return empty();
+		if (newRoot instanceof Leaf) {
+			final Leaf leaf = (Leaf)newRoot;
+			return new PersistentHashMap<K, V>(new BitmapNode(bit(leaf.hash, 0), new Object[] {leaf}), 1);
+		}
+		return new PersistentHashMap<K, V>((BitmapNode)newRoot, size - 1);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public V get(Object key) {
+		final Leaf leaf = find(key);
+		return (leaf == null) ? null : (V)leaf.value;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return find(key) != null;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	@Override
+	public Set<Entry<K, V>> entrySet() {
+		if (entrySet == null) {
+			entrySet = new AbstractSet<Entry<K, V>>() {
+				@Override
+				public Iterator<Entry<K, V>> iterator() {
+					return new EntryIterator<K, V>(root);
+				}
+
+				@Override
+				public int size() {
+					return size;
+				}
+
+				@Override
+				public boolean contains(Object o) {
+					if (!(o instanceof Entry))
+						return false;
+					final Entry<?, ?> e = (Entry<?, ?>)o;
+					final Leaf leaf = find(e.getKey());
+					return leaf != null && leaf.value.equals(e.getValue());
+				}
+			};
+		}
+		return entrySet;
+	}
+
+	/*
+	 * Returns the leaf of the given key, or null.
+	 */
+	private Leaf find(Object key) {
+		if (root == null || key == null)
+			return null;
+		final int hash = hash(key);
+		Object node = root;
+		int shift = 0;
+		while (true) {
+			if (node instanceof BitmapNode) {
+				final BitmapNode bn = (BitmapNode)node;
+				final int bit = bit(hash, shift);
+				if ((bn.bitmap & bit) == 0)
+					return null;
+				node = bn.slots[bn.index(bit)];
+				shift += BITS;
+			} else if (node instanceof Leaf) {
+				final Leaf leaf = (Leaf)node;
+				return (leaf.hash == hash && leaf.key.equals(key)) ? leaf : null;
+			} else
+				return ((CollisionNode)node).find(key, hash);
+		}
+	}
+
+	private static int hash(Object key) {
+		final int h = key.hashCode();
+		return h ^ (h >>> 16);
+	}
+
+	private static int position(int hash, int shift) {
+		return (hash >>> shift) & MASK;
+	}
+
+	private static int bit(int hash, int shift) {
+		return 1 << position(hash, shift);
+	}
+
+	/*
+	 * Returns a node holding the two given leaves of different keys.
+	 */
+	private static Object merge(Leaf l1, Leaf l2, int shift) {
+		if (l1.hash == l2.hash)
+			return new CollisionNode(l1.hash, new Leaf[] {l1, l2});
+		final int b1 = bit(l1.hash, shift);
+		final int b2 = bit(l2.hash, shift);
+		if (b1 == b2)
+			return new BitmapNode(b1, new Object[] {merge(l1, l2, shift + BITS)});
+		if (position(l1.hash, shift) < position(l2.hash, shift))
+			return new BitmapNode(b1 | b2, new Object[] {l1, l2});
+		else
+			return new BitmapNode(b1 | b2, new Object[] {l2, l1});
+	}
+
+	/*
+	 * A mapping, stored in the nodes of the trie.
+	 */
+	private static final class Leaf implements Entry<Object, Object> {
+		final int hash;
+		final Object key;
+		final Object value;
+
+		Leaf(int hash, Object key, Object value) {
+			this.hash = hash;
+			this.key = key;
+			this.value = value;
+		}
+
+		public Object getKey() {
+			return key;
+		}
+
+		public Object getValue() {
+			return value;
+		}
+
+		public Object setValue(Object value) {
+			throw new UnsupportedOperationException("Persistent maps cannot be modified.");
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Entry))
+				return false;
+			final Entry<?, ?> e = (Entry<?, ?>)o;
+			return key.equals(e.getKey()) && value.equals(e.getValue());
+		}
+
+		@Override
+		public int hashCode() {
+			return key.hashCode() ^ value.hashCode();
+		}
+
+		@Override
+		public String toString() {
+			return key + "=" + value;
+		}
+	}
+
+	/*
+	 * An inner node of the trie; every slot is a leaf or a node.
+	 */
+	private static final class BitmapNode {
+		final int bitmap;
+		final Object[] slots;
+
+		BitmapNode(int bitmap, Object[] slots) {
+			this.bitmap = bitmap;
+			this.slots = slots;
+		}
+
+		int index(int bit) {
+			return Integer.bitCount(bitmap & (bit - 1));
+		}
+
+		Object plus(Leaf leaf, int shift, boolean[] added) {
+			final int bit = bit(leaf.hash, shift);
+			final int i = index(bit);
+			if ((bitmap & bit) == 0) {
+				final Object[] newSlots = new Object[slots.length + 1];
+				System.arraycopy(slots, 0, newSlots, 0, i);
+				newSlots[i] = leaf;
+				System.arraycopy(slots, i, newSlots, i + 1, slots.length - i);
+				added[0] = true;
+				return new BitmapNode(bitmap | bit, newSlots);
+			}
+			final Object slot = slots[i];
+			final Object newSlot;
+			if (slot instanceof Leaf) {
+				final Leaf old = (Leaf)slot;
+				if (old.hash == leaf.hash && old.key.equals(leaf.key)) {
+					if (old.value.equals(leaf.value))
+						return this;
+					newSlot = leaf;
+				} else {
+					added[0] = true;
+					newSlot = merge(old, leaf, shift + BITS);
+				}
+			} else if (slot instanceof BitmapNode)
+				newSlot = ((BitmapNode)slot).plus(leaf, shift + BITS, added);
+			else
+				newSlot = ((CollisionNode)slot).plus(leaf, shift + BITS, added);
+			if (newSlot == slot)
+				return this;
+			return new BitmapNode(bitmap, replace(slots, i, newSlot));
+		}
+
+		/*
+		 * Returns this node if the key is not found,
+		 * null if the node becomes empty, and a leaf
+		 * if the node is left with only that leaf.
+		 */
+		Object minus(Object key, int hash, int shift) {
+			final int bit = bit(hash, shift);
+			if ((bitmap & bit) == 0)
+				return this;
+			final int i = index(bit);
+			final Object slot = slots[i];
+			final Object newSlot;
+			if (slot instanceof Leaf) {
+				final Leaf leaf = (Leaf)slot;
+				if (leaf.hash != hash || !leaf.key.equals(key))
+					return this;
+				newSlot = null;
+			} else if (slot instanceof BitmapNode)
+				newSlot = ((BitmapNode)slot).minus(key, hash, shift + BITS);
+			else
+				newSlot = ((CollisionNode)slot).minus(key, hash);
+			if (newSlot == slot)
+				return this;
+			if (newSlot == null) {
+				if (slots.length == 1)
+					return null;
+				if (slots.length == 2 && slots[1 - i] instanceof Leaf)
+					return slots[1 - i];
+				final Object[] newSlots = new Object[slots.length - 1];
+				System.arraycopy(slots, 0, newSlots, 0, i);
+				System.arraycopy(slots, i + 1, newSlots, i, slots.length - i - 1);
+				return new BitmapNode(bitmap & ~bit, newSlots);
+			}
+			if (slots.length == 1 && newSlot instanceof Leaf)
+				return newSlot;
+			return new BitmapNode(bitmap, replace(slots, i, newSlot));
+		}
+	}
+
+	/*
+	 * The leaves of different keys with the same hash.
+	 */
+	private static final class CollisionNode {
+		final int hash;
+		final Leaf[] leaves;
+
+		CollisionNode(int hash, Leaf[] leaves) {
+			this.hash = hash;
+			this.leaves = leaves;
+		}
+
+		Leaf find(Object key, int hash) {
+			if (hash == this.hash)
+				for (Leaf leaf: leaves)
+					if (leaf.key.equals(key))
+						return leaf;
+			return null;
+		}
+
+		Object plus(Leaf leaf, int shift, boolean[] added) {
+			if (leaf.hash != hash) {
+				// nest this node in a bitmap node with the new leaf
+				final int b1 = bit(hash, shift);
+				final int b2 = bit(leaf.hash, shift);
+				if (b1 == b2)
+					return new BitmapNode(b1, new Object[] {plus(leaf, shift + BITS, added)});
+				added[0] = true;
+				if (position(hash, shift) < position(leaf.hash, shift))
+					return new BitmapNode(b1 | b2, new Object[] {this, leaf});
+				else
+					return new BitmapNode(b1 | b2, new Object[] {leaf, this});
+			}
+			for (int i = 0; i < leaves.length; i++)
+				if (leaves[i].key.equals(leaf.key)) {
+					if (leaves[i].value.equals(leaf.value))
+						return this;
+					return new CollisionNode(hash, (Leaf[])replace(leaves, i, leaf));
+				}
+			final Leaf[] newLeaves = new Leaf[leaves.length + 1];
+			System.arraycopy(leaves, 0, newLeaves, 0, leaves.length);
+			newLeaves[leaves.length] = leaf;
+			added[0] = true;
+			return new CollisionNode(hash, newLeaves);
+		}
+
+		Object minus(Object key, int hash) {
+			if (hash != this.hash)
+				return this;
+			for (int i = 0; i < leaves.length; i++)
+				if (leaves[i].key.equals(key)) {
+					if (leaves.length == 2)
+						return leaves[1 - i];
+					final Leaf[] newLeaves = new Leaf[leaves.length - 1];
+					System.arraycopy(leaves, 0, newLeaves, 0, i);
+					System.arraycopy(leaves, i + 1, newLeaves, i, leaves.length - i - 1);
+					return new CollisionNode(hash, newLeaves);
+				}
+			return this;
+		}
+	}
+
+	/*
+	 * Returns a copy of the given array with the i-th element replaced.
+	 */
+	private static Object[] replace(Object[] array, int i, Object value) {
+		final Object[] result = array.clone();
+		result[i] = value;
+		return result;
+	}
+
+	/*
+	 * Iterates over the leaves of a trie, depth first.
+	 */
+	private static final class EntryIterator<K, V> implements Iterator<Entry<K, V>> {
+		private final Object[][] stack = new Object[MAX_DEPTH][];
+		private final int[] index = new int[MAX_DEPTH];
+		private int depth = -1;
+		private Leaf next = null;
+
+		EntryIterator(BitmapNode root) {
+			if (root != null)
+				push(root);
+			advance();
+		}
+
+		private void push(Object node) {
+			depth++;
+			if (node instanceof BitmapNode)
+				stack[depth] = ((BitmapNode)node).slots;
+			else
+				stack[depth] = ((CollisionNode)node).leaves;
+			index[depth] = 0;
+		}
+
+		private void advance() {
+			next = null;
+			while (depth >= 0) {
+				if (index[depth] < stack[depth].length) {
+					final Object o = stack[depth][index[depth]++];
+					if (o instanceof Leaf) {
+						next = (Leaf)o;
+						return;
+					}
+					push(o);
+				} else
+					stack[depth--] = null;
+			}
+		}
+
+		public boolean hasNext() {
+			return next != null;
+		}
+
+		@SuppressWarnings("unchecked")
+		public Entry<K, V> next() {
+			if (next == null)
+				throw new NoSuchElementException();
+			final Leaf result = next;
+			advance();
+			return (Entry<K, V>)(Entry<?, ?>)result;
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException("Persistent maps cannot be modified.");
+		}
+	}
+}
@@ -0,0 +1,126 @@
+/*
+ * PersistentHashSet.java
+ *
+ * Copyright (C) 2013 Roozbeh Farahbod
+ *
+ * Licensed under the Academic Free License version 3.0
+ *   http://www.opensource.org/licenses/afl-3.0.php
+ *   http://www.coreasm.org/afl-3.0.php
+ *
+ */
+
+package org.coreasm.util;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * An immutable set backed by a {@link PersistentHashMap}.
+ * {@link #plus(Object)} and {@link #minus(Object)} return new sets
+ * in <i>O(log n)</i> time, sharing most of their structure with this set.
+ * Null members are not supported.
+ * <p>
+ * The methods of {@link Set} that modify the set throw
+ * {@link UnsupportedOperationException}.
+ *
+ * @author  Roozbeh Farahbod
+ */
+public final class PersistentHashSet<E> extends AbstractSet<E> {
+
+	@SuppressWarnings("rawtypes")
+	private static final PersistentHashSet EMPTY = new PersistentHashSet(PersistentHashMap.empty());
+
+	private final PersistentHashMap<E, Boolean> map;
+
+	/** sum of the hash codes of the members; 0 if not computed yet */
+	private int hashCode = 0;
+
+	private PersistentHashSet(PersistentHashMap<E, Boolean> map) {
+		this.map = map;
+	}
+
+	/**
+	 * Returns the empty set.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <E> PersistentHashSet<E> empty() {
+		return EMPTY;
+	}
+
+	/**
+	 * Returns a set with the members of the given collection.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <E> PersistentHashSet<E> from(Collection<? extends E> c) {
+		if (c instanceof PersistentHashSet)
+			return (PersistentHashSet<E>)c;
+		PersistentHashSet<E> result = empty();
+		for (E e: c)
+			result = result.plus(e);
+		return result;
+	}
+
+	/**
+	 * Returns a set with the members of this set and the given element.
+	 */
+	public PersistentHashSet<E> plus(E e) {
+		final PersistentHashMap<E, Boolean> newMap = map.plus(e, Boolean.TRUE);
+		if (newMap == map)
+			return this;
+		return new PersistentHashSet<E>(newMap);
+	}
+
+	/**
+	 * Returns a set with the members of this set and the given elements.
+	 */
+	public PersistentHashSet<E> plusAll(Collection<? extends E> c) {
+		PersistentHashSet<E> result = this;
+		for (E e: c)
+			result = result.plus(e);
+		return result;
+	}
+
+	/**
+	 * Returns a set with the members of this set except the given element.
+	 */
+	public PersistentHashSet<E> minus(Object e) {
+		final PersistentHashMap<E, Boolean> newMap = map.minus(e);
+		if (newMap == map)
+			return this;
+		if (newMap.isEmpty())
+			return empty();
+		return new PersistentHashSet<E>(newMap);
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return map.containsKey(o);
+	}
+
+	@Override
+	public Iterator<E> iterator() {
+		return map.keySet().iterator();
+	}
+
+	@Override
+	public int size() {
+		return map.size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return map.isEmpty();
+	}
+
+	@Override
+	public int hashCode() {
+		int h = hashCode;
+		if (h == 0 && !map.isEmpty()) {
+			h = super.hashCode();
+			hashCode = h;
+		}
+		return h;
+	}
+}
@@ -0,0 +1,391 @@
+/*
+ * PersistentList.java
+ *
+ * Copyright (C) 2013 Roozbeh Farahbod
+ *
+ * Licensed under the Academic Free License version 3.0
+ *   http://www.opensource.org/licenses/afl-3.0.php
+ *   http://www.coreasm.org/afl-3.0.php
+ *
+ */
+
+package org.coreasm.util;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable list implemented as a balanced (AVL) tree indexed by
+ * position. Access by index, {@link #with(int, Object)},
+ * {@link #plus(int, Object)}, {@link #minus(int)}, {@link #concat(PersistentList)}
+ * and {@link #subList(int, int)} take <i>O(log n)</i> time, and the
+ * resulting lists share most of their structure with this list.
+ * <p>
+ * The methods of {@link List} that modify the list throw
+ * {@link UnsupportedOperationException}.
+ *
+ * @author  Roozbeh Farahbod
+ */
+public final class PersistentList<E> extends AbstractList<E> {
+
+	@SuppressWarnings("rawtypes")
+	private static final PersistentList EMPTY = new PersistentList(null);
+
+	private final Node root;
+
+	/** hash code of the list; 0 if not computed yet */
+	private int hashCode = 0;
+
+	private PersistentList(Node root) {
+		this.root = root;
+	}
+
+	/**
+	 * Returns the empty list.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <E> PersistentList<E> empty() {
+		return EMPTY;
+	}
+
+	/**
+	 * Returns a list with the elements of the given collection,
+	 * in the order of its iterator.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <E> PersistentList<E> from(Collection<? extends E> c) {
+		if (c instanceof PersistentList)
+			return (PersistentList<E>)c;
+		return of(c.toArray());
+	}
+
+	/**
+	 * Returns a list with the given elements.
+	 */
+	public static <E> PersistentList<E> of(Object[] elements) {
+		if (elements.length == 0)
+			return empty();
+		return new PersistentList<E>(build(elements, 0, elements.length));
+	}
+
+	/**
+	 * Returns a list that is the same as this list except that
+	 * its element at the given index is the given element.
+	 *
+	 * @throws IndexOutOfBoundsException if the index is out of range
+	 */
+	public PersistentList<E> with(int index, E e) {
+		checkIndex(index, size());
+		return new PersistentList<E>(with(root, index, e));
+	}
+
+	/**
+	 * Returns a list with the elements of this list
+	 * and the given element at the given index.
+	 *
+	 * @throws IndexOutOfBoundsException if the index is out of range
+	 */
+	public PersistentList<E> plus(int index, E e) {
+		checkIndex(index, size() + 1);
+		return new PersistentList<E>(insert(root, index, e));
+	}
+
+	/**
+	 * Returns a list with the elements of this list followed by the given element.
+	 */
+	public PersistentList<E> plus(E e) {
+		return new PersistentList<E>(insert(root, size(), e));
+	}
+
+	/**
+	 * Returns a list with the elements of this list except its element
+	 * at the given index.
+	 *
+	 * @throws IndexOutOfBoundsException if the index is out of range
+	 */
+	public PersistentList<E> minus(int index) {
+		checkIndex(index, size());
+		final Node newRoot = remove(root, index);
+		return (newRoot == null) ? PersistentList.<E>empty() : new PersistentList<E>(newRoot);
+	}
+
+	/**
+	 * Returns a list with the elements of this list
+	 * followed by the elements of the given list.
+	 */
+	public PersistentList<E> concat(PersistentList<? extends E> other) {
+		if (other.root == null)
+			return this;
+		if (root == null)
+			return new PersistentList<E>(other.root);
+		final Object first = get(other.root, 0);
+		return new PersistentList<E>(join(root, first, remove(other.root, 0)));
+	}
+
+	/**
+	 * Returns the elements of this list between the given indices
+	 * as a new persistent list.
+	 *
+	 * @throws IndexOutOfBoundsException if the indices are out of range
+	 */
+	@Override
+	public PersistentList<E> subList(int fromIndex, int toIndex) {
+		if (fromIndex < 0 || toIndex > size() || fromIndex > toIndex)
+			throw new IndexOutOfBoundsException("fromIndex: " + fromIndex + ", toIndex: " + toIndex + ", size: " + size());
+		if (fromIndex == toIndex)
+			return empty();
+		if (fromIndex == 0 && toIndex == size())
+			return this;
+		final Node[] right = split(root, fromIndex);
+		final Node[] middle = split(right[1], toIndex - fromIndex);
+		return new PersistentList<E>(middle[0]);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public E get(int index) {
+		checkIndex(index, size());
+		return (E)get(root, index);
+	}
+
+	@Override
+	public int size() {
+		return size(root);
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return root == null;
+	}
+
+	@Override
+	public Iterator<E> iterator() {
+		return new NodeIterator<E>(root);
+	}
+
+	@Override
+	public int indexOf(Object o) {
+		int i = 0;
+		for (E e: this) {
+			if (o == null ? e == null : o.equals(e))
+				return i;
+			i++;
+		}
+		return -1;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return indexOf(o) >= 0;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (o == this)
+			return true;
+		if (!(o instanceof List))
+			return false;
+		final List<?> other = (List<?>)o;
+		if (other.size() != size())
+			return false;
+		final Iterator<?> it = other.iterator();
+		for (E e: this) {
+			final Object oe = it.next();
+			if (!(e == null ? oe == null : e.equals(oe)))
+				return false;
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		int h = hashCode;
+		if (h == 0) {
+			h = 1;
+			for (E e: this)
+				h = 31 * h + (e == null ? 0 : e.hashCode());
+			hashCode = h;
+		}
+		return h;
+	}
+
+	private static void checkIndex(int index, int size) {
+		if (index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+	}
+
+	/*
+	 * A node of the tree, holding an element of the list after
+	 * the elements of its left subtree and before those of its right subtree.
+	 */
+	private static final class Node {
+		final Object value;
+		final Node left;
+		final Node right;
+		final int size;
+		final int height;
+
+		Node(Node left, Object value, Node right) {
+			this.left = left;
+			this.value = value;
+			this.right = right;
+			this.size = size(left) + size(right) + 1;
+			this.height = Math.max(height(left), height(right)) + 1;
+		}
+	}
+
+	private static int size(Node n) {
+		return (n == null) ? 0 : n.size;
+	}
+
+	private static int height(Node n) {
+		return (n == null) ? 0 : n.height;
+	}
+
+	private static Node build(Object[] elements, int from, int to) {
+		if (from >= to)
+			return null;
+		final int mid = (from + to) >>> 1;
+		return new Node(build(elements, from, mid), elements[mid], build(elements, mid + 1, to));
+	}
+
+	private static Object get(Node n, int index) {
+		while (true) {
+			final int ls = size(n.left);
+			if (index < ls)
+				n = n.left;
+			else if (index == ls)
+				return n.value;
+			else {
+				index -= ls + 1;
+				n = n.right;
+			}
+		}
+	}
+
+	private static Node with(Node n, int index, Object e) {
+		final int ls = size(n.left);
+		if (index < ls)
+			return new Node(with(n.left, index, e), n.value, n.right);
+		if (index == ls)
+			return new Node(n.left, e, n.right);
+		return new Node(n.left, n.value, with(n.right, index - ls - 1, e));
+	}
+
+	private static Node insert(Node n, int index, Object e) {
+		if (n == null)
+			return new Node(null, e, null);
+		final int ls = size(n.left);
+		if (index <= ls)
+			return balance(insert(n.left, index, e), n.value, n.right);
+		else
+			return balance(n.left, n.value, insert(n.right, index - ls - 1, e));
+	}
+
+	private static Node remove(Node n, int index) {
+		final int ls = size(n.left);
+		if (index < ls)
+			return balance(remove(n.left, index), n.value, n.right);
+		if (index > ls)
+			return balance(n.left, n.value, remove(n.right, index - ls - 1));
+		if (n.left == null)
+			return n.right;
+		if (n.right == null)
+			return n.left;
+		return balance(n.left, get(n.right, 0), remove(n.right, 0));
+	}
+
+	/*
+	 * Returns a balanced tree of the given subtrees and value,
+	 * where the heights of the subtrees differ by at most two.
+	 */
+	private static Node balance(Node l, Object v, Node r) {
+		final int hl = height(l);
+		final int hr = height(r);
+		if (hl > hr + 1) {
+			if (height(l.left) >= height(l.right))
+				return new Node(l.left, l.value, new Node(l.right, v, r));
+			else
+				return new Node(new Node(l.left, l.value, l.right.left), l.right.value, new Node(l.right.right, v, r));
+		}
+		if (hr > hl + 1) {
+			if (height(r.right) >= height(r.left))
+				return new Node(new Node(l, v, r.left), r.value, r.right);
+			else
+				return new Node(new Node(l, v, r.left.left), r.left.value, new Node(r.left.right, r.value, r.right));
+		}
+		return new Node(l, v, r);
+	}
+
+	/*
+	 * Returns a balanced tree of the elements of l, v, and
+	 * the elements of r, for subtrees of any height.
+	 */
+	private static Node join(Node l, Object v, Node r) {
+		final int hl = height(l);
+		final int hr = height(r);
+		if (hl > hr + 1)
+			return balance(l.left, l.value, join(l.right, v, r));
+		if (hr > hl + 1)
+			return balance(join(l, v, r.left), r.value, r.right);
+		return new Node(l, v, r);
+	}
+
+	/*
+	 * Splits the given tree into the trees of its
+	 * first 'index' elements and of the rest of them.
+	 */
+	private static Node[] split(Node n, int index) {
+		if (n == null)
+			return new Node[] {null, null};
+		final int ls = size(n.left);
+		if (index <= ls) {
+			final Node[] parts = split(n.left, index);
+			parts[1] = join(parts[1], n.value, n.right);
+			return parts;
+		} else {
+			final Node[] parts = split(n.right, index - ls - 1);
+			parts[0] = join(n.left, n.value, parts[0]);
+			return parts;
+		}
+	}
+
+	/*
+	 * Iterates over the elements of a tree in order.
+	 */
+	private static final class NodeIterator<E> implements Iterator<E> {
+		private final Node[] stack;
+		private int depth = 0;
+
+		NodeIterator(Node root) {
+			stack = new Node[height(root) + 1];
+			pushLeft(root);
+		}
+
+		private void pushLeft(Node n) {
+			for (; n != null; n = n.left)
+				stack[depth++] = n;
+		}
+
+		public boolean hasNext() {
+			return depth > 0;
+		}
+
+		@SuppressWarnings("unchecked")
+		public E next() {
+			if (depth == 0)
+				throw new NoSuchElementException();
+			final Node n = stack[--depth];
+			stack[depth] = null;
+			pushLeft(n.right);
+			return (E)n.value;
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException("Persistent lists cannot be modified.");
+		}
+	}
+}